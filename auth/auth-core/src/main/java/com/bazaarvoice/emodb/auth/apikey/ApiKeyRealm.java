@@ -1,16 +1,20 @@
 package com.bazaarvoice.emodb.auth.apikey;
 
 import com.bazaarvoice.emodb.auth.identity.AuthIdentityReader;
+import com.bazaarvoice.emodb.auth.permissions.CachingPermissionResolver;
+import com.bazaarvoice.emodb.auth.permissions.MatchingPermission;
 import com.bazaarvoice.emodb.auth.permissions.PermissionIDs;
 import com.bazaarvoice.emodb.auth.permissions.PermissionReader;
 import com.bazaarvoice.emodb.auth.shiro.AnonymousCredentialsMatcher;
 import com.bazaarvoice.emodb.auth.shiro.AnonymousToken;
+import com.bazaarvoice.emodb.auth.shiro.CachingAuthorizationInfo;
 import com.bazaarvoice.emodb.auth.shiro.InvalidatableCacheManager;
 import com.bazaarvoice.emodb.auth.shiro.PrincipalWithRoles;
 import com.bazaarvoice.emodb.auth.shiro.RolePermissionSet;
 import com.bazaarvoice.emodb.auth.shiro.SimpleRolePermissionSet;
 import com.bazaarvoice.emodb.auth.shiro.ValidatingCacheManager;
 import com.google.common.base.Objects;
+import com.google.common.base.Ticker;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
@@ -30,6 +34,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nullable;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
@@ -41,6 +46,10 @@ public class ApiKeyRealm extends AuthorizingRealm {
 
     private static final String DEFAULT_ROLES_CACHE_SUFFIX = ".rolesCache";
     private static final String DEFAULT_ID_AUTHORIZATION_CACHE_SUFFIX = ".idAuthorizationCache";
+    private static final int DEFAULT_MAXIMUM_DECISIONS_PER_ID = 1000;
+    // Same trade-off as the databus' permission check cache:  changes to a table's placement or attributes may take
+    // a few seconds to be reflected in decisions which depend on them.
+    private static final Duration DEFAULT_TRANSIENT_DECISION_TIMEOUT = Duration.ofSeconds(2);
 
     private final Logger _log = LoggerFactory.getLogger(getClass());
 
@@ -74,7 +83,7 @@ public class ApiKeyRealm extends AuthorizingRealm {
 
         setName(checkNotNull(name, "name"));
         setAuthenticationTokenClass(ApiKeyAuthenticationToken.class);
-        setPermissionResolver(permissionReader.getPermissionResolver());
+        setPermissionResolver(new CachingPermissionResolver(permissionReader.getPermissionResolver()));
         setRolePermissionResolver(createRolePermissionResolver());
         setCacheManager(prepareCacheManager(cacheManager));
         setAuthenticationCachingEnabled(true);
@@ -258,13 +267,22 @@ public class ApiKeyRealm extends AuthorizingRealm {
      * Gets the authorization info for an API key's principals from the source (not from cache).
      */
     private AuthorizationInfo getUncachedAuthorizationInfoFromPrincipals(PrincipalCollection principals) {
-        SimpleAuthorizationInfo authInfo = new SimpleAuthorizationInfo();
+        ImmutableSet.Builder<String> roles = ImmutableSet.builder();
 
         for (PrincipalWithRoles principal : getPrincipalsFromPrincipalCollection(principals)) {
-            authInfo.addRoles(principal.getRoles());
+            roles.addAll(principal.getRoles());
         }
 
-        return authInfo;
+        return createAuthorizationInfo(roles.build());
+    }
+
+    /**
+     * Creates the authorization info for a set of roles.  The returned instance caches the permission decisions
+     * made for it for as long as it is itself cached.
+     */
+    private AuthorizationInfo createAuthorizationInfo(Set<String> roles) {
+        return new CachingAuthorizationInfo(roles, DEFAULT_MAXIMUM_DECISIONS_PER_ID, DEFAULT_TRANSIENT_DECISION_TIMEOUT,
+                Ticker.systemTicker());
     }
 
     @Override
@@ -423,7 +441,66 @@ public class ApiKeyRealm extends AuthorizingRealm {
             return _nullAuthorizationInfo;
         }
 
-        return new SimpleAuthorizationInfo(ImmutableSet.copyOf(apiKey.getRoles()));
+        return createAuthorizationInfo(ImmutableSet.copyOf(apiKey.getRoles()));
+    }
+
+    /**
+     * Override the parent method to use and cache the permission decision for the principals' authorization info.
+     */
+    @Override
+    public boolean isPermitted(PrincipalCollection principals, Permission permission) {
+        AuthorizationInfo authorizationInfo = getAuthorizationInfo(principals);
+        return authorizationInfo != null && isPermittedAll(ImmutableList.of(permission), authorizationInfo);
+    }
+
+    /**
+     * Override the parent method to first check for cached permission decisions.  Any permissions not already decided
+     * are evaluated against the roles' permissions and the decisions are cached.
+     */
+    @Override
+    protected boolean isPermittedAll(Collection<Permission> permissions, AuthorizationInfo authorizationInfo) {
+        if (!(authorizationInfo instanceof CachingAuthorizationInfo)) {
+            return super.isPermittedAll(permissions, authorizationInfo);
+        }
+
+        CachingAuthorizationInfo cachingAuthorizationInfo = (CachingAuthorizationInfo) authorizationInfo;
+        for (Permission permission : permissions) {
+            Boolean permitted = cachingAuthorizationInfo.getDecision(permission);
+            if (permitted == null) {
+                permitted = super.isPermittedAll(ImmutableList.of(permission), authorizationInfo);
+                cachingAuthorizationInfo.putDecision(permission, permitted,
+                        dependsOnResourceState(permission, authorizationInfo));
+            }
+            if (!permitted) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns true if the decision for a permission may depend on the state of the resource, in which case it
+     * can only be cached briefly.
+     */
+    private boolean dependsOnResourceState(Permission permission, AuthorizationInfo authorizationInfo) {
+        if (dependsOnResourceState(permission)) {
+            return true;
+        }
+        for (String role : authorizationInfo.getRoles()) {
+            Collection<Permission> rolePermissions = getRolePermissions(role);
+            if (rolePermissions != null) {
+                for (Permission rolePermission : rolePermissions) {
+                    if (dependsOnResourceState(rolePermission)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean dependsOnResourceState(Permission permission) {
+        return permission instanceof MatchingPermission && ((MatchingPermission) permission).dependsOnResourceState();
     }
 
     /**
@@ -0,0 +1,55 @@
+package com.bazaarvoice.emodb.auth.permissions;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.apache.shiro.authz.Permission;
+import org.apache.shiro.authz.permission.PermissionResolver;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * {@link PermissionResolver} which caches the permissions resolved by another resolver.  Resolving a permission string
+ * parses each of its parts, and for some permissions such as conditions this is relatively expensive.  Since the same
+ * few permission strings are checked on nearly every request caching the resolved permissions ensures each is only
+ * parsed once.  Resolved permissions are immutable so the cached instances can be safely shared by all callers.
+ */
+public class CachingPermissionResolver implements PermissionResolver {
+
+    private final static int DEFAULT_MAXIMUM_SIZE = 1000;
+
+    private final PermissionResolver _delegate;
+    private final LoadingCache<String, Permission> _permissions;
+
+    public CachingPermissionResolver(PermissionResolver delegate) {
+        this(delegate, DEFAULT_MAXIMUM_SIZE);
+    }
+
+    public CachingPermissionResolver(PermissionResolver delegate, int maximumSize) {
+        _delegate = checkNotNull(delegate, "delegate");
+        checkArgument(maximumSize > 0, "Maximum size must be positive");
+
+        _permissions = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .build(new CacheLoader<String, Permission>() {
+                    @Override
+                    public Permission load(String permissionString) throws Exception {
+                        return _delegate.resolvePermission(permissionString);
+                    }
+                });
+    }
+
+    @Override
+    public Permission resolvePermission(String permissionString) {
+        checkNotNull(permissionString, "permissionString");
+        try {
+            return _permissions.getUnchecked(permissionString);
+        } catch (UncheckedExecutionException e) {
+            // Propagate the original exception, typically an InvalidPermissionStringException
+            throw Throwables.propagate(e.getCause());
+        }
+    }
+}
@@ -149,6 +149,19 @@ public class MatchingPermission implements Permission, Serializable {
         return true;
     }
 
+    /**
+     * Returns true if whether this permission implies another permission may depend on the state of the resource,
+     * such as a table's placement, and not only on the two permissions.  See {@link MatchingPart#dependsOnResourceState()}.
+     */
+    public boolean dependsOnResourceState() {
+        for (MatchingPart part : _parts) {
+            if (part.dependsOnResourceState()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Returns a string escaped so it will be interpreted literally by the matcher.  Specifically it converts all
      * '|' and '*' characters to "\|" and "\*" respectively.
@@ -23,6 +23,15 @@ abstract public class MatchingPart implements Implier {
      */
     abstract public boolean isAssignable();
 
+    /**
+     * Returns true if whether this part implies another part depends on the state of the resource being matched,
+     * such as a table's placement, and not only on the two parts.  Implication by such a part may change over time
+     * even if neither permission changes, so decisions which consult it can only be cached briefly.
+     */
+    public boolean dependsOnResourceState() {
+        return false;
+    }
+
     public boolean implies(MatchingPart part, List<MatchingPart> leadingParts) {
         return part.impliedBy(this, leadingParts);
     }
@@ -0,0 +1,98 @@
+package com.bazaarvoice.emodb.auth.shiro;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.shiro.authz.Permission;
+import org.apache.shiro.authz.SimpleAuthorizationInfo;
+
+import javax.annotation.Nullable;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * {@link SimpleAuthorizationInfo} which also caches the decisions for permissions checked against it.  Realms cache
+ * authorization info by principal and by ID, so the decisions are effectively cached per identity and have the same
+ * lifetime as the authorization info:  when the authorization caches are invalidated, such as when an identity's roles
+ * or a role's permissions change, the cached decisions are discarded along with the authorization info.
+ *
+ * Some decisions depend on the state of the resource and not only on the permissions, such as those which evaluate a
+ * table's placement.  These "transient" decisions are only cached briefly so changes to the resource are reflected
+ * within a few seconds.
+ */
+public class CachingAuthorizationInfo extends SimpleAuthorizationInfo {
+
+    private final int _maximumDecisions;
+    private final Duration _transientDecisionTimeout;
+    private final Ticker _ticker;
+
+    // Created on first use since many instances are only created to validate cached instances
+    private volatile Cache<Permission, Boolean> _decisions;
+    private volatile Cache<Permission, Boolean> _transientDecisions;
+
+    public CachingAuthorizationInfo(Set<String> roles, int maximumDecisions, Duration transientDecisionTimeout,
+                                    Ticker ticker) {
+        super(roles);
+        _maximumDecisions = maximumDecisions;
+        _transientDecisionTimeout = checkNotNull(transientDecisionTimeout, "transientDecisionTimeout");
+        _ticker = checkNotNull(ticker, "ticker");
+    }
+
+    /**
+     * Returns the cached decision for whether the permission is permitted, or null if there is none.
+     */
+    @Nullable
+    public Boolean getDecision(Permission permission) {
+        Boolean permitted = null;
+        if (_decisions != null) {
+            permitted = _decisions.getIfPresent(permission);
+        }
+        if (permitted == null && _transientDecisions != null) {
+            permitted = _transientDecisions.getIfPresent(permission);
+        }
+        return permitted;
+    }
+
+    /**
+     * Caches the decision for whether the permission is permitted.  If the decision depends on the state of the
+     * resource then it is only cached for a brief period.
+     */
+    public void putDecision(Permission permission, boolean permitted, boolean dependsOnResourceState) {
+        if (dependsOnResourceState) {
+            getTransientDecisions().put(permission, permitted);
+        } else {
+            getDecisions().put(permission, permitted);
+        }
+    }
+
+    private Cache<Permission, Boolean> getDecisions() {
+        if (_decisions == null) {
+            synchronized (this) {
+                if (_decisions == null) {
+                    _decisions = CacheBuilder.newBuilder()
+                            .maximumSize(_maximumDecisions)
+                            .build();
+                }
+            }
+        }
+        return _decisions;
+    }
+
+    private Cache<Permission, Boolean> getTransientDecisions() {
+        if (_transientDecisions == null) {
+            synchronized (this) {
+                if (_transientDecisions == null) {
+                    _transientDecisions = CacheBuilder.newBuilder()
+                            .maximumSize(_maximumDecisions)
+                            .expireAfterWrite(_transientDecisionTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                            .ticker(_ticker)
+                            .build();
+                }
+            }
+        }
+        return _transientDecisions;
+    }
+}
@@ -30,6 +30,8 @@ import java.util.Set;
 import static org.mockito.AdditionalMatchers.not;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
@@ -258,6 +260,26 @@ public class ApiKeyRealmTest {
         assertTrue(_underTest.hasPermissionById(id, positivePermission));
     }
 
+    @Test
+    public void testCachedPermissionDecision() {
+        String id = _authIdentityManager.createIdentity("apikey0", new ApiKeyModification().addRoles("role0"));
+        Permission rolePermission = mock(Permission.class);
+        Permission permission = mock(Permission.class);
+        when(rolePermission.implies(permission)).thenReturn(true);
+        when(_permissionManager.getPermissions(PermissionIDs.forRole("role0"))).thenReturn(ImmutableSet.of(rolePermission));
+
+        // The decision is made once and cached
+        assertTrue(_underTest.hasPermissionById(id, permission));
+        assertTrue(_underTest.hasPermissionById(id, permission));
+        verify(rolePermission, times(1)).implies(permission);
+
+        // Changing the API key's roles invalidates the cached decision
+        _authIdentityManager.updateIdentity(id, new ApiKeyModification().removeRoles("role0").addRoles("role1"));
+        assertFalse(_underTest.hasPermissionById(id, permission));
+        assertFalse(_underTest.hasPermissionById(id, permission));
+        verify(rolePermission, times(1)).implies(permission);
+    }
+
     @Test
     public void testCachedPermissionCheckByInvalidId() {
         // Verify permission is not granted to a non-existing ID
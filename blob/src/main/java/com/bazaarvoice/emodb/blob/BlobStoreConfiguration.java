@@ -43,6 +43,38 @@ public class BlobStoreConfiguration {
     @JsonProperty("readConsistency")
     private ConsistencyLevel _readConsistency = ConsistencyLevel.CL_LOCAL_QUORUM;
 
+    /**
+     * The maximum number of chunk writes a single blob upload may have outstanding at once.  A value of 1 writes
+     * chunks sequentially on the request thread.
+     */
+    @JsonProperty("maxChunkWritesInFlight")
+    private int _maxChunkWritesInFlight = 8;
+
+    /**
+     * The total memory, in bytes, shared by all concurrent uploads for buffering chunks waiting to be written.
+     */
+    @JsonProperty("chunkWriteBufferBytes")
+    private long _chunkWriteBufferBytes = 64 * 1024 * 1024;
+
+    /**
+     * The number of threads shared by all concurrent uploads for writing chunks in parallel.
+     */
+    @JsonProperty("chunkWriteThreads")
+    private int _chunkWriteThreads = 32;
+
+    /**
+     * The number of chunks following the chunk currently being streamed that a blob download reads ahead
+     * asynchronously.  A value of 0 reads chunks sequentially.
+     */
+    @JsonProperty("readAheadChunks")
+    private int _readAheadChunks = 4;
+
+    /**
+     * The total memory, in bytes, shared by all concurrent downloads for holding chunks which have been read ahead.
+     */
+    @JsonProperty("readAheadBufferBytes")
+    private long _readAheadBufferBytes = 64 * 1024 * 1024;
+
     public Set<String> getValidTablePlacements() {
         return _validTablePlacements;
     }
@@ -95,4 +127,49 @@ public class BlobStoreConfiguration {
         _readConsistency = readConsistency;
         return this;
     }
+
+    public int getMaxChunkWritesInFlight() {
+        return _maxChunkWritesInFlight;
+    }
+
+    public BlobStoreConfiguration setMaxChunkWritesInFlight(int maxChunkWritesInFlight) {
+        _maxChunkWritesInFlight = maxChunkWritesInFlight;
+        return this;
+    }
+
+    public long getChunkWriteBufferBytes() {
+        return _chunkWriteBufferBytes;
+    }
+
+    public BlobStoreConfiguration setChunkWriteBufferBytes(long chunkWriteBufferBytes) {
+        _chunkWriteBufferBytes = chunkWriteBufferBytes;
+        return this;
+    }
+
+    public int getChunkWriteThreads() {
+        return _chunkWriteThreads;
+    }
+
+    public BlobStoreConfiguration setChunkWriteThreads(int chunkWriteThreads) {
+        _chunkWriteThreads = chunkWriteThreads;
+        return this;
+    }
+
+    public int getReadAheadChunks() {
+        return _readAheadChunks;
+    }
+
+    public BlobStoreConfiguration setReadAheadChunks(int readAheadChunks) {
+        _readAheadChunks = readAheadChunks;
+        return this;
+    }
+
+    public long getReadAheadBufferBytes() {
+        return _readAheadBufferBytes;
+    }
+
+    public BlobStoreConfiguration setReadAheadBufferBytes(long readAheadBufferBytes) {
+        _readAheadBufferBytes = readAheadBufferBytes;
+        return this;
+    }
 }
@@ -4,6 +4,8 @@ import com.bazaarvoice.emodb.blob.api.BlobStore;
 import com.bazaarvoice.emodb.blob.core.BlobStoreProviderProxy;
 import com.bazaarvoice.emodb.blob.core.DefaultBlobStore;
 import com.bazaarvoice.emodb.blob.core.LocalBlobStore;
+import com.bazaarvoice.emodb.blob.core.ParallelChunkWriter;
+import com.bazaarvoice.emodb.blob.core.ReadAheadChunkReader;
 import com.bazaarvoice.emodb.blob.core.SystemBlobStore;
 import com.bazaarvoice.emodb.blob.db.StorageProvider;
 import com.bazaarvoice.emodb.blob.db.astyanax.AstyanaxStorageProvider;
@@ -82,6 +84,7 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.google.common.net.HostAndPort;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Key;
 import com.google.inject.PrivateModule;
 import com.google.inject.Provider;
@@ -91,6 +94,7 @@ import com.google.inject.TypeLiteral;
 import com.google.inject.matcher.Matchers;
 import com.google.inject.name.Names;
 import com.netflix.astyanax.model.ConsistencyLevel;
+import io.dropwizard.lifecycle.ExecutorServiceManager;
 import org.apache.curator.framework.CuratorFramework;
 import org.apache.curator.utils.ZKPaths;
 
@@ -99,6 +103,8 @@ import java.util.Collection;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
@@ -363,6 +369,24 @@ public class BlobStoreModule extends PrivateModule {
         return moveMap;
     }
 
+    @Provides @Singleton
+    ParallelChunkWriter provideParallelChunkWriter(BlobStoreConfiguration configuration, StorageProvider storageProvider,
+                                                   LifeCycleRegistry lifeCycle, MetricRegistry metricRegistry) {
+        String nameFormat = "BlobStore ChunkWriter-%d";
+        ExecutorService executor = Executors.newFixedThreadPool(configuration.getChunkWriteThreads(),
+                new ThreadFactoryBuilder().setNameFormat(nameFormat).setDaemon(true).build());
+        lifeCycle.manage(new ExecutorServiceManager(executor, io.dropwizard.util.Duration.seconds(5), nameFormat));
+        return new ParallelChunkWriter(storageProvider, configuration.getMaxChunkWritesInFlight(),
+                configuration.getChunkWriteBufferBytes(), executor, metricRegistry);
+    }
+
+    @Provides @Singleton
+    ReadAheadChunkReader provideReadAheadChunkReader(BlobStoreConfiguration configuration, StorageProvider storageProvider,
+                                                     MetricRegistry metricRegistry) {
+        return new ReadAheadChunkReader(storageProvider, configuration.getReadAheadChunks(),
+                configuration.getReadAheadBufferBytes(), metricRegistry);
+    }
+
     @Provides @Singleton @BlobReadConsistency
     ConsistencyLevel provideBlobReadConsistency(BlobStoreConfiguration configuration) {
         // By default use local quorum
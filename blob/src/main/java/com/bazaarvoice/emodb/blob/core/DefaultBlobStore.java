@@ -34,7 +34,6 @@ import javax.annotation.Nullable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.nio.ByteBuffer;
 import java.security.DigestInputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
@@ -46,7 +45,6 @@ import java.util.Map;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
-import static java.lang.String.format;
 
 /**
  * Stores large binary objects like photos, videos.
@@ -54,11 +52,16 @@ import static java.lang.String.format;
 public class DefaultBlobStore implements BlobStore {
     private final TableDAO _tableDao;
     private final StorageProvider _storageProvider;
+    private final ParallelChunkWriter _chunkWriter;
+    private final ReadAheadChunkReader _chunkReader;
 
     @Inject
-    public DefaultBlobStore(TableDAO tableDao, StorageProvider storageProvider) {
+    public DefaultBlobStore(TableDAO tableDao, StorageProvider storageProvider, ParallelChunkWriter chunkWriter,
+                            ReadAheadChunkReader chunkReader) {
         _tableDao = checkNotNull(tableDao, "tableDao");
         _storageProvider = checkNotNull(storageProvider, "storageProvider");
+        _chunkWriter = checkNotNull(chunkWriter, "chunkWriter");
+        _chunkReader = checkNotNull(chunkReader, "chunkReader");
     }
 
     @Override
@@ -237,67 +240,11 @@ public class DefaultBlobStore implements BlobStore {
         return new DefaultBlob(metadata, range, new StreamSupplier() {
             @Override
             public void writeTo(OutputStream out) throws IOException {
-                readChunks(table, blobId, range, summary, out);
+                _chunkReader.writeTo(table, blobId, range, summary, out);
             }
         });
     }
 
-    private void readChunks(Table table, String blobId, Range range, StorageSummary summary, OutputStream out)
-            throws IOException {
-        if (range.getLength() == 0) {
-            return; // Nothing to do
-        }
-        // Calculate the location of the first byte
-        long start = range.getOffset();
-        int startChunk = (int)(start / summary.getChunkSize());
-        int startOffset = (int)(start % summary.getChunkSize());
-        // Calculate the location of the last byte
-        long end = range.getOffset() + range.getLength() - 1; // Inclusive
-        int endChunk = (int)(end / summary.getChunkSize());
-        int endLimit = (int)(end % summary.getChunkSize()) + 1; // Exclusive
-
-        // A more aggressive solution like the Astyanax ObjectReader recipe would improve performance by issuing
-        // the reads in parallel.
-        for (int i = startChunk; i <= endChunk; i++) {
-            ByteBuffer chunk = _storageProvider.readChunk(table, blobId, i, summary.getTimestamp());
-            if (chunk == null) {
-                throw new IOException(format("Blob chunk %d is missing: %s", i, blobId));
-            }
-
-            // Adjust the start and end of the byte buffer if fetching a range of bytes, not the entire blob.
-            int position = chunk.position();
-            if (i == startChunk) {
-                chunk.position(position + startOffset);
-            }
-            if (i == endChunk) {
-                chunk.limit(position + endLimit);
-            }
-
-            // Copy the chunk bytes to the output stream.
-            copyTo(chunk, out);
-        }
-    }
-
-    /**
-     * Copy the contents of a ByteBuffer to an OutputStream.
-     */
-    private void copyTo(ByteBuffer buf, OutputStream out) throws IOException {
-        if (!buf.hasRemaining()) {
-            return;
-        }
-        if (buf.hasArray()) {
-            // Fast copy if the buffer is backed by an array (which should be the case)
-            out.write(buf.array(), buf.arrayOffset() + buf.position(), buf.remaining());
-        } else {
-            // Slow copy otherwise
-            byte[] bytes = new byte[4096];
-            do {
-                buf.get(bytes, 0, Math.min(bytes.length, buf.remaining()));
-                out.write(bytes);
-            } while (buf.hasRemaining());
-        }
-    }
-
     @Override
     public void put(String tableName, String blobId, InputSupplier<? extends InputStream> in, Map<String,String> attributes, @Nullable Duration ttl) throws IOException {
         checkLegalTableName(tableName);
@@ -308,32 +255,37 @@ public class DefaultBlobStore implements BlobStore {
         Table table = _tableDao.get(tableName);
 
         long timestamp = _storageProvider.getCurrentTimestamp(table);
-        int chunkSize = _storageProvider.getDefaultChunkSize();
+        int chunkSize = _chunkWriter.getChunkSize();
 
         DigestInputStream md5In = new DigestInputStream(in.getInput(), getMessageDigest("MD5"));
         DigestInputStream sha1In = new DigestInputStream(md5In, getMessageDigest("SHA-1"));
 
-        // A more aggressive solution like the Astyanax ObjectWriter recipe would improve performance by pipelining
-        // reading the input stream and writing chunks, and issuing the writes in parallel.
-        byte[] bytes = new byte[chunkSize];
+        // Pipeline reading the input stream with writing chunks.  The digests are updated incrementally as each
+        // chunk is read while previously read chunks are written in parallel, up to the configured in-flight limit.
+        ParallelChunkWriter.Upload upload = _chunkWriter.newUpload(table, blobId, ttl, timestamp);
         long length = 0;
         int chunkCount = 0;
         for (;;) {
+            byte[] bytes = upload.acquireBuffer();
             int chunkLength;
             try {
                 chunkLength = ByteStreams.read(sha1In, bytes, 0, bytes.length);
             } catch (IOException e) {
+                upload.releaseBuffer(bytes);
                 throw Throwables.propagate(e);
             }
             if (chunkLength == 0) {
+                upload.releaseBuffer(bytes);
                 break;
             }
-            ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, chunkLength);
-            _storageProvider.writeChunk(table, blobId, chunkCount, buffer, ttl, timestamp);
+            upload.writeChunk(chunkCount, bytes, chunkLength);
             length += chunkLength;
             chunkCount++;
         }
 
+        // Only write the metadata, which makes the blob visible to readers, once every chunk has been acknowledged.
+        upload.awaitCompletion();
+
         // Include two types of hash: md5 (because it's common) and sha1 (because it's secure)
         String md5 = Hex.encodeHexString(md5In.getMessageDigest().digest());
         String sha1 = Hex.encodeHexString(sha1In.getMessageDigest().digest());
@@ -0,0 +1,188 @@
+package com.bazaarvoice.emodb.blob.core;
+
+import com.bazaarvoice.emodb.blob.db.StorageProvider;
+import com.bazaarvoice.emodb.table.db.Table;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.base.Throwables;
+
+import javax.annotation.Nullable;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Writes blob chunks to a {@link StorageProvider} with up to a fixed number of chunk writes in flight per upload.
+ * Chunk buffers are drawn from a pool shared by all uploads, so the memory held by in-flight chunks across the
+ * server never exceeds the configured budget.  When only one chunk write is allowed in flight chunks are written
+ * synchronously on the calling thread.
+ */
+public class ParallelChunkWriter {
+
+    private final StorageProvider _storageProvider;
+    private final ExecutorService _executor;
+    private final int _maxChunksInFlight;
+    private final int _chunkSize;
+    private final Semaphore _bufferPermits;
+    private final Queue<byte[]> _freeBuffers = new ConcurrentLinkedQueue<>();
+    private final AtomicLong _inFlightBytes = new AtomicLong();
+    private final AtomicLong _inFlightChunks = new AtomicLong();
+    private final Timer _bufferWaitTimer;
+
+    public ParallelChunkWriter(StorageProvider storageProvider, int maxChunksInFlight, long bufferBytes,
+                               ExecutorService executor, MetricRegistry metricRegistry) {
+        _storageProvider = checkNotNull(storageProvider, "storageProvider");
+        _executor = checkNotNull(executor, "executor");
+        checkArgument(maxChunksInFlight >= 1, "maxChunksInFlight must be >= 1");
+        _maxChunksInFlight = maxChunksInFlight;
+        _chunkSize = storageProvider.getDefaultChunkSize();
+        checkArgument(bufferBytes >= _chunkSize, "Chunk write buffer must hold at least one chunk of %s bytes", _chunkSize);
+        _bufferPermits = new Semaphore((int) Math.min(bufferBytes / _chunkSize, Integer.MAX_VALUE));
+
+        metricRegistry.register(getMetricName("in-flight-bytes"), new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return _inFlightBytes.get();
+            }
+        });
+        metricRegistry.register(getMetricName("in-flight-chunks"), new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return _inFlightChunks.get();
+            }
+        });
+        _bufferWaitTimer = metricRegistry.timer(getMetricName("buffer-wait"));
+    }
+
+    private String getMetricName(String name) {
+        return MetricRegistry.name("bv.emodb.blob", "ParallelChunkWriter", name);
+    }
+
+    public int getChunkSize() {
+        return _chunkSize;
+    }
+
+    /**
+     * Starts a new upload.  The caller is responsible for calling {@link Upload#awaitCompletion()} before
+     * writing the blob metadata.
+     */
+    public Upload newUpload(Table table, String blobId, @Nullable Duration ttl, long timestamp) {
+        return new Upload(table, blobId, ttl, timestamp);
+    }
+
+    private byte[] takeBuffer() {
+        Timer.Context timer = _bufferWaitTimer.time();
+        try {
+            _bufferPermits.acquireUninterruptibly();
+        } finally {
+            timer.stop();
+        }
+        byte[] buffer = _freeBuffers.poll();
+        return buffer != null ? buffer : new byte[_chunkSize];
+    }
+
+    private void returnBuffer(byte[] buffer) {
+        _freeBuffers.add(buffer);
+        _bufferPermits.release();
+    }
+
+    public class Upload {
+        private final Table _table;
+        private final String _blobId;
+        private final Duration _ttl;
+        private final long _timestamp;
+        private final Semaphore _depthPermits = new Semaphore(_maxChunksInFlight);
+        private final AtomicReference<Throwable> _failure = new AtomicReference<>();
+
+        private Upload(Table table, String blobId, @Nullable Duration ttl, long timestamp) {
+            _table = checkNotNull(table, "table");
+            _blobId = checkNotNull(blobId, "blobId");
+            _ttl = ttl;
+            _timestamp = timestamp;
+        }
+
+        /**
+         * Returns a buffer of {@link #getChunkSize()} bytes, blocking until both this upload has fewer than the
+         * maximum number of chunk writes in flight and the shared buffer pool has capacity.  The buffer must be
+         * passed to exactly one of {@link #writeChunk} or {@link #releaseBuffer}.
+         */
+        public byte[] acquireBuffer() {
+            propagateFailure();
+            _depthPermits.acquireUninterruptibly();
+            return takeBuffer();
+        }
+
+        /**
+         * Returns an unused buffer obtained from {@link #acquireBuffer()}.
+         */
+        public void releaseBuffer(byte[] buffer) {
+            returnBuffer(buffer);
+            _depthPermits.release();
+        }
+
+        /**
+         * Writes the first {@code length} bytes of the buffer as chunk {@code chunkId}.  Ownership of the buffer
+         * passes to the writer, the caller must not modify it afterward.
+         */
+        public void writeChunk(final int chunkId, final byte[] buffer, final int length) {
+            _inFlightBytes.addAndGet(length);
+            _inFlightChunks.incrementAndGet();
+
+            Runnable write = new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        if (_failure.get() == null) {
+                            _storageProvider.writeChunk(_table, _blobId, chunkId, ByteBuffer.wrap(buffer, 0, length), _ttl, _timestamp);
+                        }
+                    } catch (Throwable t) {
+                        _failure.compareAndSet(null, t);
+                    } finally {
+                        _inFlightBytes.addAndGet(-length);
+                        _inFlightChunks.decrementAndGet();
+                        releaseBuffer(buffer);
+                    }
+                }
+            };
+
+            if (_maxChunksInFlight == 1) {
+                write.run();
+            } else {
+                try {
+                    _executor.execute(write);
+                } catch (RejectedExecutionException e) {
+                    // Executor is shutting down.  Write the chunk on this thread instead.
+                    write.run();
+                }
+            }
+            propagateFailure();
+        }
+
+        /**
+         * Blocks until every chunk written by this upload has been acknowledged by the storage provider.  Throws
+         * the first exception encountered by any chunk write.
+         */
+        public void awaitCompletion() {
+            _depthPermits.acquireUninterruptibly(_maxChunksInFlight);
+            _depthPermits.release(_maxChunksInFlight);
+            propagateFailure();
+        }
+
+        private void propagateFailure() {
+            Throwable failure = _failure.get();
+            if (failure != null) {
+                throw Throwables.propagate(failure);
+            }
+        }
+    }
+}
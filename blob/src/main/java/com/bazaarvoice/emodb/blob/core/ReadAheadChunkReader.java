@@ -0,0 +1,225 @@
+package com.bazaarvoice.emodb.blob.core;
+
+import com.bazaarvoice.emodb.blob.api.Range;
+import com.bazaarvoice.emodb.blob.db.StorageProvider;
+import com.bazaarvoice.emodb.blob.db.StorageSummary;
+import com.bazaarvoice.emodb.table.db.Table;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.lang.String.format;
+
+/**
+ * Streams the chunks of a blob to an output stream while asynchronously prefetching up to a fixed number of
+ * subsequent chunks.  Prefetched chunks are charged against a memory budget shared by all concurrent downloads.
+ * When the budget is exhausted a download reads ahead fewer chunks, falling back to synchronously reading one
+ * chunk at a time, instead of blocking on other downloads.
+ */
+public class ReadAheadChunkReader {
+
+    private final StorageProvider _storageProvider;
+    private final int _readAheadChunks;
+    private final int _bufferBytes;
+    private final Semaphore _bufferPermits;
+    private final Timer _timeToFirstByte;
+    private final Histogram _throughput;
+    private final Meter _prefetchedChunks;
+    private final Meter _budgetExhausted;
+
+    public ReadAheadChunkReader(StorageProvider storageProvider, int readAheadChunks, long bufferBytes,
+                                MetricRegistry metricRegistry) {
+        _storageProvider = checkNotNull(storageProvider, "storageProvider");
+        checkArgument(readAheadChunks >= 0, "readAheadChunks must be >= 0");
+        checkArgument(bufferBytes >= 0, "bufferBytes must be >= 0");
+        _readAheadChunks = readAheadChunks;
+        _bufferBytes = (int) Math.min(bufferBytes, Integer.MAX_VALUE);
+        _bufferPermits = new Semaphore(_bufferBytes);
+
+        metricRegistry.register(getMetricName("prefetched-bytes"), new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                return _bufferBytes - _bufferPermits.availablePermits();
+            }
+        });
+        _timeToFirstByte = metricRegistry.timer(getMetricName("time-to-first-byte"));
+        _throughput = metricRegistry.histogram(getMetricName("bytes-per-second"));
+        _prefetchedChunks = metricRegistry.meter(getMetricName("prefetched-chunks"));
+        _budgetExhausted = metricRegistry.meter(getMetricName("budget-exhausted"));
+    }
+
+    private String getMetricName(String name) {
+        return MetricRegistry.name("bv.emodb.blob", "ReadAheadChunkReader", name);
+    }
+
+    /**
+     * Writes the bytes of the blob within the specified range to the output stream.  Only chunks which overlap the
+     * range are read.
+     */
+    public void writeTo(Table table, String blobId, Range range, StorageSummary summary, OutputStream out)
+            throws IOException {
+        if (range.getLength() == 0) {
+            return; // Nothing to do
+        }
+        long startTime = System.nanoTime();
+
+        // Calculate the location of the first byte
+        long start = range.getOffset();
+        int startChunk = (int)(start / summary.getChunkSize());
+        int startOffset = (int)(start % summary.getChunkSize());
+        // Calculate the location of the last byte
+        long end = range.getOffset() + range.getLength() - 1; // Inclusive
+        int endChunk = (int)(end / summary.getChunkSize());
+        int endLimit = (int)(end % summary.getChunkSize()) + 1; // Exclusive
+
+        ChunkSequence chunks = new ChunkSequence(table, blobId, summary, startChunk, endChunk);
+        try {
+            for (int i = startChunk; i <= endChunk; i++) {
+                ByteBuffer chunk = chunks.next();
+                if (chunk == null) {
+                    throw new IOException(format("Blob chunk %d is missing: %s", i, blobId));
+                }
+
+                // Adjust the start and end of the byte buffer if fetching a range of bytes, not the entire blob.
+                int position = chunk.position();
+                if (i == startChunk) {
+                    chunk.position(position + startOffset);
+                }
+                if (i == endChunk) {
+                    chunk.limit(position + endLimit);
+                }
+
+                // Copy the chunk bytes to the output stream.
+                copyTo(chunk, out);
+
+                if (i == startChunk) {
+                    _timeToFirstByte.update(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+                }
+            }
+        } finally {
+            chunks.close();
+        }
+
+        long elapsedNanos = System.nanoTime() - startTime;
+        if (elapsedNanos > 0) {
+            _throughput.update(range.getLength() * TimeUnit.SECONDS.toNanos(1) / elapsedNanos);
+        }
+    }
+
+    /**
+     * Copy the contents of a ByteBuffer to an OutputStream.
+     */
+    private void copyTo(ByteBuffer buf, OutputStream out) throws IOException {
+        if (!buf.hasRemaining()) {
+            return;
+        }
+        if (buf.hasArray()) {
+            // Fast copy if the buffer is backed by an array (which should be the case)
+            out.write(buf.array(), buf.arrayOffset() + buf.position(), buf.remaining());
+        } else {
+            // Slow copy otherwise
+            byte[] bytes = new byte[4096];
+            do {
+                int length = Math.min(bytes.length, buf.remaining());
+                buf.get(bytes, 0, length);
+                out.write(bytes, 0, length);
+            } while (buf.hasRemaining());
+        }
+    }
+
+    /**
+     * Returns the chunks in a contiguous range in order, keeping reads for the following chunks in flight.
+     */
+    private class ChunkSequence {
+        private final Table _table;
+        private final String _blobId;
+        private final long _timestamp;
+        private final int _chunkSize;
+        private final int _endChunk;
+        private final Deque<ListenableFuture<ByteBuffer>> _prefetched = new ArrayDeque<>();
+        private int _nextToReturn;
+        private int _nextToRequest;
+
+        ChunkSequence(Table table, String blobId, StorageSummary summary, int startChunk, int endChunk) {
+            _table = table;
+            _blobId = blobId;
+            _timestamp = summary.getTimestamp();
+            _chunkSize = summary.getChunkSize();
+            _endChunk = endChunk;
+            _nextToReturn = startChunk;
+            _nextToRequest = startChunk;
+        }
+
+        ByteBuffer next() {
+            prefetch();
+
+            ByteBuffer chunk;
+            ListenableFuture<ByteBuffer> future = _prefetched.pollFirst();
+            if (future != null) {
+                try {
+                    chunk = Uninterruptibles.getUninterruptibly(future);
+                } catch (ExecutionException e) {
+                    // Rethrow the failure as readChunk() would have thrown it so callers catch the same exception types.
+                    throw Throwables.propagate(e.getCause());
+                } finally {
+                    _bufferPermits.release(_chunkSize);
+                }
+            } else {
+                // Nothing could be prefetched, so read the chunk synchronously.
+                chunk = _storageProvider.readChunk(_table, _blobId, _nextToReturn, _timestamp);
+                _nextToRequest++;
+            }
+            _nextToReturn++;
+            return chunk;
+        }
+
+        private void prefetch() {
+            if (_readAheadChunks == 0) {
+                return;
+            }
+            // Keep the current chunk plus up to the configured number of following chunks in flight.
+            int limit = Math.min(_endChunk, _nextToReturn + _readAheadChunks);
+            while (_nextToRequest <= limit) {
+                if (!_bufferPermits.tryAcquire(_chunkSize)) {
+                    _budgetExhausted.mark();
+                    return;
+                }
+                ListenableFuture<ByteBuffer> future;
+                try {
+                    future = _storageProvider.readChunkAsync(_table, _blobId, _nextToRequest, _timestamp);
+                } catch (RuntimeException e) {
+                    _bufferPermits.release(_chunkSize);
+                    throw e;
+                }
+                _prefetched.addLast(future);
+                _prefetchedChunks.mark();
+                _nextToRequest++;
+            }
+        }
+
+        void close() {
+            // Abandon any reads still outstanding, for example because the client disconnected.
+            ListenableFuture<ByteBuffer> future;
+            while ((future = _prefetched.pollFirst()) != null) {
+                future.cancel(false);
+                _bufferPermits.release(_chunkSize);
+            }
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.bazaarvoice.emodb.blob.db;
 
 import com.bazaarvoice.emodb.common.api.impl.LimitCounter;
 import com.bazaarvoice.emodb.table.db.Table;
+import com.google.common.util.concurrent.ListenableFuture;
 
 import javax.annotation.Nullable;
 import java.nio.ByteBuffer;
@@ -24,6 +25,12 @@ public interface StorageProvider {
 
     ByteBuffer readChunk(Table table, String blobId, int chunkId, long timestamp);
 
+    /**
+     * Asynchronous version of {@link #readChunk(Table, String, int, long)}.  The returned future resolves to null if
+     * the chunk is missing.
+     */
+    ListenableFuture<ByteBuffer> readChunkAsync(Table table, String blobId, int chunkId, long timestamp);
+
     void deleteObject(Table table, String blobId, Integer chunkCount);
 
     void writeMetadata(Table table, String blobId, StorageSummary summary, @Nullable Duration ttl);
@@ -17,10 +17,14 @@ import com.bazaarvoice.emodb.table.db.astyanax.DataPurgeDAO;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.Timer;
+import com.google.common.base.Function;
 import com.google.common.base.Throwables;
 import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.FutureFallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.google.inject.Inject;
 import com.netflix.astyanax.ColumnListMutation;
 import com.netflix.astyanax.Execution;
@@ -158,23 +162,56 @@ public class AstyanaxStorageProvider implements StorageProvider, DataCopyDAO, Da
     @ParameterizedTimed(type="AstyanaxStorageProvider")
     @Override
     public ByteBuffer readChunk(Table tbl, String blobId, int chunkId, long timestamp) {
-        AstyanaxTable table = (AstyanaxTable) checkNotNull(tbl, "table");
-        AstyanaxStorage storage = table.getReadStorage();
-        BlobPlacement placement = (BlobPlacement) storage.getPlacement();
-        CassandraKeyspace keyspace = placement.getKeyspace();
-
-        ColumnQuery<Composite> query = keyspace.prepareQuery(placement.getBlobColumnFamily(), _readConsistency)
-                .getKey(storage.getRowKey(blobId))
-                .getColumn(getColumn(ColumnGroup.Z, chunkId));
         OperationResult<Column<Composite>> operationResult;
         try {
-            operationResult = query.execute();
+            operationResult = prepareChunkQuery(tbl, blobId, chunkId).execute();
         } catch (NotFoundException e) {
             return null;
         } catch (ConnectionException e) {
             throw Throwables.propagate(e);
         }
-        Column<Composite> column = operationResult.getResult();
+        return toChunk(operationResult.getResult(), timestamp);
+    }
+
+    @ParameterizedTimed(type="AstyanaxStorageProvider")
+    @Override
+    public ListenableFuture<ByteBuffer> readChunkAsync(Table tbl, String blobId, int chunkId, final long timestamp) {
+        ListenableFuture<OperationResult<Column<Composite>>> future;
+        try {
+            future = prepareChunkQuery(tbl, blobId, chunkId).executeAsync();
+        } catch (ConnectionException e) {
+            return Futures.immediateFailedFuture(e);
+        }
+        ListenableFuture<ByteBuffer> chunk = Futures.transform(future, new Function<OperationResult<Column<Composite>>, ByteBuffer>() {
+            @Override
+            public ByteBuffer apply(OperationResult<Column<Composite>> operationResult) {
+                return toChunk(operationResult.getResult(), timestamp);
+            }
+        });
+        return Futures.withFallback(chunk, new FutureFallback<ByteBuffer>() {
+            @Override
+            public ListenableFuture<ByteBuffer> create(Throwable t) throws Exception {
+                if (t instanceof NotFoundException) {
+                    return Futures.immediateFuture(null);
+                }
+                throw Throwables.propagate(t);
+            }
+        });
+    }
+
+    private ColumnQuery<Composite> prepareChunkQuery(Table tbl, String blobId, int chunkId) {
+        AstyanaxTable table = (AstyanaxTable) checkNotNull(tbl, "table");
+        AstyanaxStorage storage = table.getReadStorage();
+        BlobPlacement placement = (BlobPlacement) storage.getPlacement();
+        CassandraKeyspace keyspace = placement.getKeyspace();
+
+        return keyspace.prepareQuery(placement.getBlobColumnFamily(), _readConsistency)
+                .getKey(storage.getRowKey(blobId))
+                .getColumn(getColumn(ColumnGroup.Z, chunkId));
+    }
+
+    @Nullable
+    private ByteBuffer toChunk(Column<Composite> column, long timestamp) {
         if (column.getTimestamp() != timestamp) {
             return null;
         }
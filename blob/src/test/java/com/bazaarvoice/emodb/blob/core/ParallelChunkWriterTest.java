@@ -0,0 +1,138 @@
+package com.bazaarvoice.emodb.blob.core;
+
+import com.bazaarvoice.emodb.blob.db.StorageProvider;
+import com.bazaarvoice.emodb.table.db.Table;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.MoreExecutors;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class ParallelChunkWriterTest {
+
+    private static final int CHUNK_SIZE = 16;
+
+    private ExecutorService _executor;
+    private StorageProvider _storageProvider;
+    private Table _table;
+
+    @BeforeMethod
+    public void setUp() {
+        _executor = Executors.newFixedThreadPool(4);
+        _storageProvider = mock(StorageProvider.class);
+        when(_storageProvider.getDefaultChunkSize()).thenReturn(CHUNK_SIZE);
+        _table = mock(Table.class);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        _executor.shutdownNow();
+    }
+
+    @Test
+    public void testAllChunksWrittenBeforeCompletion() {
+        final Map<Integer, byte[]> written = Maps.newConcurrentMap();
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                int current = inFlight.incrementAndGet();
+                maxInFlight.accumulateAndGet(current, Math::max);
+                Thread.sleep(5);
+                ByteBuffer data = (ByteBuffer) invocation.getArguments()[3];
+                byte[] bytes = new byte[data.remaining()];
+                data.get(bytes);
+                written.put((Integer) invocation.getArguments()[2], bytes);
+                inFlight.decrementAndGet();
+                return null;
+            }
+        }).when(_storageProvider).writeChunk(any(Table.class), anyString(), anyInt(), any(ByteBuffer.class), any(Duration.class), anyLong());
+
+        ParallelChunkWriter writer = new ParallelChunkWriter(_storageProvider, 3, CHUNK_SIZE * 2, _executor, new MetricRegistry());
+        ParallelChunkWriter.Upload upload = writer.newUpload(_table, "blob", null, 1234L);
+        for (int i = 0; i < 20; i++) {
+            byte[] buffer = upload.acquireBuffer();
+            assertEquals(buffer.length, CHUNK_SIZE);
+            Arrays.fill(buffer, (byte) i);
+            upload.writeChunk(i, buffer, i % 2 == 0 ? CHUNK_SIZE : 5);
+        }
+        upload.awaitCompletion();
+
+        assertEquals(written.size(), 20);
+        for (int i = 0; i < 20; i++) {
+            byte[] expected = new byte[i % 2 == 0 ? CHUNK_SIZE : 5];
+            Arrays.fill(expected, (byte) i);
+            assertTrue(Arrays.equals(written.get(i), expected), "Chunk " + i);
+        }
+        // The buffer budget of two chunks caps concurrency below the per-upload limit of three
+        assertTrue(maxInFlight.get() <= 2);
+    }
+
+    @Test
+    public void testSequentialWritesOnCallingThread() {
+        final Thread caller = Thread.currentThread();
+        final AtomicInteger count = new AtomicInteger();
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                assertEquals(Thread.currentThread(), caller);
+                count.incrementAndGet();
+                return null;
+            }
+        }).when(_storageProvider).writeChunk(any(Table.class), anyString(), anyInt(), any(ByteBuffer.class), any(Duration.class), anyLong());
+
+        ParallelChunkWriter writer = new ParallelChunkWriter(_storageProvider, 1, CHUNK_SIZE, MoreExecutors.sameThreadExecutor(), new MetricRegistry());
+        ParallelChunkWriter.Upload upload = writer.newUpload(_table, "blob", null, 1234L);
+        for (int i = 0; i < 5; i++) {
+            upload.writeChunk(i, upload.acquireBuffer(), CHUNK_SIZE);
+        }
+        upload.awaitCompletion();
+        assertEquals(count.get(), 5);
+    }
+
+    @Test
+    public void testFailurePropagated() {
+        doThrow(new IllegalStateException("write failed"))
+                .when(_storageProvider).writeChunk(any(Table.class), anyString(), anyInt(), any(ByteBuffer.class), any(Duration.class), anyLong());
+
+        ParallelChunkWriter writer = new ParallelChunkWriter(_storageProvider, 4, CHUNK_SIZE * 4, _executor, new MetricRegistry());
+        ParallelChunkWriter.Upload upload = writer.newUpload(_table, "blob", null, 1234L);
+        try {
+            upload.writeChunk(0, upload.acquireBuffer(), CHUNK_SIZE);
+            upload.awaitCompletion();
+            fail("IllegalStateException not thrown");
+        } catch (IllegalStateException e) {
+            assertEquals(e.getMessage(), "write failed");
+        }
+
+        // The failed upload must have returned its buffer to the shared pool
+        ParallelChunkWriter.Upload next = writer.newUpload(_table, "blob2", null, 1234L);
+        for (int i = 0; i < 4; i++) {
+            next.releaseBuffer(next.acquireBuffer());
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.bazaarvoice.emodb.blob.core;
+
+import com.bazaarvoice.emodb.blob.api.Range;
+import com.bazaarvoice.emodb.blob.db.StorageProvider;
+import com.bazaarvoice.emodb.blob.db.StorageSummary;
+import com.bazaarvoice.emodb.table.db.Table;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class ReadAheadChunkReaderTest {
+
+    private static final int CHUNK_SIZE = 10;
+    private static final long TIMESTAMP = 1234L;
+
+    private final byte[] _blob = new byte[95];
+    private StorageProvider _storageProvider;
+    private Table _table;
+    private StorageSummary _summary;
+
+    @BeforeMethod
+    public void setUp() {
+        for (int i = 0; i < _blob.length; i++) {
+            _blob[i] = (byte) i;
+        }
+        _storageProvider = mock(StorageProvider.class);
+        _table = mock(Table.class);
+        _summary = new StorageSummary(_blob.length, 10, CHUNK_SIZE, "md5", "sha1", ImmutableMap.<String, String>of(), TIMESTAMP);
+
+        when(_storageProvider.readChunk(any(Table.class), anyString(), anyInt(), anyLong())).thenAnswer(new Answer<ByteBuffer>() {
+            @Override
+            public ByteBuffer answer(InvocationOnMock invocation) throws Throwable {
+                return chunk((Integer) invocation.getArguments()[2]);
+            }
+        });
+        when(_storageProvider.readChunkAsync(any(Table.class), anyString(), anyInt(), anyLong())).thenAnswer(new Answer<ListenableFuture<ByteBuffer>>() {
+            @Override
+            public ListenableFuture<ByteBuffer> answer(InvocationOnMock invocation) throws Throwable {
+                return Futures.immediateFuture(chunk((Integer) invocation.getArguments()[2]));
+            }
+        });
+    }
+
+    private ByteBuffer chunk(int chunkId) {
+        int offset = chunkId * CHUNK_SIZE;
+        return ByteBuffer.wrap(Arrays.copyOfRange(_blob, offset, Math.min(offset + CHUNK_SIZE, _blob.length)));
+    }
+
+    private byte[] read(ReadAheadChunkReader reader, Range range) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        reader.writeTo(_table, "blob", range, _summary, out);
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testReadEntireBlob() throws Exception {
+        ReadAheadChunkReader reader = new ReadAheadChunkReader(_storageProvider, 3, 1000, new MetricRegistry());
+        assertTrue(Arrays.equals(read(reader, new Range(0, _blob.length)), _blob));
+        verify(_storageProvider, never()).readChunk(any(Table.class), anyString(), anyInt(), anyLong());
+    }
+
+    @Test
+    public void testRangeOnlyPrefetchesOverlappingChunks() throws Exception {
+        ReadAheadChunkReader reader = new ReadAheadChunkReader(_storageProvider, 5, 1000, new MetricRegistry());
+        assertTrue(Arrays.equals(read(reader, new Range(25, 20)), Arrays.copyOfRange(_blob, 25, 45)));
+        verify(_storageProvider, never()).readChunkAsync(any(Table.class), anyString(), eq(1), anyLong());
+        verify(_storageProvider, never()).readChunkAsync(any(Table.class), anyString(), eq(5), anyLong());
+    }
+
+    @Test
+    public void testExhaustedBudgetFallsBackToSynchronousReads() throws Exception {
+        MetricRegistry metricRegistry = new MetricRegistry();
+        ReadAheadChunkReader reader = new ReadAheadChunkReader(_storageProvider, 3, CHUNK_SIZE - 1, metricRegistry);
+        assertTrue(Arrays.equals(read(reader, new Range(0, _blob.length)), _blob));
+        verify(_storageProvider, never()).readChunkAsync(any(Table.class), anyString(), anyInt(), anyLong());
+        assertEquals(metricRegistry.getGauges().get("bv.emodb.blob.ReadAheadChunkReader.prefetched-bytes").getValue(), 0);
+    }
+
+    @Test
+    public void testSequentialWithoutReadAhead() throws Exception {
+        ReadAheadChunkReader reader = new ReadAheadChunkReader(_storageProvider, 0, 1000, new MetricRegistry());
+        assertTrue(Arrays.equals(read(reader, new Range(5, 80)), Arrays.copyOfRange(_blob, 5, 85)));
+        verify(_storageProvider, never()).readChunkAsync(any(Table.class), anyString(), anyInt(), anyLong());
+    }
+
+    @Test
+    public void testPrefetchFailureRethrowsOriginalException() throws Exception {
+        final IllegalStateException failure = new IllegalStateException("read failed");
+        when(_storageProvider.readChunkAsync(any(Table.class), anyString(), eq(2), anyLong()))
+                .thenReturn(Futures.<ByteBuffer>immediateFailedFuture(failure));
+
+        MetricRegistry metricRegistry = new MetricRegistry();
+        ReadAheadChunkReader reader = new ReadAheadChunkReader(_storageProvider, 3, 1000, metricRegistry);
+        try {
+            read(reader, new Range(0, _blob.length));
+            fail();
+        } catch (IllegalStateException e) {
+            assertSame(e, failure);
+        }
+        assertEquals(metricRegistry.getGauges().get("bv.emodb.blob.ReadAheadChunkReader.prefetched-bytes").getValue(), 0);
+    }
+}
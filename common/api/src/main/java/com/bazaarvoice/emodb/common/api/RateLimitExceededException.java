@@ -0,0 +1,32 @@
+package com.bazaarvoice.emodb.common.api;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import javax.annotation.Nullable;
+
+/**
+ * Exception thrown when the caller has exceeded a rate limit and should retry again later.
+ * Corresponds to an HTTP 429 response.
+ */
+@JsonIgnoreProperties ({"cause", "localizedMessage", "stackTrace"})
+public class RateLimitExceededException extends RuntimeException {
+
+    private Integer _retryAfterSeconds;
+
+    public RateLimitExceededException() {
+        super();
+    }
+
+    @JsonCreator
+    public RateLimitExceededException(@JsonProperty("message") String message,
+                                      @JsonProperty("retryAfterSeconds") @Nullable Integer retryAfterSeconds) {
+        super(message);
+        _retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public Integer getRetryAfterSeconds() {
+        return _retryAfterSeconds;
+    }
+}
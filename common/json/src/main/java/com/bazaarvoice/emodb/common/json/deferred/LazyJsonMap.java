@@ -4,17 +4,18 @@ import com.bazaarvoice.emodb.common.json.JsonHelper;
 import com.bazaarvoice.emodb.common.json.OrderedJson;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.core.JsonGenerator;
-import com.fasterxml.jackson.core.JsonParser;
-import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.core.ObjectCodec;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
 import javax.annotation.Nullable;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicReference;
@@ -84,12 +85,18 @@ public class LazyJsonMap implements Map<String, Object> {
     private static class DeserializationState {
         // Initial JSON string attributes
         private final String json;
+        private final FieldIndex fields;
         private final Map<String, Object> overrides;
         // Deserialized attributes
         private final Map<String, Object> deserialized;
 
         DeserializationState(String json) {
-            this.json = json;
+            this(new FieldIndex(json));
+        }
+
+        DeserializationState(FieldIndex fields) {
+            this.json = fields.json;
+            this.fields = fields;
             this.overrides = Maps.newHashMap();
             this.deserialized = null;
         }
@@ -97,6 +104,7 @@ public class LazyJsonMap implements Map<String, Object> {
         DeserializationState(Map<String, Object> deserialized) {
             this.deserialized = deserialized;
             this.json = null;
+            this.fields = null;
             this.overrides = null;
         }
 
@@ -109,13 +117,155 @@ public class LazyJsonMap implements Map<String, Object> {
             if (deserialized != null) {
                 copy = new DeserializationState(Maps.newHashMap(deserialized));
             } else {
-                copy = new DeserializationState(json);
+                // The JSON never changes so copies can share its field index
+                copy = new DeserializationState(fields);
                 copy.overrides.putAll(overrides);
             }
             return copy;
         }
     }
 
+    /**
+     * The location of each top level field's value in the JSON string.  Building the index requires scanning the JSON
+     * once but, unlike deserializing it, doesn't create any values.  With the index individual values can be
+     * deserialized and unmodified values can be copied verbatim when the map is written with overrides.
+     */
+    private static class FieldIndex {
+        private final String json;
+        private volatile Index index;
+
+        FieldIndex(String json) {
+            this.json = json;
+        }
+
+        Index get() {
+            // Benign race, at worst multiple threads build equivalent indexes
+            Index index = this.index;
+            if (index == null) {
+                this.index = index = new Index(json);
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Locates the top level fields with a minimal scan of the JSON characters.  Values are only scanned far enough
+     * to find where they end, so this is considerably cheaper than tokenizing the JSON with a parser.
+     */
+    private static class Index {
+        private final String[] names;
+        private final int[] starts;
+        private final int[] ends;
+
+        Index(String json) {
+            List<String> names = Lists.newArrayList();
+            int[] bounds = new int[32];
+
+            int pos = expect(json, skipWhitespace(json, 0), '{');
+            pos = skipWhitespace(json, pos);
+            if (json.charAt(pos) != '}') {
+                while (true) {
+                    int nameEnd = stringEnd(json, pos);
+                    String name = json.substring(pos + 1, nameEnd - 1);
+                    if (name.indexOf('\\') != -1) {
+                        name = JsonHelper.fromJson(json.substring(pos, nameEnd), String.class);
+                    }
+                    pos = skipWhitespace(json, expect(json, skipWhitespace(json, nameEnd), ':'));
+
+                    int i = names.size() * 2;
+                    if (i == bounds.length) {
+                        bounds = Arrays.copyOf(bounds, bounds.length * 2);
+                    }
+                    names.add(name);
+                    bounds[i] = pos;
+                    bounds[i + 1] = pos = valueEnd(json, pos);
+
+                    pos = skipWhitespace(json, pos);
+                    if (json.charAt(pos) != ',') {
+                        break;
+                    }
+                    pos = skipWhitespace(json, pos + 1);
+                }
+            }
+            expect(json, pos, '}');
+
+            this.names = names.toArray(new String[names.size()]);
+            this.starts = new int[this.names.length];
+            this.ends = new int[this.names.length];
+            for (int i = 0; i < this.names.length; i++) {
+                this.starts[i] = bounds[i * 2];
+                this.ends[i] = bounds[i * 2 + 1];
+            }
+        }
+
+        /**
+         * Returns the position of the field, or -1 if it isn't present.  Lookups are only made for the handful of
+         * keys touched by a delta so a linear search is cheaper than building a hash table of every field.
+         */
+        int indexOf(Object name) {
+            for (int i = 0; i < names.length; i++) {
+                if (names[i].equals(name)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private static int skipWhitespace(String json, int pos) {
+            while (pos < json.length() && Character.isWhitespace(json.charAt(pos))) {
+                pos++;
+            }
+            return pos;
+        }
+
+        private static int expect(String json, int pos, char ch) {
+            checkState(pos < json.length() && json.charAt(pos) == ch, "JSON did not contain an object");
+            return pos + 1;
+        }
+
+        /** Returns the position following the string which starts at the quote at the given position. */
+        private static int stringEnd(String json, int pos) {
+            pos = expect(json, pos, '"');
+            while (true) {
+                char ch = json.charAt(pos++);
+                if (ch == '"') {
+                    return pos;
+                } else if (ch == '\\') {
+                    pos++;
+                }
+            }
+        }
+
+        /** Returns the position following the value which starts at the given position. */
+        private static int valueEnd(String json, int pos) {
+            char ch = json.charAt(pos);
+            if (ch == '"') {
+                return stringEnd(json, pos);
+            }
+            if (ch == '{' || ch == '[') {
+                int depth = 0;
+                while (true) {
+                    ch = json.charAt(pos);
+                    if (ch == '"') {
+                        pos = stringEnd(json, pos);
+                        continue;
+                    }
+                    if (ch == '{' || ch == '[') {
+                        depth++;
+                    } else if ((ch == '}' || ch == ']') && --depth == 0) {
+                        return pos + 1;
+                    }
+                    pos++;
+                }
+            }
+            // A number, true, false or null
+            while (pos < json.length() && (ch = json.charAt(pos)) != ',' && ch != '}' && !Character.isWhitespace(ch)) {
+                pos++;
+            }
+            return pos;
+        }
+    }
+
     /**
      * Returns the JSON as a Map.  If necessary the JSON is converted to a Map as a result of this call.
      */
@@ -176,6 +326,32 @@ public class LazyJsonMap implements Map<String, Object> {
         return deserialized().get(key);
     }
 
+    /**
+     * Returns a map of the values for those keys which are present in this map.  Unlike calling {@link #get(Object)}
+     * for each key this doesn't deserialize the map; only the values for the requested keys are deserialized.
+     */
+    public Map<String, Object> getAllPresent(Collection<String> keys) {
+        DeserializationState deserState = _deserState.get();
+        Map<String, Object> result = Maps.newHashMapWithExpectedSize(keys.size());
+        Map<String, Object> source = deserState.isDeserialized() ? deserState.deserialized : deserState.overrides;
+        Index index = null;
+        for (String key : keys) {
+            if (source.containsKey(key)) {
+                result.put(key, source.get(key));
+            } else if (!deserState.isDeserialized()) {
+                if (index == null) {
+                    index = deserState.fields.get();
+                }
+                int position = index.indexOf(key);
+                if (position != -1) {
+                    result.put(key, JsonHelper.fromJson(
+                            deserState.json.substring(index.starts[position], index.ends[position]), Object.class));
+                }
+            }
+        }
+        return result;
+    }
+
     /**
      * For efficiency this method breaks the contract that the old value is returned.  Otherwise common operations such
      * as adding intrinsics and template attributes would require deserializing the object.
@@ -261,14 +437,13 @@ public class LazyJsonMap implements Map<String, Object> {
         }
 
         ObjectCodec codec = generator.getCodec();
-        if (codec == null) {
-            // No codec, defer to generator
+        if (codec == null || !supportsRawValues(generator)) {
+            // No codec or the generator can't copy JSON verbatim, defer to generator
             generator.writeObject(deserialized());
             return;
         }
 
-        JsonParser parser = codec.getFactory().createParser(deserState.json);
-        checkState(parser.nextToken() == JsonToken.START_OBJECT, "JSON did not contain an object");
+        Index index = deserState.fields.get();
         generator.writeStartObject();
 
         // Typically the JSON string has been pre-sorted.  Insert the overrides in order.  If it turns out the
@@ -281,18 +456,10 @@ public class LazyJsonMap implements Map<String, Object> {
 
         Map.Entry<String, Object> nextOverride = sortedOverrides.hasNext() ? sortedOverrides.next() : null;
 
-        JsonToken token;
-        while ((token = parser.nextToken()) != JsonToken.END_OBJECT) {
-            assert token == JsonToken.FIELD_NAME;
-
-            String field = parser.getText();
-            if (deserState.overrides.containsKey(field)) {
-                // There's an override for this entry; skip it
-                token = parser.nextToken();
-                if (token.isStructStart()) {
-                    parser.skipChildren();
-                }
-            } else {
+        for (int i = 0; i < index.names.length; i++) {
+            String field = index.names[i];
+            // If there's an override for this entry skip it
+            if (!deserState.overrides.containsKey(field)) {
                 // Write all overrides which sort prior to this field
                 while (nextOverride != null && OrderedJson.KEY_COMPARATOR.compare(nextOverride.getKey(), field) < 0) {
                     generator.writeFieldName(nextOverride.getKey());
@@ -300,11 +467,10 @@ public class LazyJsonMap implements Map<String, Object> {
                     nextOverride = sortedOverrides.hasNext() ? sortedOverrides.next() : null;
                 }
 
-                // Copy this field name and value to the generator
-                generator.copyCurrentStructure(parser);
+                // Copy this field's value verbatim from the original JSON
+                generator.writeFieldName(field);
+                generator.writeRawValue(deserState.json, index.starts[i], index.ends[i] - index.starts[i]);
             }
-            // Both of the above operations leave the current token immediately prior to the next
-            // field or the end object token.
         }
 
         // Write any remaining overrides
@@ -317,6 +483,16 @@ public class LazyJsonMap implements Map<String, Object> {
         generator.writeEndObject();
     }
 
+    private static boolean supportsRawValues(JsonGenerator generator) throws IOException {
+        // Writing empty raw content is a no-op for generators which support it, such as those writing to a stream
+        try {
+            generator.writeRaw("");
+            return true;
+        } catch (UnsupportedOperationException e) {
+            return false;
+        }
+    }
+
     public LazyJsonMap lazyCopy() {
         return new LazyJsonMap(_deserState.get().copy());
     }
@@ -10,6 +10,7 @@ import com.google.common.collect.Maps;
 import org.testng.annotations.Test;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -74,6 +75,22 @@ public class LazyJsonMapTest {
         assertFalse(map.isDeserialized());
     }
 
+    @Test
+    public void testGetAllPresent() {
+        LazyJsonMap map = new LazyJsonMap("{\"k1\":{\"n\":[1,2]},\"k2\":\"v2\",\"k3\":null,\"k4\":[{\"k2\":0}]}");
+        map.put("k2", "v22");
+        Map<String, Object> expected = Maps.newHashMap();
+        expected.put("k1", ImmutableMap.of("n", ImmutableList.of(1, 2)));
+        expected.put("k2", "v22");
+        expected.put("k3", null);
+        assertEquals(map.getAllPresent(ImmutableList.of("k1", "k2", "k3", "k5")), expected);
+        assertFalse(map.isDeserialized());
+
+        // Same result once deserialized
+        map.size();
+        assertEquals(map.getAllPresent(ImmutableList.of("k1", "k2", "k3", "k5")), expected);
+    }
+
     @Test
     public void testKeySetWithOverride() {
         LazyJsonMap map = new LazyJsonMap("{\"k1\":\"v1\",\"k2\":\"v2\"}");
@@ -208,4 +225,36 @@ public class LazyJsonMapTest {
         Map<String, Object> expected = ImmutableMap.of("k1", "v1", "k2", "v22", "k3", "v3");
         assertEquals(actual, expected);
     }
+
+    @Test
+    public void testJsonSerializeWithOverridesCopiesValues() throws Exception {
+        String json = "{ \"a\" : [1, {\"b\": \"}]\\\"\"}] ,\n\"k\\\"1\":\"v1\", \"k2\" :-1.5e3 , \"k3\":{} ,\"k4\":null }";
+        LazyJsonMap map1 = new LazyJsonMap(json);
+        map1.put("k2", "v22");
+        map1.put("k5", true);
+        LazyJsonMap map2 = map1.lazyCopy();
+        map2.put("a", "override");
+
+        ObjectMapper objectMapper = CustomJsonObjectMapperFactory.build();
+        objectMapper.registerModule(new LazyJsonModule());
+
+        // Write both maps in an array to verify separators are written correctly, then read back
+        String asJson = objectMapper.writeValueAsString(ImmutableList.of(map1, map2));
+        List<Map<String, Object>> actual = objectMapper.readValue(asJson, new TypeReference<List<Map<String, Object>>>() {});
+        Map<String, Object> expected = Maps.newHashMap();
+        expected.put("a", ImmutableList.of(1, ImmutableMap.of("b", "}]\"")));
+        expected.put("k\"1", "v1");
+        expected.put("k2", "v22");
+        expected.put("k3", ImmutableMap.of());
+        expected.put("k4", null);
+        expected.put("k5", true);
+        assertEquals(actual.get(0), expected);
+        expected.put("a", "override");
+        assertEquals(actual.get(1), expected);
+        assertFalse(map1.isDeserialized());
+        assertFalse(map2.isDeserialized());
+
+        // Converting doesn't support copying the JSON verbatim
+        assertEquals(objectMapper.convertValue(map1, Map.class), actual.get(0));
+    }
 }
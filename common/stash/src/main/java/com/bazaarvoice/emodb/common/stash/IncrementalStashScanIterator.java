@@ -0,0 +1,83 @@
+package com.bazaarvoice.emodb.common.stash;
+
+import com.google.common.collect.AbstractIterator;
+import com.google.common.io.Closeables;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Closeable iterator for Stash scans which overlays the documents from incremental Stashes onto a base Stash.  Each
+ * document from the base is replaced by its updated version, if any, and is dropped if the update is a tombstone for
+ * a deleted document.  Once the base is exhausted the remaining updated documents, which were created since the base,
+ * are returned.
+ */
+class IncrementalStashScanIterator extends AbstractIterator<Map<String, Object>> implements StashRowIterator {
+
+    // Intrinsic fields present on every Stashed document
+    static final String ID = "~id";
+    static final String DELETED = "~deleted";
+
+    private final StashRowIterator _base;
+    // Updated documents keyed by ID; entries are removed as they replace documents from the base
+    private final Map<String, Map<String, Object>> _updates;
+    private Iterator<Map<String, Object>> _created;
+
+    IncrementalStashScanIterator(@Nullable StashRowIterator base, Map<String, Map<String, Object>> updates) {
+        _base = base;
+        _updates = checkNotNull(updates, "updates");
+    }
+
+    @Override
+    protected Map<String, Object> computeNext() {
+        while (_base != null && _base.hasNext()) {
+            Map<String, Object> row = _base.next();
+            Map<String, Object> update = _updates.remove(getId(row));
+            if (update == null) {
+                return row;
+            }
+            if (!isDeleted(update)) {
+                return update;
+            }
+        }
+
+        if (_created == null) {
+            _created = _updates.values().iterator();
+        }
+        while (_created.hasNext()) {
+            Map<String, Object> update = _created.next();
+            if (!isDeleted(update)) {
+                return update;
+            }
+        }
+
+        try {
+            close();
+        } catch (IOException ignore) {
+            // Don't worry about this, we're done iterating anyway
+        }
+        return endOfData();
+    }
+
+    static String getId(Map<String, Object> row) {
+        return (String) checkNotNull(row.get(ID), ID);
+    }
+
+    private static boolean isDeleted(Map<String, Object> row) {
+        return Boolean.TRUE.equals(row.get(DELETED));
+    }
+
+    @Override
+    public void close()
+            throws IOException {
+        if (_base != null) {
+            Closeables.close(_base, true);
+        }
+        _created = Collections.emptyIterator();
+    }
+}
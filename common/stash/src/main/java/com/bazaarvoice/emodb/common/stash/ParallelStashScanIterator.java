@@ -0,0 +1,237 @@
+package com.bazaarvoice.emodb.common.stash;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.google.common.base.Throwables;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Closeable iterator for Stash scans which downloads, decompresses and parses multiple splits concurrently.  Each
+ * split is read by one of a fixed number of threads into a small bounded buffer, so memory use is bounded by the
+ * parallelism regardless of the split sizes.  If order is preserved rows are returned in the same order as
+ * {@link StashScanIterator}, otherwise rows are returned as soon as any split produces them.
+ */
+class ParallelStashScanIterator extends AbstractIterator<Map<String, Object>> implements StashRowIterator {
+
+    private static final int BATCH_SIZE = 100;
+    private static final int BUFFERED_BATCHES_PER_SPLIT = 4;
+    // An empty batch marks the end of a split
+    private static final List<Map<String, Object>> END_OF_SPLIT = ImmutableList.of();
+
+    // The reader threads only reference the shared state, never this iterator, so an iterator abandoned without
+    // being closed can still be finalized, which closes the state and stops the readers.
+    private final SharedState _state;
+    private final int _splitCount;
+    private int _splitsComplete;
+    private Iterator<Map<String, Object>> _batch = Collections.emptyIterator();
+
+    ParallelStashScanIterator(AmazonS3 s3, String bucket, String rootPath, List<StashSplit> splits,
+                              int parallelism, boolean preserveOrder) {
+        checkArgument(parallelism > 0, "Parallelism must be at least 1");
+        _splitCount = splits.size();
+        _state = new SharedState(s3, bucket, _splitCount, parallelism, preserveOrder);
+
+        // Splits are started in order, so when order is preserved the split currently being returned is always
+        // being read or has already been read completely.
+        for (int i = 0; i < _splitCount; i++) {
+            String key = String.format("%s/%s", rootPath, splits.get(i).getKey());
+            _state.startSplit(key, preserveOrder ? i : 0);
+        }
+        _state.startedAllSplits();
+    }
+
+    @Override
+    protected Map<String, Object> computeNext() {
+        // Once closed the readers have stopped, so end iteration rather than wait for batches that will never come
+        if (_state.isClosed()) {
+            return endOfData();
+        }
+
+        while (!_batch.hasNext()) {
+            if (_splitsComplete == _splitCount) {
+                try {
+                    close();
+                } catch (IOException ignore) {
+                    // Don't worry about this, we're done iterating anyway
+                }
+                return endOfData();
+            }
+
+            List<Map<String, Object>> batch;
+            try {
+                batch = _state.take(_splitsComplete);
+            } catch (InterruptedException e) {
+                throw Throwables.propagate(e);
+            }
+            if (batch == null) {
+                // Closed while waiting
+                return endOfData();
+            }
+
+            Throwable exception = _state.getException();
+            if (exception != null) {
+                try {
+                    close();
+                } catch (IOException ignore) {
+                    // Already failing
+                }
+                throw Throwables.propagate(exception);
+            }
+
+            if (batch.isEmpty()) {
+                _splitsComplete += 1;
+            } else {
+                _batch = batch.iterator();
+            }
+        }
+
+        return _batch.next();
+    }
+
+    @Override
+    public void close()
+            throws IOException {
+        _state.close();
+    }
+
+    @Override
+    protected void finalize() throws Throwable {
+        super.finalize();
+        close();
+    }
+
+    /**
+     * State shared between the iterator and the threads reading splits into the queues.
+     */
+    private static class SharedState {
+        private final AmazonS3 _s3;
+        private final String _bucket;
+        // One queue per split if order is preserved, otherwise a single queue shared by all splits
+        private final List<BlockingQueue<List<Map<String, Object>>>> _queues;
+        private final ExecutorService _service;
+        private final AtomicBoolean _closed = new AtomicBoolean(false);
+        private volatile Throwable _exception;
+
+        SharedState(AmazonS3 s3, String bucket, int splitCount, int parallelism, boolean preserveOrder) {
+            _s3 = s3;
+            _bucket = bucket;
+
+            if (preserveOrder) {
+                _queues = Lists.newArrayListWithCapacity(splitCount);
+                for (int i = 0; i < splitCount; i++) {
+                    _queues.add(new ArrayBlockingQueue<List<Map<String, Object>>>(BUFFERED_BATCHES_PER_SPLIT));
+                }
+            } else {
+                _queues = ImmutableList.<BlockingQueue<List<Map<String, Object>>>>of(
+                        new ArrayBlockingQueue<List<Map<String, Object>>>(parallelism * BUFFERED_BATCHES_PER_SPLIT));
+            }
+
+            _service = Executors.newFixedThreadPool(Math.min(parallelism, Math.max(splitCount, 1)),
+                    new ThreadFactoryBuilder().setNameFormat("StashScan-%d").setDaemon(true).build());
+        }
+
+        void startSplit(final String key, int queueIndex) {
+            final BlockingQueue<List<Map<String, Object>>> queue = _queues.get(queueIndex);
+            _service.submit(new Runnable() {
+                @Override
+                public void run() {
+                    readSplit(key, queue);
+                }
+            });
+        }
+
+        void startedAllSplits() {
+            _service.shutdown();
+        }
+
+        /**
+         * Takes the next batch for the split, waiting for one if necessary.  Returns null if the state was closed first.
+         */
+        @Nullable
+        List<Map<String, Object>> take(int split) throws InterruptedException {
+            BlockingQueue<List<Map<String, Object>>> queue = _queues.get(_queues.size() == 1 ? 0 : split);
+            List<Map<String, Object>> batch;
+            while ((batch = queue.poll(100, TimeUnit.MILLISECONDS)) == null) {
+                if (_closed.get()) {
+                    return null;
+                }
+            }
+            return batch;
+        }
+
+        boolean isClosed() {
+            return _closed.get();
+        }
+
+        Throwable getException() {
+            return _exception;
+        }
+
+        private void readSplit(String key, BlockingQueue<List<Map<String, Object>>> queue) {
+            try {
+                if (_closed.get()) {
+                    return;
+                }
+                try (StashRowIterator rows = new StashSplitIterator(_s3, _bucket, key)) {
+                    List<Map<String, Object>> batch = Lists.newArrayListWithCapacity(BATCH_SIZE);
+                    while (rows.hasNext()) {
+                        batch.add(rows.next());
+                        if (batch.size() == BATCH_SIZE) {
+                            if (!put(queue, batch)) {
+                                return;
+                            }
+                            batch = Lists.newArrayListWithCapacity(BATCH_SIZE);
+                        }
+                    }
+                    if (!batch.isEmpty() && !put(queue, batch)) {
+                        return;
+                    }
+                }
+            } catch (Throwable t) {
+                if (_exception == null) {
+                    _exception = t;
+                }
+            }
+            put(queue, END_OF_SPLIT);
+        }
+
+        /**
+         * Puts the batch in the queue, waiting for space if necessary.  Returns false if the state was closed first.
+         */
+        private boolean put(BlockingQueue<List<Map<String, Object>>> queue, List<Map<String, Object>> batch) {
+            try {
+                while (!queue.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+                    if (_closed.get()) {
+                        return false;
+                    }
+                }
+                return true;
+            } catch (InterruptedException e) {
+                return false;
+            }
+        }
+
+        void close() {
+            if (_closed.compareAndSet(false, true)) {
+                _service.shutdownNow();
+            }
+        }
+    }
+}
@@ -121,6 +121,16 @@ public class StandardStashReader extends StashReader {
         return StashUtil.getStashCreationTime(getLatest());
     }
 
+    /**
+     * Returns the most recent incremental Stash.  Incremental Stashes are never returned by {@link #getLatest()} since
+     * they only contain documents updated since a prior Stash; read them with
+     * {@link #scanWithIncrementals(String, StashReader...)}.
+     */
+    public String getLatestIncremental()
+            throws StashNotAvailableException {
+        return readFirstLineFromS3File(_bucket, String.format("%s/%s", _rootPath, StashUtil.LATEST_INCREMENTAL_FILE));
+    }
+
     public Date getStashCreationTime() throws ParseException {
         String root = getRootPath();
         String successFile = String.format("%s/%s", root, StashUtil.SUCCESS_FILE);
@@ -6,28 +6,45 @@ import com.amazonaws.regions.Regions;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.AmazonS3Client;
 import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.GetObjectRequest;
 import com.amazonaws.services.s3.model.ListObjectsRequest;
 import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.S3Object;
 import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.bazaarvoice.emodb.common.json.JsonHelper;
 import com.bazaarvoice.emodb.sor.api.StashNotAvailableException;
 import com.bazaarvoice.emodb.sor.api.TableNotStashedException;
+import com.google.common.base.Charsets;
 import com.google.common.base.Predicate;
+import com.google.common.base.Throwables;
 import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.PeekingIterator;
 import com.google.common.collect.Range;
+import com.google.common.io.Closeables;
 import com.google.common.reflect.AbstractInvocationHandler;
 import com.google.common.reflect.Reflection;
 
 import javax.annotation.Nullable;
+import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.lang.reflect.Method;
 import java.net.URI;
+import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
@@ -173,6 +190,10 @@ abstract public class StashReader {
                         } else {
                             // Strip the prefix and trailing "/"
                             dir = dir.substring(prefix.length(), dir.length()-1);
+                            if (dir.startsWith("_") && !dir.startsWith("__")) {
+                                // Not a table, such as the Zstandard dictionaries directory
+                                dir = null;
+                            }
                         }
                     } else if (_truncated) {
                         ObjectListing response = _s3.listObjects(new ListObjectsRequest()
@@ -338,6 +359,124 @@ abstract public class StashReader {
         return new StashScanIterator(_s3, _bucket, _rootPath, splits);
     }
 
+    /**
+     * Gets an iterator over the entire contents of a Stash table which downloads, decompresses and parses up to
+     * "parallelism" splits concurrently.  Rows read ahead of the caller are held in a bounded buffer for each split
+     * being read.  If "preserveOrder" is true rows are returned in the same order as {@link #scan(String)}, otherwise
+     * rows from all splits being read are interleaved.  The caller should call
+     * {@link com.bazaarvoice.emodb.common.stash.StashRowIterator#close()} when done with the iterator to immediately
+     * stop the background reads and free any S3 connections.
+     */
+    public StashRowIterator scan(String table, int parallelism, boolean preserveOrder)
+            throws StashNotAvailableException, TableNotStashedException {
+        List<StashSplit> splits = getSplits(table);
+        return new ParallelStashScanIterator(_s3, _bucket, _rootPath, splits, parallelism, preserveOrder);
+    }
+
+    /**
+     * Returns the time since which documents were included if this is an incremental Stash, or null if this is a
+     * full Stash.  Documents deleted since that time are included in an incremental Stash as tombstones.
+     */
+    @Nullable
+    public Date getIncrementalSince()
+            throws StashNotAvailableException {
+        String path = String.format("%s/%s", getRootPath(), StashUtil.INCREMENTAL_FILE);
+        S3Object s3Object;
+        try {
+            s3Object = _s3.getObject(new GetObjectRequest(_bucket, path).withRange(0, 2048));
+        } catch (AmazonS3Exception e) {
+            if (e.getStatusCode() == 404) {
+                // Only incremental Stashes have an incremental manifest
+                return null;
+            }
+            throw e;
+        }
+
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(s3Object.getObjectContent(), Charsets.UTF_8))) {
+            return JsonHelper.parseTimestamp(in.readLine());
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    /**
+     * Gets an iterator over the contents of a Stash table with one or more incremental Stashes overlaid on it, in
+     * the order provided.  Each incremental Stash contains only the documents updated since the Stash before it, with
+     * deleted documents as tombstones.  Documents updated in an incremental Stash replace those in this Stash, deleted
+     * documents are removed, and documents created since this Stash are returned after all documents from this Stash.
+     * The incremental Stashes are read into memory first, so they should be small relative to this Stash.
+     * @throws IllegalArgumentException if this Stash is incremental or any of the incremental Stashes is not
+     */
+    public StashRowIterator scanWithIncrementals(String table, StashReader... incrementals)
+            throws StashNotAvailableException, TableNotStashedException {
+        checkArgument(getIncrementalSince() == null, "Base Stash is incremental");
+        for (StashReader incremental : incrementals) {
+            checkArgument(incremental.getIncrementalSince() != null, "Stash is not incremental: %s", incremental.getRootPath());
+        }
+
+        Map<String, Map<String, Object>> updates = Maps.newLinkedHashMap();
+        boolean updatedInIncrementals = false;
+
+        for (StashReader incremental : incrementals) {
+            StashRowIterator rows;
+            try {
+                rows = incremental.scan(table);
+            } catch (TableNotStashedException e) {
+                // No documents in the table were updated in this incremental Stash
+                continue;
+            }
+            updatedInIncrementals = true;
+            try {
+                while (rows.hasNext()) {
+                    // Later incremental Stashes replace documents from earlier ones
+                    Map<String, Object> row = rows.next();
+                    updates.put(IncrementalStashScanIterator.getId(row), row);
+                }
+            } finally {
+                try {
+                    Closeables.close(rows, true);
+                } catch (IOException e) {
+                    // Won't happen, exception is swallowed
+                }
+            }
+        }
+
+        StashRowIterator base;
+        try {
+            base = scan(table);
+        } catch (TableNotStashedException e) {
+            if (!updatedInIncrementals) {
+                throw e;
+            }
+            // The table was created after this Stash
+            base = null;
+        }
+
+        return new IncrementalStashScanIterator(base, updates);
+    }
+
+    /**
+     * Gets a stream over the entire contents of a Stash table.  The stream divides the table by split, so calling
+     * {@link Stream#parallel()} on it reads and processes splits concurrently on all cores using the common
+     * fork-join pool.  Each split's S3 connection is closed once the split has been read; if the stream may not be
+     * fully consumed the caller should close the stream.
+     */
+    public Stream<Map<String, Object>> stream(String table)
+            throws StashNotAvailableException, TableNotStashedException {
+        List<StashSplit> splits = getSplits(table);
+        return splits.stream().flatMap(split -> {
+            StashRowIterator rows = getSplit(split);
+            return StreamSupport.stream(Spliterators.spliteratorUnknownSize(rows, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                    .onClose(() -> {
+                        try {
+                            Closeables.close(rows, true);
+                        } catch (IOException e) {
+                            // Won't happen, exception is swallowed
+                        }
+                    });
+        });
+    }
+
     private String getSplitKey(StashSplit split) {
         // The key in the split has the root removed, so we need to put it back.
         return String.format("%s/%s", _rootPath, split.getKey());
@@ -353,6 +492,24 @@ abstract public class StashReader {
         return new RestartingS3InputStream(_s3, _bucket, getSplitKey(split), byteRange);
     }
 
+    /**
+     * Returns the split's content decompressed according to its file extension, one JSON document per line.
+     */
+    public InputStream getDecompressedSplit(StashSplit split) {
+        String key = getSplitKey(split);
+        InputStream rawIn = new RestartingS3InputStream(_s3, _bucket, key);
+        try {
+            return StashSplitIterator.decompress(_s3, _bucket, key, rawIn);
+        } catch (Exception e) {
+            try {
+                Closeables.close(rawIn, true);
+            } catch (IOException ignore) {
+                // Won't happen, already caught and logged
+            }
+            throw Throwables.propagate(e);
+        }
+    }
+
     private String getPrefix(String table) {
         String root = getRootPath();
         return String.format("%s/%s/", root, StashUtil.encodeStashTable(table));
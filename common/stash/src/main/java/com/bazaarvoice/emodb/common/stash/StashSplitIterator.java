@@ -1,18 +1,25 @@
 package com.bazaarvoice.emodb.common.stash;
 
 import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.S3Object;
 import com.bazaarvoice.emodb.common.json.JsonHelper;
+import com.github.luben.zstd.ZstdInputStream;
 import com.google.common.base.Charsets;
 import com.google.common.base.Throwables;
 import com.google.common.collect.AbstractIterator;
+import com.google.common.primitives.Ints;
+import com.google.common.io.ByteStreams;
 import com.google.common.io.Closeables;
 import com.google.common.io.LineReader;
+import net.jpountz.lz4.LZ4BlockInputStream;
 import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.xerial.snappy.SnappyInputStream;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.PushbackInputStream;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -20,6 +27,11 @@ import java.util.concurrent.atomic.AtomicBoolean;
  * Closeable iterator for Stash splits.
  */
 class StashSplitIterator extends AbstractIterator<Map<String, Object>> implements StashRowIterator {
+    private static final int ZSTD_FRAME_MAGIC = 0xFD2FB528;
+    // Magic number, frame header descriptor, window descriptor and up to 4 bytes of dictionary ID
+    private static final int ZSTD_FRAME_HEADER_PREFIX_LENGTH = 10;
+    private static final int[] ZSTD_DICTIONARY_ID_LENGTHS = {0, 1, 2, 4};
+
     private final AtomicBoolean _closed = new AtomicBoolean(false);
     private final BufferedReader _in;
     private final LineReader _reader;
@@ -27,12 +39,8 @@ class StashSplitIterator extends AbstractIterator<Map<String, Object>> implement
     StashSplitIterator(AmazonS3 s3, String bucket, String key) {
         InputStream rawIn = new RestartingS3InputStream(s3, bucket, key);
         try {
-            // File is gzipped
-            // Note:
-            //   Because the content may be concatenated gzip files we cannot use the default GZIPInputStream.
-            //   GzipCompressorInputStream supports concatenated gzip files.
-            GzipCompressorInputStream gzipIn = new GzipCompressorInputStream(rawIn, true);
-            _in = new BufferedReader(new InputStreamReader(gzipIn, Charsets.UTF_8));
+            InputStream in = decompress(s3, bucket, key, rawIn);
+            _in = new BufferedReader(new InputStreamReader(in, Charsets.UTF_8));
             // Create a line reader
             _reader = new LineReader(_in);
         } catch (Exception e) {
@@ -45,6 +53,79 @@ class StashSplitIterator extends AbstractIterator<Map<String, Object>> implement
         }
     }
 
+    /**
+     * Returns a stream which decompresses the split based on its file extension.  Splits with an unrecognized
+     * extension are assumed to be gzipped, which was the only format Stash wrote originally.
+     */
+    static InputStream decompress(AmazonS3 s3, String bucket, String key, InputStream in)
+            throws IOException {
+        if (key.endsWith(".json")) {
+            return in;
+        }
+        if (key.endsWith(".snappy")) {
+            return new SnappyInputStream(in);
+        }
+        if (key.endsWith(".lz4")) {
+            return new LZ4BlockInputStream(in);
+        }
+        if (key.endsWith(".zst")) {
+            PushbackInputStream pushbackIn = new PushbackInputStream(in, ZSTD_FRAME_HEADER_PREFIX_LENGTH);
+            long dictionaryId = readZstdDictionaryId(pushbackIn);
+            ZstdInputStream zstdIn = new ZstdInputStream(pushbackIn);
+            if (dictionaryId != 0) {
+                zstdIn.setDict(getZstdDictionary(s3, bucket, key, dictionaryId));
+            }
+            return zstdIn;
+        }
+        // Note:
+        //   Because the content may be concatenated gzip files we cannot use the default GZIPInputStream.
+        //   GzipCompressorInputStream supports concatenated gzip files.
+        return new GzipCompressorInputStream(in, true);
+    }
+
+    /**
+     * Returns the ID of the dictionary the first Zstandard frame was compressed with, or 0 if it was compressed
+     * without one.  The bytes read are pushed back onto the stream.
+     */
+    private static long readZstdDictionaryId(PushbackInputStream in)
+            throws IOException {
+        byte[] header = new byte[ZSTD_FRAME_HEADER_PREFIX_LENGTH];
+        int length = ByteStreams.read(in, header, 0, header.length);
+        in.unread(header, 0, length);
+
+        if (length < 5 || Ints.fromBytes(header[3], header[2], header[1], header[0]) != ZSTD_FRAME_MAGIC) {
+            return 0;
+        }
+        int descriptor = header[4] & 0xFF;
+        int dictionaryIdLength = ZSTD_DICTIONARY_ID_LENGTHS[descriptor & 0x3];
+        // The window descriptor precedes the dictionary ID unless the frame is a single segment
+        int offset = (descriptor & 0x20) != 0 ? 5 : 6;
+        if (length < offset + dictionaryIdLength) {
+            return 0;
+        }
+        long dictionaryId = 0;
+        for (int i = dictionaryIdLength - 1; i >= 0; i--) {
+            dictionaryId = (dictionaryId << 8) | (header[offset + i] & 0xFF);
+        }
+        return dictionaryId;
+    }
+
+    /**
+     * Splits are stored as "<stash>/<table>/<split>" and their dictionaries as
+     * "<stash>/_dictionaries/<table>/<dictionary ID>.zdict".
+     */
+    private static byte[] getZstdDictionary(AmazonS3 s3, String bucket, String key, long dictionaryId)
+            throws IOException {
+        int splitIdx = key.lastIndexOf('/');
+        int tableIdx = key.lastIndexOf('/', splitIdx - 1);
+        String dictionaryKey = key.substring(0, tableIdx + 1) +
+                StashUtil.getZstdDictionaryPath(key.substring(tableIdx + 1, splitIdx), dictionaryId);
+
+        try (S3Object s3Object = s3.getObject(bucket, dictionaryKey)) {
+            return ByteStreams.toByteArray(s3Object.getObjectContent());
+        }
+    }
+
     @Override
     protected Map<String, Object> computeNext() {
         String line;
@@ -13,6 +13,8 @@ import java.util.Date;
 import java.util.Map;
 import java.util.Optional;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
 /**
  * Utility methods for Stash operations.
  */
@@ -21,7 +23,17 @@ public class StashUtil {
     public static final DateTimeFormatter STASH_DIRECTORY_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd-HH-mm-ss").withZone(ZoneOffset.UTC);
     public static final String LATEST_FILE = "_LATEST";
     public static final String SUCCESS_FILE = "_SUCCESS";
-    
+    // Incremental Stashes are listed in a separate latest file so readers of _LATEST always see a full Stash
+    public static final String LATEST_INCREMENTAL_FILE = "_LATEST_INCREMENTAL";
+    // Manifest present only in incremental Stashes.  The first line is the time from which documents were included;
+    // documents deleted since then are present as tombstones with "~deleted" set to true.
+    public static final String INCREMENTAL_FILE = "_INCREMENTAL";
+    // Directory containing the Zstandard dictionaries used to compress each table's splits, stored as
+    // "_dictionaries/<table>/<dictionary ID>.zdict".  Table names cannot start with a single underscore.
+    public static final String ZSTD_DICTIONARIES_DIR = "_dictionaries";
+
+    private static final int ZSTD_DICTIONARY_MAGIC = 0xEC30A437;
+
     /**
      * Converts characters which are valid in table names but not valid or problematic in URLs and S3 keys.
      * Since all EmoDB tables cannot have upper-case characters they make a dense substitution without
@@ -55,6 +67,28 @@ public class StashUtil {
         return table;
     }
 
+    /**
+     * Returns the path of a table's Zstandard dictionary relative to the Stash directory.
+     */
+    public static String getZstdDictionaryPath(String encodedTable, long dictionaryId) {
+        return String.format("%s/%s/%d.zdict", ZSTD_DICTIONARIES_DIR, encodedTable, dictionaryId);
+    }
+
+    /**
+     * Returns the ID of a trained Zstandard dictionary.  Zstandard derives the ID from the dictionary's content and
+     * records it in the header of every frame compressed with the dictionary.
+     */
+    public static long getZstdDictionaryId(byte[] dictionary) {
+        checkArgument(dictionary.length >= 8 && readIntLE(dictionary, 0) == ZSTD_DICTIONARY_MAGIC,
+                "Not a Zstandard dictionary");
+        return readIntLE(dictionary, 4) & 0xFFFFFFFFL;
+    }
+
+    private static int readIntLE(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) | (bytes[offset + 1] & 0xFF) << 8 |
+                (bytes[offset + 2] & 0xFF) << 16 | (bytes[offset + 3] & 0xFF) << 24;
+    }
+
     public static Optional<String> getRegionForBucket(String bucket) {
         if (bucket == null) {
             return Optional.empty();
@@ -1,6 +1,7 @@
 package com.bazaarvoice.emodb.common.stash;
 
 import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
 import com.amazonaws.services.s3.model.GetObjectRequest;
 import com.amazonaws.services.s3.model.ListObjectsRequest;
 import com.amazonaws.services.s3.model.ObjectListing;
@@ -9,24 +10,32 @@ import com.amazonaws.services.s3.model.S3Object;
 import com.amazonaws.services.s3.model.S3ObjectSummary;
 import com.bazaarvoice.emodb.common.json.ISO8601DateFormat;
 import com.bazaarvoice.emodb.common.json.JsonHelper;
+import com.github.luben.zstd.ZstdDictTrainer;
+import com.github.luben.zstd.ZstdOutputStream;
 import com.google.common.base.Charsets;
 import com.google.common.base.Function;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
+import net.jpountz.lz4.LZ4BlockOutputStream;
 import org.hamcrest.BaseMatcher;
 import org.hamcrest.Description;
 import org.hamcrest.Matcher;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 import org.testng.SkipException;
+import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
+import org.xerial.snappy.SnappyOutputStream;
 
 import javax.annotation.Nullable;
 import java.io.BufferedWriter;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.net.URI;
 import java.nio.charset.Charset;
@@ -37,6 +46,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
 import java.util.zip.GZIPOutputStream;
 
 import static java.lang.String.format;
@@ -44,7 +54,10 @@ import static org.mockito.Matchers.argThat;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
 
 public class StashReaderTest {
 
@@ -131,7 +144,8 @@ public class StashReaderTest {
         ObjectListing listing = new ObjectListing();
         listing.setCommonPrefixes(ImmutableList.of(
                 "stash/test/2015-01-01-00-00-00/table-one/", "stash/test/2015-01-01-00-00-00/table_two/",
-                "stash/test/2015-01-01-00-00-00/table~three/", "stash/test/2015-01-01-00-00-00/table.four/"));
+                "stash/test/2015-01-01-00-00-00/table~three/", "stash/test/2015-01-01-00-00-00/table.four/",
+                "stash/test/2015-01-01-00-00-00/_dictionaries/", "stash/test/2015-01-01-00-00-00/__table_five/"));
         listing.setTruncated(false);
         when(s3.listObjects(argThat(listObjectRequest("stash-bucket", "stash/test/2015-01-01-00-00-00/", null))))
                 .thenReturn(listing);
@@ -143,7 +157,8 @@ public class StashReaderTest {
                 new StashTable("stash-bucket", "stash/test/2015-01-01-00-00-00/table-one/", "table-one"),
                 new StashTable("stash-bucket", "stash/test/2015-01-01-00-00-00/table_two/", "table_two"),
                 new StashTable("stash-bucket", "stash/test/2015-01-01-00-00-00/table~three/", "table:three"),
-                new StashTable("stash-bucket", "stash/test/2015-01-01-00-00-00/table.four/", "table.four")));
+                new StashTable("stash-bucket", "stash/test/2015-01-01-00-00-00/table.four/", "table.four"),
+                new StashTable("stash-bucket", "stash/test/2015-01-01-00-00-00/__table_five/", "__table_five")));
     }
 
     @Test
@@ -346,6 +361,398 @@ public class StashReaderTest {
         assertEquals(content, expected);
     }
 
+    @DataProvider(name = "compressedExtensions")
+    public Object[][] compressedExtensions() {
+        return new Object[][] { { ".json" }, { ".gz" }, { ".snappy" }, { ".lz4" }, { ".zst" } };
+    }
+
+    @Test(dataProvider = "compressedExtensions")
+    public void getCompressedSplit(String extension) throws Exception {
+        List<Map<String, Object>> expected = Lists.newArrayListWithCapacity(10);
+        ByteArrayOutputStream splitOut = new ByteArrayOutputStream();
+
+        try (BufferedWriter out = new BufferedWriter(new OutputStreamWriter(compress(splitOut, extension), Charsets.UTF_8))) {
+            for (int i=0; i < 10; i++) {
+                Map<String, Object> value = ImmutableMap.<String, Object>builder()
+                        .put("~id", "row" + i)
+                        .put("~table", "test:table")
+                        .put("~version", 1)
+                        .put("~signature", "3a0da59fabf298d389b7b0b59728e887")
+                        .put("~lastUpdateAt", "2014-08-28T21:24:36.440Z")
+                        .put("~firstUpdateAt", "2014-06-07T09:51:40.077Z")
+                        .build();
+
+                out.write(JsonHelper.asJson(value));
+                out.write("\n");
+
+                expected.add(value);
+            }
+        }
+
+        S3Object s3Object = new S3Object();
+        s3Object.setObjectContent(new ByteArrayInputStream(splitOut.toByteArray(), 0, splitOut.size()));
+        ObjectMetadata objectMetadata = new ObjectMetadata();
+        objectMetadata.setContentLength(splitOut.size());
+        s3Object.setObjectMetadata(objectMetadata);
+
+        AmazonS3 s3 = mock(AmazonS3.class);
+        when(s3.getObject(argThat(getsObject("stash-bucket", "stash/test/2015-01-01-00-00-00/test-table/split0" + extension))))
+                .thenReturn(s3Object);
+
+        StashSplit stashSplit = new StashSplit("test:table", "2015-01-01-00-00-00/test-table/split0" + extension, splitOut.size());
+
+        StandardStashReader reader = new StandardStashReader(URI.create("s3://stash-bucket/stash/test"), s3, 0);
+        try (StashRowIterator contentIter = reader.getSplit(stashSplit)) {
+            assertEquals(ImmutableList.copyOf(contentIter), expected);
+        }
+    }
+
+    @Test
+    public void getZstdDictionaryCompressedSplit() throws Exception {
+        List<Map<String, Object>> expected = Lists.newArrayListWithCapacity(1000);
+        ZstdDictTrainer trainer = new ZstdDictTrainer(1024 * 1024, 16 * 1024);
+        for (int i=0; i < 1000; i++) {
+            Map<String, Object> value = ImmutableMap.<String, Object>builder()
+                    .put("~id", "row" + i)
+                    .put("~table", "test:table")
+                    .put("~version", i % 7 + 1)
+                    .put("~signature", format("%032x", i * 7919L))
+                    .put("~lastUpdateAt", "2014-08-28T21:24:36.440Z")
+                    .put("~firstUpdateAt", "2014-06-07T09:51:40.077Z")
+                    .build();
+            trainer.addSample((JsonHelper.asJson(value) + "\n").getBytes(Charsets.UTF_8));
+            expected.add(value);
+        }
+        byte[] dictionary = trainer.trainSamples();
+        long dictionaryId = StashUtil.getZstdDictionaryId(dictionary);
+
+        ByteArrayOutputStream splitOut = new ByteArrayOutputStream();
+        ZstdOutputStream zstdOut = new ZstdOutputStream(splitOut);
+        zstdOut.setDict(dictionary);
+        try (BufferedWriter out = new BufferedWriter(new OutputStreamWriter(zstdOut, Charsets.UTF_8))) {
+            for (Map<String, Object> value : expected) {
+                out.write(JsonHelper.asJson(value));
+                out.write("\n");
+            }
+        }
+
+        S3Object s3Object = new S3Object();
+        s3Object.setObjectContent(new ByteArrayInputStream(splitOut.toByteArray(), 0, splitOut.size()));
+        ObjectMetadata objectMetadata = new ObjectMetadata();
+        objectMetadata.setContentLength(splitOut.size());
+        s3Object.setObjectMetadata(objectMetadata);
+
+        S3Object dictionaryObject = new S3Object();
+        dictionaryObject.setObjectContent(new ByteArrayInputStream(dictionary));
+
+        AmazonS3 s3 = mock(AmazonS3.class);
+        when(s3.getObject(argThat(getsObject("stash-bucket", "stash/test/2015-01-01-00-00-00/test-table/split0.zst"))))
+                .thenReturn(s3Object);
+        when(s3.getObject("stash-bucket", format("stash/test/2015-01-01-00-00-00/_dictionaries/test-table/%d.zdict", dictionaryId)))
+                .thenReturn(dictionaryObject);
+
+        StashSplit stashSplit = new StashSplit("test:table", "2015-01-01-00-00-00/test-table/split0.zst", splitOut.size());
+
+        StandardStashReader reader = new StandardStashReader(URI.create("s3://stash-bucket/stash/test"), s3, 0);
+        try (StashRowIterator contentIter = reader.getSplit(stashSplit)) {
+            assertEquals(ImmutableList.copyOf(contentIter), expected);
+        }
+    }
+
+    private OutputStream compress(OutputStream out, String extension) throws IOException {
+        switch (extension) {
+            case ".gz":
+                return new GZIPOutputStream(out);
+            case ".snappy":
+                return new SnappyOutputStream(out);
+            case ".lz4":
+                return new LZ4BlockOutputStream(out);
+            case ".zst":
+                return new ZstdOutputStream(out);
+            default:
+                return out;
+        }
+    }
+
+    @DataProvider(name = "preserveOrder")
+    public Object[][] preserveOrder() {
+        return new Object[][] { { true }, { false } };
+    }
+
+    @Test(dataProvider = "preserveOrder")
+    public void testParallelScan(boolean preserveOrder) throws Exception {
+        AmazonS3 s3 = mock(AmazonS3.class);
+        when(s3.getObject(argThat(getsObject("stash-bucket", "stash/test/_LATEST")))).thenAnswer(new Answer<S3Object>() {
+            @Override
+            public S3Object answer(InvocationOnMock invocation)
+                    throws Throwable {
+                S3Object s3Object = new S3Object();
+                s3Object.setObjectContent(new ByteArrayInputStream("2015-01-01-00-00-00".getBytes(Charsets.UTF_8)));
+                return s3Object;
+            }
+        });
+
+        // Create 10 splits of varying sizes, some larger than the batches buffered by the reader
+        List<String> fileNames = Lists.newArrayList();
+        List<Map<String, Object>> expected = Lists.newArrayList();
+        for (int f=0; f < 10; f++) {
+            String fileName = format("test~table-split%d.gz", f);
+            fileNames.add(fileName);
+
+            final ByteArrayOutputStream splitOut = new ByteArrayOutputStream();
+            try (BufferedWriter out = new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(splitOut), Charsets.UTF_8))) {
+                for (int i=0; i < f * 75; i++) {
+                    Map<String, Object> value = ImmutableMap.<String, Object>of("~id", format("row%d-%d", f, i), "~table", "test:table");
+                    out.write(JsonHelper.asJson(value));
+                    out.write("\n");
+                    expected.add(value);
+                }
+            }
+
+            when(s3.getObject(argThat(getsObject("stash-bucket", "stash/test/2015-01-01-00-00-00/test~table/" + fileName))))
+                    .thenAnswer(new Answer<S3Object>() {
+                        @Override
+                        public S3Object answer(InvocationOnMock invocation)
+                                throws Throwable {
+                            S3Object s3Object = new S3Object();
+                            s3Object.setObjectContent(new ByteArrayInputStream(splitOut.toByteArray()));
+                            ObjectMetadata objectMetadata = new ObjectMetadata();
+                            objectMetadata.setContentLength(splitOut.size());
+                            s3Object.setObjectMetadata(objectMetadata);
+                            return s3Object;
+                        }
+                    });
+        }
+
+        when(s3.listObjects(argThat(listObjectRequest("stash-bucket", "stash/test/2015-01-01-00-00-00/test~table/", null))))
+                .thenAnswer(objectListingAnswer(null, fileNames.toArray(new String[fileNames.size()])));
+
+        StandardStashReader reader = new StandardStashReader(URI.create("s3://stash-bucket/stash/test"), s3, 0);
+        List<Map<String, Object>> content;
+        try (StashRowIterator rows = reader.scan("test:table", 3, preserveOrder)) {
+            content = ImmutableList.copyOf(rows);
+        }
+
+        if (preserveOrder) {
+            assertEquals(content, expected);
+        } else {
+            assertEquals(content.size(), expected.size());
+            assertEquals(ImmutableSet.copyOf(content), ImmutableSet.copyOf(expected));
+        }
+
+        // The stream view returns the same rows
+        assertEquals(reader.stream("test:table").collect(Collectors.toList()), expected);
+        assertEquals(reader.stream("test:table").parallel().count(), expected.size());
+    }
+
+    @Test
+    public void testAbandonedParallelScanStopsReaders() throws Exception {
+        AmazonS3 s3 = mock(AmazonS3.class);
+
+        // Each split is much larger than the batches buffered by the reader, so the readers block until closed
+        List<String> fileNames = Lists.newArrayList();
+        for (int f=0; f < 2; f++) {
+            String fileName = format("split%d.gz", f);
+            fileNames.add(fileName);
+            List<Map<String, Object>> rows = Lists.newArrayList();
+            for (int i=0; i < 2000; i++) {
+                rows.add(ImmutableMap.<String, Object>of("~id", format("row%d-%d", f, i), "~table", "test:table"));
+            }
+            mockSplit(s3, "stash/abandon/test~table/", fileName, rows);
+        }
+        when(s3.listObjects(argThat(listObjectRequest("stash-bucket", "stash/abandon/test~table/", null))))
+                .thenAnswer(objectListingAnswer(null, fileNames.toArray(new String[fileNames.size()])));
+
+        StashReader reader = FixedStashReader.getInstance(URI.create("s3://stash-bucket/stash/abandon"), s3);
+        readFirstRowAndAbandon(reader);
+
+        // Once the abandoned iterator is finalized the reader threads must stop
+        long deadline = System.currentTimeMillis() + Duration.ofSeconds(30).toMillis();
+        while (countStashScanThreads() > 0 && System.currentTimeMillis() < deadline) {
+            System.gc();
+            System.runFinalization();
+            Thread.sleep(100);
+        }
+        assertEquals(countStashScanThreads(), 0);
+    }
+
+    @Test(dataProvider = "preserveOrder", timeOut = 10000)
+    public void testParallelScanCloseThenHasNext(boolean preserveOrder) throws Exception {
+        AmazonS3 s3 = mock(AmazonS3.class);
+
+        // Each split is much larger than the batches buffered by the reader, so the readers block until closed
+        List<String> fileNames = Lists.newArrayList();
+        for (int f=0; f < 2; f++) {
+            String fileName = format("split%d.gz", f);
+            fileNames.add(fileName);
+            List<Map<String, Object>> rows = Lists.newArrayList();
+            for (int i=0; i < 2000; i++) {
+                rows.add(ImmutableMap.<String, Object>of("~id", format("row%d-%d", f, i), "~table", "test:table"));
+            }
+            mockSplit(s3, "stash/close/test~table/", fileName, rows);
+        }
+        when(s3.listObjects(argThat(listObjectRequest("stash-bucket", "stash/close/test~table/", null))))
+                .thenAnswer(objectListingAnswer(null, fileNames.toArray(new String[fileNames.size()])));
+
+        StashReader reader = FixedStashReader.getInstance(URI.create("s3://stash-bucket/stash/close"), s3);
+        StashRowIterator rows = reader.scan("test:table", 2, preserveOrder);
+        assertTrue(rows.hasNext());
+        rows.next();
+        rows.close();
+
+        // Iteration ends cleanly instead of waiting for batches the stopped readers will never produce
+        assertFalse(rows.hasNext());
+    }
+
+    private void readFirstRowAndAbandon(StashReader reader) throws Exception {
+        StashRowIterator rows = reader.scan("test:table", 2, true);
+        assertTrue(rows.hasNext());
+        rows.next();
+        assertTrue(countStashScanThreads() > 0);
+    }
+
+    private int countStashScanThreads() {
+        int count = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.isAlive() && thread.getName().startsWith("StashScan-")) {
+                count += 1;
+            }
+        }
+        return count;
+    }
+
+    @Test
+    public void testScanWithIncrementals() throws Exception {
+        AmazonS3 s3 = mock(AmazonS3.class);
+
+        Map<String, Object> a = ImmutableMap.<String, Object>of("~id", "a", "~table", "test:table", "~deleted", false, "value", 1);
+        Map<String, Object> b1 = ImmutableMap.<String, Object>of("~id", "b", "~table", "test:table", "~deleted", false, "value", 1);
+        Map<String, Object> c = ImmutableMap.<String, Object>of("~id", "c", "~table", "test:table", "~deleted", false, "value", 1);
+        Map<String, Object> b2 = ImmutableMap.<String, Object>of("~id", "b", "~table", "test:table", "~deleted", false, "value", 2);
+        Map<String, Object> cDeleted = ImmutableMap.<String, Object>of("~id", "c", "~table", "test:table", "~deleted", true);
+        Map<String, Object> d = ImmutableMap.<String, Object>of("~id", "d", "~table", "test:table", "~deleted", false, "value", 1);
+        Map<String, Object> b3 = ImmutableMap.<String, Object>of("~id", "b", "~table", "test:table", "~deleted", false, "value", 3);
+        Map<String, Object> e = ImmutableMap.<String, Object>of("~id", "e", "~table", "test:table", "~deleted", false, "value", 1);
+        Map<String, Object> f = ImmutableMap.<String, Object>of("~id", "f", "~table", "new:table", "~deleted", false, "value", 1);
+
+        // The base contains a, b and c.  The first incremental updates b, deletes c and creates d.  The second
+        // incremental updates b again and creates e.  Only the second incremental contains the newly created table.
+        mockSplit(s3, "stash/base/test~table/", "split0.gz", ImmutableList.of(a, b1, c));
+        mockSplit(s3, "stash/incr1/test~table/", "split0.gz", ImmutableList.of(b2, cDeleted, d));
+        mockSplit(s3, "stash/incr2/test~table/", "split0.gz", ImmutableList.of(b3, e));
+        mockSplit(s3, "stash/incr2/new~table/", "split0.gz", ImmutableList.of(f));
+        when(s3.listObjects(argThat(listObjectRequest("stash-bucket", "stash/base/new~table/", null))))
+                .thenAnswer(objectListingAnswer(null));
+        when(s3.listObjects(argThat(listObjectRequest("stash-bucket", "stash/incr1/new~table/", null))))
+                .thenAnswer(objectListingAnswer(null));
+
+        mockIncrementalManifest(s3, "stash/base/", null);
+        mockIncrementalManifest(s3, "stash/incr1/", "2015-01-01T00:00:00.000Z");
+        mockIncrementalManifest(s3, "stash/incr2/", "2015-01-02T00:00:00.000Z");
+
+        StashReader base = FixedStashReader.getInstance(URI.create("s3://stash-bucket/stash/base"), s3);
+        StashReader incr1 = FixedStashReader.getInstance(URI.create("s3://stash-bucket/stash/incr1"), s3);
+        StashReader incr2 = FixedStashReader.getInstance(URI.create("s3://stash-bucket/stash/incr2"), s3);
+
+        assertNull(base.getIncrementalSince());
+        assertEquals(incr1.getIncrementalSince(), new ISO8601DateFormat().parse("2015-01-01T00:00:00Z"));
+
+        try (StashRowIterator rows = base.scanWithIncrementals("test:table", incr1, incr2)) {
+            assertEquals(ImmutableList.copyOf(rows), ImmutableList.of(a, b3, d, e));
+        }
+        try (StashRowIterator rows = base.scanWithIncrementals("new:table", incr1, incr2)) {
+            assertEquals(ImmutableList.copyOf(rows), ImmutableList.of(f));
+        }
+    }
+
+    @Test
+    public void testScanWithIncrementalsRequiresIncrementalManifest() throws Exception {
+        AmazonS3 s3 = mock(AmazonS3.class);
+        mockIncrementalManifest(s3, "stash/base/", null);
+        mockIncrementalManifest(s3, "stash/full/", null);
+        mockIncrementalManifest(s3, "stash/incr/", "2015-01-01T00:00:00.000Z");
+
+        StashReader base = FixedStashReader.getInstance(URI.create("s3://stash-bucket/stash/base"), s3);
+        StashReader full = FixedStashReader.getInstance(URI.create("s3://stash-bucket/stash/full"), s3);
+        StashReader incr = FixedStashReader.getInstance(URI.create("s3://stash-bucket/stash/incr"), s3);
+
+        // A full Stash cannot be overlaid as though it were incremental, it would contain no tombstones
+        try {
+            base.scanWithIncrementals("test:table", full);
+            fail("IllegalArgumentException not thrown");
+        } catch (IllegalArgumentException expected) {
+            // expected
+        }
+        // An incremental Stash cannot be the base, it is missing every document not updated since the prior Stash
+        try {
+            incr.scanWithIncrementals("test:table", incr);
+            fail("IllegalArgumentException not thrown");
+        } catch (IllegalArgumentException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testGetLatestIncremental() throws Exception {
+        AmazonS3 s3 = mock(AmazonS3.class);
+        when(s3.getObject(argThat(getsObject("stash-bucket", "stash/test/_LATEST_INCREMENTAL")))).thenAnswer(new Answer<S3Object>() {
+            @Override
+            public S3Object answer(InvocationOnMock invocation)
+                    throws Throwable {
+                S3Object s3Object = new S3Object();
+                s3Object.setObjectContent(new ByteArrayInputStream("2015-01-01-12-00-00".getBytes(Charsets.UTF_8)));
+                return s3Object;
+            }
+        });
+
+        StandardStashReader reader = new StandardStashReader(URI.create("s3://stash-bucket/stash/test"), s3, 0);
+        assertEquals(reader.getLatestIncremental(), "2015-01-01-12-00-00");
+    }
+
+    private void mockIncrementalManifest(AmazonS3 s3, String prefix, @Nullable final String incrementalSince) {
+        if (incrementalSince == null) {
+            AmazonS3Exception notFound = new AmazonS3Exception("Not found");
+            notFound.setStatusCode(404);
+            when(s3.getObject(argThat(getsObject("stash-bucket", prefix + "_INCREMENTAL")))).thenThrow(notFound);
+            return;
+        }
+        when(s3.getObject(argThat(getsObject("stash-bucket", prefix + "_INCREMENTAL")))).thenAnswer(new Answer<S3Object>() {
+            @Override
+            public S3Object answer(InvocationOnMock invocation)
+                    throws Throwable {
+                S3Object s3Object = new S3Object();
+                s3Object.setObjectContent(new ByteArrayInputStream(
+                        format("%s\n2015-01-03T00:00:00.000Z\nscan", incrementalSince).getBytes(Charsets.UTF_8)));
+                return s3Object;
+            }
+        });
+    }
+
+    private void mockSplit(AmazonS3 s3, String prefix, String fileName, List<Map<String, Object>> rows) throws IOException {
+        final ByteArrayOutputStream splitOut = new ByteArrayOutputStream();
+        try (BufferedWriter out = new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(splitOut), Charsets.UTF_8))) {
+            for (Map<String, Object> row : rows) {
+                out.write(JsonHelper.asJson(row));
+                out.write("\n");
+            }
+        }
+
+        when(s3.getObject(argThat(getsObject("stash-bucket", prefix + fileName)))).thenAnswer(new Answer<S3Object>() {
+            @Override
+            public S3Object answer(InvocationOnMock invocation)
+                    throws Throwable {
+                S3Object s3Object = new S3Object();
+                s3Object.setObjectContent(new ByteArrayInputStream(splitOut.toByteArray()));
+                ObjectMetadata objectMetadata = new ObjectMetadata();
+                objectMetadata.setContentLength(splitOut.size());
+                s3Object.setObjectMetadata(objectMetadata);
+                return s3Object;
+            }
+        });
+        when(s3.listObjects(argThat(listObjectRequest("stash-bucket", prefix, null))))
+                .thenAnswer(objectListingAnswer(null, fileName));
+    }
+
     @Test
     public void testLockedView() throws Exception {
         AmazonS3 s3 = mock(AmazonS3.class);
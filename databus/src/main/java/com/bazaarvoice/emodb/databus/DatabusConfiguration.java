@@ -1,7 +1,9 @@
 package com.bazaarvoice.emodb.databus;
 
 import com.bazaarvoice.emodb.common.cassandra.CassandraConfiguration;
+import com.bazaarvoice.emodb.databus.core.UpdateRefSerializer;
 import com.bazaarvoice.emodb.databus.db.generic.CachingSubscriptionDAO;
+import com.bazaarvoice.emodb.event.ClaimStoreConfiguration;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.base.Optional;
 
@@ -47,6 +49,36 @@ public class DatabusConfiguration {
     @JsonProperty("dataCenterFanoutPartitions")
     private int _dataCenterFanoutPartitions = 4;
 
+    @Valid
+    @NotNull
+    @JsonProperty("claimStore")
+    private ClaimStoreConfiguration _claimStoreConfiguration = new ClaimStoreConfiguration();
+
+    @Valid
+    @NotNull
+    @JsonProperty("fanout")
+    private FanoutConfiguration _fanoutConfiguration = new FanoutConfiguration();
+
+    @Valid
+    @NotNull
+    @JsonProperty("poll")
+    private PollConfiguration _pollConfiguration = new PollConfiguration();
+
+    /**
+     * Format in which databus events are written.  Both formats are always readable, but servers older than the
+     * compact format can only read composites.  Switch to {@code compact} only once every server in every data center
+     * has been upgraded.
+     */
+    @Valid
+    @NotNull
+    @JsonProperty("updateRefFormat")
+    private UpdateRefSerializer.Format _updateRefFormat = UpdateRefSerializer.Format.composite;
+
+    @Valid
+    @NotNull
+    @JsonProperty("replication")
+    private ReplicationConfiguration _replicationConfiguration = new ReplicationConfiguration();
+
     public CassandraConfiguration getCassandraConfiguration() {
         return _cassandraConfiguration;
     }
@@ -100,4 +132,49 @@ public class DatabusConfiguration {
         _dataCenterFanoutPartitions = dataCenterFanoutPartitions;
         return this;
     }
+
+    public ClaimStoreConfiguration getClaimStoreConfiguration() {
+        return _claimStoreConfiguration;
+    }
+
+    public DatabusConfiguration setClaimStoreConfiguration(ClaimStoreConfiguration claimStoreConfiguration) {
+        _claimStoreConfiguration = claimStoreConfiguration;
+        return this;
+    }
+
+    public FanoutConfiguration getFanoutConfiguration() {
+        return _fanoutConfiguration;
+    }
+
+    public DatabusConfiguration setFanoutConfiguration(FanoutConfiguration fanoutConfiguration) {
+        _fanoutConfiguration = fanoutConfiguration;
+        return this;
+    }
+
+    public PollConfiguration getPollConfiguration() {
+        return _pollConfiguration;
+    }
+
+    public DatabusConfiguration setPollConfiguration(PollConfiguration pollConfiguration) {
+        _pollConfiguration = pollConfiguration;
+        return this;
+    }
+
+    public ReplicationConfiguration getReplicationConfiguration() {
+        return _replicationConfiguration;
+    }
+
+    public DatabusConfiguration setReplicationConfiguration(ReplicationConfiguration replicationConfiguration) {
+        _replicationConfiguration = replicationConfiguration;
+        return this;
+    }
+
+    public UpdateRefSerializer.Format getUpdateRefFormat() {
+        return _updateRefFormat;
+    }
+
+    public DatabusConfiguration setUpdateRefFormat(UpdateRefSerializer.Format updateRefFormat) {
+        _updateRefFormat = updateRefFormat;
+        return this;
+    }
 }
@@ -23,6 +23,8 @@ import com.bazaarvoice.emodb.databus.core.DefaultDatabus;
 import com.bazaarvoice.emodb.databus.core.DefaultFanoutManager;
 import com.bazaarvoice.emodb.common.dropwizard.log.DefaultRateLimitedLogFactory;
 import com.bazaarvoice.emodb.databus.core.DrainFanoutPartitionTask;
+import com.bazaarvoice.emodb.databus.core.EventArrivalNotifier;
+import com.bazaarvoice.emodb.databus.core.EventArrivalTask;
 import com.bazaarvoice.emodb.databus.core.FanoutLagMonitor;
 import com.bazaarvoice.emodb.databus.core.FanoutManager;
 import com.bazaarvoice.emodb.databus.core.HashingPartitionSelector;
@@ -31,7 +33,9 @@ import com.bazaarvoice.emodb.databus.core.OwnerAwareDatabus;
 import com.bazaarvoice.emodb.databus.core.PartitionSelector;
 import com.bazaarvoice.emodb.common.dropwizard.log.RateLimitedLogFactory;
 import com.bazaarvoice.emodb.databus.core.SubscriptionEvaluator;
+import com.bazaarvoice.emodb.databus.core.SubscriptionMatchCache;
 import com.bazaarvoice.emodb.databus.core.SystemQueueMonitorManager;
+import com.bazaarvoice.emodb.databus.core.UpdateRefSerializer;
 import com.bazaarvoice.emodb.databus.db.SubscriptionDAO;
 import com.bazaarvoice.emodb.databus.db.cql.CqlSubscriptionDAO;
 import com.bazaarvoice.emodb.databus.db.generic.CachingSubscriptionDAO;
@@ -42,12 +46,14 @@ import com.bazaarvoice.emodb.databus.repl.DefaultReplicationManager;
 import com.bazaarvoice.emodb.databus.repl.DefaultReplicationSource;
 import com.bazaarvoice.emodb.databus.repl.ReplicationEnabledTask;
 import com.bazaarvoice.emodb.databus.repl.ReplicationSource;
+import com.bazaarvoice.emodb.event.ClaimStoreConfiguration;
 import com.bazaarvoice.emodb.event.DedupEnabled;
 import com.bazaarvoice.emodb.event.EventStoreHostDiscovery;
 import com.bazaarvoice.emodb.event.EventStoreModule;
 import com.bazaarvoice.emodb.event.EventStoreZooKeeper;
 import com.bazaarvoice.emodb.event.api.ChannelConfiguration;
 import com.bazaarvoice.emodb.event.api.DedupEventStoreChannels;
+import com.bazaarvoice.emodb.event.core.Limits;
 import com.bazaarvoice.emodb.job.api.JobHandlerRegistry;
 import com.bazaarvoice.emodb.job.api.JobService;
 import com.bazaarvoice.emodb.sor.DataStoreConfiguration;
@@ -110,6 +116,7 @@ import static com.google.common.base.Preconditions.checkArgument;
  * <ul>
  * <li> {@link DatabusFactory}
  * <li> {@link DatabusEventStore}
+ * <li> {@link EventArrivalNotifier}
  * <li> {@link ReplicationSource}
  * </ul>
  */
@@ -145,6 +152,7 @@ public class DatabusModule extends PrivateModule {
         // Databus Fanout and Replication
         if (_serviceMode.specifies(EmoServiceMode.Aspect.dataBus_fan_out_and_replication)) {
             bind(FanoutManager.class).to(DefaultFanoutManager.class).asEagerSingleton();
+            bind(SubscriptionMatchCache.class).asEagerSingleton();
             bind(CanaryManager.class).asEagerSingleton();
             bind(MasterFanout.class).asEagerSingleton();
             bind(DefaultReplicationManager.class).asEagerSingleton();
@@ -158,6 +166,9 @@ public class DatabusModule extends PrivateModule {
         bind(SubscriptionEvaluator.class).asEagerSingleton();
         bind(DedupMigrationTask.class).asEagerSingleton();
         bind(DrainFanoutPartitionTask.class).asEagerSingleton();
+        bind(EventArrivalNotifier.class).asEagerSingleton();
+        bind(EventArrivalTask.class).asEagerSingleton();
+        expose(EventArrivalNotifier.class);
         
         // Expose the event store directly for use by debugging APIs
         bind(DatabusEventStore.class).asEagerSingleton();
@@ -220,6 +231,70 @@ public class DatabusModule extends PrivateModule {
         return queueDrainService;
     }
 
+    @Provides @Singleton
+    PollConfiguration providePollConfiguration(DatabusConfiguration configuration) {
+        PollConfiguration pollConfiguration = configuration.getPollConfiguration();
+        checkArgument(pollConfiguration.getResolveBatchSize() > 0, "Poll resolve batch size must be at least 1");
+        checkArgument(pollConfiguration.getMaxConcurrentResolveBatches() > 0,
+                "Poll max concurrent resolve batches must be at least 1");
+        checkArgument(!pollConfiguration.getResolvedRecordCacheTtl().isNegative(),
+                "Poll resolved record cache TTL cannot be negative");
+        checkArgument(pollConfiguration.getResolvedRecordCacheMaxBytes() >= 0,
+                "Poll resolved record cache max bytes cannot be negative");
+        return pollConfiguration;
+    }
+
+    @Provides @Singleton @PollResolveExecutorService
+    ExecutorService providePollResolveService(PollConfiguration pollConfiguration, LifeCycleRegistry lifeCycleRegistry) {
+        ExecutorService pollResolveService = Executors.newFixedThreadPool(pollConfiguration.getResolveThreadCount(),
+                new ThreadFactoryBuilder().setNameFormat("pollResolve-%d").setDaemon(true).build());
+        lifeCycleRegistry.manage(new ExecutorServiceManager(pollResolveService, Duration.seconds(1), "pollResolve"));
+        return pollResolveService;
+    }
+
+    @Provides @Singleton
+    UpdateRefSerializer.Format provideUpdateRefFormat(DatabusConfiguration configuration) {
+        return configuration.getUpdateRefFormat();
+    }
+
+    @Provides @Singleton
+    ReplicationConfiguration provideReplicationConfiguration(DatabusConfiguration configuration) {
+        ReplicationConfiguration replicationConfiguration = configuration.getReplicationConfiguration();
+        checkArgument(replicationConfiguration.getClaimTtl().getSeconds() >= 1,
+                "Replication claim TTL must be at least 1 second");
+        return replicationConfiguration;
+    }
+
+    @Provides @Singleton @ReplicationExecutorService
+    ExecutorService provideReplicationService(LifeCycleRegistry lifeCycleRegistry) {
+        // Each inbound replication partition has at most one prefetch and one acknowledgement outstanding at a time
+        ExecutorService replicationService = Executors.newCachedThreadPool(
+                new ThreadFactoryBuilder().setNameFormat("replication-%d").setDaemon(true).build());
+        lifeCycleRegistry.manage(new ExecutorServiceManager(replicationService, Duration.seconds(1), "replication"));
+        return replicationService;
+    }
+
+    @Provides @Singleton
+    ClaimStoreConfiguration provideClaimStoreConfiguration(DatabusConfiguration configuration) {
+        return configuration.getClaimStoreConfiguration();
+    }
+
+    @Provides @Singleton
+    FanoutConfiguration provideFanoutConfiguration(DatabusConfiguration configuration) {
+        FanoutConfiguration fanoutConfiguration = configuration.getFanoutConfiguration();
+        checkArgument(Range.closed(1, 64).contains(fanoutConfiguration.getMaxPartitions()),
+                "Max fanout partitions must be between 1 and 64");
+        // Each fanout iteration peeks at most the max batch size from its source channel
+        checkArgument(fanoutConfiguration.getMinBatchSize() > 0
+                        && fanoutConfiguration.getMinBatchSize() <= fanoutConfiguration.getMaxBatchSize()
+                        && fanoutConfiguration.getMaxBatchSize() <= Limits.MAX_PEEK_LIMIT,
+                "Fanout batch sizes must satisfy 0 < min <= max <= %s", Limits.MAX_PEEK_LIMIT);
+        checkArgument(fanoutConfiguration.getMinFlushThreshold() > 0
+                        && fanoutConfiguration.getMinFlushThreshold() <= fanoutConfiguration.getMaxFlushThreshold(),
+                "Fanout flush thresholds must satisfy 0 < min <= max");
+        return fanoutConfiguration;
+    }
+
     @Provides @Singleton @MasterFanoutPartitions
     Integer provideMasterFanoutPartitions(DatabusConfiguration configuration) {
         checkArgument(Range.closed(1, 16).contains(configuration.getMasterFanoutPartitions()),
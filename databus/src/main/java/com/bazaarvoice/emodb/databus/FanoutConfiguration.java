@@ -0,0 +1,128 @@
+package com.bazaarvoice.emodb.databus;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotNull;
+import java.time.Duration;
+
+/**
+ * Bounds within which each fanout adapts how many events it reads at a time, how many threads copy them and how many
+ * events are buffered before being written to the subscription channels.
+ */
+public class FanoutConfiguration {
+
+    /**
+     * Minimum and maximum number of events read from the source channel per iteration.
+     */
+    @Valid
+    @NotNull
+    @JsonProperty("minBatchSize")
+    private int _minBatchSize = 100;
+
+    @Valid
+    @NotNull
+    @JsonProperty("maxBatchSize")
+    private int _maxBatchSize = 5000;
+
+    /**
+     * Maximum number of threads concurrently copying events for a single fanout.
+     */
+    @Valid
+    @NotNull
+    @JsonProperty("maxPartitions")
+    private int _maxPartitions = 8;
+
+    /**
+     * Minimum and maximum number of buffered events which trigger writing to the subscription channels.
+     */
+    @Valid
+    @NotNull
+    @JsonProperty("minFlushThreshold")
+    private int _minFlushThreshold = 100;
+
+    @Valid
+    @NotNull
+    @JsonProperty("maxFlushThreshold")
+    private int _maxFlushThreshold = 2000;
+
+    /**
+     * If writes to the subscription channels take longer than this on average the fanout backs off by reading and
+     * writing fewer events at a time.
+     */
+    @Valid
+    @NotNull
+    @JsonProperty("targetFlushLatency")
+    private Duration _targetFlushLatency = Duration.ofMillis(500);
+
+    /**
+     * Fanout lag beyond which the fanout is considered to be behind and reads and writes more events at a time.
+     */
+    @Valid
+    @NotNull
+    @JsonProperty("lagThreshold")
+    private Duration _lagThreshold = Duration.ofSeconds(30);
+
+    public int getMinBatchSize() {
+        return _minBatchSize;
+    }
+
+    public FanoutConfiguration setMinBatchSize(int minBatchSize) {
+        _minBatchSize = minBatchSize;
+        return this;
+    }
+
+    public int getMaxBatchSize() {
+        return _maxBatchSize;
+    }
+
+    public FanoutConfiguration setMaxBatchSize(int maxBatchSize) {
+        _maxBatchSize = maxBatchSize;
+        return this;
+    }
+
+    public int getMaxPartitions() {
+        return _maxPartitions;
+    }
+
+    public FanoutConfiguration setMaxPartitions(int maxPartitions) {
+        _maxPartitions = maxPartitions;
+        return this;
+    }
+
+    public int getMinFlushThreshold() {
+        return _minFlushThreshold;
+    }
+
+    public FanoutConfiguration setMinFlushThreshold(int minFlushThreshold) {
+        _minFlushThreshold = minFlushThreshold;
+        return this;
+    }
+
+    public int getMaxFlushThreshold() {
+        return _maxFlushThreshold;
+    }
+
+    public FanoutConfiguration setMaxFlushThreshold(int maxFlushThreshold) {
+        _maxFlushThreshold = maxFlushThreshold;
+        return this;
+    }
+
+    public Duration getTargetFlushLatency() {
+        return _targetFlushLatency;
+    }
+
+    public FanoutConfiguration setTargetFlushLatency(Duration targetFlushLatency) {
+        _targetFlushLatency = targetFlushLatency;
+        return this;
+    }
+
+    public Duration getLagThreshold() {
+        return _lagThreshold;
+    }
+
+    public FanoutConfiguration setLagThreshold(Duration lagThreshold) {
+        _lagThreshold = lagThreshold;
+        return this;
+    }
+}
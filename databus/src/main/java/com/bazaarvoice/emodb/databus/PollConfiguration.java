@@ -0,0 +1,99 @@
+package com.bazaarvoice.emodb.databus;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotNull;
+import java.time.Duration;
+
+/**
+ * Controls how the events returned by a peek or poll are resolved against the System of Record.  The events are split
+ * into batches of records in the same placement and the batches are read concurrently.
+ */
+public class PollConfiguration {
+
+    /**
+     * Maximum number of records read in a single multi-get.
+     */
+    @Valid
+    @NotNull
+    @JsonProperty("resolveBatchSize")
+    private int _resolveBatchSize = 100;
+
+    /**
+     * Maximum number of batches concurrently being resolved for a single peek or poll.
+     */
+    @Valid
+    @NotNull
+    @JsonProperty("maxConcurrentResolveBatches")
+    private int _maxConcurrentResolveBatches = 4;
+
+    /**
+     * Number of threads shared by all peeks and polls for resolving batches.
+     */
+    @Valid
+    @NotNull
+    @JsonProperty("resolveThreadCount")
+    private int _resolveThreadCount = 32;
+
+    /**
+     * How long a resolved record is shared with polls of other subscriptions with events for the same change.
+     */
+    @Valid
+    @NotNull
+    @JsonProperty("resolvedRecordCacheTtl")
+    private Duration _resolvedRecordCacheTtl = Duration.ofSeconds(2);
+
+    /**
+     * Approximate maximum heap used by the resolved records shared between polls.  Zero disables sharing.
+     */
+    @Valid
+    @NotNull
+    @JsonProperty("resolvedRecordCacheMaxBytes")
+    private long _resolvedRecordCacheMaxBytes = 64 * 1024 * 1024;
+
+    public int getResolveBatchSize() {
+        return _resolveBatchSize;
+    }
+
+    public PollConfiguration setResolveBatchSize(int resolveBatchSize) {
+        _resolveBatchSize = resolveBatchSize;
+        return this;
+    }
+
+    public int getMaxConcurrentResolveBatches() {
+        return _maxConcurrentResolveBatches;
+    }
+
+    public PollConfiguration setMaxConcurrentResolveBatches(int maxConcurrentResolveBatches) {
+        _maxConcurrentResolveBatches = maxConcurrentResolveBatches;
+        return this;
+    }
+
+    public int getResolveThreadCount() {
+        return _resolveThreadCount;
+    }
+
+    public PollConfiguration setResolveThreadCount(int resolveThreadCount) {
+        _resolveThreadCount = resolveThreadCount;
+        return this;
+    }
+
+    public Duration getResolvedRecordCacheTtl() {
+        return _resolvedRecordCacheTtl;
+    }
+
+    public PollConfiguration setResolvedRecordCacheTtl(Duration resolvedRecordCacheTtl) {
+        _resolvedRecordCacheTtl = resolvedRecordCacheTtl;
+        return this;
+    }
+
+    public long getResolvedRecordCacheMaxBytes() {
+        return _resolvedRecordCacheMaxBytes;
+    }
+
+    public PollConfiguration setResolvedRecordCacheMaxBytes(long resolvedRecordCacheMaxBytes) {
+        _resolvedRecordCacheMaxBytes = resolvedRecordCacheMaxBytes;
+        return this;
+    }
+}
@@ -0,0 +1,49 @@
+package com.bazaarvoice.emodb.databus;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotNull;
+import java.time.Duration;
+
+/**
+ * Controls how events are fetched from remote data centers by inbound replication.
+ */
+public class ReplicationConfiguration {
+
+    /**
+     * If true events are claimed from remote data centers in compressed binary batches and the next batch is fetched
+     * while the current batch is written locally.  Every remote data center must support the batch endpoint before
+     * this is enabled.  Otherwise events are fetched as JSON one batch at a time.
+     */
+    @Valid
+    @NotNull
+    @JsonProperty("batched")
+    private boolean _batched = false;
+
+    /**
+     * How long events in a batch are claimed before they are returned again if they haven't been acknowledged.
+     */
+    @Valid
+    @NotNull
+    @JsonProperty("claimTtl")
+    private Duration _claimTtl = Duration.ofSeconds(30);
+
+    public boolean isBatched() {
+        return _batched;
+    }
+
+    public ReplicationConfiguration setBatched(boolean batched) {
+        _batched = batched;
+        return this;
+    }
+
+    public Duration getClaimTtl() {
+        return _claimTtl;
+    }
+
+    public ReplicationConfiguration setClaimTtl(Duration claimTtl) {
+        _claimTtl = claimTtl;
+        return this;
+    }
+}
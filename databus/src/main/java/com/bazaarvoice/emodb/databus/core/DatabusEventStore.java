@@ -16,6 +16,7 @@ import com.google.inject.Inject;
 import java.nio.ByteBuffer;
 import java.time.Duration;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
@@ -36,13 +37,16 @@ public class DatabusEventStore implements BaseEventStore {
     private final EventStore _eventStore;
     private final DedupEventStore _dedupEventStore;
     private final Supplier<Boolean> _dedupEnabled;
+    private final EventArrivalNotifier _eventArrivalNotifier;
 
     @Inject
     public DatabusEventStore(EventStore eventStore, DedupEventStore dedupEventStore,
-                             @DedupEnabled Supplier<Boolean> dedupEnabled) {
+                             @DedupEnabled Supplier<Boolean> dedupEnabled,
+                             EventArrivalNotifier eventArrivalNotifier) {
         _eventStore = checkNotNull(eventStore, "eventStore");
         _dedupEventStore = checkNotNull(dedupEventStore, "dedupEventStore");
         _dedupEnabled = checkNotNull(dedupEnabled, "dedupEnabled");
+        _eventArrivalNotifier = checkNotNull(eventArrivalNotifier, "eventArrivalNotifier");
     }
 
     private BaseEventStore select(String subscription) {
@@ -61,11 +65,15 @@ public class DatabusEventStore implements BaseEventStore {
     @Override
     public void add(String subscription, ByteBuffer event) {
         _eventStore.add(subscription, event);
+        _eventArrivalNotifier.eventsAdded(Collections.singleton(subscription));
     }
 
     @Override
     public void addAll(String subscription, Collection<ByteBuffer> events) {
         _eventStore.addAll(subscription, events);
+        if (!events.isEmpty()) {
+            _eventArrivalNotifier.eventsAdded(Collections.singleton(subscription));
+        }
     }
 
     @Override
@@ -73,6 +81,8 @@ public class DatabusEventStore implements BaseEventStore {
         // For optimal write performance, take advantage of the fact that databus dedup & non-dedup subscriptions
         // use the same back-end write channels, so we can write to both kinds in the same batch.
         _eventStore.addAll(eventsByChannel);
+        // Wake any long polls waiting on the subscriptions now that their events are durable
+        _eventArrivalNotifier.eventsAdded(eventsByChannel.keySet());
     }
 
     @Override
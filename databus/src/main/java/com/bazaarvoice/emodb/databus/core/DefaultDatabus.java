@@ -6,6 +6,8 @@ import com.bazaarvoice.emodb.common.uuid.TimeUUIDs;
 import com.bazaarvoice.emodb.databus.ChannelNames;
 import com.bazaarvoice.emodb.databus.DefaultJoinFilter;
 import com.bazaarvoice.emodb.databus.MasterFanoutPartitions;
+import com.bazaarvoice.emodb.databus.PollConfiguration;
+import com.bazaarvoice.emodb.databus.PollResolveExecutorService;
 import com.bazaarvoice.emodb.databus.QueueDrainExecutorService;
 import com.bazaarvoice.emodb.databus.SystemIdentity;
 import com.bazaarvoice.emodb.databus.api.Event;
@@ -33,6 +35,7 @@ import com.bazaarvoice.emodb.job.api.JobStatus;
 import com.bazaarvoice.emodb.sor.api.Coordinate;
 import com.bazaarvoice.emodb.sor.api.Intrinsic;
 import com.bazaarvoice.emodb.sor.api.ReadConsistency;
+import com.bazaarvoice.emodb.sor.api.TableAvailability;
 import com.bazaarvoice.emodb.sor.api.UnknownPlacementException;
 import com.bazaarvoice.emodb.sor.api.UnknownTableException;
 import com.bazaarvoice.emodb.sor.condition.Condition;
@@ -42,8 +45,11 @@ import com.bazaarvoice.emodb.sor.core.DatabusEventWriter;
 import com.bazaarvoice.emodb.sor.core.DatabusEventWriterRegistry;
 import com.bazaarvoice.emodb.sor.core.UpdateRef;
 import com.bazaarvoice.emodb.sortedq.core.ReadOnlyQueueException;
+import com.bazaarvoice.emodb.table.db.Table;
+import com.codahale.metrics.Histogram;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Stopwatch;
 import com.google.common.base.Supplier;
@@ -61,7 +67,9 @@ import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Ordering;
+import com.google.common.collect.Queues;
 import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.Futures;
 import com.google.inject.Inject;
 import io.dropwizard.lifecycle.Managed;
 import org.slf4j.Logger;
@@ -78,11 +86,16 @@ import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletionService;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
@@ -120,6 +133,10 @@ public class DefaultDatabus implements OwnerAwareDatabus, DatabusEventWriter, Ma
     /* This is how long we submit tasks to drain the queue for each subscription from one poll request */
     private static final Duration MAX_QUEUE_DRAIN_TIME_FOR_A_SUBSCRIPTION = Duration.ofMinutes(1);
 
+    /**
+     * How long and how many resolved records are kept for reuse by polls of other subscriptions with events for the
+     * same change.  Subscriptions matching the same update are generally polled within a short time of each other.
+     */
     private final DatabusEventWriterRegistry _eventWriterRegistry;
     private final SubscriptionDAO _subscriptionDao;
     private final DatabusEventStore _eventStore;
@@ -144,10 +161,20 @@ public class DefaultDatabus implements OwnerAwareDatabus, DatabusEventWriter, Ma
     private final Meter _drainQueueTaskMeter;
     private final Meter _drainQueueRedundantMeter;
     private final LoadingCache<SizeCacheKey, Map.Entry<Long, Long>> _eventSizeCache;
+    private final ResolvedRecordCache _resolvedRecordCache;
+    private final Histogram _eventsResolvedPerPoll;
+    private final Timer _eventStoreReadTimer;
+    private final Timer _initialResolveTimer;
+    private final Timer _deferredResolveTimer;
+    private final Timer _deferredWaitTimer;
     private final Supplier<Condition> _defaultJoinFilterCondition;
     private final Ticker _ticker;
     private final Clock _clock;
     private ExecutorService _drainService;
+    private final ExecutorService _pollResolveService;
+    private final UpdateRefSerializer.Format _updateRefFormat;
+    private final int _resolveBatchSize;
+    private final int _maxConcurrentResolveBatches;
     private ConcurrentMap<String, Long> _drainedSubscriptionsMap = Maps.newConcurrentMap();
 
     @Inject
@@ -158,6 +185,9 @@ public class DefaultDatabus implements OwnerAwareDatabus, DatabusEventWriter, Ma
                           @SystemIdentity String systemOwnerId,
                           @DefaultJoinFilter Supplier<Condition> defaultJoinFilterCondition,
                           @QueueDrainExecutorService ExecutorService drainService,
+                          PollConfiguration pollConfiguration,
+                          @PollResolveExecutorService ExecutorService pollResolveService,
+                          UpdateRefSerializer.Format updateRefFormat,
                           @MasterFanoutPartitions int masterPartitions,
                           @MasterFanoutPartitions PartitionSelector masterPartitionSelector,
                           MetricRegistry metricRegistry, Clock clock) {
@@ -171,6 +201,10 @@ public class DefaultDatabus implements OwnerAwareDatabus, DatabusEventWriter, Ma
         _systemOwnerId = systemOwnerId;
         _defaultJoinFilterCondition = defaultJoinFilterCondition;
         _drainService = checkNotNull(drainService, "drainService");
+        _pollResolveService = checkNotNull(pollResolveService, "pollResolveService");
+        _updateRefFormat = checkNotNull(updateRefFormat, "updateRefFormat");
+        _resolveBatchSize = pollConfiguration.getResolveBatchSize();
+        _maxConcurrentResolveBatches = pollConfiguration.getMaxConcurrentResolveBatches();
         _masterPartitionSelector = masterPartitionSelector;
         _ticker = ClockTicker.getTicker(clock);
         _clock = clock;
@@ -198,6 +232,16 @@ public class DefaultDatabus implements OwnerAwareDatabus, DatabusEventWriter, Ma
                         return Maps.immutableEntry(internalEventCountUpTo(key.channelName, key.limitAsked), key.limitAsked);
                     }
                 });
+        _resolvedRecordCache = new ResolvedRecordCache(pollConfiguration.getResolvedRecordCacheTtl(),
+                pollConfiguration.getResolvedRecordCacheMaxBytes(), _ticker, metricRegistry);
+        // Breakdown of where peek and poll time is spent.  The number of events resolved is recorded once all of a poll's
+        // events are resolved, which for larger polls is when the caller reads to the end of the event list, so polls
+        // whose event lists are abandoned part way through aren't included.
+        _eventsResolvedPerPoll = metricRegistry.histogram(getMetricName("events-resolved-per-poll"));
+        _eventStoreReadTimer = metricRegistry.timer(getMetricName("poll-event-store-read"));
+        _initialResolveTimer = metricRegistry.timer(getMetricName("poll-initial-resolve"));
+        _deferredResolveTimer = metricRegistry.timer(getMetricName("poll-deferred-resolve"));
+        _deferredWaitTimer = metricRegistry.timer(getMetricName("poll-deferred-wait"));
         lifeCycle.manage(this);
 
         ImmutableList.Builder<String> masterFanoutChannels = ImmutableList.builder();
@@ -394,7 +438,7 @@ public class DefaultDatabus implements OwnerAwareDatabus, DatabusEventWriter, Ma
         ImmutableMultimap.Builder<String, ByteBuffer> eventIds = ImmutableMultimap.builder();
         for (UpdateRef ref : refs) {
             int partition = _masterPartitionSelector.getPartition(ref.getKey());
-            eventIds.put(_masterFanoutChannels.get(partition), UpdateRefSerializer.toByteBuffer(ref));
+            eventIds.put(_masterFanoutChannels.get(partition), UpdateRefSerializer.toByteBuffer(ref, _updateRefFormat));
         }
         _eventStore.addAll(eventIds.build());
     }
@@ -465,6 +509,7 @@ public class DefaultDatabus implements OwnerAwareDatabus, DatabusEventWriter, Ma
         boolean eventsAvailableForNextPoll = false;
         boolean noMaxPollTimeOut = true;
         int itemsDiscarded = 0;
+        boolean paddingUnclaimed = false;
         Meter eventMeter = isPeek ? _peekedMeter : _polledMeter;
 
         // Reading raw events from the event store is a significantly faster operation than resolving the events into
@@ -473,14 +518,16 @@ public class DefaultDatabus implements OwnerAwareDatabus, DatabusEventWriter, Ma
         // store.
         //
         // To make the process more efficient this method first polls for "limit" raw events from the event store.
-        // Then, up to the first 10 of those raw events are resolved synchronously with a time limit of MAX_POLL_TIME.
-        // Any remaining raw events are resolved lazily as the event list is consumed by the caller.  This makes the
-        // return time for this method faster and more predictable while supporting polls for more events than can
-        // be resolved within MAX_POLL_TIME.  This is especially beneficial for REST clients which may otherwise time
-        // out while waiting for "limit" events to be read and resolved.
+        // The raw events are split into batches of records from the same placement which are read concurrently (see
+        // DeferredEventIterator).  This method only waits, for at most MAX_POLL_TIME, until the first batches from each
+        // read of the event store produce at least one event.  Any remaining batches are resolved lazily as the event
+        // list is consumed by the caller.  This makes the return time for this method faster and more predictable while
+        // supporting polls for more events than can be resolved within MAX_POLL_TIME.  This is especially beneficial for
+        // REST clients which may otherwise time out while waiting for "limit" events to be read and resolved.
 
         Stopwatch stopwatch = Stopwatch.createStarted(_ticker);
         int padding = 0;
+        DeferredEventIterator deferredEvents = null;
         do {
             if (remaining == 0) {
                 break;  // Don't need any more events.
@@ -488,9 +535,12 @@ public class DefaultDatabus implements OwnerAwareDatabus, DatabusEventWriter, Ma
 
             // Query the databus event store.  Consolidate multiple events that refer to the same item.
             ConsolidatingEventSink sink = new ConsolidatingEventSink(remaining + padding);
-            boolean more = isPeek ?
-                    _eventStore.peek(subscription, sink) :
-                    _eventStore.poll(subscription, claimTtl, sink);
+            boolean more;
+            try (Timer.Context ignored = _eventStoreReadTimer.time()) {
+                more = isPeek ?
+                        _eventStore.peek(subscription, sink) :
+                        _eventStore.poll(subscription, claimTtl, sink);
+            }
             rawEvents = sink.getEvents();
 
             if (rawEvents.isEmpty()) {
@@ -499,31 +549,53 @@ public class DefaultDatabus implements OwnerAwareDatabus, DatabusEventWriter, Ma
                 break;
             }
 
-            // Resolve the raw events in batches of 10 until at least one response item is found for a maximum time of MAX_POLL_TIME.
-            do {
-                int batchItemsDiscarded = resolvePeekOrPollEvents(subscription, rawEvents, Math.min(10, remaining),
-                        (coord, item) -> {
-                            // Check whether we've already added this piece of content to the poll result.  If so, consolidate
-                            // the two together to reduce the amount of work a client must do.  Note that the previous item
-                            // would be from a previous batch of events and it's possible that we have read two different
-                            // versions of the same item of content.  This will prefer the most recent.
-                            Item previousItem = uniqueItems.get(coord);
-                            if (previousItem != null && previousItem.consolidateWith(item)) {
-                                _consolidatedMeter.mark();
-                            } else {
-                                // We have found a new item of content to return!
-                                uniqueItems.put(coord, item);
-                            }
-                        });
-                remaining = limit - uniqueItems.size();
-                itemsDiscarded += batchItemsDiscarded;
-            } while (!rawEvents.isEmpty() && remaining > 0 && stopwatch.elapsed(TimeUnit.MILLISECONDS) < MAX_POLL_TIME.toMillis());
+            // Resolve the raw events in concurrent placement batches until at least one response item is found for a
+            // maximum time of MAX_POLL_TIME.
+            deferredEvents = new DeferredEventIterator(subscription, rawEvents, limit, eventMeter);
+            boolean itemsFound = false;
+            try (Timer.Context ignored = _initialResolveTimer.time()) {
+                while (!itemsFound && deferredEvents.hasUnresolvedBatches()) {
+                    long maxWait = Math.max(MAX_POLL_TIME.toMillis() - stopwatch.elapsed(TimeUnit.MILLISECONDS), 0);
+                    List<Item> items = deferredEvents.pollResolvedBatch(maxWait, TimeUnit.MILLISECONDS);
+                    if (items == null) {
+                        break;  // Timed out, the caller will wait for the batches while reading the event list.
+                    }
+                    if (items.size() > remaining) {
+                        // Padding produced more events than the caller requested, return the first and release the rest
+                        Collections.sort(items);
+                        deferredEvents.unclaimItems(items.subList(remaining, items.size()));
+                        items = items.subList(0, remaining);
+                        paddingUnclaimed = true;
+                    }
+                    itemsFound = !items.isEmpty();
+                    for (Item item : items) {
+                        // Check whether we've already added this piece of content to the poll result.  If so, consolidate
+                        // the two together to reduce the amount of work a client must do.  Note that the previous item
+                        // would be from a previous read of events and it's possible that we have read two different
+                        // versions of the same item of content.  This will prefer the most recent.
+                        Item previousItem = uniqueItems.get(item.getCoordinate());
+                        if (previousItem != null && previousItem.consolidateWith(item)) {
+                            _consolidatedMeter.mark();
+                        } else {
+                            // We have found a new item of content to return!
+                            uniqueItems.put(item.getCoordinate(), item);
+                        }
+                    }
+                }
+            } catch (InterruptedException e) {
+                // Leave any unresolved batches to be resolved as the event list is read
+                Thread.currentThread().interrupt();
+            }
+            remaining = limit - uniqueItems.size();
+            itemsDiscarded += deferredEvents.getItemsDiscarded();
 
             // There are more events for the next poll if either the event store explicitly said so or if, due to padding,
             // we got more events than "limit", in which case we're likely to unclaim at last one.
-            eventsAvailableForNextPoll = more || rawEvents.size() + uniqueItems.size() > limit;
-            if (!more) {
-                // There are no more events to be had, so exit now
+            eventsAvailableForNextPoll = more || paddingUnclaimed ||
+                    deferredEvents.getUnresolvedRecordCount() + uniqueItems.size() > limit;
+            if (!more || deferredEvents.hasUnresolvedBatches()) {
+                // Either there are no more events to be had or the rest of this read's events will be returned
+                // lazily, so exit now
                 break;
             }
 
@@ -536,7 +608,13 @@ public class DefaultDatabus implements OwnerAwareDatabus, DatabusEventWriter, Ma
 
         Iterator<Event> events;
         int approximateSize;
-        if (uniqueItems.isEmpty()) {
+        if (deferredEvents != null && deferredEvents.hasUnresolvedBatches()) {
+            // Return an event list which contains the events which were resolved so far plus the remaining events
+            // from the peek or poll, which will be resolved concurrently as the caller reads the list.
+            deferredEvents.setRemaining(remaining);
+            approximateSize = uniqueItems.size() + deferredEvents.getUnresolvedRecordCount();
+            events = Iterators.concat(toEvents(uniqueItems.values()).iterator(), deferredEvents);
+        } else if (uniqueItems.isEmpty()) {
             // Either there were no raw events or all events found were for redundant or unknown changes.  It's possible
             // that eventually there will be more events, but to prevent a lengthy delay iterating the remaining events
             // quit now and return an empty result.  The caller can always poll again to try to pick up any more events,
@@ -544,83 +622,13 @@ public class DefaultDatabus implements OwnerAwareDatabus, DatabusEventWriter, Ma
             // wasteland.
             events = Iterators.emptyIterator();
             approximateSize = 0;
-
-            // If there are still more unresolved events claimed then unclaim them now
-            if (repeatable && !rawEvents.isEmpty()) {
-                unclaim(subscription, rawEvents.values());
-            }
-        } else if (rawEvents.isEmpty()) {
+            _eventsResolvedPerPoll.update(0);
+        } else {
             // All events have been resolved
             events = toEvents(uniqueItems.values()).iterator();
             approximateSize = uniqueItems.size();
             eventMeter.mark(approximateSize);
-        } else {
-            // Return an event list which contains the first events which were resolved synchronously plus the
-            // remaining events from the peek or poll which will be resolved lazily in batches of 25.
-
-            final Map<Coordinate, EventList> deferredRawEvents = Maps.newLinkedHashMap(rawEvents);
-            final int initialDeferredLimit = remaining;
-
-            Iterator<Event> deferredEvents = new AbstractIterator<Event>() {
-                private Iterator<Event> currentBatch = Iterators.emptyIterator();
-                private int remaining = initialDeferredLimit;
-
-                @Override
-                protected Event computeNext() {
-                    Event next = null;
-
-                    if (currentBatch.hasNext()) {
-                        next = currentBatch.next();
-                    } else if (!deferredRawEvents.isEmpty() && remaining > 0) {
-                        // Resolve the next batch of events
-                        try {
-                            final List<Item> items = Lists.newArrayList();
-                            do {
-                                resolvePeekOrPollEvents(subscription, deferredRawEvents, Math.min(remaining, 25),
-                                        (coord, item) -> {
-                                            // Unlike with the original batch the deferred batch's events are always
-                                            // already de-duplicated by coordinate, so there is no need to maintain
-                                            // a coordinate-to-item uniqueness map.
-                                            items.add(item);
-                                        });
-
-                                if (!items.isEmpty()) {
-                                    remaining -= items.size();
-                                    currentBatch = toEvents(items).iterator();
-                                    next = currentBatch.next();
-                                }
-                            } while (next == null && !deferredRawEvents.isEmpty() && remaining > 0);
-                        } catch (Exception e) {
-                            // Don't fail; the caller has already received some events.  Just cut the result stream short
-                            // now and throw back any remaining events for a future poll.
-                            _log.warn("Failed to load additional events during peek/poll for subscription {}", subscription, e);
-                        }
-                    }
-
-                    if (next != null) {
-                        return next;
-                    }
-
-                    if (!deferredRawEvents.isEmpty()) {
-                        // If we padded the number of raw events it's possible there are more than the caller actually
-                        // requested.  Release the extra padded events now.
-                        try {
-                            unclaim(subscription, deferredRawEvents.values());
-                        } catch (Exception e) {
-                            // Don't fail, just log a warning.  The claims will eventually time out on their own.
-                            _log.warn("Failed to unclaim {} events from subscription {}", deferredRawEvents.size(), subscription, e);
-                        }
-                    }
-
-                    // Update the metric for the actual number of events returned
-                    eventMeter.mark(limit - remaining);
-
-                    return endOfData();
-                }
-            };
-
-            events = Iterators.concat(toEvents(uniqueItems.values()).iterator(), deferredEvents);
-            approximateSize = uniqueItems.size() + deferredRawEvents.size();
+            _eventsResolvedPerPoll.update(approximateSize);
         }
 
         // Try draining the queue asynchronously if there are still more events available and more redundant events were
@@ -656,6 +664,9 @@ public class DefaultDatabus implements OwnerAwareDatabus, DatabusEventWriter, Ma
         int remaining = limit;
         int itemsDiscarded = 0;
 
+        // Records resolved recently for another subscription's poll which already include this batch's changes
+        List<DataProvider.AnnotatedContent> cachedResults = Lists.newArrayList();
+
         DataProvider.AnnotatedGet annotatedGet = _dataProvider.prepareGetAnnotated(ReadConsistency.STRONG);
         Iterator<Map.Entry<Coordinate, EventList>> rawEventIterator = rawEvents.entrySet().iterator();
 
@@ -663,6 +674,14 @@ public class DefaultDatabus implements OwnerAwareDatabus, DatabusEventWriter, Ma
             Map.Entry<Coordinate, EventList> entry = rawEventIterator.next();
             Coordinate coord = entry.getKey();
 
+            DataProvider.AnnotatedContent cachedResult = _resolvedRecordCache.get(coord, entry.getValue().getChangeIds());
+            if (cachedResult != null) {
+                cachedResults.add(cachedResult);
+                remaining -= 1;
+                eventOrder.put(coord, eventOrder.size());
+                continue;
+            }
+
             // Query the table/key pair.
             try {
                 annotatedGet.add(coord.getTable(), coord.getId());
@@ -679,10 +698,12 @@ public class DefaultDatabus implements OwnerAwareDatabus, DatabusEventWriter, Ma
             // Keep track of the order in which we received the events from the EventStore.
             eventOrder.put(coord, eventOrder.size());
         }
-        Iterator<DataProvider.AnnotatedContent> readResultIter = annotatedGet.execute();
+        int numCachedResults = cachedResults.size();
+        Iterator<DataProvider.AnnotatedContent> readResultIter =
+                Iterators.concat(cachedResults.iterator(), annotatedGet.execute());
 
-        // Loop through the results of the data store query.
-        while (readResultIter.hasNext()) {
+        // Loop through the cached results followed by the results of the data store query.
+        for (int resultIndex = 0; readResultIter.hasNext(); resultIndex++) {
             DataProvider.AnnotatedContent readResult = readResultIter.next();
 
             // Get the JSON System of Record entity for this piece of content
@@ -692,6 +713,11 @@ public class DefaultDatabus implements OwnerAwareDatabus, DatabusEventWriter, Ma
             Coordinate coord = Coordinate.fromJson(content);
             EventList eventList = rawEvents.get(coord);
 
+            if (resultIndex >= numCachedResults) {
+                // Make the record available to polls of other subscriptions with events for the same change
+                _resolvedRecordCache.put(coord, readResult, content);
+            }
+
             // Get all databus event tags for the original event(s) for this coordinate
             List<List<String>> tags = eventList.getTags();
 
@@ -759,6 +785,226 @@ public class DefaultDatabus implements OwnerAwareDatabus, DatabusEventWriter, Ma
         void accept(Coordinate coordinate, Item item);
     }
 
+    /**
+     * Iterator over the events from a peek or poll.  The raw events are split into batches of records in the same
+     * placement and up to <code>_maxConcurrentResolveBatches</code> batches are resolved concurrently.  The peek or
+     * poll waits for the first batches using {@link #pollResolvedBatch(long, TimeUnit)} and the rest are returned in
+     * the order their batches complete as the caller reads the iterator.  Any events which aren't returned, such as
+     * when padding produced more events than the caller requested, are unclaimed.
+     */
+    private class DeferredEventIterator extends AbstractIterator<Event> {
+        private final String _subscription;
+        private final Queue<Map<Coordinate, EventList>> _unresolvedBatches;
+        private final CompletionService<ResolvedBatch> _resolvedBatches;
+        private final Meter _eventMeter;
+        private final int _limit;
+        private final AtomicInteger _itemsDiscarded = new AtomicInteger();
+        private int _remaining;
+        private int _batchesInFlight;
+        private int _unresolvedRecordCount;
+        private Iterator<Event> _currentBatch = Iterators.emptyIterator();
+
+        DeferredEventIterator(String subscription, Map<Coordinate, EventList> rawEvents, int limit, Meter eventMeter) {
+            _subscription = subscription;
+            _unresolvedBatches = partitionByPlacement(rawEvents);
+            _resolvedBatches = new ExecutorCompletionService<>(_pollResolveService);
+            _eventMeter = eventMeter;
+            _limit = limit;
+            _remaining = limit;
+            _unresolvedRecordCount = rawEvents.size();
+        }
+
+        boolean hasUnresolvedBatches() {
+            return _batchesInFlight > 0 || !_unresolvedBatches.isEmpty();
+        }
+
+        /** Returns the number of records in batches which are still being resolved or haven't been started. */
+        int getUnresolvedRecordCount() {
+            return _unresolvedRecordCount;
+        }
+
+        /** Returns the number of redundant events discarded by the batches resolved so far. */
+        int getItemsDiscarded() {
+            return _itemsDiscarded.get();
+        }
+
+        /** Sets the number of events which may still be returned after the items the peek or poll already resolved. */
+        void setRemaining(int remaining) {
+            _remaining = remaining;
+        }
+
+        /**
+         * Starts resolving batches up to the concurrency limit and returns the items from the first batch which
+         * completes, or null if no batch completes within the timeout.
+         */
+        @Nullable
+        List<Item> pollResolvedBatch(long timeout, TimeUnit unit) throws InterruptedException {
+            submitBatches();
+            Future<ResolvedBatch> future = _resolvedBatches.poll(timeout, unit);
+            return future != null ? getItems(future) : null;
+        }
+
+        @Override
+        protected Event computeNext() {
+            if (_currentBatch.hasNext()) {
+                return _currentBatch.next();
+            }
+
+            try {
+                while (_remaining > 0 && hasUnresolvedBatches()) {
+                    submitBatches();
+
+                    List<Item> items = takeResolvedBatch();
+                    if (items.isEmpty()) {
+                        continue;
+                    }
+                    if (items.size() > _remaining) {
+                        // Return the items in event order and release the rest
+                        Collections.sort(items);
+                        unclaimItems(items.subList(_remaining, items.size()));
+                        items = items.subList(0, _remaining);
+                    }
+                    _remaining -= items.size();
+                    _currentBatch = toEvents(items).iterator();
+                    return _currentBatch.next();
+                }
+            } catch (Exception e) {
+                if (e instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                }
+                // Don't fail; the caller has already received some events.  Just cut the result stream short
+                // now and throw back any remaining events for a future poll.
+                _log.warn("Failed to load additional events during peek/poll for subscription {}", _subscription, e);
+            }
+
+            try {
+                releaseRemainingEvents();
+            } catch (Exception e) {
+                // Don't fail, just log a warning.  The claims will eventually time out on their own.
+                _log.warn("Failed to unclaim remaining events from subscription {}", _subscription, e);
+            }
+
+            // Update the metrics for the actual number of events returned
+            _eventMeter.mark(_limit - _remaining);
+            _eventsResolvedPerPoll.update(_limit - _remaining);
+
+            return endOfData();
+        }
+
+        private void submitBatches() {
+            while (_batchesInFlight < _maxConcurrentResolveBatches && !_unresolvedBatches.isEmpty()) {
+                submitBatch(_unresolvedBatches.remove());
+            }
+        }
+
+        private void submitBatch(final Map<Coordinate, EventList> batch) {
+            final int recordCount = batch.size();
+            _resolvedBatches.submit(() -> {
+                List<Item> items = Lists.newArrayList();
+                try (Timer.Context ignored = _deferredResolveTimer.time()) {
+                    // Each coordinate appears in only one batch, so there is no need to maintain a coordinate-to-item
+                    // uniqueness map.
+                    _itemsDiscarded.addAndGet(
+                            resolvePeekOrPollEvents(_subscription, batch, batch.size(), (coord, item) -> items.add(item)));
+                } catch (Exception e) {
+                    // Release this batch's events for a future poll and let the other batches continue.
+                    _log.warn("Failed to load additional events during peek/poll for subscription {}", _subscription, e);
+                    unclaim(_subscription, batch.values());
+                    return new ResolvedBatch(recordCount, ImmutableList.<Item>of());
+                }
+                return new ResolvedBatch(recordCount, items);
+            });
+            _batchesInFlight += 1;
+        }
+
+        private List<Item> takeResolvedBatch() throws InterruptedException {
+            Future<ResolvedBatch> future;
+            try (Timer.Context ignored = _deferredWaitTimer.time()) {
+                future = _resolvedBatches.take();
+            }
+            return getItems(future);
+        }
+
+        private List<Item> getItems(Future<ResolvedBatch> completed) {
+            // Resolving a batch handles its own exceptions, so only errors propagate
+            ResolvedBatch batch = Futures.getUnchecked(completed);
+            _batchesInFlight -= 1;
+            _unresolvedRecordCount -= batch.recordCount;
+            return batch.items;
+        }
+
+        private void releaseRemainingEvents() throws Exception {
+            List<EventList> unresolved = Lists.newArrayList();
+            for (Map<Coordinate, EventList> batch : _unresolvedBatches) {
+                unresolved.addAll(batch.values());
+                _unresolvedRecordCount -= batch.size();
+            }
+            _unresolvedBatches.clear();
+            if (!unresolved.isEmpty()) {
+                unclaim(_subscription, unresolved);
+            }
+
+            // Wait for batches which are still being resolved so their events can be released too
+            while (_batchesInFlight > 0) {
+                unclaimItems(takeResolvedBatch());
+            }
+        }
+
+        private void unclaimItems(List<Item> items) {
+            if (!items.isEmpty()) {
+                List<String> eventIds = Lists.newArrayList();
+                for (Item item : items) {
+                    eventIds.addAll(item.getEventIds());
+                }
+                _eventStore.renew(_subscription, eventIds, Duration.ZERO, false);
+            }
+        }
+    }
+
+    /** Items resolved from a batch of raw events, along with the number of records in the batch. */
+    private static class ResolvedBatch {
+        final int recordCount;
+        final List<Item> items;
+
+        ResolvedBatch(int recordCount, List<Item> items) {
+            this.recordCount = recordCount;
+            this.items = items;
+        }
+    }
+
+    /**
+     * Splits raw events into batches of at most <code>_resolveBatchSize</code> records such that all records in a
+     * batch are in the same placement and can be read by a single multi-get.
+     */
+    private Queue<Map<Coordinate, EventList>> partitionByPlacement(Map<Coordinate, EventList> rawEvents) {
+        Queue<Map<Coordinate, EventList>> batches = Queues.newArrayDeque();
+        Map<String, Map<Coordinate, EventList>> batchByPlacement = Maps.newLinkedHashMap();
+        Map<String, String> placementByTable = Maps.newHashMap();
+
+        for (Map.Entry<Coordinate, EventList> entry : rawEvents.entrySet()) {
+            String placement = placementByTable.computeIfAbsent(entry.getKey().getTable(), this::getPlacement);
+            Map<Coordinate, EventList> batch = batchByPlacement.computeIfAbsent(placement, key -> Maps.newLinkedHashMap());
+            batch.put(entry.getKey(), entry.getValue());
+            if (batch.size() >= _resolveBatchSize) {
+                batches.add(batch);
+                batchByPlacement.remove(placement);
+            }
+        }
+        batches.addAll(batchByPlacement.values());
+        return batches;
+    }
+
+    private String getPlacement(String tableName) {
+        try {
+            Table table = _dataProvider.getTable(tableName);
+            TableAvailability availability = table.getAvailability();
+            return availability != null ? availability.getPlacement() : table.getOptions().getPlacement();
+        } catch (UnknownTableException e) {
+            // The table was dropped since the event was queued.  Resolving the batch discards the events.
+            return "";
+        }
+    }
+
     /**
      * Converts a collection of Items to Events.
      */
@@ -934,7 +1180,7 @@ public class DefaultDatabus implements OwnerAwareDatabus, DatabusEventWriter, Ma
         // AnnotatedContent.isChangeDeltaPending() and isChangeDeltaRedundant() will always return false.
         checkSubscriptionOwner(ownerId, subscription);
         UpdateRef ref = new UpdateRef(table, key, TimeUUIDs.minimumUuid(), ImmutableSet.<String>of());
-        _eventStore.add(subscription, UpdateRefSerializer.toByteBuffer(ref));
+        _eventStore.add(subscription, UpdateRefSerializer.toByteBuffer(ref, _updateRefFormat));
     }
 
     @Override
@@ -1161,6 +1407,10 @@ public class DefaultDatabus implements OwnerAwareDatabus, DatabusEventWriter, Ma
             return _eventAndChangeIds;
         }
 
+        List<UUID> getChangeIds() {
+            return Lists.transform(_eventAndChangeIds, Pair::second);
+        }
+
         List<List<String>> getTags() {
             return _tags;
         }
@@ -1206,6 +1456,14 @@ public class DefaultDatabus implements OwnerAwareDatabus, DatabusEventWriter, Ma
             return true;
         }
 
+        List<String> getEventIds() {
+            return _consolidatedEventIds;
+        }
+
+        Coordinate getCoordinate() {
+            return Coordinate.fromJson(_content);
+        }
+
         Event toEvent() {
             Collections.sort(_consolidatedEventIds);
             // Tags are already sorted
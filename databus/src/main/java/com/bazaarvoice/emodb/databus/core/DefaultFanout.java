@@ -5,6 +5,7 @@ import com.bazaarvoice.emodb.common.dropwizard.log.RateLimitedLog;
 import com.bazaarvoice.emodb.common.dropwizard.log.RateLimitedLogFactory;
 import com.bazaarvoice.emodb.common.dropwizard.time.ClockTicker;
 import com.bazaarvoice.emodb.databus.ChannelNames;
+import com.bazaarvoice.emodb.databus.FanoutConfiguration;
 import com.bazaarvoice.emodb.databus.model.OwnedSubscription;
 import com.bazaarvoice.emodb.datacenter.api.DataCenter;
 import com.bazaarvoice.emodb.event.api.EventData;
@@ -52,22 +53,24 @@ import static com.google.common.base.Preconditions.checkNotNull;
 public class DefaultFanout extends AbstractScheduledService {
     private static final Logger _log = LoggerFactory.getLogger(DefaultFanout.class);
 
-    private static final int FLUSH_EVENTS_THRESHOLD = 500;
-
     private final String _name;
     private final EventSource _eventSource;
     private final Function<Multimap<String, ByteBuffer>, Void> _eventSink;
     private final boolean _replicateOutbound;
     private final PartitionSelector _outboundPartitionSelector;
     private final Duration _sleepWhenIdle;
+    private final FanoutBatchController _batchController;
     private final Supplier<Iterable<OwnedSubscription>> _subscriptionsSupplier;
     private final DataCenter _currentDataCenter;
     private final RateLimitedLog _rateLimitedLog;
     private final SubscriptionEvaluator _subscriptionEvaluator;
+    private final SubscriptionMatchIndex _subscriptionMatchIndex;
+    private final SubscriptionMatchCache _subscriptionMatchCache;
     private final Meter _eventsRead;
     private final Meter _eventsWrittenLocal;
     private final Meter _eventsWrittenOutboundReplication;
     private final Meter _subscriptionMatchEvaluations;
+    private final Meter _subscriptionMatchesSkipped;
     private final Timer _totalCopyTimer;
     private final Timer _fetchEventsTimer;
     private final Timer _fetchSubscriptionsTimer;
@@ -90,10 +93,12 @@ public class DefaultFanout extends AbstractScheduledService {
                          Function<Multimap<String, ByteBuffer>, Void> eventSink,
                          @Nullable PartitionSelector outboundPartitionSelector,
                          Duration sleepWhenIdle,
+                         FanoutConfiguration fanoutConfiguration,
                          Supplier<Iterable<OwnedSubscription>> subscriptionsSupplier,
                          DataCenter currentDataCenter,
                          RateLimitedLogFactory logFactory,
                          SubscriptionEvaluator subscriptionEvaluator,
+                         SubscriptionMatchCache subscriptionMatchCache,
                          FanoutLagMonitor fanoutLagMonitor,
                          MetricRegistry metricRegistry, Clock clock) {
         _name = checkNotNull(name, "name");
@@ -103,15 +108,20 @@ public class DefaultFanout extends AbstractScheduledService {
         _replicateOutbound = outboundPartitionSelector != null;
         _outboundPartitionSelector = outboundPartitionSelector;
         _sleepWhenIdle = checkNotNull(sleepWhenIdle, "sleepWhenIdle");
+        _batchController = new FanoutBatchController(fanoutConfiguration, metricRegistry, name, partitionName);
         _subscriptionsSupplier = checkNotNull(subscriptionsSupplier, "subscriptionsSupplier");
         _currentDataCenter = checkNotNull(currentDataCenter, "currentDataCenter");
         _subscriptionEvaluator = checkNotNull(subscriptionEvaluator, "subscriptionEvaluator");
+        _subscriptionMatchCache = checkNotNull(subscriptionMatchCache, "subscriptionMatchCache");
 
         _rateLimitedLog = logFactory.from(_log);
         _eventsRead = newEventMeter("read", metricRegistry);
         _eventsWrittenLocal = newEventMeter("written-local", metricRegistry);
         _eventsWrittenOutboundReplication = newEventMeter("written-outbound-replication", metricRegistry);
         _subscriptionMatchEvaluations = newEventMeter("subscription-match-evaluations", metricRegistry);
+        _subscriptionMatchesSkipped = newEventMeter("subscription-matches-skipped", metricRegistry);
+        _subscriptionMatchIndex = new SubscriptionMatchIndex(_subscriptionEvaluator, _subscriptionMatchEvaluations,
+                _subscriptionMatchesSkipped);
         _totalCopyTimer = metricRegistry.timer(metricName("total-copy"));
         _fetchEventsTimer = metricRegistry.timer(metricName("fetch-events"));
         _fetchSubscriptionsTimer = metricRegistry.timer(metricName("fetch-subscriptions"));
@@ -128,7 +138,7 @@ public class DefaultFanout extends AbstractScheduledService {
         ServiceFailureListener.listenTo(this, metricRegistry);
 
         _fanoutPool = Executors.newFixedThreadPool(
-            8,
+            _batchController.getMaxPartitions(),
             new ThreadFactoryBuilder().setDaemon(true).setNameFormat("fanout-%d").build()
         );
     }
@@ -164,21 +174,23 @@ public class DefaultFanout extends AbstractScheduledService {
 
     @Override
     protected void shutDown() throws Exception {
-        // Leadership lost, stop posting fanout lag
+        // Leadership lost, stop posting fanout lag and batch sizes
         _lagGauge.close();
+        _batchController.close();
     }
 
     private boolean copyEvents() {
         try (Timer.Context ignored = _totalCopyTimer.time()) {
             // Use peek() not poll() since LeaderSelector ensures we're not competing with other processes for claims.
             final Timer.Context peekTime = _fetchEventsTimer.time();
-            List<EventData> rawEvents = _eventSource.get(1000);
+            List<EventData> rawEvents = _eventSource.get(_batchController.getBatchSize());
             peekTime.stop();
 
             // If no events, sleep a little while before doing any more work to allow new events to arrive.
             if (rawEvents.isEmpty()) {
                 // Update the lag metrics to indicate there is no lag
                 updateLagMetrics(null);
+                _batchController.update(0, 0);
                 return false;
             }
 
@@ -193,15 +205,18 @@ public class DefaultFanout extends AbstractScheduledService {
         // Read the list of subscriptions *after* reading events from the event store to avoid race conditions with
         // creating a new subscription.
         final Timer.Context subTime = _fetchSubscriptionsTimer.time();
-        Iterable<OwnedSubscription> subscriptions = _subscriptionsSupplier.get();
+        final Iterable<OwnedSubscription> subscriptions = _subscriptionsSupplier.get();
+        _subscriptionMatchIndex.refresh(subscriptions);
         subTime.stop();
 
         List<Date> lastMatchEventBatchTimes = Collections.synchronizedList(Lists.newArrayList());
-        
+        final int flushThreshold = _batchController.getFlushThreshold();
+        int partitions = _batchController.getPartitions(rawEvents.size());
+
         try(final Timer.Context ignored = _e2eFanoutTimer.time()) {
             final List<Future<?>> futures = new LinkedList<>();
             // Copy the events to all the destination channels.
-            for (final List<EventData> rawEventPartition : Lists.partition(rawEvents, (int) Math.ceil(1.0 * rawEvents.size() / 8))) {
+            for (final List<EventData> rawEventPartition : Lists.partition(rawEvents, (int) Math.ceil(1.0 * rawEvents.size() / partitions))) {
                 futures.add(_fanoutPool.submit(() -> {
                     try {
                         // multimap is not threadsafe
@@ -230,17 +245,16 @@ public class DefaultFanout extends AbstractScheduledService {
 
                                 eventKeys.add(rawEvent.getId());
 
-                                // Copy to subscriptions in the current data center.
+                                // Copy to subscriptions in the current data center.  Matches are cached per table
+                                // and tags, and on a miss the match index only evaluates the table filters of
+                                // subscriptions which could possibly match.
                                 Timer.Context matchTime = _matchSubscriptionsTimer.time();
-                                int subscriptionCount = 0;
-                                for (OwnedSubscription subscription : subscriptions) {
-                                    subscriptionCount += 1;
-                                    if (_subscriptionEvaluator.matches(subscription, matchEventData)) {
-                                        eventsByChannel.put(subscription.getName(), eventData);
-                                    }
+                                final SubscriptionEvaluator.MatchEventData eventToMatch = matchEventData;
+                                for (OwnedSubscription subscription : _subscriptionMatchCache.getMatches(subscriptions, matchEventData,
+                                        () -> _subscriptionMatchIndex.getMatches(eventToMatch))) {
+                                    eventsByChannel.put(subscription.getName(), eventData);
                                 }
                                 matchTime.stop();
-                                _subscriptionMatchEvaluations.mark(subscriptionCount);
 
                                 // Copy to queues for eventual delivery to remote data centers.
                                 try (Timer.Context ignored4 = _replicateTimer.time()) {
@@ -257,7 +271,7 @@ public class DefaultFanout extends AbstractScheduledService {
                                 }
 
                                 // Flush to cap the amount of memory used to buffer events.
-                                if (eventsByChannel.size() >= FLUSH_EVENTS_THRESHOLD) {
+                                if (eventsByChannel.size() >= flushThreshold) {
                                     flush(eventKeys, eventsByChannel, numOutboundReplicationEvents);
                                     numOutboundReplicationEvents = 0;
                                 }
@@ -294,15 +308,19 @@ public class DefaultFanout extends AbstractScheduledService {
             // 3. Injected events are extremely rare and should be avoided outside of testing anyway
             // 4. The lag only becomes a concern on the scale of minutes, far above the uncertainty introduced by the above
             Date lastMatchEventTime = lastMatchEventBatchTimes.stream().max(Date::compareTo).orElse(null);
+            int lagSeconds = 0;
             if (lastMatchEventTime != null) {
-                updateLagMetrics(lastMatchEventTime);
+                lagSeconds = updateLagMetrics(lastMatchEventTime);
             }
+
+            // Adapt how many events are read, copied in parallel and buffered in the next iteration
+            _batchController.update(rawEvents.size(), lagSeconds);
         }
 
         return true;
     }
 
-    private void updateLagMetrics(@Nullable Date eventTime) {
+    private int updateLagMetrics(@Nullable Date eventTime) {
         int lagSeconds = eventTime == null ? 0 : (int) TimeUnit.MILLISECONDS.toSeconds(_clock.millis() - eventTime.getTime());
         // As a performance savings only update the metric if both of the following are true:
         // 1. It has been more than 5 seconds since the last time the metric was updated
@@ -313,13 +331,16 @@ public class DefaultFanout extends AbstractScheduledService {
             _lastLagSeconds = lagSeconds;
             _lastLagStopwatch.reset().start();
         }
+        return lagSeconds;
     }
 
     private void flush(List<String> eventKeys, Multimap<String, ByteBuffer> eventsByChannel,
                        int numOutboundReplicationEvents) {
         try (Timer.Context ignore = _eventFlushTimer.time()) {
             if (!eventsByChannel.isEmpty()) {
+                long start = System.nanoTime();
                 _eventSink.apply(eventsByChannel);
+                _batchController.recordFlush(System.nanoTime() - start);
                 _eventsWrittenLocal.mark(eventsByChannel.size() - numOutboundReplicationEvents);
                 _eventsWrittenOutboundReplication.mark(numOutboundReplicationEvents);
                 eventsByChannel.clear();
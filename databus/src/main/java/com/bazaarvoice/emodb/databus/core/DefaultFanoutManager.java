@@ -9,9 +9,13 @@ import com.bazaarvoice.emodb.common.zookeeper.leader.PartitionedLeaderService;
 import com.bazaarvoice.emodb.databus.ChannelNames;
 import com.bazaarvoice.emodb.databus.DataCenterFanoutPartitions;
 import com.bazaarvoice.emodb.databus.DatabusZooKeeper;
+import com.bazaarvoice.emodb.databus.FanoutConfiguration;
 import com.bazaarvoice.emodb.databus.MasterFanoutPartitions;
+import com.bazaarvoice.emodb.databus.ReplicationConfiguration;
+import com.bazaarvoice.emodb.databus.ReplicationExecutorService;
 import com.bazaarvoice.emodb.databus.db.SubscriptionDAO;
 import com.bazaarvoice.emodb.databus.model.OwnedSubscription;
+import com.bazaarvoice.emodb.databus.repl.PipelinedReplicationEventSource;
 import com.bazaarvoice.emodb.databus.repl.ReplicationEventSource;
 import com.bazaarvoice.emodb.databus.repl.ReplicationSource;
 import com.bazaarvoice.emodb.datacenter.api.DataCenter;
@@ -31,6 +35,7 @@ import javax.annotation.Nullable;
 import java.nio.ByteBuffer;
 import java.time.Clock;
 import java.time.Duration;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -47,26 +52,38 @@ public class DefaultFanoutManager implements FanoutManager {
     private final LeaderServiceTask _dropwizardTask;
     private final RateLimitedLogFactory _logFactory;
     private final SubscriptionEvaluator _subscriptionEvaluator;
+    private final SubscriptionMatchCache _subscriptionMatchCache;
+    private final EventArrivalNotifier _eventArrivalNotifier;
     private final int _masterFanoutPartitions;
     private final int _dataCenterFanoutPartitions;
     private final PartitionSelector _dataCenterFanoutPartitionSelector;
     private final FanoutLagMonitor _fanoutLagMonitor;
+    private final FanoutConfiguration _fanoutConfiguration;
+    private final ReplicationConfiguration _replicationConfiguration;
+    private final ExecutorService _replicationService;
+    private final UpdateRefSerializer.Format _updateRefFormat;
     private final MetricRegistry _metricRegistry;
     private final Clock _clock;
 
     @Inject
     public DefaultFanoutManager(final EventStore eventStore, final SubscriptionDAO subscriptionDao,
-                                SubscriptionEvaluator subscriptionEvaluator, DataCenters dataCenters,
+                                SubscriptionEvaluator subscriptionEvaluator, SubscriptionMatchCache subscriptionMatchCache,
+                                EventArrivalNotifier eventArrivalNotifier, DataCenters dataCenters,
                                 @DatabusZooKeeper CuratorFramework curator, @SelfHostAndPort HostAndPort self,
                                 @MasterFanoutPartitions int masterFanoutPartitions,
                                 @DataCenterFanoutPartitions int dataCenterFanoutPartitions,
                                 @DataCenterFanoutPartitions PartitionSelector dataCenterFanoutPartitionSelector,
-                                FanoutLagMonitor fanoutLagMonitor,
+                                FanoutLagMonitor fanoutLagMonitor, FanoutConfiguration fanoutConfiguration,
+                                ReplicationConfiguration replicationConfiguration,
+                                @ReplicationExecutorService ExecutorService replicationService,
+                                UpdateRefSerializer.Format updateRefFormat,
                                 LeaderServiceTask dropwizardTask, RateLimitedLogFactory logFactory,
                                 MetricRegistry metricRegistry, Clock clock) {
         _eventStore = checkNotNull(eventStore, "eventStore");
         _subscriptionDao = checkNotNull(subscriptionDao, "subscriptionDao");
         _subscriptionEvaluator = checkNotNull(subscriptionEvaluator, "subscriptionEvaluator");
+        _subscriptionMatchCache = checkNotNull(subscriptionMatchCache, "subscriptionMatchCache");
+        _eventArrivalNotifier = checkNotNull(eventArrivalNotifier, "eventArrivalNotifier");
         _dataCenters = checkNotNull(dataCenters, "dataCenters");
         _curator = checkNotNull(curator, "curator");
         _selfId = checkNotNull(self, "self").toString();
@@ -76,6 +93,10 @@ public class DefaultFanoutManager implements FanoutManager {
         _dataCenterFanoutPartitions = dataCenterFanoutPartitions;
         _dataCenterFanoutPartitionSelector = checkNotNull(dataCenterFanoutPartitionSelector, "dataCenterFanoutPartitionSelector");
         _fanoutLagMonitor = checkNotNull(fanoutLagMonitor, "fanoutLagMonitor");
+        _fanoutConfiguration = checkNotNull(fanoutConfiguration, "fanoutConfiguration");
+        _replicationConfiguration = checkNotNull(replicationConfiguration, "replicationConfiguration");
+        _replicationService = checkNotNull(replicationService, "replicationService");
+        _updateRefFormat = checkNotNull(updateRefFormat, "updateRefFormat");
         _metricRegistry = metricRegistry;
         _clock = clock;
     }
@@ -89,9 +110,16 @@ public class DefaultFanoutManager implements FanoutManager {
 
     @Override
     public Managed newInboundReplicationFanout(DataCenter dataCenter, ReplicationSource replicationSource) {
-        PartitionEventSourceSupplier eventSourceSupplier = partition ->
-                new ReplicationEventSource(replicationSource, ChannelNames.getReplicationFanoutChannel(_dataCenters.getSelf(), partition));
-        return create("in-" + dataCenter.getName(), eventSourceSupplier, null, REMOTE_DC_SLEEP_WHEN_IDLE, _dataCenterFanoutPartitions);
+        String name = "in-" + dataCenter.getName();
+        PartitionEventSourceSupplier eventSourceSupplier = partition -> {
+            String channel = ChannelNames.getReplicationFanoutChannel(_dataCenters.getSelf(), partition);
+            if (!_replicationConfiguration.isBatched()) {
+                return new ReplicationEventSource(replicationSource, channel, _updateRefFormat);
+            }
+            return new PipelinedReplicationEventSource(replicationSource, channel, _replicationConfiguration.getClaimTtl(),
+                    _replicationService, _updateRefFormat, _metricRegistry, name, "partition-" + partition);
+        };
+        return create(name, eventSourceSupplier, null, REMOTE_DC_SLEEP_WHEN_IDLE, _dataCenterFanoutPartitions);
     }
 
     private Managed create(final String name, final PartitionEventSourceSupplier eventSourceSupplier,
@@ -99,6 +127,8 @@ public class DefaultFanoutManager implements FanoutManager {
                            final int partitions) {
         final Function<Multimap<String, ByteBuffer>, Void> eventSink = eventsByChannel -> {
             _eventStore.addAll(eventsByChannel);
+            // Wake any long polls waiting on the subscriptions now that their events are durable
+            _eventArrivalNotifier.eventsAdded(eventsByChannel.keySet());
             return null;
         };
 
@@ -109,8 +139,9 @@ public class DefaultFanoutManager implements FanoutManager {
                 _selfId, "PartitionedLeaderSelector-" + name, partitions, 1,  1, TimeUnit.MINUTES,
                 partition -> new DefaultFanout(name, "partition-" + partition,
                         eventSourceSupplier.createEventSourceForPartition(partition),
-                        eventSink, outboundPartitionSelector, sleepWhenIdle, subscriptionsSupplier, _dataCenters.getSelf(),
-                        _logFactory, _subscriptionEvaluator, _fanoutLagMonitor, _metricRegistry, _clock),
+                        eventSink, outboundPartitionSelector, sleepWhenIdle, _fanoutConfiguration,
+                        subscriptionsSupplier, _dataCenters.getSelf(),
+                        _logFactory, _subscriptionEvaluator, _subscriptionMatchCache, _fanoutLagMonitor, _metricRegistry, _clock),
                 _clock);
 
         for (LeaderService leaderService : partitionedLeaderService.getPartitionLeaderServices()) {
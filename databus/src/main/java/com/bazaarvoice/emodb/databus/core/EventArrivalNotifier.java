@@ -0,0 +1,214 @@
+package com.bazaarvoice.emodb.databus.core;
+
+import com.bazaarvoice.emodb.common.dropwizard.discovery.Payload;
+import com.bazaarvoice.emodb.common.dropwizard.guice.SelfHostAndPort;
+import com.bazaarvoice.emodb.common.dropwizard.lifecycle.LifeCycleRegistry;
+import com.bazaarvoice.emodb.common.dropwizard.log.RateLimitedLog;
+import com.bazaarvoice.emodb.common.dropwizard.log.RateLimitedLogFactory;
+import com.bazaarvoice.emodb.databus.ChannelNames;
+import com.bazaarvoice.emodb.databus.DatabusHostDiscovery;
+import com.bazaarvoice.ostrich.HostDiscovery;
+import com.bazaarvoice.ostrich.PartitionContextBuilder;
+import com.bazaarvoice.ostrich.ServiceEndPoint;
+import com.bazaarvoice.ostrich.partition.ConsistentHashPartitionFilter;
+import com.bazaarvoice.ostrich.partition.PartitionFilter;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Maps;
+import com.google.common.collect.SetMultimap;
+import com.google.common.net.HostAndPort;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import com.sun.jersey.api.client.Client;
+import com.sun.jersey.api.representation.Form;
+import io.dropwizard.lifecycle.Managed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.UriBuilder;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Notifies listeners waiting on a subscription, typically long polling requests, when new events are written to it so
+ * they can poll again immediately instead of waiting for their next scheduled retry.
+ * <p>
+ * Partition-aware databus clients send polls for a subscription to the server which owns the subscription as computed
+ * by Ostrich consistent hashing, so that is where long polls usually wait.  Events, however, are written by the fanout
+ * on whichever server owns the fanout partition.  Listeners on the local server are notified immediately, and
+ * subscriptions owned by other servers are collected and periodically forwarded to the owning server's
+ * {@link EventArrivalTask}.  Notifications are best effort; a listener which misses one still finds the events the
+ * next time it polls.
+ */
+public class EventArrivalNotifier implements Managed {
+    private static final Logger _log = LoggerFactory.getLogger(EventArrivalNotifier.class);
+
+    private static final Duration SEND_INTERVAL = Duration.ofMillis(50);
+
+    private final HostDiscovery _hostDiscovery;
+    private final String _selfId;
+    private final Client _client;
+    private final RateLimitedLog _rateLimitedLog;
+    private final PartitionFilter _partitionFilter = new ConsistentHashPartitionFilter();
+    private final ConcurrentMap<String, Set<Runnable>> _listeners = Maps.newConcurrentMap();
+    private final Meter _localNotifications;
+    private final Meter _remoteNotifications;
+    private final Meter _remoteFailures;
+
+    // Subscriptions with new events which are owned by other servers, keyed by the owner's admin URL
+    private SetMultimap<URI, String> _pending = HashMultimap.create();
+    private ScheduledExecutorService _service;
+
+    @Inject
+    public EventArrivalNotifier(@DatabusHostDiscovery HostDiscovery hostDiscovery,
+                                @SelfHostAndPort HostAndPort self,
+                                Client client,
+                                RateLimitedLogFactory logFactory,
+                                LifeCycleRegistry lifeCycle,
+                                MetricRegistry metricRegistry) {
+        _hostDiscovery = checkNotNull(hostDiscovery, "hostDiscovery");
+        _selfId = checkNotNull(self, "self").toString();
+        _client = checkNotNull(client, "client");
+        _rateLimitedLog = logFactory.from(_log);
+        _localNotifications = metricRegistry.meter(getMetricName("local-notifications"));
+        _remoteNotifications = metricRegistry.meter(getMetricName("remote-notifications"));
+        _remoteFailures = metricRegistry.meter(getMetricName("remote-notification-failures"));
+        lifeCycle.manage(this);
+    }
+
+    @Override
+    public void start() throws Exception {
+        _service = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("databus-event-arrival-%d").setDaemon(true).build());
+        _service.scheduleWithFixedDelay(this::sendPendingNotifications,
+                SEND_INTERVAL.toMillis(), SEND_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void stop() throws Exception {
+        _service.shutdownNow();
+    }
+
+    /**
+     * Registers a listener which is called each time events are written to the subscription until it is removed.
+     * The listener is called on the thread which wrote the events or received the notification, so it must not block.
+     */
+    public void addListener(String subscription, Runnable listener) {
+        checkNotNull(subscription, "subscription");
+        checkNotNull(listener, "listener");
+        // Add within compute() so a concurrent removal can't discard the set after it's been looked up
+        _listeners.compute(subscription, (key, listeners) -> {
+            if (listeners == null) {
+                listeners = new CopyOnWriteArraySet<>();
+            }
+            listeners.add(listener);
+            return listeners;
+        });
+    }
+
+    public void removeListener(String subscription, Runnable listener) {
+        _listeners.computeIfPresent(subscription, (key, listeners) -> {
+            listeners.remove(listener);
+            return listeners.isEmpty() ? null : listeners;
+        });
+    }
+
+    /**
+     * Called after events have been written to the specified channels.  System channels are ignored since they are
+     * only read by internal processes which don't long poll.
+     */
+    public void eventsAdded(Collection<String> channels) {
+        Iterable<ServiceEndPoint> hosts = _hostDiscovery.getHosts();
+        boolean hasHosts = !Iterables.isEmpty(hosts);
+
+        for (String subscription : channels) {
+            if (ChannelNames.isSystemChannel(subscription)) {
+                continue;
+            }
+
+            // Long polls normally wait on the subscription owner, but a non-partition-aware client may have landed
+            // on any server, so always check for local listeners.
+            notifyListeners(subscription);
+
+            if (hasHosts) {
+                ServiceEndPoint owner = Iterables.getOnlyElement(
+                        _partitionFilter.filter(hosts, PartitionContextBuilder.of(subscription)));
+                if (!_selfId.equals(owner.getId())) {
+                    URI adminUrl = Payload.valueOf(owner.getPayload()).getAdminUrl();
+                    synchronized (this) {
+                        _pending.put(adminUrl, subscription);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Called when another server forwards notifications for subscriptions owned by this server.
+     */
+    public void eventsArrived(Collection<String> subscriptions) {
+        for (String subscription : subscriptions) {
+            notifyListeners(subscription);
+        }
+    }
+
+    private void notifyListeners(String subscription) {
+        Set<Runnable> listeners = _listeners.get(subscription);
+        if (listeners == null) {
+            return;
+        }
+        for (Runnable listener : listeners) {
+            try {
+                listener.run();
+                _localNotifications.mark();
+            } catch (Exception e) {
+                _log.warn("Event arrival listener failed for subscription {}", subscription, e);
+            }
+        }
+    }
+
+    private void sendPendingNotifications() {
+        SetMultimap<URI, String> pending;
+        synchronized (this) {
+            if (_pending.isEmpty()) {
+                return;
+            }
+            pending = _pending;
+            _pending = HashMultimap.create();
+        }
+
+        for (Map.Entry<URI, Collection<String>> entry : pending.asMap().entrySet()) {
+            URI taskUrl = UriBuilder.fromUri(entry.getKey()).path("/tasks/" + EventArrivalTask.NAME).build();
+            Form form = new Form();
+            form.put(EventArrivalTask.SUBSCRIPTION_PARAM, ImmutableList.copyOf(entry.getValue()));
+            try {
+                // No retries.  If the owner can't be reached its long polls fall back to their scheduled retries.
+                _client.resource(taskUrl)
+                        .type(MediaType.APPLICATION_FORM_URLENCODED_TYPE)
+                        .post(form);
+                _remoteNotifications.mark(entry.getValue().size());
+            } catch (Exception e) {
+                _remoteFailures.mark();
+                _rateLimitedLog.error(e, "Failed to forward event arrival notifications to {}", taskUrl);
+            }
+        }
+    }
+
+    private static String getMetricName(String name) {
+        return MetricRegistry.name("bv.emodb.databus", "EventArrivalNotifier", name);
+    }
+}
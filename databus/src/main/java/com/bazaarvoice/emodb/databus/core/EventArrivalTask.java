@@ -0,0 +1,42 @@
+package com.bazaarvoice.emodb.databus.core;
+
+import com.bazaarvoice.emodb.common.dropwizard.task.TaskRegistry;
+import com.google.common.collect.ImmutableMultimap;
+import com.google.inject.Inject;
+import io.dropwizard.servlets.tasks.Task;
+
+import java.io.PrintWriter;
+import java.util.Collection;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Task used by {@link EventArrivalNotifier} on other servers to notify listeners on this server that new events
+ * were written to subscriptions this server owns.
+ * <p>
+ * Invoke this task as follows:
+ * <pre>
+ *   curl -s -XPOST "http://localhost:8081/tasks/databus-event-arrival?subscription=foo&subscription=bar"
+ * </pre>
+ */
+public class EventArrivalTask extends Task {
+
+    public static final String NAME = "databus-event-arrival";
+    public static final String SUBSCRIPTION_PARAM = "subscription";
+
+    private final EventArrivalNotifier _notifier;
+
+    @Inject
+    public EventArrivalTask(TaskRegistry tasks, EventArrivalNotifier notifier) {
+        super(NAME);
+        _notifier = checkNotNull(notifier, "notifier");
+        tasks.addTask(this);
+    }
+
+    @Override
+    public void execute(ImmutableMultimap<String, String> parameters, PrintWriter out) {
+        Collection<String> subscriptions = parameters.get(SUBSCRIPTION_PARAM);
+        _notifier.eventsArrived(subscriptions);
+        out.println("Notified " + subscriptions.size() + " subscription(s)");
+    }
+}
@@ -0,0 +1,134 @@
+package com.bazaarvoice.emodb.databus.core;
+
+import com.bazaarvoice.emodb.common.dropwizard.metrics.MetricsGroup;
+import com.bazaarvoice.emodb.databus.FanoutConfiguration;
+import com.codahale.metrics.MetricRegistry;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Decides how many events a fanout reads per iteration, how many threads the events are split across and how many
+ * events are buffered before being written, within the bounds from {@link FanoutConfiguration}.
+ * <p>
+ * The fanout is considered behind if it reads a full batch or its lag exceeds the configured threshold.  While
+ * behind the batch size and flush threshold grow so each iteration and each write to the event store amortizes more
+ * overhead.  If writes to the event store are slower than the target latency both shrink instead, since larger
+ * writes would only add load to an event store which is already struggling.  Once the fanout catches up the batch
+ * size decays back towards the minimum.  The number of partitions scales with the number of events read so small
+ * batches aren't spread across many threads for little benefit.
+ * <p>
+ * {@link #recordFlush(long)} may be called from any thread; all other methods are called from the fanout thread.
+ */
+public class FanoutBatchController {
+
+    private static final int INITIAL_BATCH_SIZE = 1000;
+    private static final int INITIAL_FLUSH_THRESHOLD = 500;
+    private static final int MIN_EVENTS_PER_PARTITION = 50;
+
+    private final int _minBatchSize;
+    private final int _maxBatchSize;
+    private final int _maxPartitions;
+    private final int _minFlushThreshold;
+    private final int _maxFlushThreshold;
+    private final long _targetFlushLatencyNanos;
+    private final long _lagThresholdSeconds;
+    private final String _fanoutName;
+    private final String _partitionName;
+    private final MetricsGroup _gauges;
+    private final AtomicLong _flushNanos = new AtomicLong();
+    private final AtomicLong _flushCount = new AtomicLong();
+    private volatile int _batchSize;
+    private volatile int _flushThreshold;
+    private int _partitions = 1;
+
+    public FanoutBatchController(FanoutConfiguration configuration, MetricRegistry metricRegistry,
+                                 String fanoutName, String partitionName) {
+        checkNotNull(configuration, "configuration");
+        _minBatchSize = configuration.getMinBatchSize();
+        _maxBatchSize = configuration.getMaxBatchSize();
+        _maxPartitions = configuration.getMaxPartitions();
+        _minFlushThreshold = configuration.getMinFlushThreshold();
+        _maxFlushThreshold = configuration.getMaxFlushThreshold();
+        _targetFlushLatencyNanos = configuration.getTargetFlushLatency().toNanos();
+        _lagThresholdSeconds = configuration.getLagThreshold().getSeconds();
+        _fanoutName = checkNotNull(fanoutName, "fanoutName");
+        _partitionName = checkNotNull(partitionName, "partitionName");
+        _gauges = new MetricsGroup(metricRegistry);
+
+        _batchSize = clamp(INITIAL_BATCH_SIZE, _minBatchSize, _maxBatchSize);
+        _flushThreshold = clamp(INITIAL_FLUSH_THRESHOLD, _minFlushThreshold, _maxFlushThreshold);
+        updateGauges();
+    }
+
+    public int getMaxPartitions() {
+        return _maxPartitions;
+    }
+
+    /** Returns the number of events to read in the next iteration. */
+    public int getBatchSize() {
+        return _batchSize;
+    }
+
+    /** Returns the number of buffered events which should trigger writing to the destination channels. */
+    public int getFlushThreshold() {
+        return _flushThreshold;
+    }
+
+    /** Returns the number of partitions across which the specified number of events should be copied. */
+    public int getPartitions(int numEvents) {
+        _partitions = clamp((numEvents + MIN_EVENTS_PER_PARTITION - 1) / MIN_EVENTS_PER_PARTITION, 1, _maxPartitions);
+        return _partitions;
+    }
+
+    /** Records the time taken to write buffered events to the destination channels. */
+    public void recordFlush(long nanos) {
+        _flushNanos.addAndGet(nanos);
+        _flushCount.incrementAndGet();
+    }
+
+    /**
+     * Adjusts the batch size and flush threshold once an iteration is complete.
+     * @param eventsRead The number of events read in the iteration, zero if the fanout was idle.
+     * @param lagSeconds The fanout lag at the end of the iteration.
+     */
+    public void update(int eventsRead, int lagSeconds) {
+        long flushCount = _flushCount.getAndSet(0);
+        long flushNanos = _flushNanos.getAndSet(0);
+        boolean writesSlow = flushCount > 0 && flushNanos / flushCount > _targetFlushLatencyNanos;
+        boolean behind = eventsRead >= _batchSize || lagSeconds > _lagThresholdSeconds;
+
+        if (writesSlow) {
+            _batchSize = clamp(_batchSize / 2, _minBatchSize, _maxBatchSize);
+            _flushThreshold = clamp(_flushThreshold / 2, _minFlushThreshold, _maxFlushThreshold);
+        } else if (behind) {
+            _batchSize = clamp(_batchSize * 2, _minBatchSize, _maxBatchSize);
+            _flushThreshold = clamp(_flushThreshold + _flushThreshold / 2, _minFlushThreshold, _maxFlushThreshold);
+        } else {
+            _batchSize = clamp(_batchSize - _batchSize / 4, _minBatchSize, _maxBatchSize);
+        }
+        updateGauges();
+    }
+
+    /** Removes the gauges published by this controller. */
+    public void close() {
+        _gauges.close();
+    }
+
+    private void updateGauges() {
+        _gauges.beginUpdates();
+        _gauges.gauge(metricName("batch-size")).set(_batchSize);
+        _gauges.gauge(metricName("partitions")).set(_partitions);
+        _gauges.gauge(metricName("flush-threshold")).set(_flushThreshold);
+        _gauges.endUpdates();
+    }
+
+    private String metricName(String name) {
+        return MetricRegistry.name("bv.emodb.databus", "DefaultFanout", name, _fanoutName, _partitionName);
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
@@ -0,0 +1,167 @@
+package com.bazaarvoice.emodb.databus.core;
+
+import com.bazaarvoice.emodb.sor.api.Coordinate;
+import com.bazaarvoice.emodb.sor.api.Intrinsic;
+import com.bazaarvoice.emodb.sor.core.DataProvider;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.RatioGauge;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.common.primitives.Ints;
+
+import javax.annotation.Nullable;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Short-lived cache of resolved System of Record content shared by all databus peeks and polls on this server.  When
+ * a frequently updated record matches many subscriptions each subscription receives an event for the same change, and
+ * without the cache each subscription's poll would read and resolve the record from Cassandra again.
+ * <p>
+ * Cached content is only returned for an event if the content is known to include the event's change.  If any change
+ * is still pending in the cached content, such as an update which was written after the record was cached, the cache
+ * is bypassed so the caller reads the record again.  Since each {@link DataProvider.AnnotatedContent#getContent()} call
+ * returns a new copy of the content, callers sharing a cached record can't affect each other.
+ * <p>
+ * The cache is bounded by the approximate size of the cached content rather than by the number of records, since
+ * a few large records can take as much memory as thousands of small ones.
+ */
+class ResolvedRecordCache {
+
+    private final Cache<Coordinate, CachedRecord> _cache;
+    private final Meter _hitMeter;
+    private final Meter _missMeter;
+    private final Meter _staleMeter;
+
+    ResolvedRecordCache(Duration ttl, long maxBytes, Ticker ticker, MetricRegistry metricRegistry) {
+        _cache = CacheBuilder.newBuilder()
+                .expireAfterWrite(ttl.toMillis(), TimeUnit.MILLISECONDS)
+                .maximumWeight(maxBytes)
+                .weigher(new Weigher<Coordinate, CachedRecord>() {
+                    @Override
+                    public int weigh(Coordinate coord, CachedRecord record) {
+                        return record.size;
+                    }
+                })
+                .ticker(ticker)
+                .build();
+
+        // Each hit is a record read from Cassandra which was saved
+        _hitMeter = metricRegistry.meter(getMetricName("resolved-record-cache-hits"));
+        _missMeter = metricRegistry.meter(getMetricName("resolved-record-cache-misses"));
+        _staleMeter = metricRegistry.meter(getMetricName("resolved-record-cache-stale"));
+        metricRegistry.register(getMetricName("resolved-record-cache-hit-ratio"), new RatioGauge() {
+            @Override
+            protected Ratio getRatio() {
+                return Ratio.of(_hitMeter.getOneMinuteRate(),
+                        _hitMeter.getOneMinuteRate() + _missMeter.getOneMinuteRate() + _staleMeter.getOneMinuteRate());
+            }
+        });
+    }
+
+    /**
+     * Returns the cached content for the coordinate if it includes all of the specified changes, otherwise null.
+     */
+    @Nullable
+    DataProvider.AnnotatedContent get(Coordinate coord, Collection<UUID> changeIds) {
+        CachedRecord record = _cache.getIfPresent(coord);
+        if (record == null) {
+            _missMeter.mark();
+            return null;
+        }
+        for (UUID changeId : changeIds) {
+            if (record.annotatedContent.isChangeDeltaPending(changeId)) {
+                // The event is for a change newer than the cached content
+                _staleMeter.mark();
+                return null;
+            }
+        }
+        _hitMeter.mark();
+        return record.annotatedContent;
+    }
+
+    /**
+     * Caches the record read for a poll.  Polls for different subscriptions can read the same record concurrently, so
+     * if the record is already cached the newer of the two is kept.
+     *
+     * @param content the record's content as returned by the annotated content, used to compare and size the record
+     */
+    void put(Coordinate coord, DataProvider.AnnotatedContent annotatedContent, Map<String, Object> content) {
+        checkNotNull(coord, "coord");
+        checkNotNull(annotatedContent, "annotatedContent");
+        checkNotNull(content, "content");
+
+        CachedRecord record = new CachedRecord(annotatedContent, Intrinsic.getLastUpdateAt(content),
+                Intrinsic.getVersion(content), Ints.saturatedCast(estimateSize(content)));
+        _cache.asMap().merge(coord, record, (existing, update) -> update.isNewerThan(existing) ? update : existing);
+    }
+
+    /**
+     * Returns a rough estimate of the heap used by a JSON value.  It only needs to be proportional to the actual size
+     * so large records count for more than small ones against the cache's bound.
+     */
+    private static long estimateSize(@Nullable Object value) {
+        if (value instanceof Map) {
+            long size = 48;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                size += 32 + estimateSize(entry.getKey()) + estimateSize(entry.getValue());
+            }
+            return size;
+        }
+        if (value instanceof List) {
+            long size = 24;
+            for (Object element : (List<?>) value) {
+                size += 8 + estimateSize(element);
+            }
+            return size;
+        }
+        if (value instanceof String) {
+            return 40 + 2 * ((String) value).length();
+        }
+        return 16;
+    }
+
+    private static String getMetricName(String name) {
+        return MetricRegistry.name("bv.emodb.databus", "DefaultDatabus", name);
+    }
+
+    private static class CachedRecord {
+        final DataProvider.AnnotatedContent annotatedContent;
+        @Nullable final Date lastUpdateAt;
+        @Nullable final Long version;
+        final int size;
+
+        CachedRecord(DataProvider.AnnotatedContent annotatedContent, @Nullable Date lastUpdateAt,
+                     @Nullable Long version, int size) {
+            this.annotatedContent = annotatedContent;
+            this.lastUpdateAt = lastUpdateAt;
+            this.version = version;
+            this.size = size;
+        }
+
+        boolean isNewerThan(CachedRecord other) {
+            int compare = compareNullsFirst(lastUpdateAt, other.lastUpdateAt);
+            if (compare == 0) {
+                compare = compareNullsFirst(version, other.version);
+            }
+            return compare > 0;
+        }
+
+        private static <T extends Comparable<T>> int compareNullsFirst(@Nullable T left, @Nullable T right) {
+            if (left == null || right == null) {
+                return left != null ? 1 : right != null ? -1 : 0;
+            }
+            return left.compareTo(right);
+        }
+    }
+}
@@ -9,6 +9,7 @@ import com.bazaarvoice.emodb.sor.api.UnknownTableException;
 import com.bazaarvoice.emodb.sor.condition.eval.ConditionEvaluator;
 import com.bazaarvoice.emodb.sor.core.DataProvider;
 import com.bazaarvoice.emodb.sor.core.UpdateRef;
+import com.bazaarvoice.emodb.sor.delta.eval.Intrinsics;
 import com.bazaarvoice.emodb.table.db.Table;
 import com.google.common.collect.FluentIterable;
 import com.google.common.collect.Maps;
@@ -60,15 +61,20 @@ public class SubscriptionEvaluator {
 
     public boolean matches(OwnedSubscription subscription, MatchEventData eventData) {
         Table table = eventData.getTable();
+        return matches(subscription, eventData, getTableFilterJson(eventData), new TableFilterIntrinsics(table), false);
+    }
+
+    /**
+     * Variant of {@link #matches(OwnedSubscription, MatchEventData)} for callers evaluating many subscriptions against
+     * the same event which can compute the table filter JSON and intrinsics once.  If the caller has already
+     * determined the subscription's table filter is satisfied it can skip re-evaluating it, in which case only
+     * the subscriber's permissions are checked.
+     */
+    boolean matches(OwnedSubscription subscription, MatchEventData eventData, Map<String, Object> json,
+                    Intrinsics intrinsics, boolean tableFilterSatisfied) {
+        Table table = eventData.getTable();
         try {
-            Map<String, Object> json;
-            if (eventData.getTags().isEmpty()) {
-                json = table.getAttributes();
-            } else {
-                json = Maps.newHashMap(table.getAttributes());
-                json.put(UpdateRef.TAGS_NAME, eventData.getTags());
-            }
-            return ConditionEvaluator.eval(subscription.getTableFilter(), json, new TableFilterIntrinsics(table)) &&
+            return (tableFilterSatisfied || ConditionEvaluator.eval(subscription.getTableFilter(), json, intrinsics)) &&
                     subscriberHasPermission(subscription, table);
         } catch (Exception e) {
             _rateLimitedLog.error(e, "Unable to evaluate condition for subscription " + subscription.getName() +
@@ -77,6 +83,22 @@ public class SubscriptionEvaluator {
         }
     }
 
+    /**
+     * Returns the JSON against which subscription table filters are evaluated: the table attributes plus the
+     * event's tags, if any.
+     */
+    Map<String, Object> getTableFilterJson(MatchEventData eventData) {
+        Table table = eventData.getTable();
+        Map<String, Object> json;
+        if (eventData.getTags().isEmpty()) {
+            json = table.getAttributes();
+        } else {
+            json = Maps.newHashMap(table.getAttributes());
+            json.put(UpdateRef.TAGS_NAME, eventData.getTags());
+        }
+        return json;
+    }
+
     public MatchEventData getMatchEventData(ByteBuffer eventData) throws OrphanedEventException {
         UpdateRef ref = UpdateRefSerializer.fromByteBuffer(eventData.duplicate());
         try {
@@ -0,0 +1,178 @@
+package com.bazaarvoice.emodb.databus.core;
+
+import com.bazaarvoice.emodb.cachemgr.api.CacheHandle;
+import com.bazaarvoice.emodb.cachemgr.api.CacheRegistry;
+import com.bazaarvoice.emodb.cachemgr.api.InvalidationEvent;
+import com.bazaarvoice.emodb.cachemgr.api.InvalidationListener;
+import com.bazaarvoice.emodb.common.dropwizard.time.ClockTicker;
+import com.bazaarvoice.emodb.databus.model.OwnedSubscription;
+import com.bazaarvoice.emodb.table.db.Table;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Objects;
+import com.google.common.base.Supplier;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.inject.Inject;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Memoizes which subscriptions match events on a table.  Whether an event matches a subscription depends only on the
+ * event's table, the event's tags and the subscription owner's permissions, and most events in a fanout batch come
+ * from a small number of hot tables.  Caching the matches by (subscription set, table, tags) lets repeated events
+ * skip evaluating table filters and checking permissions entirely.
+ * <p>
+ * Cached results are discarded when:
+ * <ul>
+ * <li>The set of subscriptions changes.  The subscriptions instance is part of the cache key and subscription
+ *     lists are cached and replaced on change, so results computed for the old list are never reused.</li>
+ * <li>The table's metadata changes, as signaled by an invalidation of the DataStore table cache.  As a safeguard
+ *     against races with invalidation a result is also only reused for the same {@link Table} instance it was
+ *     computed for.</li>
+ * <li>A brief timeout expires.  Owner permissions can change without any cache invalidation, so results are kept
+ *     no longer than the databus authorizer caches its own permission checks.</li>
+ * </ul>
+ */
+public class SubscriptionMatchCache implements InvalidationListener {
+
+    private static final int DEFAULT_CACHE_SIZE = 10000;
+    private static final Duration DEFAULT_CACHE_TIMEOUT = Duration.ofSeconds(2);
+
+    private final Cache<MatchKey, CachedMatches> _cache;
+    private final CacheHandle _tableCacheHandle;
+
+    @Inject
+    public SubscriptionMatchCache(CacheRegistry cacheRegistry, MetricRegistry metricRegistry, Clock clock) {
+        this(cacheRegistry, metricRegistry, clock, DEFAULT_CACHE_SIZE, DEFAULT_CACHE_TIMEOUT);
+    }
+
+    public SubscriptionMatchCache(CacheRegistry cacheRegistry, MetricRegistry metricRegistry, Clock clock,
+                                  int cacheSize, Duration cacheTimeout) {
+        checkNotNull(cacheTimeout, "cacheTimeout");
+
+        _cache = CacheBuilder.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(cacheTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                .recordStats()
+                .ticker(ClockTicker.getTicker(clock))
+                .build();
+
+        // The table cache is registered by the DataStore in the "sor" namespace.
+        _tableCacheHandle = cacheRegistry.withNamespace("sor").lookup("tables", true);
+        cacheRegistry.addListener(this);
+
+        metricRegistry.register(MetricRegistry.name("bv.emodb.databus", "SubscriptionMatchCache", "hits"),
+                new Gauge<Long>() {
+                    @Override
+                    public Long getValue() {
+                        return _cache.stats().hitCount();
+                    }
+                });
+        metricRegistry.register(MetricRegistry.name("bv.emodb.databus", "SubscriptionMatchCache", "misses"),
+                new Gauge<Long>() {
+                    @Override
+                    public Long getValue() {
+                        return _cache.stats().missCount();
+                    }
+                });
+    }
+
+    /**
+     * Returns the subscriptions matching the event, using a previously cached result if one exists for the same
+     * subscriptions, table and tags.  Otherwise the matches are computed by <code>matcher</code> and cached.
+     */
+    public List<OwnedSubscription> getMatches(Iterable<OwnedSubscription> subscriptions,
+                                              SubscriptionEvaluator.MatchEventData eventData,
+                                              Supplier<List<OwnedSubscription>> matcher) {
+        Table table = eventData.getTable();
+        MatchKey key = new MatchKey(subscriptions, table.getName(), eventData.getTags());
+
+        CachedMatches cached = _cache.getIfPresent(key);
+        if (cached != null && cached.getTable() == table) {
+            return cached.getMatches();
+        }
+
+        List<OwnedSubscription> matches = ImmutableList.copyOf(matcher.get());
+        _cache.put(key, new CachedMatches(table, matches));
+        return matches;
+    }
+
+    @Override
+    public void handleInvalidation(InvalidationEvent event) {
+        if (!_tableCacheHandle.matches(event)) {
+            return;
+        }
+        if (event.hasKeys()) {
+            Set<String> tableNames = ImmutableSet.copyOf(event.getKeys());
+            _cache.asMap().keySet().removeIf(key -> tableNames.contains(key.getTableName()));
+        } else {
+            _cache.invalidateAll();
+        }
+    }
+
+    /**
+     * Cache key.  Subscriptions are compared by identity since comparing the full subscription lists on every lookup
+     * would cost about as much as evaluating them.
+     */
+    private static class MatchKey {
+        private final Iterable<OwnedSubscription> _subscriptions;
+        private final String _tableName;
+        private final Set<String> _tags;
+
+        MatchKey(Iterable<OwnedSubscription> subscriptions, String tableName, Set<String> tags) {
+            _subscriptions = subscriptions;
+            _tableName = tableName;
+            _tags = tags;
+        }
+
+        String getTableName() {
+            return _tableName;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof MatchKey)) {
+                return false;
+            }
+            MatchKey that = (MatchKey) o;
+            return _subscriptions == that._subscriptions &&
+                    _tableName.equals(that._tableName) &&
+                    Objects.equal(_tags, that._tags);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(_subscriptions) + Objects.hashCode(_tableName, _tags);
+        }
+    }
+
+    private static class CachedMatches {
+        private final Table _table;
+        private final List<OwnedSubscription> _matches;
+
+        CachedMatches(Table table, List<OwnedSubscription> matches) {
+            _table = table;
+            _matches = matches;
+        }
+
+        Table getTable() {
+            return _table;
+        }
+
+        List<OwnedSubscription> getMatches() {
+            return _matches;
+        }
+    }
+}
@@ -0,0 +1,386 @@
+package com.bazaarvoice.emodb.databus.core;
+
+import com.bazaarvoice.emodb.databus.model.OwnedSubscription;
+import com.bazaarvoice.emodb.sor.api.Intrinsic;
+import com.bazaarvoice.emodb.sor.condition.AndCondition;
+import com.bazaarvoice.emodb.sor.condition.Condition;
+import com.bazaarvoice.emodb.sor.condition.ConstantCondition;
+import com.bazaarvoice.emodb.sor.condition.EqualCondition;
+import com.bazaarvoice.emodb.sor.condition.InCondition;
+import com.bazaarvoice.emodb.sor.condition.IntrinsicCondition;
+import com.bazaarvoice.emodb.sor.condition.MapCondition;
+import com.bazaarvoice.emodb.sor.condition.OrCondition;
+import com.bazaarvoice.emodb.table.db.Table;
+import com.bazaarvoice.emodb.table.db.TableFilterIntrinsics;
+import com.codahale.metrics.Meter;
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Index over subscription table filters which avoids evaluating every subscription against every event.
+ * <p>
+ * Each table filter is analyzed once to find a set of equality tests on the table name, table placement or a table
+ * attribute such that the filter can only match an event if at least one of the tests passes.  For example,
+ * <code>and(intrinsic("~table":"review:testcustomer"),{..,"type":"review"})</code> can only match events on table
+ * "review:testcustomer".  At match time the event's table name, placement and attributes are looked up in the index
+ * to produce a small set of candidate subscriptions, and only the candidates are evaluated.  Filters which consist
+ * entirely of indexed equality tests, such as the example above without the attribute test, don't need to be
+ * evaluated at all.  Subscriptions with filters that can't be indexed are always evaluated.
+ * <p>
+ * The index is rebuilt whenever the set of subscriptions changes.  Analysis results are retained by table filter
+ * between rebuilds so only new or changed filters are analyzed.
+ */
+public class SubscriptionMatchIndex {
+
+    private enum Dimension {
+        TABLE,
+        PLACEMENT,
+        ATTRIBUTE,
+    }
+
+    private final SubscriptionEvaluator _subscriptionEvaluator;
+    private final Meter _evaluations;
+    private final Meter _skipped;
+    private Iterable<OwnedSubscription> _sourceSubscriptions;
+    private Map<Condition, FilterAnalysis> _analysisByFilter = Collections.emptyMap();
+    private volatile Snapshot _snapshot = new Snapshot(Collections.<OwnedSubscription, FilterAnalysis>emptyMap());
+
+    public SubscriptionMatchIndex(SubscriptionEvaluator subscriptionEvaluator, Meter evaluations, Meter skipped) {
+        _subscriptionEvaluator = checkNotNull(subscriptionEvaluator, "subscriptionEvaluator");
+        _evaluations = checkNotNull(evaluations, "evaluations");
+        _skipped = checkNotNull(skipped, "skipped");
+    }
+
+    /**
+     * Updates the index to reflect the current subscriptions.  This is a no-op if the same subscriptions instance
+     * was used to build the current index, which is the common case since subscription lists are cached.
+     */
+    public synchronized void refresh(Iterable<OwnedSubscription> subscriptions) {
+        if (subscriptions == _sourceSubscriptions) {
+            return;
+        }
+        Map<Condition, FilterAnalysis> analysisByFilter = Maps.newHashMap();
+        Map<OwnedSubscription, FilterAnalysis> analysisBySubscription = Maps.newLinkedHashMap();
+        for (OwnedSubscription subscription : subscriptions) {
+            Condition tableFilter = subscription.getTableFilter();
+            FilterAnalysis analysis = analysisByFilter.get(tableFilter);
+            if (analysis == null) {
+                analysis = _analysisByFilter.get(tableFilter);
+                if (analysis == null) {
+                    analysis = analyze(tableFilter);
+                }
+                analysisByFilter.put(tableFilter, analysis);
+            }
+            analysisBySubscription.put(subscription, analysis);
+        }
+        _snapshot = new Snapshot(analysisBySubscription);
+        _analysisByFilter = analysisByFilter;
+        _sourceSubscriptions = subscriptions;
+    }
+
+    /**
+     * Returns all subscriptions in the index which match the event.  Safe to call concurrently with other calls to
+     * this method and with {@link #refresh(Iterable)}.
+     */
+    public List<OwnedSubscription> getMatches(SubscriptionEvaluator.MatchEventData eventData) {
+        Snapshot snapshot = _snapshot;
+        Table table = eventData.getTable();
+        Map<String, Object> json = _subscriptionEvaluator.getTableFilterJson(eventData);
+        TableFilterIntrinsics intrinsics = new TableFilterIntrinsics(table);
+
+        List<Entry> candidates = snapshot.getCandidates(table, json);
+
+        List<OwnedSubscription> matches = Lists.newArrayList();
+        int evaluated = 0;
+        for (Entry candidate : candidates) {
+            if (!candidate.isExact()) {
+                evaluated += 1;
+            }
+            if (_subscriptionEvaluator.matches(candidate.getSubscription(), eventData, json, intrinsics, candidate.isExact())) {
+                matches.add(candidate.getSubscription());
+            }
+        }
+        _evaluations.mark(evaluated);
+        _skipped.mark(snapshot.size() - evaluated);
+        return matches;
+    }
+
+    /**
+     * Computes the index keys for a table filter.
+     */
+    private static FilterAnalysis analyze(Condition condition) {
+        if (condition instanceof ConstantCondition) {
+            // alwaysTrue() can't be indexed but never needs evaluating; alwaysFalse() never matches anything.
+            return ((ConstantCondition) condition).getValue() ? new FilterAnalysis(null, true) :
+                    new FilterAnalysis(ImmutableSet.<IndexKey>of(), true);
+        }
+        if (condition instanceof IntrinsicCondition) {
+            IntrinsicCondition intrinsic = (IntrinsicCondition) condition;
+            Dimension dimension;
+            if (Intrinsic.TABLE.equals(intrinsic.getName())) {
+                dimension = Dimension.TABLE;
+            } else if (Intrinsic.PLACEMENT.equals(intrinsic.getName())) {
+                dimension = Dimension.PLACEMENT;
+            } else {
+                return new FilterAnalysis(null, false);
+            }
+            Set<Object> values = getEqualityValues(intrinsic.getCondition());
+            if (values == null) {
+                return new FilterAnalysis(null, false);
+            }
+            return new FilterAnalysis(toKeys(dimension, null, values), true);
+        }
+        if (condition instanceof MapCondition) {
+            Map<String, Condition> entries = ((MapCondition) condition).getEntries();
+            for (Map.Entry<String, Condition> entry : entries.entrySet()) {
+                Set<Object> values = getEqualityValues(entry.getValue());
+                if (values != null) {
+                    return new FilterAnalysis(toKeys(Dimension.ATTRIBUTE, entry.getKey(), values), entries.size() == 1);
+                }
+            }
+            return new FilterAnalysis(null, false);
+        }
+        if (condition instanceof AndCondition) {
+            // Any indexable child is sufficient since all children must match.  Prefer the most selective dimension.
+            FilterAnalysis best = null;
+            for (Condition child : ((AndCondition) condition).getConditions()) {
+                FilterAnalysis analysis = analyze(child);
+                if (analysis.isIndexed() && (best == null || analysis.getSelectivity() < best.getSelectivity())) {
+                    best = analysis;
+                }
+            }
+            return best != null ? new FilterAnalysis(best.getKeys(), false) : new FilterAnalysis(null, false);
+        }
+        if (condition instanceof OrCondition) {
+            // Every child must be indexable since matching any one child is sufficient.
+            Set<IndexKey> keys = Sets.newHashSet();
+            boolean exact = true;
+            for (Condition child : ((OrCondition) condition).getConditions()) {
+                FilterAnalysis analysis = analyze(child);
+                if (!analysis.isIndexed()) {
+                    return new FilterAnalysis(null, false);
+                }
+                keys.addAll(analysis.getKeys());
+                exact &= analysis.isExact();
+            }
+            return new FilterAnalysis(keys, exact);
+        }
+        return new FilterAnalysis(null, false);
+    }
+
+    @Nullable
+    private static Set<Object> getEqualityValues(Condition condition) {
+        if (condition instanceof EqualCondition) {
+            Object value = ((EqualCondition) condition).getValue();
+            return value != null ? Collections.singleton(value) : null;
+        }
+        if (condition instanceof InCondition) {
+            Set<Object> values = ((InCondition) condition).getValues();
+            return values.contains(null) ? null : values;
+        }
+        return null;
+    }
+
+    private static Set<IndexKey> toKeys(Dimension dimension, @Nullable String attribute, Set<Object> values) {
+        ImmutableSet.Builder<IndexKey> keys = ImmutableSet.builder();
+        for (Object value : values) {
+            keys.add(new IndexKey(dimension, attribute, value));
+        }
+        return keys.build();
+    }
+
+    /**
+     * Result of analyzing a table filter.  A filter with null keys is not indexed and must always be considered.
+     * A filter which is exact is fully described by its keys, so no evaluation is necessary once a key matches.
+     */
+    private static class FilterAnalysis {
+        private final Set<IndexKey> _keys;
+        private final boolean _exact;
+
+        FilterAnalysis(@Nullable Set<IndexKey> keys, boolean exact) {
+            _keys = keys;
+            _exact = exact;
+        }
+
+        boolean isIndexed() {
+            return _keys != null;
+        }
+
+        Set<IndexKey> getKeys() {
+            return _keys;
+        }
+
+        boolean isExact() {
+            return _exact;
+        }
+
+        int getSelectivity() {
+            // Fewer keys on a more specific dimension produce fewer candidates.
+            int rank = 0;
+            for (IndexKey key : _keys) {
+                rank = Math.max(rank, key.getDimension().ordinal());
+            }
+            return _keys.size() * Dimension.values().length + rank;
+        }
+    }
+
+    private static class IndexKey {
+        private final Dimension _dimension;
+        private final String _attribute;
+        private final Object _value;
+
+        IndexKey(Dimension dimension, @Nullable String attribute, Object value) {
+            _dimension = dimension;
+            _attribute = attribute;
+            _value = value;
+        }
+
+        Dimension getDimension() {
+            return _dimension;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof IndexKey)) {
+                return false;
+            }
+            IndexKey that = (IndexKey) o;
+            return _dimension == that._dimension &&
+                    Objects.equal(_attribute, that._attribute) &&
+                    _value.equals(that._value);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(_dimension, _attribute, _value);
+        }
+    }
+
+    private static class Entry {
+        private final OwnedSubscription _subscription;
+        private final boolean _exact;
+
+        Entry(OwnedSubscription subscription, boolean exact) {
+            _subscription = subscription;
+            _exact = exact;
+        }
+
+        OwnedSubscription getSubscription() {
+            return _subscription;
+        }
+
+        boolean isExact() {
+            return _exact;
+        }
+    }
+
+    /**
+     * Immutable index over a fixed set of subscriptions.
+     */
+    private static class Snapshot {
+        private final int _size;
+        private final List<Entry> _unindexed;
+        private final Map<Object, List<Entry>> _byTable = Maps.newHashMap();
+        private final Map<Object, List<Entry>> _byPlacement = Maps.newHashMap();
+        private final Map<String, Map<Object, List<Entry>>> _byAttribute = Maps.newHashMap();
+        private final boolean _multiKey;
+
+        Snapshot(Map<OwnedSubscription, FilterAnalysis> analysisBySubscription) {
+            _size = analysisBySubscription.size();
+            ImmutableList.Builder<Entry> unindexed = ImmutableList.builder();
+            boolean multiKey = false;
+            for (Map.Entry<OwnedSubscription, FilterAnalysis> mapEntry : analysisBySubscription.entrySet()) {
+                FilterAnalysis analysis = mapEntry.getValue();
+                Entry entry = new Entry(mapEntry.getKey(), analysis.isExact());
+                if (!analysis.isIndexed()) {
+                    unindexed.add(entry);
+                    continue;
+                }
+                Set<String> fields = Sets.newHashSet();
+                for (IndexKey key : analysis.getKeys()) {
+                    getBucket(key).add(entry);
+                    fields.add(key.getDimension() + ":" + key._attribute);
+                }
+                // An event has a single value for each field, but an entry indexed on more than one field may be
+                // found more than once per event.
+                multiKey |= fields.size() > 1;
+            }
+            _unindexed = unindexed.build();
+            _multiKey = multiKey;
+        }
+
+        private List<Entry> getBucket(IndexKey key) {
+            Map<Object, List<Entry>> map;
+            switch (key.getDimension()) {
+                case TABLE:
+                    map = _byTable;
+                    break;
+                case PLACEMENT:
+                    map = _byPlacement;
+                    break;
+                default:
+                    map = _byAttribute.get(key._attribute);
+                    if (map == null) {
+                        map = Maps.newHashMap();
+                        _byAttribute.put(key._attribute, map);
+                    }
+                    break;
+            }
+            List<Entry> bucket = map.get(key._value);
+            if (bucket == null) {
+                bucket = Lists.newArrayList();
+                map.put(key._value, bucket);
+            }
+            return bucket;
+        }
+
+        int size() {
+            return _size;
+        }
+
+        List<Entry> getCandidates(Table table, Map<String, Object> json) {
+            List<Entry> candidates = Lists.newArrayList(_unindexed);
+            addAll(candidates, _byTable.get(table.getName()));
+            addAll(candidates, _byPlacement.get(table.getOptions().getPlacement()));
+            for (Map.Entry<String, Map<Object, List<Entry>>> attribute : _byAttribute.entrySet()) {
+                Object value = json.get(attribute.getKey());
+                if (value != null) {
+                    addAll(candidates, attribute.getValue().get(value));
+                }
+            }
+            if (_multiKey) {
+                // Remove duplicates while preserving order
+                Set<Entry> unique = Sets.newIdentityHashSet();
+                List<Entry> deduped = Lists.newArrayListWithCapacity(candidates.size());
+                for (Entry candidate : candidates) {
+                    if (unique.add(candidate)) {
+                        deduped.add(candidate);
+                    }
+                }
+                candidates = deduped;
+            }
+            return candidates;
+        }
+
+        private void addAll(List<Entry> candidates, @Nullable List<Entry> entries) {
+            if (entries != null) {
+                candidates.addAll(entries);
+            }
+        }
+    }
+}
@@ -1,8 +1,11 @@
 package com.bazaarvoice.emodb.databus.core;
 
 import com.bazaarvoice.emodb.sor.core.UpdateRef;
+import com.google.common.base.Charsets;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 import com.netflix.astyanax.Serializer;
 import com.netflix.astyanax.model.Composite;
 import com.netflix.astyanax.serializers.SetSerializer;
@@ -15,7 +18,30 @@ import java.util.List;
 import java.util.Set;
 import java.util.UUID;
 
+/**
+ * Serializes the {@link UpdateRef} stored as the data of each databus event.
+ * <p>
+ * Events are written either as Astyanax composites of the table, key, change ID and optional tag set or in a compact
+ * format: a format byte followed by the table and key as UTF-8 strings prefixed by their varint lengths, the change ID
+ * as two longs and the tags as a varint count followed by each tag as a string.  Both formats are always readable.  A
+ * composite always starts with the high byte of the table name's length, which is zero since table names are at most
+ * 255 characters, so it can't be mistaken for the compact format.
+ * <p>
+ * Versions before the compact format was introduced can only read composites, so composites are written unless
+ * {@link Format#compact} is requested explicitly.
+ */
 public class UpdateRefSerializer {
+
+    public enum Format {
+        composite,
+        compact
+    }
+
+    private static final byte COMPACT_FORMAT_V1 = (byte) 0x81;
+
+    // Nearly all events share one of a handful of tag sets, so decoded events share a single instance of each
+    private static final Interner<Set<String>> _tagsInterner = Interners.newWeakInterner();
+
     private static final SetSerializer<String> _setSerializer = new SetSerializer<>(UTF8Type.instance);
 
     private static final List<Serializer<?>> _serializers = ImmutableList.<Serializer<?>>of(
@@ -28,6 +54,67 @@ public class UpdateRefSerializer {
             TimeUUIDSerializer.get().getComparatorType().getTypeName());
 
     public static ByteBuffer toByteBuffer(UpdateRef ref) {
+        return toByteBuffer(ref, Format.composite);
+    }
+
+    public static ByteBuffer toByteBuffer(UpdateRef ref, Format format) {
+        return format == Format.compact ? toCompactByteBuffer(ref) : toCompositeByteBuffer(ref);
+    }
+
+    private static ByteBuffer toCompactByteBuffer(UpdateRef ref) {
+        byte[] table = ref.getTable().getBytes(Charsets.UTF_8);
+        byte[] key = ref.getKey().getBytes(Charsets.UTF_8);
+        Set<String> tags = ref.getTags();
+        byte[][] tagBytes = new byte[tags.size()][];
+
+        int size = 1 + sizeOf(table) + sizeOf(key) + 16 + varIntSize(tags.size());
+        int i = 0;
+        for (String tag : tags) {
+            tagBytes[i] = tag.getBytes(Charsets.UTF_8);
+            size += sizeOf(tagBytes[i++]);
+        }
+
+        ByteBuffer buf = ByteBuffer.allocate(size);
+        buf.put(COMPACT_FORMAT_V1);
+        putBytes(buf, table);
+        putBytes(buf, key);
+        buf.putLong(ref.getChangeId().getMostSignificantBits());
+        buf.putLong(ref.getChangeId().getLeastSignificantBits());
+        putVarInt(buf, tagBytes.length);
+        for (byte[] tag : tagBytes) {
+            putBytes(buf, tag);
+        }
+        buf.flip();
+        return buf;
+    }
+
+    public static UpdateRef fromByteBuffer(ByteBuffer buf) {
+        if (buf.hasRemaining() && buf.get(buf.position()) == COMPACT_FORMAT_V1) {
+            return fromCompactByteBuffer(buf);
+        }
+        return fromCompositeByteBuffer(buf);
+    }
+
+    private static UpdateRef fromCompactByteBuffer(ByteBuffer buf) {
+        buf.get();  // Format
+        String table = getString(buf);
+        String key = getString(buf);
+        UUID changeId = new UUID(buf.getLong(), buf.getLong());
+        int numTags = getVarInt(buf);
+        Set<String> tags;
+        if (numTags == 0) {
+            tags = ImmutableSet.of();
+        } else {
+            ImmutableSet.Builder<String> builder = ImmutableSet.builder();
+            for (int i = 0; i < numTags; i++) {
+                builder.add(getString(buf));
+            }
+            tags = _tagsInterner.intern(builder.build());
+        }
+        return new UpdateRef(table, key, changeId, tags);
+    }
+
+    private static ByteBuffer toCompositeByteBuffer(UpdateRef ref) {
         Composite composite = newComposite();
         composite.add(ref.getTable());
         composite.add(ref.getKey());
@@ -38,7 +125,7 @@ public class UpdateRefSerializer {
         return trim(composite.serialize());
     }
 
-    public static UpdateRef fromByteBuffer(ByteBuffer buf) {
+    private static UpdateRef fromCompositeByteBuffer(ByteBuffer buf) {
         Composite composite = newComposite();
         composite.deserialize(buf);
 
@@ -47,7 +134,7 @@ public class UpdateRefSerializer {
         UUID changeId = (UUID) composite.get(2);
         Set<String> tags = ImmutableSet.of();
         if (composite.size() == 4) {
-            tags = _setSerializer.fromByteBuffer((ByteBuffer) composite.get(3));
+            tags = _tagsInterner.intern(ImmutableSet.copyOf(_setSerializer.fromByteBuffer((ByteBuffer) composite.get(3))));
         }
         return new UpdateRef(table, key, changeId, tags);
     }
@@ -69,4 +156,56 @@ public class UpdateRefSerializer {
             return clone;
         }
     }
+
+    private static int sizeOf(byte[] bytes) {
+        return varIntSize(bytes.length) + bytes.length;
+    }
+
+    private static void putBytes(ByteBuffer buf, byte[] bytes) {
+        putVarInt(buf, bytes.length);
+        buf.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buf) {
+        int length = getVarInt(buf);
+        String string;
+        if (buf.hasArray()) {
+            string = new String(buf.array(), buf.arrayOffset() + buf.position(), length, Charsets.UTF_8);
+        } else {
+            byte[] bytes = new byte[length];
+            buf.duplicate().get(bytes);
+            string = new String(bytes, Charsets.UTF_8);
+        }
+        buf.position(buf.position() + length);
+        return string;
+    }
+
+    /** Returns the number of bytes needed to write the non-negative value as an unsigned LEB128 varint. */
+    private static int varIntSize(int value) {
+        int size = 1;
+        while ((value >>>= 7) != 0) {
+            size++;
+        }
+        return size;
+    }
+
+    private static void putVarInt(ByteBuffer buf, int value) {
+        while ((value & ~0x7f) != 0) {
+            buf.put((byte) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        buf.put((byte) value);
+    }
+
+    private static int getVarInt(ByteBuffer buf) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = buf.get();
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
 }
@@ -182,8 +182,8 @@ public class DefaultReplicationManager extends AbstractScheduledService {
 
     /** Creates a ReplicationSource proxy to the remote data center. */
     private ReplicationSource newRemoteReplicationSource(DataCenter dataCenter) {
-        MultiThreadedServiceFactory<ReplicationSource> clientFactory = new ReplicationClientFactory(_jerseyClient)
-                .usingApiKey(_replicationApiKey);
+        MultiThreadedServiceFactory<ReplicationSource> clientFactory =
+                new ReplicationClientFactory(_jerseyClient, _replicationApiKey, _metrics);
 
         ServiceEndPoint endPoint = new ServiceEndPointBuilder()
                 .withServiceName(clientFactory.getServiceName())
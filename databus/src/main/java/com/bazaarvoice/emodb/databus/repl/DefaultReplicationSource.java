@@ -3,11 +3,13 @@ package com.bazaarvoice.emodb.databus.repl;
 import com.bazaarvoice.emodb.databus.core.UpdateRefSerializer;
 import com.bazaarvoice.emodb.event.api.EventData;
 import com.bazaarvoice.emodb.event.api.EventStore;
+import com.bazaarvoice.emodb.event.core.Limits;
 import com.bazaarvoice.emodb.sor.core.UpdateRef;
 import com.google.common.base.Function;
 import com.google.common.collect.Lists;
 import com.google.inject.Inject;
 
+import java.time.Duration;
 import java.util.Collection;
 import java.util.List;
 
@@ -27,8 +29,20 @@ public class DefaultReplicationSource implements ReplicationSource {
         checkNotNull(channel, "channel");
         checkArgument(limit > 0, "Limit must be >0");
 
-        List<EventData> rawEvents = _eventStore.peek(channel, limit);
+        return toReplicationEvents(_eventStore.peek(channel, limit));
+    }
+
+    @Override
+    public List<ReplicationEvent> poll(String channel, Duration claimTtl, int limit) {
+        checkNotNull(channel, "channel");
+        checkNotNull(claimTtl, "claimTtl");
+        checkArgument(limit > 0, "Limit must be >0");
+
+        // Callers size batches by the fanout's batch size, which may exceed what the event store allows in one poll
+        return toReplicationEvents(_eventStore.poll(channel, claimTtl, Math.min(limit, Limits.MAX_POLL_LIMIT)));
+    }
 
+    private List<ReplicationEvent> toReplicationEvents(List<EventData> rawEvents) {
         return Lists.transform(rawEvents, new Function<EventData, ReplicationEvent>() {
             @Override
             public ReplicationEvent apply(EventData rawEvent) {
@@ -0,0 +1,126 @@
+package com.bazaarvoice.emodb.databus.repl;
+
+import com.bazaarvoice.emodb.databus.core.EventSource;
+import com.bazaarvoice.emodb.databus.core.UpdateRefSerializer;
+import com.bazaarvoice.emodb.event.api.EventData;
+import com.bazaarvoice.emodb.event.core.Limits;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Futures;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Adapts an instance of {@link ReplicationSource} to the {@link EventSource} interface like
+ * {@link ReplicationEventSource}, but claims events instead of peeking at them so the next batch of events can be
+ * fetched from the remote data center while the fanout writes the current batch locally.
+ * <p>
+ * A prefetched batch is claimed while the fanout is still writing the current batch, so it is claimed for twice the
+ * claim TTL.  That leaves the fanout the full claim TTL to write the prefetched batch once it starts on it.
+ * <p>
+ * The fanout acknowledges the events in a batch as it writes them.  Those acknowledgements are collected and sent in
+ * a single request when the next batch is requested.  Events which are never acknowledged, for example because
+ * leadership moved to another server, are returned again once their claims expire.
+ */
+public class PipelinedReplicationEventSource implements EventSource {
+    private static final Logger _log = LoggerFactory.getLogger(PipelinedReplicationEventSource.class);
+
+    private final ReplicationSource _source;
+    private final String _channel;
+    private final Duration _claimTtl;
+    private final ExecutorService _executor;
+    private final UpdateRefSerializer.Format _updateRefFormat;
+    private final List<String> _pendingAcks = Lists.newArrayList();
+    private final Meter _eventsReceived;
+    private final Meter _eventsAcknowledged;
+    private final Timer _prefetchWaitTimer;
+    private Future<List<ReplicationEvent>> _prefetch;
+
+    public PipelinedReplicationEventSource(ReplicationSource source, String channel, Duration claimTtl,
+                                           ExecutorService executor, UpdateRefSerializer.Format updateRefFormat,
+                                           MetricRegistry metricRegistry, String fanoutName, String partitionName) {
+        _source = checkNotNull(source, "source");
+        _channel = checkNotNull(channel, "channel");
+        _claimTtl = checkNotNull(claimTtl, "claimTtl");
+        checkArgument(!claimTtl.isNegative() && !claimTtl.isZero(), "Claim TTL must be positive");
+        _executor = checkNotNull(executor, "executor");
+        _updateRefFormat = checkNotNull(updateRefFormat, "updateRefFormat");
+        _eventsReceived = metricRegistry.meter(metricName("events-received", fanoutName, partitionName));
+        _eventsAcknowledged = metricRegistry.meter(metricName("events-acknowledged", fanoutName, partitionName));
+        _prefetchWaitTimer = metricRegistry.timer(metricName("prefetch-wait", fanoutName, partitionName));
+    }
+
+    private static String metricName(String name, String fanoutName, String partitionName) {
+        return MetricRegistry.name("bv.emodb.databus", "PipelinedReplicationEventSource", name, fanoutName, partitionName);
+    }
+
+    @Override
+    public List<EventData> get(int limit) {
+        // The fanout has finished with the previous batch, acknowledge it all at once
+        acknowledgePending();
+
+        // The fanout's batch size may exceed the most events the remote data center will return from a single poll
+        final int pollLimit = Math.min(limit, Limits.MAX_POLL_LIMIT);
+
+        List<ReplicationEvent> events;
+        if (_prefetch != null) {
+            try (Timer.Context ignored = _prefetchWaitTimer.time()) {
+                events = Futures.getUnchecked(_prefetch);
+            } finally {
+                _prefetch = null;
+            }
+        } else {
+            events = _source.poll(_channel, _claimTtl, pollLimit);
+        }
+
+        // If the channel was drained the fanout will sleep for a while, so only fetch ahead when it wasn't
+        if (!events.isEmpty()) {
+            _prefetch = _executor.submit(() -> _source.poll(_channel, _claimTtl.multipliedBy(2), pollLimit));
+        }
+
+        _eventsReceived.mark(events.size());
+        return ReplicationEventSource.toEventData(events, _updateRefFormat);
+    }
+
+    @Override
+    public void delete(Collection<String> eventIds) {
+        // Called concurrently by each of the fanout's threads
+        synchronized (_pendingAcks) {
+            _pendingAcks.addAll(eventIds);
+        }
+    }
+
+    private void acknowledgePending() {
+        final List<String> eventIds;
+        synchronized (_pendingAcks) {
+            if (_pendingAcks.isEmpty()) {
+                return;
+            }
+            eventIds = Lists.newArrayList(_pendingAcks);
+            _pendingAcks.clear();
+        }
+        _executor.submit(() -> {
+            try {
+                _source.delete(_channel, eventIds);
+                _eventsAcknowledged.mark(eventIds.size());
+            } catch (Exception e) {
+                // Retry with the next batch.  If that fails too the claims expire and the events are replicated again.
+                _log.warn("Unable to acknowledge {} replicated events on channel {}", eventIds.size(), _channel, e);
+                synchronized (_pendingAcks) {
+                    _pendingAcks.addAll(eventIds);
+                }
+            }
+        });
+    }
+}
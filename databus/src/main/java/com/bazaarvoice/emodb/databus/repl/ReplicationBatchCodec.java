@@ -0,0 +1,106 @@
+package com.bazaarvoice.emodb.databus.repl;
+
+import com.bazaarvoice.emodb.databus.core.UpdateRefSerializer;
+import com.bazaarvoice.emodb.sor.core.UpdateRef;
+import com.google.common.base.Charsets;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Encodes a batch of replication events in the compressed binary format used to transfer events between data centers.
+ * <p>
+ * A batch is a format byte followed by the deflated events: the number of events as a varint followed by each event
+ * as its ID and its {@link UpdateRefSerializer compact update reference}, each prefixed by its varint length.  Events
+ * in a batch tend to share tables, tags and event ID prefixes so they compress well.  Batches are only read by servers
+ * which serve batches themselves, so they always use the compact format.
+ */
+public class ReplicationBatchCodec {
+
+    /** Media type of encoded batches. */
+    public static final String MEDIA_TYPE = "application/x.emodb.replication-batch";
+
+    private static final byte FORMAT_V1 = 1;
+
+    public static byte[] encode(List<ReplicationEvent> events) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write(FORMAT_V1);
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes, deflater))) {
+            writeVarInt(out, events.size());
+            for (ReplicationEvent event : events) {
+                writeBytes(out, event.getId().getBytes(Charsets.UTF_8));
+                ByteBuffer ref = UpdateRefSerializer.toByteBuffer(
+                        new UpdateRef(event.getTable(), event.getKey(), event.getChangeId(), event.getTags()),
+                        UpdateRefSerializer.Format.compact);
+                writeVarInt(out, ref.remaining());
+                out.write(ref.array(), ref.arrayOffset() + ref.position(), ref.remaining());
+            }
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        } finally {
+            deflater.end();
+        }
+        return bytes.toByteArray();
+    }
+
+    public static List<ReplicationEvent> decode(byte[] batch) {
+        checkArgument(batch.length > 0 && batch[0] == FORMAT_V1, "Unsupported replication batch format");
+        try (DataInputStream in = new DataInputStream(
+                new InflaterInputStream(new ByteArrayInputStream(batch, 1, batch.length - 1)))) {
+            int numEvents = readVarInt(in);
+            List<ReplicationEvent> events = Lists.newArrayListWithCapacity(numEvents);
+            for (int i = 0; i < numEvents; i++) {
+                String id = new String(readBytes(in), Charsets.UTF_8);
+                UpdateRef ref = UpdateRefSerializer.fromByteBuffer(ByteBuffer.wrap(readBytes(in)));
+                events.add(new ReplicationEvent(id, ref));
+            }
+            return events;
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[readVarInt(in)];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7f) != 0) {
+            out.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = in.readByte();
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+}
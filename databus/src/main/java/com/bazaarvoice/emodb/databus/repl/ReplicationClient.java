@@ -1,6 +1,7 @@
 package com.bazaarvoice.emodb.databus.repl;
 
 import com.bazaarvoice.emodb.auth.apikey.ApiKeyRequest;
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.base.Charsets;
 import com.google.common.io.BaseEncoding;
 import com.sun.jersey.api.client.Client;
@@ -8,10 +9,12 @@ import com.sun.jersey.api.client.ClientResponse;
 import com.sun.jersey.api.client.GenericType;
 import com.sun.jersey.api.client.UniformInterfaceException;
 
+import javax.annotation.Nullable;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriBuilder;
 import java.net.URI;
+import java.time.Duration;
 import java.util.Collection;
 import java.util.List;
 
@@ -28,11 +31,23 @@ public class ReplicationClient implements ReplicationSource {
     private final Client _client;
     private final UriBuilder _replicationSource;
     private final String _apiKey;
+    private final MetricRegistry _metricRegistry;
+    private final String _dataCenter;
 
     public ReplicationClient(URI endPoint, Client jerseyClient, String apiKey) {
+        this(endPoint, jerseyClient, apiKey, null, null);
+    }
+
+    /**
+     * If a metric registry is provided the bytes transferred polling each channel in the given data center are metered.
+     */
+    public ReplicationClient(URI endPoint, Client jerseyClient, String apiKey,
+                             @Nullable MetricRegistry metricRegistry, @Nullable String dataCenter) {
         _client = checkNotNull(jerseyClient, "jerseyClient");
         _replicationSource = UriBuilder.fromUri(endPoint);
         _apiKey = apiKey;
+        _metricRegistry = metricRegistry;
+        _dataCenter = dataCenter;
     }
 
     @Override
@@ -52,6 +67,30 @@ public class ReplicationClient implements ReplicationSource {
         }
     }
 
+    @Override
+    public List<ReplicationEvent> poll(String channel, Duration claimTtl, int limit) {
+        checkNotNull(channel, "channel");
+        checkNotNull(claimTtl, "claimTtl");
+        try {
+            URI uri = _replicationSource.clone()
+                    .segment(channel, "batch")
+                    .queryParam("ttl", claimTtl.getSeconds())
+                    .queryParam("limit", limit)
+                    .build();
+            byte[] batch = _client.resource(uri)
+                    .accept(ReplicationBatchCodec.MEDIA_TYPE)
+                    .header(ApiKeyRequest.AUTHENTICATION_HEADER, _apiKey)
+                    .get(byte[].class);
+            if (_metricRegistry != null) {
+                _metricRegistry.meter(MetricRegistry.name("bv.emodb.databus", "ReplicationClient", "bytes-received",
+                        _dataCenter, channel)).mark(batch.length);
+            }
+            return ReplicationBatchCodec.decode(batch);
+        } catch (UniformInterfaceException e) {
+            throw convertException(e);
+        }
+    }
+
     @Override
     public void delete(String channel, Collection<String> eventIds) {
         checkNotNull(channel, "channel");
@@ -4,6 +4,7 @@ import com.bazaarvoice.emodb.common.dropwizard.discovery.Payload;
 import com.bazaarvoice.ostrich.MultiThreadedServiceFactory;
 import com.bazaarvoice.ostrich.ServiceEndPoint;
 import com.bazaarvoice.ostrich.pool.ServicePoolBuilder;
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.base.Objects;
 import com.google.common.base.Predicates;
 import com.google.common.base.Throwables;
@@ -13,6 +14,7 @@ import com.sun.jersey.api.client.Client;
 import com.sun.jersey.api.client.ClientHandlerException;
 import com.sun.jersey.api.client.UniformInterfaceException;
 
+import javax.annotation.Nullable;
 import java.net.URI;
 
 /**
@@ -21,14 +23,24 @@ import java.net.URI;
 public class ReplicationClientFactory implements MultiThreadedServiceFactory<ReplicationSource> {
     private final Client _jerseyClient;
     private final String _apiKey;
+    private final MetricRegistry _metricRegistry;
 
     public ReplicationClientFactory(Client jerseyClient) {
         this(jerseyClient, null);
     }
 
     public ReplicationClientFactory(Client jerseyClient, String apiKey) {
+        this(jerseyClient, apiKey, null);
+    }
+
+    /**
+     * If a metric registry is provided the clients meter the bytes transferred from each end point, identified by
+     * the end point ID.
+     */
+    public ReplicationClientFactory(Client jerseyClient, String apiKey, @Nullable MetricRegistry metricRegistry) {
         _jerseyClient = jerseyClient;
         _apiKey = apiKey;
+        _metricRegistry = metricRegistry;
     }
 
     /**
@@ -39,7 +51,7 @@ public class ReplicationClientFactory implements MultiThreadedServiceFactory<Rep
         if (Objects.equal(_apiKey, apiKey)) {
             return this;
         }
-        return new ReplicationClientFactory(_jerseyClient, apiKey);
+        return new ReplicationClientFactory(_jerseyClient, apiKey, _metricRegistry);
     }
 
     @Override
@@ -55,7 +67,7 @@ public class ReplicationClientFactory implements MultiThreadedServiceFactory<Rep
     @Override
     public ReplicationSource create(ServiceEndPoint endPoint) {
         Payload payload = Payload.valueOf(endPoint.getPayload());
-        return new ReplicationClient(payload.getServiceUrl(), _jerseyClient, _apiKey);
+        return new ReplicationClient(payload.getServiceUrl(), _jerseyClient, _apiKey, _metricRegistry, endPoint.getId());
     }
 
     @Override
@@ -19,16 +19,25 @@ import java.util.List;
 public class ReplicationEventSource implements EventSource {
     private final ReplicationSource _source;
     private final String _channel;
+    private final UpdateRefSerializer.Format _updateRefFormat;
 
-    public ReplicationEventSource(ReplicationSource source, String channel) {
+    public ReplicationEventSource(ReplicationSource source, String channel, UpdateRefSerializer.Format updateRefFormat) {
         _source = source;
         _channel = channel;
+        _updateRefFormat = updateRefFormat;
     }
 
     @Override
     public List<EventData> get(int limit) {
-        List<ReplicationEvent> events = _source.get(_channel, limit);
+        return toEventData(_source.get(_channel, limit), _updateRefFormat);
+    }
+
+    @Override
+    public void delete(Collection<String> eventIds) {
+        _source.delete(_channel, eventIds);
+    }
 
+    static List<EventData> toEventData(List<ReplicationEvent> events, final UpdateRefSerializer.Format updateRefFormat) {
         return Lists.transform(events, new Function<ReplicationEvent, EventData>() {
             @Override
             public EventData apply(final ReplicationEvent event) {
@@ -41,15 +50,11 @@ public class ReplicationEventSource implements EventSource {
                     @Override
                     public ByteBuffer getData() {
                         return UpdateRefSerializer.toByteBuffer(
-                                new UpdateRef(event.getTable(), event.getKey(), event.getChangeId(), event.getTags()));
+                                new UpdateRef(event.getTable(), event.getKey(), event.getChangeId(), event.getTags()),
+                                updateRefFormat);
                     }
                 };
             }
         });
     }
-
-    @Override
-    public void delete(Collection<String> eventIds) {
-        _source.delete(_channel, eventIds);
-    }
 }
@@ -1,5 +1,6 @@
 package com.bazaarvoice.emodb.databus.repl;
 
+import java.time.Duration;
 import java.util.Collection;
 import java.util.List;
 
@@ -10,5 +11,11 @@ public interface ReplicationSource {
 
     List<ReplicationEvent> get(String channel, int limit);
 
+    /**
+     * Claims and returns up to {@code limit} events.  Claimed events aren't returned again until the claim expires,
+     * so the caller may fetch the next batch of events before acknowledging the current one.
+     */
+    List<ReplicationEvent> poll(String channel, Duration claimTtl, int limit);
+
     void delete(String channel, Collection<String> eventIds);
 }
@@ -14,6 +14,7 @@ import com.bazaarvoice.emodb.common.dropwizard.task.TaskRegistry;
 import com.bazaarvoice.emodb.databus.auth.DatabusAuthorizer;
 import com.bazaarvoice.emodb.databus.core.DatabusFactory;
 import com.bazaarvoice.emodb.datacenter.api.DataCenters;
+import com.bazaarvoice.emodb.event.core.Limits;
 import com.bazaarvoice.emodb.job.api.JobHandlerRegistry;
 import com.bazaarvoice.emodb.job.api.JobService;
 import com.bazaarvoice.emodb.sor.condition.Condition;
@@ -42,6 +43,7 @@ import org.mockito.Mockito;
 import org.testng.annotations.Test;
 
 import java.time.Clock;
+import java.time.Duration;
 import java.util.Collection;
 
 import static org.mockito.Matchers.eq;
@@ -65,11 +67,28 @@ public class DatabusModuleTest {
         assertNotNull(injector.getInstance(DatabusFactory.class));
     }
 
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testMaxFanoutBatchSizeAboveMaxPeekLimit() {
+        // The fanout peeks its batch size from the source channel, which is limited by the event store
+        DatabusConfiguration configuration = new DatabusConfiguration()
+                .setFanoutConfiguration(new FanoutConfiguration().setMaxBatchSize(Limits.MAX_PEEK_LIMIT + 1));
+        new DatabusModule(EmoServiceMode.STANDARD_ALL, new MetricRegistry()).provideFanoutConfiguration(configuration);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testReplicationClaimTtlBelowOneSecond() {
+        // Replication polls claim events, so a claim TTL which truncates to zero seconds wouldn't claim them at all
+        DatabusConfiguration configuration = new DatabusConfiguration()
+                .setReplicationConfiguration(new ReplicationConfiguration().setClaimTtl(Duration.ofMillis(500)));
+        new DatabusModule(EmoServiceMode.STANDARD_ALL, new MetricRegistry()).provideReplicationConfiguration(configuration);
+    }
+
     private Injector createInjector(final EmoServiceMode serviceMode) {
         // Mock the minimal CacheRegistry functionality required to instantiate the module
         final CacheRegistry rootCacheRegistry = mock(CacheRegistry.class);
         CacheRegistry sorCacheRegistry = mock(CacheRegistry.class);
         when(rootCacheRegistry.withNamespace(eq("bus"))).thenReturn(sorCacheRegistry);
+        when(rootCacheRegistry.withNamespace(eq("sor"))).thenReturn(mock(CacheRegistry.class));
 
         final CuratorFramework curator = mock(CuratorFramework.class);
         when(curator.getState()).thenReturn(CuratorFrameworkState.STARTED);
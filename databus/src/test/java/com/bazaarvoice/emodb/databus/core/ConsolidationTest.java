@@ -2,6 +2,7 @@ package com.bazaarvoice.emodb.databus.core;
 
 import com.bazaarvoice.emodb.common.dropwizard.lifecycle.LifeCycleRegistry;
 import com.bazaarvoice.emodb.common.uuid.TimeUUIDs;
+import com.bazaarvoice.emodb.databus.PollConfiguration;
 import com.bazaarvoice.emodb.databus.api.Event;
 import com.bazaarvoice.emodb.databus.api.PollResult;
 import com.bazaarvoice.emodb.databus.auth.ConstantDatabusAuthorizer;
@@ -26,6 +27,7 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Ordering;
+import com.google.common.util.concurrent.MoreExecutors;
 import org.testng.annotations.Test;
 
 import java.nio.ByteBuffer;
@@ -256,7 +258,8 @@ public class ConsolidationTest {
     public void testDiscardedUpdates() {
         final List<String> actualIds = Lists.newArrayList();
         DedupEventStore dedupEventStore = mock(DedupEventStore.class);
-        DatabusEventStore eventStore = new DatabusEventStore(mock(EventStore.class), dedupEventStore, Suppliers.ofInstance(true)) {
+        DatabusEventStore eventStore = new DatabusEventStore(mock(EventStore.class), dedupEventStore, Suppliers.ofInstance(true),
+                mock(EventArrivalNotifier.class)) {
             @Override
             public boolean poll(String subscription, Duration claimTtl, EventSink sink) {
                 // The single poll will supply 10 redundant events followed by an empty queue return value
@@ -290,7 +293,8 @@ public class ConsolidationTest {
     public void testDiscardedUpdatesOverMultipleEventStorePolls() {
         final List<String> actualIds = Lists.newArrayList();
         DedupEventStore dedupEventStore = mock(DedupEventStore.class);
-        DatabusEventStore eventStore = new DatabusEventStore(mock(EventStore.class), dedupEventStore, Suppliers.ofInstance(true)) {
+        DatabusEventStore eventStore = new DatabusEventStore(mock(EventStore.class), dedupEventStore, Suppliers.ofInstance(true),
+                mock(EventArrivalNotifier.class)) {
             int iteration = 0;
 
             @Override
@@ -341,8 +345,9 @@ public class ConsolidationTest {
         DatabusAuthorizer databusAuthorizer = ConstantDatabusAuthorizer.ALLOW_ALL;
         return new DefaultDatabus(lifeCycle, eventWriterRegistry, dataProvider, subscriptionDao, eventStore, subscriptionEvaluator,
                 jobService, jobHandlerRegistry, databusAuthorizer, "replication",
-                Suppliers.ofInstance(Conditions.alwaysFalse()), mock(ExecutorService.class), 1, key -> 0,
-                new MetricRegistry(), clock);
+                Suppliers.ofInstance(Conditions.alwaysFalse()), mock(ExecutorService.class),
+                new PollConfiguration(), MoreExecutors.sameThreadExecutor(),
+                UpdateRefSerializer.Format.composite, 1, key -> 0, new MetricRegistry(), clock);
     }
 
     private static EventData newEvent(final String id, String table, String key, UUID changeId) {
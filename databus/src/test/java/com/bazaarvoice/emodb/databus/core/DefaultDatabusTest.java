@@ -3,6 +3,7 @@ package com.bazaarvoice.emodb.databus.core;
 import com.bazaarvoice.emodb.common.dropwizard.lifecycle.LifeCycleRegistry;
 import com.bazaarvoice.emodb.common.uuid.TimeUUIDs;
 import com.bazaarvoice.emodb.databus.ChannelNames;
+import com.bazaarvoice.emodb.databus.PollConfiguration;
 import com.bazaarvoice.emodb.databus.api.Event;
 import com.bazaarvoice.emodb.databus.api.PollResult;
 import com.bazaarvoice.emodb.databus.auth.ConstantDatabusAuthorizer;
@@ -17,21 +18,27 @@ import com.bazaarvoice.emodb.job.api.JobHandlerRegistry;
 import com.bazaarvoice.emodb.job.api.JobService;
 import com.bazaarvoice.emodb.sor.api.Coordinate;
 import com.bazaarvoice.emodb.sor.api.Intrinsic;
+import com.bazaarvoice.emodb.sor.api.ReadConsistency;
+import com.bazaarvoice.emodb.sor.api.TableAvailability;
+import com.bazaarvoice.emodb.sor.api.UnknownTableException;
 import com.bazaarvoice.emodb.sor.condition.Condition;
 import com.bazaarvoice.emodb.sor.condition.Conditions;
 import com.bazaarvoice.emodb.sor.core.DataProvider;
 import com.bazaarvoice.emodb.sor.core.DatabusEventWriterRegistry;
 import com.bazaarvoice.emodb.sor.core.UpdateRef;
+import com.bazaarvoice.emodb.table.db.Table;
 import com.beust.jcommander.internal.Sets;
 import com.codahale.metrics.MetricRegistry;
 import com.google.common.base.Supplier;
 import com.google.common.base.Suppliers;
+import com.google.common.base.Throwables;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSetMultimap;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.SetMultimap;
 import com.google.common.util.concurrent.MoreExecutors;
@@ -52,7 +59,15 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyBoolean;
@@ -70,6 +85,7 @@ import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertTrue;
 
 public class DefaultDatabusTest {
@@ -88,7 +104,8 @@ public class DefaultDatabusTest {
                 mock(LifeCycleRegistry.class), mock(DatabusEventWriterRegistry.class), mock(DataProvider.class), mockSubscriptionDao,
                 mock(DatabusEventStore.class), mock(SubscriptionEvaluator.class), mock(JobService.class),
                 mock(JobHandlerRegistry.class), mock(DatabusAuthorizer.class), "replication", ignoreReEtl, mock(ExecutorService.class),
-                1, key -> 0, mock(MetricRegistry.class), Clock.systemUTC());
+                new PollConfiguration(), MoreExecutors.sameThreadExecutor(),
+                UpdateRefSerializer.Format.composite, 1, key -> 0, mock(MetricRegistry.class), Clock.systemUTC());
         Condition originalCondition = Conditions.mapBuilder().contains("foo", "bar").build();
         testDatabus.subscribe("id", "test-subscription", originalCondition, Duration.ofDays(7),
                 Duration.ofDays(7));
@@ -118,7 +135,8 @@ public class DefaultDatabusTest {
                 Conditions.not(Conditions.mapBuilder().matches(UpdateRef.TAGS_NAME, Conditions.containsAny("re-etl")).build()));
         final List<String> actualIds = Lists.newArrayList();
         DedupEventStore dedupEventStore = mock(DedupEventStore.class);
-        DatabusEventStore eventStore = new DatabusEventStore(mock(EventStore.class), dedupEventStore, Suppliers.ofInstance(true)) {
+        DatabusEventStore eventStore = new DatabusEventStore(mock(EventStore.class), dedupEventStore, Suppliers.ofInstance(true),
+                mock(EventArrivalNotifier.class)) {
             @Override
             public boolean peek(String subscription, EventSink sink) {
                 // The single peek will supply 3 redundant events followed by an empty queue return value
@@ -142,7 +160,8 @@ public class DefaultDatabusTest {
                 mock(LifeCycleRegistry.class), mock(DatabusEventWriterRegistry.class), new TestDataProvider().add(annotatedContent), mock(SubscriptionDAO.class),
                 eventStore, mock(SubscriptionEvaluator.class), mock(JobService.class),
                 mock(JobHandlerRegistry.class), mock(DatabusAuthorizer.class), "systemOwnerId", ignoreReEtl, MoreExecutors.sameThreadExecutor(),
-                1, key -> 0, new MetricRegistry(), Clock.systemUTC());
+                new PollConfiguration(), MoreExecutors.sameThreadExecutor(),
+                UpdateRefSerializer.Format.composite, 1, key -> 0, new MetricRegistry(), Clock.systemUTC());
 
         // Call the drainQueue method.
         testDatabus.drainQueueAsync("test-subscription");
@@ -161,7 +180,8 @@ public class DefaultDatabusTest {
                 Conditions.not(Conditions.mapBuilder().matches(UpdateRef.TAGS_NAME, Conditions.containsAny("re-etl")).build()));
         final List<String> actualIds = Lists.newArrayList();
         DedupEventStore dedupEventStore = mock(DedupEventStore.class);
-        DatabusEventStore eventStore = new DatabusEventStore(mock(EventStore.class), dedupEventStore, Suppliers.ofInstance(true)) {
+        DatabusEventStore eventStore = new DatabusEventStore(mock(EventStore.class), dedupEventStore, Suppliers.ofInstance(true),
+                mock(EventArrivalNotifier.class)) {
             @Override
             public boolean peek(String subscription, EventSink sink) {
                 // The single peek will supply 3 redundant events followed by an empty queue return value
@@ -185,7 +205,8 @@ public class DefaultDatabusTest {
                 mock(LifeCycleRegistry.class), mock(DatabusEventWriterRegistry.class), new TestDataProvider().add(annotatedContent), mock(SubscriptionDAO.class),
                 eventStore, mock(SubscriptionEvaluator.class), mock(JobService.class),
                 mock(JobHandlerRegistry.class), mock(DatabusAuthorizer.class), "systemOwnerId", ignoreReEtl, MoreExecutors.sameThreadExecutor(),
-                1, key -> 0, new MetricRegistry(), Clock.systemUTC());
+                new PollConfiguration(), MoreExecutors.sameThreadExecutor(),
+                UpdateRefSerializer.Format.composite, 1, key -> 0, new MetricRegistry(), Clock.systemUTC());
 
         // Call the drainQueue method.
         testDatabus.drainQueueAsync("test-subscription");
@@ -204,7 +225,8 @@ public class DefaultDatabusTest {
                 Conditions.not(Conditions.mapBuilder().matches(UpdateRef.TAGS_NAME, Conditions.containsAny("re-etl")).build()));
         final List<String> actualIds = Lists.newArrayList();
         DedupEventStore dedupEventStore = mock(DedupEventStore.class);
-        DatabusEventStore eventStore = new DatabusEventStore(mock(EventStore.class), dedupEventStore, Suppliers.ofInstance(true)) {
+        DatabusEventStore eventStore = new DatabusEventStore(mock(EventStore.class), dedupEventStore, Suppliers.ofInstance(true),
+                mock(EventArrivalNotifier.class)) {
             private int iteration = 0;
 
             @Override
@@ -231,7 +253,8 @@ public class DefaultDatabusTest {
                 mock(LifeCycleRegistry.class), mock(DatabusEventWriterRegistry.class), new TestDataProvider().add(annotatedContent), mock(SubscriptionDAO.class),
                 eventStore, mock(SubscriptionEvaluator.class), mock(JobService.class),
                 mock(JobHandlerRegistry.class), mock(DatabusAuthorizer.class), "systemOwnerId", ignoreReEtl, MoreExecutors.sameThreadExecutor(),
-                1, key -> 0, new MetricRegistry(), Clock.systemUTC());
+                new PollConfiguration(), MoreExecutors.sameThreadExecutor(),
+                UpdateRefSerializer.Format.composite, 1, key -> 0, new MetricRegistry(), Clock.systemUTC());
 
         // Call the drainQueue method.
         testDatabus.drainQueueAsync("test-subscription");
@@ -283,7 +306,8 @@ public class DefaultDatabusTest {
                 mock(LifeCycleRegistry.class), mock(DatabusEventWriterRegistry.class), testDataProvider, subscriptionDAO,
                 eventStore, mock(SubscriptionEvaluator.class), mock(JobService.class),
                 mock(JobHandlerRegistry.class), databusAuthorizer, "systemOwnerId", acceptAll, MoreExecutors.sameThreadExecutor(),
-                1, key -> 0, new MetricRegistry(), clock);
+                new PollConfiguration().setResolveBatchSize(25), MoreExecutors.sameThreadExecutor(),
+                UpdateRefSerializer.Format.composite, 1, key -> 0, new MetricRegistry(), clock);
 
         PollResult pollResult = testDatabus.poll("owner", "subscription", Duration.ofMinutes(1), 500);
         assertFalse(pollResult.hasMoreEvents());
@@ -295,13 +319,12 @@ public class DefaultDatabusTest {
             actualIds.add(events.next().getEventKey());
         }
         assertEquals(actualIds, expectedIds);
-        // Events should have been loaded in 3 batches.  The first was a synchronous batch that loaded the first 10 events.
-        // The seconds should have loaded 25 more events.  The third loaded the final 5 events;
+        // Events should have been loaded in 2 batches of at most 25 events, so the first loaded 25 events and the second
+        // loaded the final 15 events.
         List<List<Coordinate>> executions = testDataProvider.getExecutions();
-        assertEquals(executions.size(), 3);
-        assertEquals(executions.get(0).size(), 10);
-        assertEquals(executions.get(1).size(), 25);
-        assertEquals(executions.get(2).size(), 5);
+        assertEquals(executions.size(), 2);
+        assertEquals(executions.get(0).size(), 25);
+        assertEquals(executions.get(1).size(), 15);
     }
 
     @Test
@@ -354,7 +377,8 @@ public class DefaultDatabusTest {
                 mock(LifeCycleRegistry.class), mock(DatabusEventWriterRegistry.class), testDataProvider, subscriptionDAO,
                 eventStore, mock(SubscriptionEvaluator.class), mock(JobService.class),
                 mock(JobHandlerRegistry.class), databusAuthorizer, "systemOwnerId", acceptAll, MoreExecutors.sameThreadExecutor(),
-                1, key -> 0, new MetricRegistry(), clock);
+                new PollConfiguration(), MoreExecutors.sameThreadExecutor(),
+                UpdateRefSerializer.Format.composite, 1, key -> 0, new MetricRegistry(), clock);
 
         PollResult pollResult = testDatabus.poll("owner", "subscription", Duration.ofMinutes(1), 10);
         // Because of padding all events were read from the event store.  However, since the padded events will be
@@ -363,9 +387,9 @@ public class DefaultDatabusTest {
 
         // Verify that the redundant events where deleted
         verify(eventStore).delete(eq("subscription"), argThat(containsExactly(expectedDeleteIds)), eq(true));
-        // Padded events will be unclaimed lazily upon iterating over the event list, so verify they haven't been unclaimed yet
-        verify(eventStore, never()).renew(anyString(), anyCollectionOf(String.class), any(Duration.class), anyBoolean());
-        
+        // All 20 events were resolved in a single batch while polling, so the padded events were unclaimed immediately
+        verify(eventStore).renew(eq("subscription"), argThat(containsExactly(expectedUnclaimIds)), eq(Duration.ZERO), eq(false));
+
         Iterator<Event> events = pollResult.getEventIterator();
         // Read the entire event list
         Set<String> actualIds = Sets.newHashSet();
@@ -374,9 +398,245 @@ public class DefaultDatabusTest {
         }
 
         assertEquals(actualIds, expectedPollIds);
+        // Reading the event list didn't unclaim any other events
+        verify(eventStore).renew(anyString(), anyCollectionOf(String.class), any(Duration.class), anyBoolean());
+    }
 
-        // Verify the padded events were unclaimed
-        verify(eventStore).renew(eq("subscription"), argThat(containsExactly(expectedUnclaimIds)), eq(Duration.ZERO), eq(false));
+    @Test
+    public void testLazyPollResultBatchedByPlacement() {
+        Supplier<Condition> acceptAll = Suppliers.ofInstance(Conditions.alwaysTrue());
+        TestDataProvider testDataProvider = new TestDataProvider();
+
+        // Tables alternate between two placements
+        Map<String, String> placementByTable = Maps.newHashMap();
+        for (int iteration = 1; iteration <= 25; iteration++) {
+            String table = "table-" + iteration;
+            String placement = iteration % 2 == 0 ? "catalog_global:cat" : "ugc_global:ugc";
+            Table mockTable = mock(Table.class);
+            when(mockTable.getAvailability()).thenReturn(new TableAvailability(placement, false));
+            testDataProvider.addTable(table, mockTable);
+            placementByTable.put(table, placement);
+        }
+
+        final Set<String> expectedIds = Sets.newHashSet();
+
+        DatabusEventStore eventStore = mock(DatabusEventStore.class);
+        when(eventStore.poll(eq("subscription"), eq(Duration.ofMinutes(1)), any(EventSink.class)))
+                .thenAnswer(invocationOnMock -> {
+                    EventSink sink = (EventSink) invocationOnMock.getArguments()[2];
+                    for (int iteration = 1; iteration <= 25; iteration++) {
+                        String id = "a" + iteration;
+                        addToPoll(id, "table-" + iteration, "key-" + iteration, false, sink, testDataProvider);
+                        expectedIds.add(id);
+                    }
+                    return false;
+                });
+        SubscriptionDAO subscriptionDAO = mock(SubscriptionDAO.class);
+        when(subscriptionDAO.getSubscription("subscription")).thenReturn(
+                new DefaultOwnedSubscription("subscription", Conditions.alwaysTrue(), new Date(1489090060000L),
+                        Duration.ofSeconds(30), "owner"));
+
+        DefaultDatabus testDatabus = new DefaultDatabus(
+                mock(LifeCycleRegistry.class), mock(DatabusEventWriterRegistry.class), testDataProvider, subscriptionDAO,
+                eventStore, mock(SubscriptionEvaluator.class), mock(JobService.class),
+                mock(JobHandlerRegistry.class), ConstantDatabusAuthorizer.ALLOW_ALL, "systemOwnerId", acceptAll,
+                MoreExecutors.sameThreadExecutor(), new PollConfiguration().setResolveBatchSize(5), MoreExecutors.sameThreadExecutor(),
+                UpdateRefSerializer.Format.composite, 1, key -> 0, new MetricRegistry(), Clock.systemUTC());
+
+        PollResult pollResult = testDatabus.poll("owner", "subscription", Duration.ofMinutes(1), 100);
+        Set<String> actualIds = Sets.newHashSet();
+        Iterator<Event> events = pollResult.getEventIterator();
+        while (events.hasNext()) {
+            actualIds.add(events.next().getEventKey());
+        }
+        assertEquals(actualIds, expectedIds);
+
+        // All 25 events were resolved in batches of at most 5 records, each from a single placement.
+        List<List<Coordinate>> executions = testDataProvider.getExecutions();
+        int resolvedCount = 0;
+        for (List<Coordinate> execution : executions) {
+            assertTrue(execution.size() <= 5);
+            assertEquals(execution.stream().map(coord -> placementByTable.get(coord.getTable())).distinct().count(), 1L);
+            resolvedCount += execution.size();
+        }
+        assertEquals(resolvedCount, 25);
+    }
+
+    @Test
+    public void testConcurrentPollReturnsBatchesInCompletionOrder() throws Exception {
+        BlockingDataProvider dataProvider = new BlockingDataProvider();
+        List<String> idsA = dataProvider.addPlacement("a", 5);
+        List<String> idsB = dataProvider.addPlacement("b", 5);
+        List<String> idsC = dataProvider.addPlacement("c", 5);
+
+        DatabusEventStore eventStore = mock(DatabusEventStore.class);
+        when(eventStore.poll(eq("subscription"), eq(Duration.ofMinutes(1)), any(EventSink.class)))
+                .thenAnswer(invocationOnMock -> {
+                    EventSink sink = (EventSink) invocationOnMock.getArguments()[2];
+                    dataProvider.addToPoll(sink, "a", "b", "c");
+                    return false;
+                });
+
+        ExecutorService pollResolveService = Executors.newFixedThreadPool(4);
+        try {
+            DefaultDatabus testDatabus = newConcurrentDatabus(eventStore, dataProvider,
+                    new PollConfiguration().setResolveBatchSize(5), pollResolveService);
+
+            // The last placement's batch completes first
+            dataProvider.release("c");
+            PollResult pollResult = testDatabus.poll("owner", "subscription", Duration.ofMinutes(1), 100);
+            Iterator<Event> events = pollResult.getEventIterator();
+            assertEquals(readEventKeys(events, 5), ImmutableSet.copyOf(idsC));
+
+            dataProvider.release("b");
+            assertEquals(readEventKeys(events, 5), ImmutableSet.copyOf(idsB));
+
+            dataProvider.release("a");
+            assertEquals(readEventKeys(events, 5), ImmutableSet.copyOf(idsA));
+            assertFalse(events.hasNext());
+
+            verify(eventStore, never()).renew(anyString(), anyCollectionOf(String.class), any(Duration.class), anyBoolean());
+        } finally {
+            pollResolveService.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testConcurrentPollLimitsBatchesInFlight() throws Exception {
+        BlockingDataProvider dataProvider = new BlockingDataProvider();
+        Set<String> expectedIds = Sets.newHashSet();
+        List<String> placements = ImmutableList.of("a", "b", "c", "d", "e", "f");
+        for (String placement : placements) {
+            expectedIds.addAll(dataProvider.addPlacement(placement, 5));
+        }
+
+        DatabusEventStore eventStore = mock(DatabusEventStore.class);
+        when(eventStore.poll(eq("subscription"), eq(Duration.ofMinutes(1)), any(EventSink.class)))
+                .thenAnswer(invocationOnMock -> {
+                    EventSink sink = (EventSink) invocationOnMock.getArguments()[2];
+                    dataProvider.addToPoll(sink, placements.toArray(new String[placements.size()]));
+                    return false;
+                });
+
+        // More threads than the limit are available, so any extra batches submitted would start immediately
+        ExecutorService pollResolveService = Executors.newFixedThreadPool(8);
+        ExecutorService releaseService = Executors.newSingleThreadExecutor();
+        try {
+            DefaultDatabus testDatabus = newConcurrentDatabus(eventStore, dataProvider,
+                    new PollConfiguration().setResolveBatchSize(5).setMaxConcurrentResolveBatches(2), pollResolveService);
+
+            // Release each batch shortly after it starts, giving any batches beyond the limit time to start too
+            Future<?> releases = releaseService.submit(() -> {
+                for (int i = 0; i < placements.size(); i++) {
+                    String placement = dataProvider.awaitStart();
+                    Thread.sleep(20);
+                    dataProvider.release(placement);
+                }
+                return null;
+            });
+
+            PollResult pollResult = testDatabus.poll("owner", "subscription", Duration.ofMinutes(1), 100);
+            assertEquals(readEventKeys(pollResult.getEventIterator(), 30), expectedIds);
+            releases.get(10, TimeUnit.SECONDS);
+
+            assertEquals(dataProvider.getMaxBatchesInFlight(), 2);
+        } finally {
+            releaseService.shutdownNow();
+            pollResolveService.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testConcurrentPollUnclaimsFailedBatch() throws Exception {
+        BlockingDataProvider dataProvider = new BlockingDataProvider();
+        List<String> idsA = dataProvider.addPlacement("a", 5);
+        List<String> idsB = dataProvider.addPlacement("b", 5);
+
+        DatabusEventStore eventStore = mock(DatabusEventStore.class);
+        when(eventStore.poll(eq("subscription"), eq(Duration.ofMinutes(1)), any(EventSink.class)))
+                .thenAnswer(invocationOnMock -> {
+                    EventSink sink = (EventSink) invocationOnMock.getArguments()[2];
+                    dataProvider.addToPoll(sink, "a", "b");
+                    return false;
+                });
+
+        ExecutorService pollResolveService = Executors.newFixedThreadPool(4);
+        try {
+            DefaultDatabus testDatabus = newConcurrentDatabus(eventStore, dataProvider,
+                    new PollConfiguration().setResolveBatchSize(5), pollResolveService);
+
+            // Reading the first placement fails while the second placement is still resolved
+            dataProvider.fail("a");
+            dataProvider.release("a");
+            dataProvider.release("b");
+
+            PollResult pollResult = testDatabus.poll("owner", "subscription", Duration.ofMinutes(1), 100);
+            Iterator<Event> events = pollResult.getEventIterator();
+            assertEquals(readEventKeys(events, 5), ImmutableSet.copyOf(idsB));
+            assertFalse(events.hasNext());
+
+            // The failed batch's events were released for a future poll
+            verify(eventStore).renew(eq("subscription"), argThat(containsExactly(idsA)), eq(Duration.ZERO), eq(false));
+            verify(eventStore).renew(anyString(), anyCollectionOf(String.class), any(Duration.class), anyBoolean());
+        } finally {
+            pollResolveService.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testConcurrentPollUnclaimsBatchesInFlightWhenLimitReached() throws Exception {
+        BlockingDataProvider dataProvider = new BlockingDataProvider();
+        List<String> redundantIds = dataProvider.addPlacement("f", 10);
+        List<String> idsA = dataProvider.addPlacement("a", 5);
+        List<String> idsB = dataProvider.addPlacement("b", 5);
+        List<String> idsC = dataProvider.addPlacement("c", 5);
+        List<String> idsD = dataProvider.addPlacement("d", 5);
+
+        DatabusEventStore eventStore = mock(DatabusEventStore.class);
+        when(eventStore.poll(eq("subscription"), eq(Duration.ofMinutes(1)), any(EventSink.class)))
+                .thenAnswer(invocationOnMock -> {
+                    // The first poll only returns redundant events, so the second poll is padded to 20 events
+                    EventSink sink = (EventSink) invocationOnMock.getArguments()[2];
+                    dataProvider.addToPoll(sink, "f");
+                    return true;
+                })
+                .thenAnswer(invocationOnMock -> {
+                    EventSink sink = (EventSink) invocationOnMock.getArguments()[2];
+                    dataProvider.addToPoll(sink, "a", "b", "c", "d");
+                    return false;
+                });
+
+        ExecutorService pollResolveService = Executors.newFixedThreadPool(4);
+        try {
+            DefaultDatabus testDatabus = newConcurrentDatabus(eventStore, dataProvider,
+                    new PollConfiguration().setResolveBatchSize(10), pollResolveService);
+
+            dataProvider.setRedundant("f");
+            dataProvider.release("f");
+            dataProvider.release("a");
+            dataProvider.release("b");
+
+            PollResult pollResult = testDatabus.poll("owner", "subscription", Duration.ofMinutes(1), 10);
+            assertTrue(pollResult.hasMoreEvents());
+            verify(eventStore).delete(eq("subscription"), argThat(containsExactly(redundantIds)), eq(true));
+
+            // The limit is reached by the first two placements while the other two are still being resolved
+            Iterator<Event> events = pollResult.getEventIterator();
+            Set<String> expectedIds = Sets.newHashSet();
+            expectedIds.addAll(idsA);
+            expectedIds.addAll(idsB);
+            assertEquals(readEventKeys(events, 10), expectedIds);
+
+            dataProvider.release("c");
+            dataProvider.release("d");
+            assertFalse(events.hasNext());
+
+            // The batches which were in flight when the limit was reached were unclaimed once they completed
+            verify(eventStore).renew(eq("subscription"), argThat(containsExactly(idsC)), eq(Duration.ZERO), eq(false));
+            verify(eventStore).renew(eq("subscription"), argThat(containsExactly(idsD)), eq(Duration.ZERO), eq(false));
+        } finally {
+            pollResolveService.shutdownNow();
+        }
     }
     
     @Test
@@ -406,7 +666,8 @@ public class DefaultDatabusTest {
                 mock(LifeCycleRegistry.class), mock(DatabusEventWriterRegistry.class), new TestDataProvider(), mock(SubscriptionDAO.class),
                 eventStore, mock(SubscriptionEvaluator.class), mock(JobService.class),
                 mock(JobHandlerRegistry.class), mock(DatabusAuthorizer.class), "systemOwnerId", acceptAll, MoreExecutors.sameThreadExecutor(),
-                3, masterPartitioner, new MetricRegistry(), Clock.systemUTC());
+                new PollConfiguration(), MoreExecutors.sameThreadExecutor(),
+                UpdateRefSerializer.Format.composite, 3, masterPartitioner, new MetricRegistry(), Clock.systemUTC());
 
         List<UpdateRef> updateRefs = Lists.newArrayListWithCapacity(4);
         for (int i=0; i < 4; i++) {
@@ -422,6 +683,63 @@ public class DefaultDatabusTest {
                 .build());
     }
 
+    @Test
+    public void testResolvedRecordSharedAcrossSubscriptions() {
+        Supplier<Condition> acceptAll = Suppliers.ofInstance(Conditions.alwaysTrue());
+        TestDataProvider testDataProvider = new TestDataProvider();
+
+        UUID changeId = TimeUUIDs.newUUID();
+        UUID pendingChangeId = TimeUUIDs.newUUID();
+
+        DataProvider.AnnotatedContent annotatedContent = mock(DataProvider.AnnotatedContent.class);
+        when(annotatedContent.getContent()).thenReturn(entity("table", "key", ImmutableMap.of("rating", "5")));
+        when(annotatedContent.isChangeDeltaPending(pendingChangeId)).thenReturn(true);
+        testDataProvider.add(annotatedContent);
+
+        // Subscriptions "sub1" and "sub2" have events for the same change, "sub3" has an event for a newer change
+        DatabusEventStore eventStore = mock(DatabusEventStore.class);
+        for (String subscription : ImmutableList.of("sub1", "sub2", "sub3")) {
+            UUID eventChangeId = subscription.equals("sub3") ? pendingChangeId : changeId;
+            when(eventStore.poll(eq(subscription), eq(Duration.ofMinutes(1)), any(EventSink.class)))
+                    .thenAnswer(invocationOnMock -> {
+                        EventSink sink = (EventSink) invocationOnMock.getArguments()[2];
+                        sink.accept(newEvent("a" + subscription.substring("sub".length()), "table", "key", eventChangeId));
+                        return false;
+                    });
+        }
+        SubscriptionDAO subscriptionDAO = mock(SubscriptionDAO.class);
+        for (String subscription : ImmutableList.of("sub1", "sub2", "sub3")) {
+            when(subscriptionDAO.getSubscription(subscription)).thenReturn(
+                    new DefaultOwnedSubscription(subscription, Conditions.alwaysTrue(), new Date(1489090060000L),
+                            Duration.ofSeconds(30), "owner"));
+        }
+
+        MetricRegistry metricRegistry = new MetricRegistry();
+        DefaultDatabus testDatabus = new DefaultDatabus(
+                mock(LifeCycleRegistry.class), mock(DatabusEventWriterRegistry.class), testDataProvider, subscriptionDAO,
+                eventStore, mock(SubscriptionEvaluator.class), mock(JobService.class),
+                mock(JobHandlerRegistry.class), ConstantDatabusAuthorizer.ALLOW_ALL, "systemOwnerId", acceptAll,
+                MoreExecutors.sameThreadExecutor(), new PollConfiguration(), MoreExecutors.sameThreadExecutor(),
+                UpdateRefSerializer.Format.composite, 1, key -> 0, metricRegistry, Clock.systemUTC());
+
+        // The first poll reads the record
+        assertEquals(Lists.newArrayList(testDatabus.poll("owner", "sub1", Duration.ofMinutes(1), 10).getEventIterator()).size(), 1);
+        // The second poll is for the same change and reuses the record resolved by the first poll
+        assertEquals(Lists.newArrayList(testDatabus.poll("owner", "sub2", Duration.ofMinutes(1), 10).getEventIterator()).size(), 1);
+        // The third poll is for a change the cached record doesn't include so the record is read again
+        testDatabus.poll("owner", "sub3", Duration.ofMinutes(1), 10);
+
+        List<List<Coordinate>> executions = testDataProvider.getExecutions();
+        assertEquals(executions.size(), 3);
+        assertEquals(executions.get(0), ImmutableList.of(Coordinate.of("table", "key")));
+        assertEquals(executions.get(1), ImmutableList.of());
+        assertEquals(executions.get(2), ImmutableList.of(Coordinate.of("table", "key")));
+
+        assertEquals(metricRegistry.meter("bv.emodb.databus.DefaultDatabus.resolved-record-cache-hits").getCount(), 1);
+        assertEquals(metricRegistry.meter("bv.emodb.databus.DefaultDatabus.resolved-record-cache-misses").getCount(), 1);
+        assertEquals(metricRegistry.meter("bv.emodb.databus.DefaultDatabus.resolved-record-cache-stale").getCount(), 1);
+    }
+
     private static EventData newEvent(final String id, String table, String key, UUID changeId) {
         return newEvent(id, table, key, changeId, ImmutableSet.<String>of());
     }
@@ -449,6 +767,31 @@ public class DefaultDatabusTest {
                 .build();
     }
 
+    private static DefaultDatabus newConcurrentDatabus(DatabusEventStore eventStore, DataProvider dataProvider,
+                                                       PollConfiguration pollConfiguration,
+                                                       ExecutorService pollResolveService) {
+        SubscriptionDAO subscriptionDAO = mock(SubscriptionDAO.class);
+        when(subscriptionDAO.getSubscription("subscription")).thenReturn(
+                new DefaultOwnedSubscription("subscription", Conditions.alwaysTrue(), new Date(1489090060000L),
+                        Duration.ofSeconds(30), "owner"));
+
+        return new DefaultDatabus(
+                mock(LifeCycleRegistry.class), mock(DatabusEventWriterRegistry.class), dataProvider, subscriptionDAO,
+                eventStore, mock(SubscriptionEvaluator.class), mock(JobService.class),
+                mock(JobHandlerRegistry.class), ConstantDatabusAuthorizer.ALLOW_ALL, "systemOwnerId",
+                Suppliers.ofInstance(Conditions.alwaysTrue()), MoreExecutors.sameThreadExecutor(), pollConfiguration,
+                pollResolveService, UpdateRefSerializer.Format.composite, 1, key -> 0, new MetricRegistry(),
+                Clock.systemUTC());
+    }
+
+    private static Set<String> readEventKeys(Iterator<Event> events, int count) {
+        Set<String> eventKeys = Sets.newHashSet();
+        for (int i = 0; i < count; i++) {
+            eventKeys.add(events.next().getEventKey());
+        }
+        return eventKeys;
+    }
+
     private static void addToPoll(String eventId, String table, String key, boolean redundant, EventSink sink,
                                   TestDataProvider testDataProvider) {
         assertTrue(sink.remaining() > 0);
@@ -478,4 +821,99 @@ public class DefaultDatabusTest {
             }
         };
     }
+
+    /**
+     * Data provider whose multi-gets block until their placement is released, so tests control the order in which
+     * concurrently resolved batches complete.  Each placement's tables are named after the placement.
+     */
+    private static class BlockingDataProvider extends TestDataProvider {
+        private final Map<String, CountDownLatch> _releaseLatches = Maps.newConcurrentMap();
+        private final Map<String, List<String>> _eventIdsByPlacement = Maps.newConcurrentMap();
+        private final Set<String> _failingPlacements = ConcurrentHashMap.newKeySet();
+        private final Set<String> _redundantPlacements = ConcurrentHashMap.newKeySet();
+        private final BlockingQueue<String> _startedPlacements = new LinkedBlockingQueue<>();
+        private final AtomicInteger _batchesInFlight = new AtomicInteger();
+        private final AtomicInteger _maxBatchesInFlight = new AtomicInteger();
+
+        /** Adds a placement with the provided number of tables and returns the IDs of the events for its records. */
+        List<String> addPlacement(String placement, int count) {
+            List<String> eventIds = Lists.newArrayList();
+            for (int i = 0; i < count; i++) {
+                Table table = mock(Table.class);
+                when(table.getAvailability()).thenReturn(new TableAvailability(placement + "_global:" + placement, false));
+                addTable(placement + "-table-" + i, table);
+                eventIds.add(placement + i);
+            }
+            _releaseLatches.put(placement, new CountDownLatch(1));
+            _eventIdsByPlacement.put(placement, eventIds);
+            return eventIds;
+        }
+
+        /** Adds an event for each record in the placements to the sink. */
+        void addToPoll(EventSink sink, String... placements) {
+            for (String placement : placements) {
+                List<String> eventIds = _eventIdsByPlacement.get(placement);
+                for (int i = 0; i < eventIds.size(); i++) {
+                    DefaultDatabusTest.addToPoll(eventIds.get(i), placement + "-table-" + i, "key",
+                            _redundantPlacements.contains(placement), sink, this);
+                }
+            }
+        }
+
+        void release(String placement) {
+            _releaseLatches.get(placement).countDown();
+        }
+
+        void fail(String placement) {
+            _failingPlacements.add(placement);
+        }
+
+        void setRedundant(String placement) {
+            _redundantPlacements.add(placement);
+        }
+
+        /** Waits for a multi-get to start and returns its placement. */
+        String awaitStart() throws InterruptedException {
+            String placement = _startedPlacements.poll(10, TimeUnit.SECONDS);
+            assertNotNull(placement, "No batch started");
+            return placement;
+        }
+
+        int getMaxBatchesInFlight() {
+            return _maxBatchesInFlight.get();
+        }
+
+        @Override
+        public AnnotatedGet prepareGetAnnotated(ReadConsistency consistency) {
+            final AnnotatedGet delegate = super.prepareGetAnnotated(consistency);
+            return new AnnotatedGet() {
+                private String _placement;
+
+                @Override
+                public AnnotatedGet add(String table, String key) throws UnknownTableException {
+                    _placement = table.substring(0, table.indexOf("-table-"));
+                    delegate.add(table, key);
+                    return this;
+                }
+
+                @Override
+                public Iterator<AnnotatedContent> execute() {
+                    int batchesInFlight = _batchesInFlight.incrementAndGet();
+                    _maxBatchesInFlight.accumulateAndGet(batchesInFlight, Math::max);
+                    _startedPlacements.add(_placement);
+                    try {
+                        assertTrue(_releaseLatches.get(_placement).await(10, TimeUnit.SECONDS), "Batch not released");
+                        if (_failingPlacements.contains(_placement)) {
+                            throw new RuntimeException("Simulated read failure");
+                        }
+                        return delegate.execute();
+                    } catch (InterruptedException e) {
+                        throw Throwables.propagate(e);
+                    } finally {
+                        _batchesInFlight.decrementAndGet();
+                    }
+                }
+            };
+        }
+    }
 }
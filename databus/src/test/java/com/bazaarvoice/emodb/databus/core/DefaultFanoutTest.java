@@ -1,10 +1,15 @@
 package com.bazaarvoice.emodb.databus.core;
 
+import com.bazaarvoice.emodb.cachemgr.api.CacheRegistry;
+import com.bazaarvoice.emodb.cachemgr.api.InvalidationScope;
+import com.bazaarvoice.emodb.cachemgr.core.DefaultCacheRegistry;
 import com.bazaarvoice.emodb.common.dropwizard.lifecycle.LifeCycleRegistry;
+import com.bazaarvoice.emodb.common.dropwizard.lifecycle.SimpleLifeCycleRegistry;
 import com.bazaarvoice.emodb.common.dropwizard.log.RateLimitedLog;
 import com.bazaarvoice.emodb.common.dropwizard.log.RateLimitedLogFactory;
 import com.bazaarvoice.emodb.common.uuid.TimeUUIDs;
 import com.bazaarvoice.emodb.databus.ChannelNames;
+import com.bazaarvoice.emodb.databus.FanoutConfiguration;
 import com.bazaarvoice.emodb.databus.auth.DatabusAuthorizer;
 import com.bazaarvoice.emodb.databus.model.DefaultOwnedSubscription;
 import com.bazaarvoice.emodb.databus.model.OwnedSubscription;
@@ -45,6 +50,8 @@ import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertTrue;
@@ -64,6 +71,7 @@ public class DefaultFanoutTest {
     private EventSource _eventSource;
     private List<String> _deletedKeys;
     private Instant _now;
+    private CacheRegistry _cacheRegistry;
     
     @BeforeMethod
     private void setUp() {
@@ -112,9 +120,11 @@ public class DefaultFanoutTest {
         when(clock.millis()).thenAnswer(ignore -> _now.toEpochMilli());
         
         MetricRegistry metricRegistry = new MetricRegistry();
+        _cacheRegistry = new DefaultCacheRegistry(new SimpleLifeCycleRegistry(), metricRegistry);
 
         _defaultFanout = new DefaultFanout("test", "test", _eventSource, eventSink, _outboundPartitionSelector,
-                Duration.ofSeconds(1), _subscriptionsSupplier, _currentDataCenter, rateLimitedLogFactory, subscriptionEvaluator,
+                Duration.ofSeconds(1), new FanoutConfiguration(), _subscriptionsSupplier, _currentDataCenter, rateLimitedLogFactory, subscriptionEvaluator,
+                new SubscriptionMatchCache(_cacheRegistry, metricRegistry, clock),
                 new FanoutLagMonitor(mock(LifeCycleRegistry.class), metricRegistry), metricRegistry, clock);
     }
 
@@ -139,6 +149,37 @@ public class DefaultFanoutTest {
                 ImmutableMultimap.of("test", event.getData(), _remoteChannel, event.getData()));
     }
 
+    @Test
+    public void testMatchesCachedPerTable() {
+        addTable("matching-table");
+
+        OwnedSubscription subscription = new DefaultOwnedSubscription(
+                "test", Conditions.intrinsic(Intrinsic.TABLE, Conditions.equal("matching-table")),
+                new Date(), Duration.ofDays(1), "owner0");
+
+        when(_subscriptionsSupplier.get()).thenReturn(ImmutableList.of(subscription));
+        DatabusAuthorizer.DatabusAuthorizerByOwner authorizerByOwner = mock(DatabusAuthorizer.DatabusAuthorizerByOwner.class);
+        when(authorizerByOwner.canReceiveEventsFromTable("matching-table")).thenReturn(true);
+        when(_databusAuthorizer.owner("owner0")).thenReturn(authorizerByOwner);
+
+        EventData event0 = newEvent("id0", "matching-table", "key0");
+        EventData event1 = newEvent("id1", "matching-table", "key1");
+        _defaultFanout.copyEvents(ImmutableList.of(event0));
+        _defaultFanout.copyEvents(ImmutableList.of(event1));
+
+        assertEquals(ImmutableSetMultimap.copyOf(_eventsSinked).get("test"),
+                ImmutableSet.of(event0.getData(), event1.getData()));
+        // The second event reused the match for the first
+        verify(authorizerByOwner, times(1)).canReceiveEventsFromTable("matching-table");
+
+        // Once the table changes the match must be re-evaluated
+        addTable("matching-table");
+        _cacheRegistry.withNamespace("sor").lookup("tables", true).invalidate(InvalidationScope.LOCAL, "matching-table");
+        _defaultFanout.copyEvents(ImmutableList.of(newEvent("id2", "matching-table", "key2")));
+        verify(authorizerByOwner, times(2)).canReceiveEventsFromTable("matching-table");
+        assertEquals(_eventsSinked.get("test").size(), 3);
+    }
+
     @Test
     public void testNotMatchingTable() {
         addTable("other-table");
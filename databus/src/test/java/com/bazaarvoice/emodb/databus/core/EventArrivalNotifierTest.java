@@ -0,0 +1,85 @@
+package com.bazaarvoice.emodb.databus.core;
+
+import com.bazaarvoice.emodb.common.dropwizard.lifecycle.LifeCycleRegistry;
+import com.bazaarvoice.emodb.common.dropwizard.log.RateLimitedLogFactory;
+import com.bazaarvoice.emodb.databus.ChannelNames;
+import com.bazaarvoice.ostrich.HostDiscovery;
+import com.bazaarvoice.ostrich.ServiceEndPoint;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableList;
+import com.google.common.net.HostAndPort;
+import com.sun.jersey.api.client.Client;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+
+public class EventArrivalNotifierTest {
+
+    @Test
+    public void testLocalListeners() {
+        Client client = mock(Client.class);
+        EventArrivalNotifier notifier = createNotifier(client);
+
+        AtomicInteger fooCount = new AtomicInteger();
+        AtomicInteger barCount = new AtomicInteger();
+        Runnable fooListener = fooCount::incrementAndGet;
+        notifier.addListener("foo", fooListener);
+        notifier.addListener("bar", barCount::incrementAndGet);
+
+        notifier.eventsAdded(ImmutableList.of("foo", "baz"));
+        assertEquals(fooCount.get(), 1);
+        assertEquals(barCount.get(), 0);
+
+        notifier.eventsArrived(ImmutableList.of("foo", "bar"));
+        assertEquals(fooCount.get(), 2);
+        assertEquals(barCount.get(), 1);
+
+        notifier.removeListener("foo", fooListener);
+        notifier.eventsAdded(ImmutableList.of("foo", "bar"));
+        assertEquals(fooCount.get(), 2);
+        assertEquals(barCount.get(), 2);
+
+        // With no other hosts there is nothing to forward
+        verifyZeroInteractions(client);
+    }
+
+    @Test
+    public void testSystemChannelsIgnored() {
+        EventArrivalNotifier notifier = createNotifier(mock(Client.class));
+
+        String channel = ChannelNames.getMasterFanoutChannel(0);
+        AtomicInteger count = new AtomicInteger();
+        notifier.addListener(channel, count::incrementAndGet);
+
+        notifier.eventsAdded(ImmutableList.of(channel));
+        assertEquals(count.get(), 0);
+    }
+
+    @Test
+    public void testFailingListener() {
+        EventArrivalNotifier notifier = createNotifier(mock(Client.class));
+
+        AtomicInteger count = new AtomicInteger();
+        notifier.addListener("foo", () -> {
+            throw new IllegalStateException("Listener failure");
+        });
+        notifier.addListener("foo", count::incrementAndGet);
+
+        // A failing listener shouldn't fail the writer or prevent other listeners from being notified
+        notifier.eventsAdded(ImmutableList.of("foo"));
+        assertEquals(count.get(), 1);
+    }
+
+    private EventArrivalNotifier createNotifier(Client client) {
+        HostDiscovery hostDiscovery = mock(HostDiscovery.class);
+        when(hostDiscovery.getHosts()).thenReturn(ImmutableList.<ServiceEndPoint>of());
+
+        return new EventArrivalNotifier(hostDiscovery, HostAndPort.fromString("localhost:8080"), client,
+                mock(RateLimitedLogFactory.class), mock(LifeCycleRegistry.class), new MetricRegistry());
+    }
+}
@@ -0,0 +1,81 @@
+package com.bazaarvoice.emodb.databus.core;
+
+import com.bazaarvoice.emodb.databus.FanoutConfiguration;
+import com.codahale.metrics.MetricRegistry;
+import org.testng.annotations.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class FanoutBatchControllerTest {
+
+    private final FanoutConfiguration _configuration = new FanoutConfiguration()
+            .setMinBatchSize(100)
+            .setMaxBatchSize(4000)
+            .setMaxPartitions(8)
+            .setMinFlushThreshold(100)
+            .setMaxFlushThreshold(2000)
+            .setTargetFlushLatency(Duration.ofMillis(500))
+            .setLagThreshold(Duration.ofSeconds(30));
+
+    @Test
+    public void testGrowsWhileBehind() {
+        FanoutBatchController controller = new FanoutBatchController(_configuration, new MetricRegistry(), "test", "partition-0");
+        assertEquals(controller.getBatchSize(), 1000);
+        assertEquals(controller.getFlushThreshold(), 500);
+
+        for (int i = 0; i < 10; i++) {
+            controller.recordFlush(TimeUnit.MILLISECONDS.toNanos(50));
+            controller.update(controller.getBatchSize(), 60);
+        }
+        assertEquals(controller.getBatchSize(), 4000);
+        assertEquals(controller.getFlushThreshold(), 2000);
+        assertEquals(controller.getPartitions(controller.getBatchSize()), 8);
+    }
+
+    @Test
+    public void testShrinksWhenWritesAreSlow() {
+        FanoutBatchController controller = new FanoutBatchController(_configuration, new MetricRegistry(), "test", "partition-0");
+        for (int i = 0; i < 10; i++) {
+            controller.recordFlush(TimeUnit.SECONDS.toNanos(2));
+            controller.update(controller.getBatchSize(), 60);
+        }
+        assertEquals(controller.getBatchSize(), 100);
+        assertEquals(controller.getFlushThreshold(), 100);
+    }
+
+    @Test
+    public void testDecaysWhenIdle() {
+        FanoutBatchController controller = new FanoutBatchController(_configuration, new MetricRegistry(), "test", "partition-0");
+        controller.update(1000, 0);
+        assertEquals(controller.getBatchSize(), 2000);
+
+        int previous = controller.getBatchSize();
+        for (int i = 0; i < 20; i++) {
+            controller.update(0, 0);
+            assertTrue(controller.getBatchSize() <= previous);
+            previous = controller.getBatchSize();
+        }
+        assertEquals(controller.getBatchSize(), 100);
+        // A handful of events isn't worth spreading across threads
+        assertEquals(controller.getPartitions(10), 1);
+    }
+
+    @Test
+    public void testGauges() {
+        MetricRegistry metricRegistry = new MetricRegistry();
+        FanoutBatchController controller = new FanoutBatchController(_configuration, metricRegistry, "test", "partition-0");
+        controller.getPartitions(200);
+        controller.update(1000, 0);
+
+        assertEquals(metricRegistry.getGauges().get("bv.emodb.databus.DefaultFanout.batch-size.test.partition-0").getValue(), 2000);
+        assertEquals(metricRegistry.getGauges().get("bv.emodb.databus.DefaultFanout.partitions.test.partition-0").getValue(), 4);
+        assertEquals(metricRegistry.getGauges().get("bv.emodb.databus.DefaultFanout.flush-threshold.test.partition-0").getValue(), 750);
+
+        controller.close();
+        assertTrue(metricRegistry.getGauges().isEmpty());
+    }
+}
@@ -0,0 +1,89 @@
+package com.bazaarvoice.emodb.databus.core;
+
+import com.bazaarvoice.emodb.sor.api.Coordinate;
+import com.bazaarvoice.emodb.sor.api.Intrinsic;
+import com.bazaarvoice.emodb.sor.core.DataProvider;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Strings;
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.testng.annotations.Test;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.mockito.Mockito.mock;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+
+public class ResolvedRecordCacheTest {
+
+    private static final Coordinate COORD = Coordinate.of("table", "key");
+
+    @Test
+    public void testPutKeepsNewerRecord() {
+        ResolvedRecordCache cache = new ResolvedRecordCache(Duration.ofSeconds(2), 1024 * 1024, Ticker.systemTicker(), new MetricRegistry());
+
+        DataProvider.AnnotatedContent older = mock(DataProvider.AnnotatedContent.class);
+        DataProvider.AnnotatedContent newer = mock(DataProvider.AnnotatedContent.class);
+        DataProvider.AnnotatedContent sameVersionLaterUpdate = mock(DataProvider.AnnotatedContent.class);
+
+        cache.put(COORD, newer, content(5, "2017-03-09T20:07:40.000Z", ""));
+        // A poll which read the record before the latest update finishes after a poll which read it afterward
+        cache.put(COORD, older, content(4, "2017-03-09T20:07:39.000Z", ""));
+        assertSame(cache.get(COORD, ImmutableList.<UUID>of()), newer);
+
+        cache.put(COORD, sameVersionLaterUpdate, content(5, "2017-03-09T20:07:41.000Z", ""));
+        assertSame(cache.get(COORD, ImmutableList.<UUID>of()), sameVersionLaterUpdate);
+    }
+
+    @Test
+    public void testBoundedBySize() {
+        ResolvedRecordCache cache = new ResolvedRecordCache(Duration.ofSeconds(2), 64 * 1024, Ticker.systemTicker(), new MetricRegistry());
+
+        DataProvider.AnnotatedContent small = mock(DataProvider.AnnotatedContent.class);
+        DataProvider.AnnotatedContent large = mock(DataProvider.AnnotatedContent.class);
+
+        cache.put(COORD, small, content(1, "2017-03-09T20:07:40.000Z", "small"));
+        assertSame(cache.get(COORD, ImmutableList.<UUID>of()), small);
+
+        // A single record larger than the cache's bound is never kept
+        Coordinate largeCoord = Coordinate.of("table", "large");
+        cache.put(largeCoord, large, content(1, "2017-03-09T20:07:40.000Z", Strings.repeat("x", 64 * 1024)));
+        assertNull(cache.get(largeCoord, ImmutableList.<UUID>of()));
+    }
+
+    @Test
+    public void testExpiresAfterTtl() {
+        final AtomicLong now = new AtomicLong();
+        Ticker ticker = new Ticker() {
+            @Override
+            public long read() {
+                return now.get();
+            }
+        };
+        ResolvedRecordCache cache = new ResolvedRecordCache(Duration.ofSeconds(2), 1024 * 1024, ticker, new MetricRegistry());
+
+        DataProvider.AnnotatedContent record = mock(DataProvider.AnnotatedContent.class);
+        cache.put(COORD, record, content(1, "2017-03-09T20:07:40.000Z", ""));
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1999));
+        assertSame(cache.get(COORD, ImmutableList.<UUID>of()), record);
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+        assertNull(cache.get(COORD, ImmutableList.<UUID>of()));
+    }
+
+    private static Map<String, Object> content(long version, String lastUpdateAt, String text) {
+        return ImmutableMap.<String, Object>builder()
+                .put(Intrinsic.ID, COORD.getId())
+                .put(Intrinsic.TABLE, COORD.getTable())
+                .put(Intrinsic.VERSION, version)
+                .put(Intrinsic.LAST_UPDATE_AT, lastUpdateAt)
+                .put("text", text)
+                .build();
+    }
+}
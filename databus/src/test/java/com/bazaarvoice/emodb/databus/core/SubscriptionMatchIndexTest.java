@@ -0,0 +1,134 @@
+package com.bazaarvoice.emodb.databus.core;
+
+import com.bazaarvoice.emodb.common.dropwizard.log.RateLimitedLogFactory;
+import com.bazaarvoice.emodb.common.uuid.TimeUUIDs;
+import com.bazaarvoice.emodb.databus.auth.ConstantDatabusAuthorizer;
+import com.bazaarvoice.emodb.databus.auth.DatabusAuthorizer;
+import com.bazaarvoice.emodb.databus.model.DefaultOwnedSubscription;
+import com.bazaarvoice.emodb.databus.model.OwnedSubscription;
+import com.bazaarvoice.emodb.sor.api.TableOptionsBuilder;
+import com.bazaarvoice.emodb.sor.condition.Condition;
+import com.bazaarvoice.emodb.sor.condition.Conditions;
+import com.bazaarvoice.emodb.sor.core.DataProvider;
+import com.bazaarvoice.emodb.table.db.Table;
+import com.bazaarvoice.emodb.table.db.test.InMemoryTable;
+import com.codahale.metrics.Meter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.testng.annotations.Test;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+
+import static org.mockito.Mockito.mock;
+import static org.testng.Assert.assertEquals;
+
+public class SubscriptionMatchIndexTest {
+
+    private final Table _reviewTable = new InMemoryTable("review:testcustomer",
+            new TableOptionsBuilder().setPlacement("ugc_global:ugc").build(),
+            ImmutableMap.<String, Object>of("type", "review", "client", "testcustomer"));
+    private final Table _questionTable = new InMemoryTable("question:othercustomer",
+            new TableOptionsBuilder().setPlacement("ugc_us:ugc").build(),
+            ImmutableMap.<String, Object>of("type", "question", "client", "othercustomer"));
+
+    @Test
+    public void testIndexMatchesFullEvaluation() {
+        List<OwnedSubscription> subscriptions = ImmutableList.of(
+                subscription("all", Conditions.alwaysTrue()),
+                subscription("none", Conditions.alwaysFalse()),
+                subscription("table", "intrinsic(\"~table\":\"review:testcustomer\")"),
+                subscription("tables", "intrinsic(\"~table\":[\"review:testcustomer\",\"question:othercustomer\"])"),
+                subscription("placement", "intrinsic(\"~placement\":\"ugc_us:ugc\")"),
+                subscription("type", "{..,\"type\":\"question\"}"),
+                subscription("type-and-client", "{..,\"type\":\"review\",\"client\":\"othercustomer\"}"),
+                subscription("and", "and(intrinsic(\"~placement\":\"ugc_global:ugc\"),{..,\"client\":\"testcustomer\"})"),
+                subscription("or", "or(intrinsic(\"~table\":\"question:othercustomer\"),{..,\"type\":\"review\"})"),
+                subscription("not", "not(intrinsic(\"~table\":\"review:testcustomer\"))"),
+                subscription("like", "intrinsic(\"~table\":like(\"review:*\"))"),
+                subscription("tags", "{..,\"~tags\":containsAny(\"ETL\")}"));
+
+        for (Set<String> tags : ImmutableList.<Set<String>>of(ImmutableSet.<String>of(), ImmutableSet.of("ETL"))) {
+            for (Table table : ImmutableList.of(_reviewTable, _questionTable)) {
+                SubscriptionEvaluator evaluator = newEvaluator(ConstantDatabusAuthorizer.ALLOW_ALL);
+                SubscriptionMatchIndex index = new SubscriptionMatchIndex(evaluator, new Meter(), new Meter());
+                index.refresh(subscriptions);
+
+                SubscriptionEvaluator.MatchEventData eventData = evaluator.new MatchEventData(table, "key", tags, TimeUUIDs.newUUID());
+                List<OwnedSubscription> expected = Lists.newArrayList(evaluator.matches(subscriptions, eventData));
+
+                assertEquals(Sets.newHashSet(index.getMatches(eventData)), Sets.newHashSet(expected),
+                        "Table " + table.getName() + " with tags " + tags);
+            }
+        }
+    }
+
+    @Test
+    public void testOnlyCandidatesEvaluated() {
+        List<OwnedSubscription> subscriptions = Lists.newArrayList();
+        for (int i = 0; i < 100; i++) {
+            subscriptions.add(subscription("sub" + i, "and(intrinsic(\"~table\":\"table" + i + "\"),{..,\"type\":\"review\"})"));
+        }
+        subscriptions.add(subscription("review-table", "intrinsic(\"~table\":\"review:testcustomer\")"));
+
+        SubscriptionEvaluator evaluator = newEvaluator(ConstantDatabusAuthorizer.ALLOW_ALL);
+        Meter evaluations = new Meter();
+        Meter skipped = new Meter();
+        SubscriptionMatchIndex index = new SubscriptionMatchIndex(evaluator, evaluations, skipped);
+        index.refresh(subscriptions);
+
+        SubscriptionEvaluator.MatchEventData eventData = evaluator.new MatchEventData(
+                _reviewTable, "key", ImmutableSet.<String>of(), TimeUUIDs.newUUID());
+        assertEquals(index.getMatches(eventData), ImmutableList.of(subscriptions.get(100)));
+
+        // The only candidate is exactly described by the index, so no conditions needed evaluating.
+        assertEquals(evaluations.getCount(), 0);
+        assertEquals(skipped.getCount(), 101);
+    }
+
+    @Test
+    public void testRefreshOnSubscriptionChange() {
+        SubscriptionEvaluator evaluator = newEvaluator(ConstantDatabusAuthorizer.ALLOW_ALL);
+        SubscriptionMatchIndex index = new SubscriptionMatchIndex(evaluator, new Meter(), new Meter());
+        SubscriptionEvaluator.MatchEventData eventData = evaluator.new MatchEventData(
+                _reviewTable, "key", ImmutableSet.<String>of(), TimeUUIDs.newUUID());
+
+        OwnedSubscription review = subscription("sub", "intrinsic(\"~table\":\"review:testcustomer\")");
+        index.refresh(ImmutableList.of(review));
+        assertEquals(index.getMatches(eventData), ImmutableList.of(review));
+
+        OwnedSubscription question = subscription("sub", "intrinsic(\"~table\":\"question:othercustomer\")");
+        index.refresh(ImmutableList.of(question));
+        assertEquals(index.getMatches(eventData), ImmutableList.<OwnedSubscription>of());
+    }
+
+    @Test
+    public void testPermissionsChecked() {
+        SubscriptionEvaluator evaluator = newEvaluator(ConstantDatabusAuthorizer.DENY_ALL);
+        SubscriptionMatchIndex index = new SubscriptionMatchIndex(evaluator, new Meter(), new Meter());
+        index.refresh(ImmutableList.of(
+                subscription("all", Conditions.alwaysTrue()),
+                subscription("table", "intrinsic(\"~table\":\"review:testcustomer\")")));
+
+        SubscriptionEvaluator.MatchEventData eventData = evaluator.new MatchEventData(
+                _reviewTable, "key", ImmutableSet.<String>of(), TimeUUIDs.newUUID());
+        assertEquals(index.getMatches(eventData), ImmutableList.<OwnedSubscription>of());
+    }
+
+    private SubscriptionEvaluator newEvaluator(DatabusAuthorizer authorizer) {
+        return new SubscriptionEvaluator(mock(DataProvider.class), authorizer, mock(RateLimitedLogFactory.class));
+    }
+
+    private OwnedSubscription subscription(String name, String tableFilter) {
+        return subscription(name, Conditions.fromString(tableFilter));
+    }
+
+    private OwnedSubscription subscription(String name, Condition tableFilter) {
+        return new DefaultOwnedSubscription(name, tableFilter, new Date(), Duration.ofDays(1), "owner");
+    }
+}
@@ -24,7 +24,7 @@ class TestDataProvider implements DataProvider {
     private final Map<String, Table> _cannedTables = Maps.newHashMap();
     private final Map<Coordinate, AnnotatedContent> _cannedContent = Maps.newHashMap();
     private final Map<Coordinate, UnknownTableException> _cannedExceptions = Maps.newHashMap();
-    private final List<List<Coordinate>> _executions = Lists.newArrayList();
+    private final List<List<Coordinate>> _executions = Collections.synchronizedList(Lists.<List<Coordinate>>newArrayList());
 
     public TestDataProvider addTable(String table, Table response) {
         _cannedTables.put(table, response);
@@ -10,7 +10,8 @@ import static org.mockito.Mockito.mock;
 
 class TestDatabusEventStore extends DatabusEventStore {
     TestDatabusEventStore() {
-        super(mock(EventStore.class, doFail()), mock(DedupEventStore.class, doFail()), mock(ValueStore.class));
+        super(mock(EventStore.class, doFail()), mock(DedupEventStore.class, doFail()), mock(ValueStore.class),
+                mock(EventArrivalNotifier.class));
     }
 
     private static Answer doFail() {
@@ -1,13 +1,16 @@
 package com.bazaarvoice.emodb.databus.core;
 
 import com.bazaarvoice.emodb.common.uuid.TimeUUIDs;
+import com.bazaarvoice.emodb.databus.DatabusConfiguration;
 import com.bazaarvoice.emodb.sor.core.UpdateRef;
+import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableSet;
 import org.testng.annotations.Test;
 
 import java.nio.ByteBuffer;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
 
 public class UpdateRefSerializerTest {
@@ -26,6 +29,65 @@ public class UpdateRefSerializerTest {
         verifyUpdateRefSerDe(expected, buf, actual);
     }
 
+    @Test
+    public void testReadCompositeFormat() {
+        // Events written by earlier versions are Astyanax composites and must remain readable
+        UpdateRef expected = new UpdateRef("test-table", "test-key", TimeUUIDs.newUUID(), ImmutableSet.<String>of());
+        ByteBuffer buf = UpdateRefSerializer.toByteBuffer(expected, UpdateRefSerializer.Format.composite);
+        UpdateRef actual = UpdateRefSerializer.fromByteBuffer(buf);
+
+        verifyUpdateRefSerDe(expected, buf, actual);
+
+        expected = new UpdateRef("test-table", "test-key", TimeUUIDs.newUUID(), ImmutableSet.of("ignore", "re-etl"));
+        buf = UpdateRefSerializer.toByteBuffer(expected, UpdateRefSerializer.Format.composite);
+        actual = UpdateRefSerializer.fromByteBuffer(buf);
+
+        verifyUpdateRefSerDe(expected, buf, actual);
+    }
+
+    @Test
+    public void testDefaultFormatIsComposite() {
+        // Servers which haven't been upgraded can only read composites, so they must be written until configured otherwise
+        assertEquals(new DatabusConfiguration().getUpdateRefFormat(), UpdateRefSerializer.Format.composite);
+
+        UpdateRef ref = new UpdateRef("test-table", "test-key", TimeUUIDs.newUUID(), ImmutableSet.of("ignore"));
+        ByteBuffer buf = UpdateRefSerializer.toByteBuffer(ref);
+        assertEquals(buf.get(buf.position()), 0);
+        assertEquals(buf, UpdateRefSerializer.toByteBuffer(ref, UpdateRefSerializer.Format.composite));
+    }
+
+    @Test
+    public void testCompactFormat() {
+        // Multi-byte characters and lengths which require multi-byte varints
+        String key = Strings.repeat("\u00e9", 300);
+        UpdateRef expected = new UpdateRef("test-table", key, TimeUUIDs.newUUID(), ImmutableSet.of("ignore"));
+        ByteBuffer buf = UpdateRefSerializer.toByteBuffer(expected, UpdateRefSerializer.Format.compact);
+        int size = buf.remaining();
+        UpdateRef actual = UpdateRefSerializer.fromByteBuffer(buf);
+
+        verifyUpdateRefSerDe(expected, buf, actual);
+        assertEquals(size, 1 + (1 + 10) + (2 + 600) + 16 + 1 + (1 + 6));
+    }
+
+    @Test
+    public void testCompactFormatIsSmaller() {
+        UpdateRef ref = new UpdateRef("review:testcustomer", "review-1234567", TimeUUIDs.newUUID(), ImmutableSet.of("ugc"));
+        assertTrue(UpdateRefSerializer.toByteBuffer(ref, UpdateRefSerializer.Format.compact).remaining() <
+                UpdateRefSerializer.toByteBuffer(ref, UpdateRefSerializer.Format.composite).remaining());
+    }
+
+    @Test
+    public void testTagsInterned() {
+        UpdateRef ref1 = UpdateRefSerializer.fromByteBuffer(UpdateRefSerializer.toByteBuffer(
+                new UpdateRef("test-table", "key1", TimeUUIDs.newUUID(), ImmutableSet.of("ignore", "re-etl")),
+                UpdateRefSerializer.Format.compact));
+        UpdateRef ref2 = UpdateRefSerializer.fromByteBuffer(UpdateRefSerializer.toByteBuffer(
+                new UpdateRef("test-table", "key2", TimeUUIDs.newUUID(), ImmutableSet.of("ignore", "re-etl")),
+                UpdateRefSerializer.Format.compact));
+
+        assertSame(ref1.getTags(), ref2.getTags());
+    }
+
     private void verifyUpdateRefSerDe(UpdateRef expected, ByteBuffer buf, UpdateRef actual) {
         assertEquals(actual.getTable(), expected.getTable());
         assertEquals(actual.getKey(), expected.getKey());
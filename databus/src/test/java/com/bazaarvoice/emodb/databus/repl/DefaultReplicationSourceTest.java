@@ -0,0 +1,29 @@
+package com.bazaarvoice.emodb.databus.repl;
+
+import com.bazaarvoice.emodb.event.api.EventData;
+import com.bazaarvoice.emodb.event.api.EventStore;
+import com.bazaarvoice.emodb.event.core.Limits;
+import com.google.common.collect.ImmutableList;
+import org.testng.annotations.Test;
+
+import java.time.Duration;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertTrue;
+
+public class DefaultReplicationSourceTest {
+
+    @Test
+    public void testPollLimitAboveMaxPollLimit() {
+        EventStore eventStore = mock(EventStore.class);
+        when(eventStore.poll("channel", Duration.ofSeconds(30), Limits.MAX_POLL_LIMIT))
+                .thenReturn(ImmutableList.<EventData>of());
+
+        DefaultReplicationSource replicationSource = new DefaultReplicationSource(eventStore);
+        assertTrue(replicationSource.poll("channel", Duration.ofSeconds(30), 5000).isEmpty());
+
+        verify(eventStore).poll("channel", Duration.ofSeconds(30), Limits.MAX_POLL_LIMIT);
+    }
+}
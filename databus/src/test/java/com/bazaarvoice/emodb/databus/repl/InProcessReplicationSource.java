@@ -0,0 +1,93 @@
+package com.bazaarvoice.emodb.databus.repl;
+
+import com.bazaarvoice.emodb.event.core.Limits;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * In-process stand-in for a remote data center's replication endpoint.  Events added to a channel are held in memory
+ * and batches returned by {@link #poll(String, Duration, int)} pass through {@link ReplicationBatchCodec} just as they
+ * do between data centers.
+ */
+public class InProcessReplicationSource implements ReplicationSource {
+    private final Clock _clock;
+    private final Map<String, List<ReplicationEvent>> _eventsByChannel = Maps.newHashMap();
+    private final Map<String, Long> _claimExpirations = Maps.newHashMap();
+    private long _bytesTransferred;
+    private int _pollCount;
+    private int _deleteCount;
+
+    public InProcessReplicationSource(Clock clock) {
+        _clock = clock;
+    }
+
+    public synchronized void add(String channel, Collection<ReplicationEvent> events) {
+        _eventsByChannel.computeIfAbsent(channel, ignore -> Lists.newArrayList()).addAll(events);
+    }
+
+    public synchronized int size(String channel) {
+        return _eventsByChannel.getOrDefault(channel, ImmutableList.of()).size();
+    }
+
+    public synchronized long getBytesTransferred() {
+        return _bytesTransferred;
+    }
+
+    public synchronized int getPollCount() {
+        return _pollCount;
+    }
+
+    public synchronized int getDeleteCount() {
+        return _deleteCount;
+    }
+
+    @Override
+    public synchronized List<ReplicationEvent> get(String channel, int limit) {
+        List<ReplicationEvent> events = _eventsByChannel.getOrDefault(channel, ImmutableList.of());
+        return ImmutableList.copyOf(events.subList(0, Math.min(limit, events.size())));
+    }
+
+    @Override
+    public synchronized List<ReplicationEvent> poll(String channel, Duration claimTtl, int limit) {
+        // Enforce the same limit as the event store behind the remote endpoint
+        checkArgument(limit <= Limits.MAX_POLL_LIMIT, "Limit must be <=%s", Limits.MAX_POLL_LIMIT);
+        _pollCount += 1;
+        long now = _clock.millis();
+        List<ReplicationEvent> events = Lists.newArrayList();
+        for (ReplicationEvent event : _eventsByChannel.getOrDefault(channel, ImmutableList.of())) {
+            if (events.size() == limit) {
+                break;
+            }
+            Long claimExpiration = _claimExpirations.get(event.getId());
+            if (claimExpiration == null || claimExpiration <= now) {
+                _claimExpirations.put(event.getId(), now + claimTtl.toMillis());
+                events.add(event);
+            }
+        }
+        byte[] batch = ReplicationBatchCodec.encode(events);
+        _bytesTransferred += batch.length;
+        return ReplicationBatchCodec.decode(batch);
+    }
+
+    @Override
+    public synchronized void delete(String channel, Collection<String> eventIds) {
+        _deleteCount += 1;
+        Set<String> ids = ImmutableSet.copyOf(eventIds);
+        List<ReplicationEvent> events = _eventsByChannel.get(channel);
+        if (events != null) {
+            events.removeIf(event -> ids.contains(event.getId()));
+        }
+        _claimExpirations.keySet().removeAll(ids);
+    }
+}
@@ -0,0 +1,172 @@
+package com.bazaarvoice.emodb.databus.repl;
+
+import com.bazaarvoice.emodb.common.uuid.TimeUUIDs;
+import com.bazaarvoice.emodb.databus.core.UpdateRefSerializer;
+import com.bazaarvoice.emodb.event.api.EventData;
+import com.bazaarvoice.emodb.event.core.Limits;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.MoreExecutors;
+import org.testng.annotations.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class PipelinedReplicationEventSourceTest {
+
+    private static final String CHANNEL = "__system_bus:out:dc1[0]";
+
+    @Test
+    public void testPrefetchAndAcknowledge() {
+        Clock clock = mock(Clock.class);
+        when(clock.millis()).thenReturn(1000L);
+        InProcessReplicationSource replicationSource = new InProcessReplicationSource(clock);
+        replicationSource.add(CHANNEL, newEvents(250));
+        MetricRegistry metricRegistry = new MetricRegistry();
+
+        // Run the prefetches and acknowledgements synchronously so the order of requests is predictable
+        PipelinedReplicationEventSource eventSource = new PipelinedReplicationEventSource(replicationSource, CHANNEL,
+                Duration.ofSeconds(30), MoreExecutors.sameThreadExecutor(), UpdateRefSerializer.Format.composite,
+                metricRegistry, "in-dc2", "partition-0");
+
+        // The second batch is claimed as soon as the first is returned
+        List<EventData> events = eventSource.get(100);
+        assertEquals(events.size(), 100);
+        assertEquals(events.get(0).getId(), "event-0");
+        assertEquals(replicationSource.getPollCount(), 2);
+
+        // Acknowledgements are held until the fanout asks for the next batch, then sent in a single request
+        eventSource.delete(getIds(events.subList(0, 50)));
+        eventSource.delete(getIds(events.subList(50, 100)));
+        assertEquals(replicationSource.getDeleteCount(), 0);
+
+        events = eventSource.get(100);
+        assertEquals(events.size(), 100);
+        assertEquals(events.get(0).getId(), "event-100");
+        assertEquals(replicationSource.getDeleteCount(), 1);
+        assertEquals(replicationSource.size(CHANNEL), 150);
+        eventSource.delete(getIds(events));
+
+        events = eventSource.get(100);
+        assertEquals(events.size(), 50);
+        assertEquals(events.get(0).getId(), "event-200");
+        eventSource.delete(getIds(events));
+
+        // Once the channel is drained there is no prefetch
+        assertTrue(eventSource.get(100).isEmpty());
+        assertTrue(eventSource.get(100).isEmpty());
+        assertEquals(replicationSource.getPollCount(), 5);
+        assertEquals(replicationSource.getDeleteCount(), 3);
+        assertEquals(replicationSource.size(CHANNEL), 0);
+        assertTrue(replicationSource.getBytesTransferred() > 0);
+
+        assertEquals(metricRegistry.meter(
+                "bv.emodb.databus.PipelinedReplicationEventSource.events-received.in-dc2.partition-0").getCount(), 250);
+        assertEquals(metricRegistry.meter(
+                "bv.emodb.databus.PipelinedReplicationEventSource.events-acknowledged.in-dc2.partition-0").getCount(), 250);
+    }
+
+    @Test
+    public void testUnacknowledgedEventsReturnedAfterClaimsExpire() {
+        Clock clock = mock(Clock.class);
+        when(clock.millis()).thenReturn(1000L);
+        InProcessReplicationSource replicationSource = new InProcessReplicationSource(clock);
+        replicationSource.add(CHANNEL, newEvents(10));
+
+        PipelinedReplicationEventSource eventSource = new PipelinedReplicationEventSource(replicationSource, CHANNEL,
+                Duration.ofSeconds(30), MoreExecutors.sameThreadExecutor(), UpdateRefSerializer.Format.composite,
+                new MetricRegistry(), "in-dc2", "partition-0");
+        assertEquals(eventSource.get(100).size(), 10);
+
+        // Simulate losing leadership before the events were acknowledged.  Another server can't see the events until
+        // the claims expire.
+        eventSource = new PipelinedReplicationEventSource(replicationSource, CHANNEL,
+                Duration.ofSeconds(30), MoreExecutors.sameThreadExecutor(), UpdateRefSerializer.Format.composite,
+                new MetricRegistry(), "in-dc2", "partition-0");
+        assertTrue(eventSource.get(100).isEmpty());
+
+        when(clock.millis()).thenReturn(31000L);
+        assertEquals(eventSource.get(100).size(), 10);
+    }
+
+    @Test
+    public void testPrefetchedBatchClaimedForTwiceClaimTtl() {
+        Clock clock = mock(Clock.class);
+        when(clock.millis()).thenReturn(1000L);
+        InProcessReplicationSource replicationSource = new InProcessReplicationSource(clock);
+        replicationSource.add(CHANNEL, newEvents(20));
+
+        PipelinedReplicationEventSource eventSource = new PipelinedReplicationEventSource(replicationSource, CHANNEL,
+                Duration.ofSeconds(30), MoreExecutors.sameThreadExecutor(), UpdateRefSerializer.Format.composite,
+                new MetricRegistry(), "in-dc2", "partition-0");
+        List<EventData> events = eventSource.get(10);
+        assertEquals(events.get(0).getId(), "event-0");
+
+        // The fanout takes almost the full claim TTL to write the first batch before starting on the prefetched batch
+        when(clock.millis()).thenReturn(30000L);
+        eventSource.delete(getIds(events));
+        events = eventSource.get(10);
+        assertEquals(events.get(0).getId(), "event-10");
+
+        // Simulate losing leadership.  The prefetched batch is still claimed for most of a claim TTL after the fanout
+        // started on it, so another server doesn't replicate it concurrently.
+        eventSource = new PipelinedReplicationEventSource(replicationSource, CHANNEL,
+                Duration.ofSeconds(30), MoreExecutors.sameThreadExecutor(), UpdateRefSerializer.Format.composite,
+                new MetricRegistry(), "in-dc2", "partition-0");
+        when(clock.millis()).thenReturn(59000L);
+        assertTrue(eventSource.get(10).isEmpty());
+
+        when(clock.millis()).thenReturn(61000L);
+        events = eventSource.get(10);
+        assertEquals(events.size(), 10);
+        assertEquals(events.get(0).getId(), "event-10");
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testClaimTtlNotPositive() {
+        new PipelinedReplicationEventSource(new InProcessReplicationSource(Clock.systemUTC()), CHANNEL,
+                Duration.ZERO, MoreExecutors.sameThreadExecutor(), UpdateRefSerializer.Format.composite,
+                new MetricRegistry(), "in-dc2", "partition-0");
+    }
+
+    @Test
+    public void testBatchSizeAboveMaxPollLimit() {
+        Clock clock = mock(Clock.class);
+        when(clock.millis()).thenReturn(1000L);
+        InProcessReplicationSource replicationSource = new InProcessReplicationSource(clock);
+        replicationSource.add(CHANNEL, newEvents(2500));
+
+        PipelinedReplicationEventSource eventSource = new PipelinedReplicationEventSource(replicationSource, CHANNEL,
+                Duration.ofSeconds(30), MoreExecutors.sameThreadExecutor(), UpdateRefSerializer.Format.composite,
+                new MetricRegistry(), "in-dc2", "partition-0");
+
+        // A fanout which has fallen behind grows its batch size past the most events a single poll may claim
+        List<EventData> events = eventSource.get(5000);
+        assertEquals(events.size(), Limits.MAX_POLL_LIMIT);
+        eventSource.delete(getIds(events));
+        assertEquals(eventSource.get(5000).size(), Limits.MAX_POLL_LIMIT);
+    }
+
+    private List<ReplicationEvent> newEvents(int count) {
+        List<ReplicationEvent> events = Lists.newArrayList();
+        for (int i = 0; i < count; i++) {
+            events.add(new ReplicationEvent("event-" + i, "table", "key" + i, TimeUUIDs.newUUID(), ImmutableSet.of("tag")));
+        }
+        return events;
+    }
+
+    private List<String> getIds(List<EventData> events) {
+        List<String> ids = Lists.newArrayList();
+        for (EventData event : events) {
+            ids.add(event.getId());
+        }
+        return ids;
+    }
+}
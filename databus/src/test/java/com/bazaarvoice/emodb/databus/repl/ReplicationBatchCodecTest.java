@@ -0,0 +1,62 @@
+package com.bazaarvoice.emodb.databus.repl;
+
+import com.bazaarvoice.emodb.common.json.JsonHelper;
+import com.bazaarvoice.emodb.common.uuid.TimeUUIDs;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class ReplicationBatchCodecTest {
+
+    @Test
+    public void testRoundTrip() {
+        List<ReplicationEvent> events = ImmutableList.of(
+                new ReplicationEvent("id1", "table1", "key1", TimeUUIDs.newUUID(), ImmutableSet.<String>of()),
+                new ReplicationEvent("id2", "table2", "kéy2", TimeUUIDs.newUUID(), ImmutableSet.of("ignore", "re-etl")));
+
+        List<ReplicationEvent> decoded = ReplicationBatchCodec.decode(ReplicationBatchCodec.encode(events));
+
+        assertEquals(decoded.size(), events.size());
+        for (int i = 0; i < events.size(); i++) {
+            assertEquals(decoded.get(i).getId(), events.get(i).getId());
+            assertEquals(decoded.get(i).getTable(), events.get(i).getTable());
+            assertEquals(decoded.get(i).getKey(), events.get(i).getKey());
+            assertEquals(decoded.get(i).getChangeId(), events.get(i).getChangeId());
+            assertEquals(decoded.get(i).getTags(), events.get(i).getTags());
+        }
+    }
+
+    @Test
+    public void testEmptyBatch() {
+        assertTrue(ReplicationBatchCodec.decode(ReplicationBatchCodec.encode(ImmutableList.<ReplicationEvent>of())).isEmpty());
+    }
+
+    @Test
+    public void testCompressed() {
+        List<Set<String>> tags = ImmutableList.<Set<String>>of(ImmutableSet.<String>of(), ImmutableSet.of("re-etl"));
+        Random random = new Random(0);
+        List<ReplicationEvent> events = Lists.newArrayList();
+        for (int i = 0; i < 1000; i++) {
+            events.add(new ReplicationEvent(String.format("8f3c5e0a1b2d4c6e%04x", i), "review:testcustomer",
+                    "review" + random.nextInt(1000000), TimeUUIDs.newUUID(), tags.get(random.nextInt(tags.size()))));
+        }
+
+        int batchSize = ReplicationBatchCodec.encode(events).length;
+        int jsonSize = JsonHelper.asUtf8Bytes(events).length;
+
+        assertTrue(batchSize * 3 < jsonSize, "Batch of " + batchSize + " bytes not much smaller than " + jsonSize + " bytes of JSON");
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testUnsupportedFormat() {
+        ReplicationBatchCodec.decode(new byte[] {0, 1, 2});
+    }
+}
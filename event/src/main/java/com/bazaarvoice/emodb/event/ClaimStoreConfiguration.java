@@ -0,0 +1,33 @@
+package com.bazaarvoice.emodb.event;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotNull;
+
+/**
+ * Configures the in-memory claim sets which track the events each channel has handed out to pollers.
+ */
+public class ClaimStoreConfiguration {
+
+    public enum ClaimSetType {
+        /** A single monitor guards each claim set.  Efficient for channels with few concurrent pollers. */
+        standard,
+        /** Claims are striped across independently locked segments, for channels with many concurrent pollers. */
+        striped,
+    }
+
+    @Valid
+    @NotNull
+    @JsonProperty("claimSetType")
+    private ClaimSetType _claimSetType = ClaimSetType.standard;
+
+    public ClaimSetType getClaimSetType() {
+        return _claimSetType;
+    }
+
+    public ClaimStoreConfiguration setClaimSetType(ClaimSetType claimSetType) {
+        _claimSetType = claimSetType;
+        return this;
+    }
+}
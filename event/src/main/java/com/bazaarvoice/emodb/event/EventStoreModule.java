@@ -66,6 +66,7 @@ import static com.google.common.base.Preconditions.checkNotNull;
  * <li> @{@link EventStoreHostDiscovery} {@link HostDiscovery}
  * <li> @{@link EventStoreZooKeeper} {@link CuratorFramework}
  * <li> {@link DedupEventStoreChannels}
+ * <li> {@link ClaimStoreConfiguration}
  * </ul>
  * Exports the following:
  * <ul>
@@ -1,6 +1,7 @@
 package com.bazaarvoice.emodb.event.core;
 
 import com.bazaarvoice.emodb.common.dropwizard.lifecycle.LifeCycleRegistry;
+import com.bazaarvoice.emodb.event.ClaimStoreConfiguration;
 import com.codahale.metrics.Gauge;
 import com.codahale.metrics.MetricRegistry;
 import com.google.common.base.Function;
@@ -18,14 +19,19 @@ import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import static com.google.common.base.Preconditions.checkNotNull;
+
 /**
  * In-memory implementation of the {@link ClaimSet} interface.
  */
 public class DefaultClaimStore implements ClaimStore {
     private final Map<String, Handle> _map = Maps.newHashMap();
+    private final ClaimStoreConfiguration.ClaimSetType _claimSetType;
 
     @Inject
-    public DefaultClaimStore(LifeCycleRegistry lifeCycle, @MetricsGroupName String metricsGroup, MetricRegistry metricRegistry) {
+    public DefaultClaimStore(LifeCycleRegistry lifeCycle, @MetricsGroupName String metricsGroup, MetricRegistry metricRegistry,
+                             ClaimStoreConfiguration configuration) {
+        _claimSetType = checkNotNull(configuration, "configuration").getClaimSetType();
         ScheduledExecutorService scheduledExecutor = defaultScheduledExecutor(lifeCycle, metricsGroup);
 
         // Periodically cleanup ClaimSets with no active claims.
@@ -84,13 +90,22 @@ public class DefaultClaimStore implements ClaimStore {
     private synchronized Handle acquire(String name) {
         Handle handle = _map.get(name);
         if (handle == null) {
-            handle = new Handle(new DefaultClaimSet());
+            handle = new Handle(newClaimSet());
             _map.put(name, handle);
         }
         handle.getRefCount().incrementAndGet();
         return handle;
     }
 
+    private ClaimSet newClaimSet() {
+        switch (_claimSetType) {
+            case striped:
+                return new StripedClaimSet();
+            default:
+                return new DefaultClaimSet();
+        }
+    }
+
     private synchronized void release(Handle handle) {
         handle.getRefCount().decrementAndGet();
     }
@@ -0,0 +1,457 @@
+package com.bazaarvoice.emodb.event.core;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * In-memory implementation of the {@link ClaimSet} interface for channels with many concurrent pollers.
+ * <p>
+ * Where {@link DefaultClaimSet} guards all claims with a single monitor, this implementation hashes claim IDs
+ * across independently locked stripes so concurrent pollers rarely contend.  Within a stripe each claim is a single
+ * node which is both an entry in a chained hash table and an entry in a hierarchical timing wheel, so there are no
+ * per-claim map entries, wrapper keys or per-TTL queues.  Expiration is O(1) per claim: claims are scheduled into
+ * the wheel slot for their expiration tick, and slots on the coarser levels of the wheel are cascaded down to finer
+ * levels as time advances.  Ticks whose slots are empty are skipped rather than visited one at a time, so a stripe
+ * which has been idle for a long time catches up in a handful of steps.
+ * <p>
+ * Operations on different stripes aren't atomic with respect to each other, so {@link #size()} is exact only when no
+ * other threads are modifying the claim set.
+ */
+public class StripedClaimSet implements ClaimSet {
+    private static final int STRIPE_BITS = 4;
+    private static final int NUM_STRIPES = 1 << STRIPE_BITS;
+
+    /** Resolution of the timing wheel.  Claims are exact to the millisecond regardless. */
+    private static final long TICK_MILLIS = 10;
+    /** Each level of the timing wheel has 32 slots... */
+    private static final int SLOT_BITS = 5;
+    private static final int NUM_SLOTS = 1 << SLOT_BITS;
+    /** ...and 5 levels span 32^5 ticks, or about 93 hours.  Claims beyond this are rescheduled as time advances. */
+    private static final int NUM_LEVELS = 5;
+
+    private static final int INITIAL_TABLE_SIZE = 16;
+
+    private final Stripe[] _stripes = new Stripe[NUM_STRIPES];
+    private final Clock _clock;
+
+    public StripedClaimSet() {
+        this(Clock.systemUTC());
+    }
+
+    @VisibleForTesting
+    StripedClaimSet(Clock clock) {
+        _clock = checkNotNull(clock, "clock");
+        long now = _clock.millis();
+        for (int i = 0; i < NUM_STRIPES; i++) {
+            _stripes[i] = new Stripe(now);
+        }
+    }
+
+    @Override
+    public long size() {
+        long now = _clock.millis();
+        long size = 0;
+        for (Stripe stripe : _stripes) {
+            size += stripe.size(now);
+        }
+        return size;
+    }
+
+    @Override
+    public boolean isClaimed(byte[] claimId) {
+        checkNotNull(claimId, "claimId");
+        int hash = hash(claimId);
+        return stripeFor(hash).isClaimed(claimId, hash, _clock.millis());
+    }
+
+    @Override
+    public boolean acquire(byte[] claimId, Duration ttl) {
+        checkNotNull(claimId, "claimId");
+        long ttlMillis = ttl.toMillis();
+        checkArgument(ttlMillis >= 0, "Ttl must be >=0");
+
+        int hash = hash(claimId);
+        return stripeFor(hash).acquire(claimId, hash, ttlMillis, _clock.millis());
+    }
+
+    @Override
+    public void renew(byte[] claimId, Duration ttl, boolean extendOnly) {
+        renewAll(Collections.singleton(claimId), ttl, extendOnly);
+    }
+
+    @Override
+    public void renewAll(Collection<byte[]> claimIds, Duration ttl, boolean extendOnly) {
+        checkNotNull(claimIds, "claimIds");
+        long ttlMillis = ttl.toMillis();
+        checkArgument(ttlMillis >= 0, "Ttl must be >=0");
+
+        long now = _clock.millis();
+        if (claimIds.size() == 1) {
+            byte[] claimId = claimIds.iterator().next();
+            int hash = hash(claimId);
+            stripeFor(hash).renewAll(new byte[][] {claimId}, new int[] {hash}, 0, 1, ttlMillis, extendOnly, now);
+            return;
+        }
+
+        // Sort the claims by stripe so each stripe is locked once, regardless of the number of claims renewed.
+        byte[][] ids = new byte[claimIds.size()][];
+        int[] hashes = new int[ids.length];
+        int[] offsets = new int[NUM_STRIPES + 1];
+        int i = 0;
+        for (byte[] claimId : claimIds) {
+            int hash = hash(claimId);
+            ids[i] = claimId;
+            hashes[i++] = hash;
+            offsets[stripeIndex(hash) + 1]++;
+        }
+        for (int stripe = 0; stripe < NUM_STRIPES; stripe++) {
+            offsets[stripe + 1] += offsets[stripe];
+        }
+        byte[][] sortedIds = new byte[ids.length][];
+        int[] sortedHashes = new int[ids.length];
+        int[] next = Arrays.copyOf(offsets, NUM_STRIPES);
+        for (i = 0; i < ids.length; i++) {
+            int position = next[stripeIndex(hashes[i])]++;
+            sortedIds[position] = ids[i];
+            sortedHashes[position] = hashes[i];
+        }
+        for (int stripe = 0; stripe < NUM_STRIPES; stripe++) {
+            if (offsets[stripe] != offsets[stripe + 1]) {
+                _stripes[stripe].renewAll(sortedIds, sortedHashes, offsets[stripe], offsets[stripe + 1], ttlMillis, extendOnly, now);
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        for (Stripe stripe : _stripes) {
+            stripe.clear();
+        }
+    }
+
+    @Override
+    public void pump() {
+        long now = _clock.millis();
+        for (Stripe stripe : _stripes) {
+            stripe.pump(now);
+        }
+    }
+
+    private static int hash(byte[] claimId) {
+        int hash = Arrays.hashCode(checkNotNull(claimId, "claimId"));
+        // Spread the bits since the high bits select the stripe and the low bits select the hash table bucket.
+        hash *= 0x9e3779b9;
+        return hash ^ (hash >>> 16);
+    }
+
+    private static int stripeIndex(int hash) {
+        return hash >>> (Integer.SIZE - STRIPE_BITS);
+    }
+
+    private Stripe stripeFor(int hash) {
+        return _stripes[stripeIndex(hash)];
+    }
+
+    /**
+     * A single claim.  Linked into both a hash table bucket and a timing wheel slot.
+     */
+    private static final class Node {
+        private final byte[] _id;
+        private final int _hash;
+        private long _expireAt;
+        private Node _bucketNext;
+        private Node _slotPrev;
+        private Node _slotNext;
+        private int _slot;
+
+        Node(byte[] id, int hash, long expireAt) {
+            _id = id;
+            _hash = hash;
+            _expireAt = expireAt;
+        }
+    }
+
+    /**
+     * An independently locked subset of the claims.  Storage is allocated on demand and released once the stripe is
+     * empty, since most claim sets are small and many are idle.
+     */
+    private static final class Stripe {
+        private Node[] _table;
+        private int _size;
+        /** Timing wheel slots by level, allocated on demand. */
+        private final Node[][] _wheel = new Node[NUM_LEVELS][];
+        /** All ticks before this have been processed. */
+        private long _currentTick;
+
+        Stripe(long now) {
+            _currentTick = now / TICK_MILLIS;
+        }
+
+        synchronized long size(long now) {
+            expire(now);
+            return _size;
+        }
+
+        synchronized boolean isClaimed(byte[] id, int hash, long now) {
+            expire(now);
+            Node node = find(id, hash);
+            return node != null && node._expireAt > now;
+        }
+
+        synchronized boolean acquire(byte[] id, int hash, long ttlMillis, long now) {
+            expire(now);
+            if (find(id, hash) != null) {
+                return false;
+            }
+            insert(new Node(id, hash, now + ttlMillis));
+            return true;
+        }
+
+        synchronized void renewAll(byte[][] ids, int[] hashes, int from, int to, long ttlMillis, boolean extendOnly, long now) {
+            expire(now);
+            long expireAt = now + ttlMillis;
+            for (int i = from; i < to; i++) {
+                Node node = find(ids[i], hashes[i]);
+                if (node == null) {
+                    insert(new Node(ids[i], hashes[i], expireAt));
+                } else if (!extendOnly || node._expireAt < expireAt) {
+                    // 'extendOnly' means don't shorten the life of a claim
+                    unschedule(node);
+                    node._expireAt = expireAt;
+                    schedule(node);
+                }
+            }
+        }
+
+        synchronized void clear() {
+            _table = null;
+            Arrays.fill(_wheel, null);
+            _size = 0;
+        }
+
+        synchronized void pump(long now) {
+            expire(now);
+            if (_size == 0) {
+                // Release storage held by idle stripes
+                clear();
+            } else if (_table.length > INITIAL_TABLE_SIZE && _size < _table.length / 8) {
+                resize(_table.length / 2);
+            }
+        }
+
+        private Node find(byte[] id, int hash) {
+            if (_table == null) {
+                return null;
+            }
+            for (Node node = _table[hash & (_table.length - 1)]; node != null; node = node._bucketNext) {
+                if (node._hash == hash && Arrays.equals(node._id, id)) {
+                    return node;
+                }
+            }
+            return null;
+        }
+
+        private void insert(Node node) {
+            if (_table == null) {
+                _table = new Node[INITIAL_TABLE_SIZE];
+            } else if (_size >= _table.length - (_table.length >>> 2)) {
+                resize(_table.length * 2);
+            }
+            int bucket = node._hash & (_table.length - 1);
+            node._bucketNext = _table[bucket];
+            _table[bucket] = node;
+            _size++;
+            schedule(node);
+        }
+
+        private void remove(Node node) {
+            int bucket = node._hash & (_table.length - 1);
+            Node prev = null;
+            for (Node current = _table[bucket]; current != null; prev = current, current = current._bucketNext) {
+                if (current == node) {
+                    if (prev == null) {
+                        _table[bucket] = current._bucketNext;
+                    } else {
+                        prev._bucketNext = current._bucketNext;
+                    }
+                    _size--;
+                    return;
+                }
+            }
+        }
+
+        private void resize(int length) {
+            Node[] table = new Node[length];
+            for (Node head : _table) {
+                Node node = head;
+                while (node != null) {
+                    Node next = node._bucketNext;
+                    int bucket = node._hash & (length - 1);
+                    node._bucketNext = table[bucket];
+                    table[bucket] = node;
+                    node = next;
+                }
+            }
+            _table = table;
+        }
+
+        /**
+         * Adds a claim to the wheel in the finest level whose current window contains its expiration tick.
+         */
+        private void schedule(Node node) {
+            long tick = Math.max(node._expireAt / TICK_MILLIS, _currentTick);
+            if ((tick >>> (SLOT_BITS * NUM_LEVELS)) != (_currentTick >>> (SLOT_BITS * NUM_LEVELS))) {
+                // Beyond the range of the wheel.  Park the claim in the last slot of the range, it will be
+                // rescheduled when that slot is processed.
+                tick = _currentTick | ((1L << (SLOT_BITS * NUM_LEVELS)) - 1);
+            }
+            int level = 0;
+            while (level < NUM_LEVELS - 1 && (tick >>> (SLOT_BITS * (level + 1))) != (_currentTick >>> (SLOT_BITS * (level + 1)))) {
+                level++;
+            }
+            int slot = (int) (tick >>> (SLOT_BITS * level)) & (NUM_SLOTS - 1);
+
+            Node[] slots = _wheel[level];
+            if (slots == null) {
+                slots = _wheel[level] = new Node[NUM_SLOTS];
+            }
+            node._slot = level * NUM_SLOTS + slot;
+            node._slotPrev = null;
+            node._slotNext = slots[slot];
+            if (node._slotNext != null) {
+                node._slotNext._slotPrev = node;
+            }
+            slots[slot] = node;
+        }
+
+        private void unschedule(Node node) {
+            if (node._slotPrev != null) {
+                node._slotPrev._slotNext = node._slotNext;
+            } else {
+                _wheel[node._slot / NUM_SLOTS][node._slot % NUM_SLOTS] = node._slotNext;
+            }
+            if (node._slotNext != null) {
+                node._slotNext._slotPrev = node._slotPrev;
+            }
+            node._slotPrev = node._slotNext = null;
+        }
+
+        /**
+         * Advances the wheel to the current time, removing all expired claims.
+         */
+        private void expire(long now) {
+            long targetTick = now / TICK_MILLIS;
+            if (_size == 0) {
+                // Nothing to expire, so skip ahead.
+                _currentTick = Math.max(_currentTick, targetTick);
+                return;
+            }
+            while (_currentTick < targetTick) {
+                Node pending = expireSlot(now);
+                // Jump straight to the next tick with work to do instead of stepping through empty slots.
+                _currentTick = Math.min(nextScheduledTick(), targetTick);
+                cascade();
+                // Reschedule claims which were parked in the slot because they were beyond the range of the wheel
+                while (pending != null) {
+                    Node next = pending._slotNext;
+                    schedule(pending);
+                    pending = next;
+                }
+            }
+            // The current tick is partially elapsed, so only some of the claims in its slot may have expired.
+            Node pending = expireSlot(now);
+            while (pending != null) {
+                Node next = pending._slotNext;
+                schedule(pending);
+                pending = next;
+            }
+        }
+
+        /**
+         * Returns the first tick after the current tick at which a slot needs processing: either a non-empty slot on
+         * the finest level or the start of a non-empty slot on a coarser level, which must be cascaded.  Claims on a
+         * level are always in later slots of the level's current window, and a finer level's window ends before the
+         * next slot on a coarser level begins, so the first non-empty slot found from the finest level up is the
+         * earliest.
+         */
+        private long nextScheduledTick() {
+            for (int level = 0; level < NUM_LEVELS; level++) {
+                Node[] slots = _wheel[level];
+                if (slots == null) {
+                    continue;
+                }
+                int shift = SLOT_BITS * level;
+                long position = _currentTick >>> shift;
+                for (int slot = ((int) position & (NUM_SLOTS - 1)) + 1; slot < NUM_SLOTS; slot++) {
+                    if (slots[slot] != null) {
+                        return ((position & ~(long) (NUM_SLOTS - 1)) | slot) << shift;
+                    }
+                }
+            }
+            // Nothing is scheduled in the wheel's current range.  Any claims parked at its end are rescheduled once
+            // the next range begins.
+            return ((_currentTick >>> (SLOT_BITS * NUM_LEVELS)) + 1) << (SLOT_BITS * NUM_LEVELS);
+        }
+
+        /**
+         * Removes the expired claims in the finest level's slot for the current tick.  Returns the list of
+         * claims in the slot which haven't expired.
+         */
+        private Node expireSlot(long now) {
+            Node[] slots = _wheel[0];
+            if (slots == null) {
+                return null;
+            }
+            int slot = (int) _currentTick & (NUM_SLOTS - 1);
+            Node node = slots[slot];
+            slots[slot] = null;
+            Node pending = null;
+            while (node != null) {
+                Node next = node._slotNext;
+                if (node._expireAt <= now) {
+                    remove(node);
+                } else {
+                    node._slotPrev = null;
+                    node._slotNext = pending;
+                    pending = node;
+                }
+                node = next;
+            }
+            return pending;
+        }
+
+        /**
+         * When the current tick enters a new window on a coarser level, moves the claims in that window's slot down
+         * to finer levels.  Coarser levels are cascaded first since they may cascade into finer level slots which
+         * are also due.
+         */
+        private void cascade() {
+            int level = 0;
+            while (level < NUM_LEVELS - 1 && (_currentTick & ((1L << (SLOT_BITS * (level + 1))) - 1)) == 0) {
+                level++;
+            }
+            for (; level > 0; level--) {
+                Node[] slots = _wheel[level];
+                if (slots == null) {
+                    continue;
+                }
+                int slot = (int) (_currentTick >>> (SLOT_BITS * level)) & (NUM_SLOTS - 1);
+                Node node = slots[slot];
+                slots[slot] = null;
+                while (node != null) {
+                    Node next = node._slotNext;
+                    schedule(node);
+                    node = next;
+                }
+            }
+        }
+    }
+}
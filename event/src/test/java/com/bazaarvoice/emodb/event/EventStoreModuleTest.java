@@ -47,6 +47,7 @@ public class EventStoreModuleTest {
                 bind(HostAndPort.class).annotatedWith(SelfHostAndPort.class).toInstance(HostAndPort.fromString("localhost:8080"));
                 bind(CuratorFramework.class).annotatedWith(EventStoreZooKeeper.class).toInstance(mock(CuratorFramework.class));
                 bind(HostDiscovery.class).annotatedWith(EventStoreHostDiscovery.class).toInstance(mock(HostDiscovery.class));
+                bind(ClaimStoreConfiguration.class).toInstance(new ClaimStoreConfiguration());
                 bind(DedupEventStoreChannels.class).toInstance(DedupEventStoreChannels.isolated(":__dedupq_write", ":__dedupq_read"));
                 bind(new TypeLiteral<Supplier<Boolean>>() {}).annotatedWith(DedupEnabled.class).toInstance(Suppliers.ofInstance(true));
 
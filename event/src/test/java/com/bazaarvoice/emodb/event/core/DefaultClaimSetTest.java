@@ -18,9 +18,13 @@ import static org.testng.Assert.assertTrue;
 public class DefaultClaimSetTest {
     private static final Duration TTL = Duration.ofHours(1);
 
+    protected ClaimSet newClaimSet() {
+        return new DefaultClaimSet();
+    }
+
     @Test
     public void testClaim() {
-        ClaimSet claimSet = new DefaultClaimSet();
+        ClaimSet claimSet = newClaimSet();
         byte[] claim = newClaim(1);
         assertEquals(claimSet.size(), 0);
 
@@ -56,7 +60,7 @@ public class DefaultClaimSetTest {
 
     @Test
     public void testRenewExpiredClaim() {
-        ClaimSet claimSet = new DefaultClaimSet();
+        ClaimSet claimSet = newClaimSet();
         byte[] claim = newClaim(1);
 
         assertTrue(claimSet.acquire(claim, Duration.ZERO));
@@ -68,7 +72,7 @@ public class DefaultClaimSetTest {
 
     @Test
     public void testMultipleClaims() throws Exception {
-        ClaimSet claimSet = new DefaultClaimSet();
+        ClaimSet claimSet = newClaimSet();
         int ttlGranularityMillis = 50;  // You may want to increase this to 10000 when debugging.
         Random random = new Random();
 
@@ -117,7 +121,7 @@ public class DefaultClaimSetTest {
     public void testManyTtlPerformance() {
         long start = System.currentTimeMillis();
 
-        ClaimSet claimSet = new DefaultClaimSet();
+        ClaimSet claimSet = newClaimSet();
         int reps = 100000;  // This has to be big enough to make O(n) behavior apparent, if any
         for (int i = 0; i < reps; i++) {
             assertTrue(claimSet.acquire(newClaim(i), Duration.ofMillis(i)));
@@ -149,7 +153,7 @@ public class DefaultClaimSetTest {
         }
     }
 
-    private byte[] newClaim(int i) {
+    protected byte[] newClaim(int i) {
         return ByteBuffer.allocate(4).putInt(i).array();
     }
 }
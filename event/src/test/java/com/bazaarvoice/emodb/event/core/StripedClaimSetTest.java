@@ -0,0 +1,178 @@
+package com.bazaarvoice.emodb.event.core;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.testng.annotations.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Runs all of the {@link DefaultClaimSetTest} tests against {@link StripedClaimSet} plus tests specific to it.
+ */
+public class StripedClaimSetTest extends DefaultClaimSetTest {
+
+    @Override
+    protected ClaimSet newClaimSet() {
+        return new StripedClaimSet();
+    }
+
+    @Test
+    public void testTtlBeyondTimingWheel() {
+        ClaimSet claimSet = newClaimSet();
+        byte[] claim = newClaim(1);
+
+        assertTrue(claimSet.acquire(claim, Duration.ofDays(30)));
+        assertTrue(claimSet.isClaimed(claim));
+        assertEquals(claimSet.size(), 1);
+
+        claimSet.renew(claim, Duration.ofMinutes(1), true);
+        assertTrue(claimSet.isClaimed(claim));
+        claimSet.renew(claim, Duration.ZERO, false);
+        assertFalse(claimSet.isClaimed(claim));
+        assertEquals(claimSet.size(), 0);
+        claimSet.pump();
+    }
+
+    @Test
+    public void testClearAndReuse() {
+        ClaimSet claimSet = newClaimSet();
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(claimSet.acquire(newClaim(i), Duration.ofMinutes(1)));
+        }
+        assertEquals(claimSet.size(), 1000);
+
+        claimSet.clear();
+        assertEquals(claimSet.size(), 0);
+        assertTrue(claimSet.acquire(newClaim(0), Duration.ofMinutes(1)));
+        assertEquals(claimSet.size(), 1);
+    }
+
+    @Test
+    public void testConcurrentAcquireAndRenew() throws Exception {
+        final ClaimSet claimSet = newClaimSet();
+        final int threads = 8;
+        final int claimsPerThread = 10000;
+        final int sharedClaims = 100;
+        final AtomicInteger sharedAcquired = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = Lists.newArrayList();
+            for (int t = 0; t < threads; t++) {
+                final int offset = sharedClaims + t * claimsPerThread;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    List<byte[]> claims = Lists.newArrayList();
+                    for (int i = 0; i < claimsPerThread; i++) {
+                        byte[] claim = newClaim(offset + i);
+                        assertTrue(claimSet.acquire(claim, Duration.ofMinutes(1)));
+                        claims.add(claim);
+                        if (i < sharedClaims && claimSet.acquire(newClaim(i), Duration.ofMinutes(1))) {
+                            sharedAcquired.incrementAndGet();
+                        }
+                    }
+                    claimSet.renewAll(claims, Duration.ofMinutes(2), true);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Each shared claim was acquired by exactly one thread
+        assertEquals(sharedAcquired.get(), sharedClaims);
+        assertEquals(claimSet.size(), sharedClaims + threads * claimsPerThread);
+
+        List<byte[]> all = Lists.newArrayList();
+        for (int i = 0; i < sharedClaims + threads * claimsPerThread; i++) {
+            all.add(newClaim(i));
+        }
+        claimSet.renewAll(all, Duration.ZERO, false);
+        assertEquals(claimSet.size(), 0);
+        claimSet.pump();
+    }
+
+    @Test
+    public void testLongIdleStripe() {
+        Clock clock = mock(Clock.class);
+        long start = 1500000000000L;
+        when(clock.millis()).thenReturn(start);
+        ClaimSet claimSet = new StripedClaimSet(clock);
+        byte[] shortClaim = newClaim(1);
+        byte[] longClaim = newClaim(2);
+
+        assertTrue(claimSet.acquire(shortClaim, Duration.ofSeconds(30)));
+        assertTrue(claimSet.acquire(longClaim, Duration.ofHours(6)));
+
+        // Catching up hours at a time must expire exactly the claims which are due
+        when(clock.millis()).thenReturn(start + Duration.ofHours(5).toMillis());
+        assertFalse(claimSet.isClaimed(shortClaim));
+        assertTrue(claimSet.isClaimed(longClaim));
+        assertEquals(claimSet.size(), 1);
+
+        when(clock.millis()).thenReturn(start + Duration.ofHours(6).toMillis() - 1);
+        assertTrue(claimSet.isClaimed(longClaim));
+        when(clock.millis()).thenReturn(start + Duration.ofHours(6).toMillis());
+        assertFalse(claimSet.isClaimed(longClaim));
+        assertEquals(claimSet.size(), 0);
+        claimSet.pump();
+    }
+
+    @Test
+    public void testExpirationAcrossIrregularClockSteps() {
+        Clock clock = mock(Clock.class);
+        long now = 1500000000000L;
+        when(clock.millis()).thenReturn(now);
+        ClaimSet claimSet = new StripedClaimSet(clock);
+        Random random = new Random(1234);
+
+        Map<Integer, Long> expirations = Maps.newHashMap();
+        for (int step = 0; step < 2000; step++) {
+            // Mostly small steps with occasional multi-hour jumps, including ones beyond the range of the wheel
+            long millis = random.nextInt(10) == 0 ? random.nextInt(200) * 60000L : random.nextInt(5000);
+            now += millis;
+            when(clock.millis()).thenReturn(now);
+
+            int id = random.nextInt(500);
+            long ttlMillis = random.nextInt(4) == 0 ? random.nextInt(150) * 3600000L : random.nextInt(100000);
+            Long expireAt = expirations.get(id);
+            if (expireAt != null && expireAt > now) {
+                assertTrue(claimSet.isClaimed(newClaim(id)));
+                assertFalse(claimSet.acquire(newClaim(id), Duration.ofMillis(ttlMillis)));
+            } else {
+                assertFalse(claimSet.isClaimed(newClaim(id)));
+                assertTrue(claimSet.acquire(newClaim(id), Duration.ofMillis(ttlMillis)));
+                expirations.put(id, now + ttlMillis);
+            }
+
+            int expected = 0;
+            for (long expiration : expirations.values()) {
+                if (expiration > now) {
+                    expected++;
+                }
+            }
+            assertEquals(claimSet.size(), expected);
+        }
+        claimSet.pump();
+    }
+}
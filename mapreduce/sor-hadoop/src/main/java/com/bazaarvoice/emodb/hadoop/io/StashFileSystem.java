@@ -37,6 +37,7 @@ import org.apache.hadoop.util.Progressable;
 
 import javax.ws.rs.core.UriBuilder;
 import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
@@ -47,6 +48,7 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
 
 import static com.bazaarvoice.emodb.hadoop.io.FileSystemUtil.getEmptySplitFileName;
 import static com.bazaarvoice.emodb.hadoop.io.FileSystemUtil.getEmptySplitRecordReader;
@@ -69,7 +71,7 @@ public class StashFileSystem extends FileSystem implements EmoInputSplittable {
     private static final int BLOCK_SIZE = 10 * 1024 * 1024;
 
     private static final String SPLIT_PREFIX = "S_";
-    private static final Pattern SPLIT_PATTERN = Pattern.compile("^S_(?<split>[0-9a-zA-Z_\\-]+)\\.gz$");
+    private static final Pattern SPLIT_PATTERN = Pattern.compile("^S_(?<split>[0-9a-zA-Z_\\-]+)\\.(gz|json)$");
 
     private URI _uri;
     private Path _rootPath;
@@ -196,11 +198,22 @@ public class StashFileSystem extends FileSystem implements EmoInputSplittable {
 
     private String toSplitFile(StashSplit stashSplit) {
         // Need to convert each split to a file with a unique recognizable pattern.  We also need to preserve the
-        // original file's extension so that Hadoop will honor the underlying compression scheme.
-        String extension = Files.getFileExtension(stashSplit.getFile());
+        // original file's extension so that Hadoop will honor the underlying compression scheme.  Hadoop has no codec
+        // for the framing used by Stash's other compression formats, so those splits appear to be gzipped and are
+        // transcoded when opened.
+        String extension = isHadoopReadable(stashSplit) ? Files.getFileExtension(stashSplit.getFile()) : "gz";
         return String.format("%s%s.%s", SPLIT_PREFIX, stashSplit, extension);
     }
 
+    /**
+     * Returns true if Hadoop can read the split's file as-is, either because it is uncompressed or because it is
+     * gzipped.  Splits in any other format must be decompressed by the {@link StashReader}.
+     */
+    private boolean isHadoopReadable(StashSplit stashSplit) {
+        String extension = Files.getFileExtension(stashSplit.getFile());
+        return "gz".equals(extension) || "json".equals(extension);
+    }
+
     private StashSplit fromSplitFile(String fileName) {
         Matcher matcher = SPLIT_PATTERN.matcher(fileName);
         if (!matcher.matches()) {
@@ -345,6 +358,9 @@ public class StashFileSystem extends FileSystem implements EmoInputSplittable {
         // The input stream requires the S3 client to remain open, so increment the reference counter
         String reason = "input stream for split " + path;
         addS3ClientReference(reason);
+        if (!isHadoopReadable(stashSplit)) {
+            return new FSDataInputStream(new GzipTranscodingInputStream(stashSplit, reason));
+        }
         return new FSDataInputStream(new StashInputStream(stashSplit, reason, bufferSize));
     }
 
@@ -463,6 +479,144 @@ public class StashFileSystem extends FileSystem implements EmoInputSplittable {
         }
     }
 
+    /**
+     * InputStream for splits written in a format Hadoop cannot decompress.  The split is decompressed by the
+     * {@link StashReader} and gzipped as it is read, matching the gzip extension given to the split's file name.
+     */
+    private class GzipTranscodingInputStream extends InputStream implements Seekable, PositionedReadable {
+        private final StashSplit _stashSplit;
+        private final String _s3ClientCloseReason;
+        private final AtomicBoolean _closed = new AtomicBoolean(false);
+        private final byte[] _rawBuffer = new byte[64 * 1024];
+        // Gzipped bytes are written to _gzipBuffer, then moved to _gzipped to be returned to the caller
+        private final ByteArrayOutputStream _gzipBuffer = new ByteArrayOutputStream(_rawBuffer.length);
+        private InputStream _rawIn;
+        private GZIPOutputStream _gzipOut;
+        private byte[] _gzipped = new byte[0];
+        private int _gzippedPos;
+        private boolean _rawInExhausted;
+        private long _pos;
+
+        private GzipTranscodingInputStream(StashSplit stashSplit, String s3ClientCloseReason) {
+            _stashSplit = stashSplit;
+            _s3ClientCloseReason = s3ClientCloseReason;
+        }
+
+        /**
+         * Makes more gzipped bytes available, returning false only once the entire split has been returned.
+         */
+        private boolean fill()
+                throws IOException {
+            if (_rawIn == null) {
+                _rawIn = _stashReader.getDecompressedSplit(_stashSplit);
+                _gzipOut = new GZIPOutputStream(_gzipBuffer, _rawBuffer.length);
+            }
+            // The gzip stream buffers its output, so it may take several reads before it produces anything
+            while (_gzippedPos == _gzipped.length) {
+                if (_rawInExhausted) {
+                    return false;
+                }
+                int bytesRead = _rawIn.read(_rawBuffer);
+                if (bytesRead == -1) {
+                    _gzipOut.finish();
+                    _rawInExhausted = true;
+                } else {
+                    _gzipOut.write(_rawBuffer, 0, bytesRead);
+                }
+                _gzipped = _gzipBuffer.toByteArray();
+                _gzippedPos = 0;
+                _gzipBuffer.reset();
+            }
+            return true;
+        }
+
+        @Override
+        public int read()
+                throws IOException {
+            if (!fill()) {
+                return -1;
+            }
+            _pos += 1;
+            return _gzipped[_gzippedPos++] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len)
+                throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!fill()) {
+                return -1;
+            }
+            int bytesRead = Math.min(len, _gzipped.length - _gzippedPos);
+            System.arraycopy(_gzipped, _gzippedPos, b, off, bytesRead);
+            _gzippedPos += bytesRead;
+            _pos += bytesRead;
+            return bytesRead;
+        }
+
+        @Override
+        public long getPos()
+                throws IOException {
+            return _pos;
+        }
+
+        @Override
+        public void close()
+                throws IOException {
+            if (_closed.compareAndSet(false, true)) {
+                try {
+                    Closeables.close(_rawIn, false);
+                } finally {
+                    maybeCloseS3Client(_s3ClientCloseReason);
+                }
+            }
+        }
+
+        @Override
+        protected void finalize()
+                throws Throwable {
+            super.finalize();
+            close();
+        }
+
+        // The gzipped content is generated as it is read so it can't be read from arbitrary positions.  Since gzip
+        // files are not splittable Hadoop reads them sequentially from the start, so these should never be called.
+
+        @Override
+        public int read(long position, byte[] buffer, int offset, int length)
+                throws IOException {
+            throw new IOException("StashFileSystem does not support read(long, byte[], int, int) for " + _stashSplit.getFile());
+        }
+
+        @Override
+        public void readFully(long position, byte[] buffer, int offset, int length)
+                throws IOException {
+            throw new IOException("StashFileSystem does not support readFully(long, byte[], int, int) for " + _stashSplit.getFile());
+        }
+
+        @Override
+        public void readFully(long position, byte[] buffer)
+                throws IOException {
+            throw new IOException("StashFileSystem does not support readFully(long, byte[]) for " + _stashSplit.getFile());
+        }
+
+        @Override
+        public void seek(long pos)
+                throws IOException {
+            if (pos != _pos) {
+                throw new IOException("Cannot seek in " + _stashSplit.getFile());
+            }
+        }
+
+        @Override
+        public boolean seekToNewSource(long targetPos)
+                throws IOException {
+            return false;
+        }
+    }
+
     // All remaining FileSystem operations are not supported and will throw IOExceptions.
 
     @Override
@@ -0,0 +1,66 @@
+#!/bin/bash
+
+BENCHMARKS_DIR="$(cd "$(dirname "$0")" && pwd)"
+BENCHMARKS_JAR="${BENCHMARKS_DIR}/target/benchmarks.jar"
+BASELINE_FILE="${BENCHMARKS_DIR}/baseline.json"
+RESULTS_FILE="${BENCHMARKS_DIR}/target/results.json"
+TOLERANCE=10
+RECORD_BASELINE=false
+
+function print_usage_and_exit {
+    cat <<EOF
+    $(basename $0) - Run the EmoDB benchmarks and compare the results to the baseline.
+
+     Runs the benchmarks with the "gc" allocation profiler and writes the results
+     to ${RESULTS_FILE}.  The score and allocation rate of each benchmark are then
+     compared to ${BASELINE_FILE}; the script fails if any benchmark regressed.
+
+     Build the benchmarks first with "mvn package" from the quality/benchmarks directory.
+
+     Usage: $(basename $0) [options] [benchmark-regex]
+
+     Options:
+        --tolerance <percent>   Regression tolerance, default ${TOLERANCE}
+        --record-baseline       Save the results as the new baseline instead of comparing
+        --help                  Print this message
+EOF
+    exit 2
+}
+
+while [[ $# -gt 0 ]]; do
+    case "$1" in
+        --tolerance)
+            TOLERANCE="$2"
+            shift 2
+            ;;
+        --record-baseline)
+            RECORD_BASELINE=true
+            shift
+            ;;
+        --help|-h)
+            print_usage_and_exit
+            ;;
+        *)
+            break
+            ;;
+    esac
+done
+
+if [ ! -f "${BENCHMARKS_JAR}" ]; then
+    echo "${BENCHMARKS_JAR} not found, run \"mvn package\" first" >&2
+    exit 1
+fi
+
+# -prof gc reports the bytes allocated per operation ("gc.alloc.rate.norm") alongside each score
+java -jar "${BENCHMARKS_JAR}" -prof gc -rf json -rff "${RESULTS_FILE}" "$@" || exit 1
+
+if [ "${RECORD_BASELINE}" = true ]; then
+    cp "${RESULTS_FILE}" "${BASELINE_FILE}"
+    echo "Recorded new baseline in ${BASELINE_FILE}"
+elif [ -f "${BASELINE_FILE}" ]; then
+    java -cp "${BENCHMARKS_JAR}" com.bazaarvoice.emodb.benchmarks.BenchmarkComparison \
+        "${BASELINE_FILE}" "${RESULTS_FILE}" "${TOLERANCE}"
+else
+    echo "No baseline found, run with --record-baseline to create ${BASELINE_FILE}" >&2
+    exit 1
+fi
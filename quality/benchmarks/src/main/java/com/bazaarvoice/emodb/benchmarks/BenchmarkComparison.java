@@ -0,0 +1,141 @@
+package com.bazaarvoice.emodb.benchmarks;
+
+import com.bazaarvoice.emodb.common.json.JsonHelper;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.Maps;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Compares the JSON results of a benchmark run, as produced by running JMH with "-rf json", against a baseline
+ * run and exits with a non-zero status if any benchmark regressed.  A benchmark has regressed if its score or, when
+ * run with the "gc" profiler, its normalized allocation rate is worse than the baseline by more than the tolerance
+ * and by more than the error reported for the two runs.
+ * <p>
+ * Usage: <code>BenchmarkComparison baseline.json results.json [tolerance-percent]</code>
+ */
+public class BenchmarkComparison {
+
+    private static final String ALLOCATION_METRIC = "\u00b7gc.alloc.rate.norm";
+    private static final double DEFAULT_TOLERANCE_PERCENT = 10;
+
+    public static void main(String[] args) throws IOException {
+        checkArgument(args.length == 2 || args.length == 3, "Usage: BenchmarkComparison baseline.json results.json [tolerance-percent]");
+        double tolerance = (args.length == 3 ? Double.parseDouble(args[2]) : DEFAULT_TOLERANCE_PERCENT) / 100;
+
+        Map<String, Result> baseline = readResults(new File(args[0]));
+        Map<String, Result> results = readResults(new File(args[1]));
+
+        int regressions = 0;
+        for (Map.Entry<String, Result> entry : results.entrySet()) {
+            Result previous = baseline.get(entry.getKey());
+            if (previous == null) {
+                System.out.printf("NEW         %s: %s%n", entry.getKey(), entry.getValue()._score);
+                continue;
+            }
+            Result current = entry.getValue();
+            boolean regressed = isRegression(previous._score, current._score, tolerance);
+            if (previous._allocated != null && current._allocated != null) {
+                regressed |= isRegression(previous._allocated, current._allocated, tolerance);
+            }
+            System.out.printf("%-11s %s: %s -> %s%s%n", regressed ? "REGRESSION" : "OK", entry.getKey(),
+                    previous._score, current._score,
+                    previous._allocated != null && current._allocated != null
+                            ? String.format(", allocated %s -> %s", previous._allocated, current._allocated) : "");
+            if (regressed) {
+                regressions++;
+            }
+        }
+        for (String name : baseline.keySet()) {
+            if (!results.containsKey(name)) {
+                System.out.printf("MISSING     %s%n", name);
+            }
+        }
+
+        if (regressions > 0) {
+            System.out.printf("%d benchmark(s) regressed by more than %.0f%%%n", regressions, tolerance * 100);
+            System.exit(1);
+        }
+    }
+
+    private static boolean isRegression(Metric previous, Metric current, double tolerance) {
+        // A higher score is worse for every mode except throughput
+        double delta = previous._higherIsBetter ? previous._score - current._score : current._score - previous._score;
+        return delta > previous._score * tolerance && delta > previous._error + current._error;
+    }
+
+    private static Map<String, Result> readResults(File file) throws IOException {
+        List<Map<String, Object>> json;
+        try (InputStream in = new FileInputStream(file)) {
+            json = JsonHelper.readJson(in, new TypeReference<List<Map<String, Object>>>() {});
+        }
+        Map<String, Result> results = Maps.newTreeMap();
+        for (Map<String, Object> benchmark : json) {
+            results.put(getName(benchmark), new Result(benchmark));
+        }
+        return results;
+    }
+
+    /** Returns the benchmark name with its parameters, for example "DeltaParserBenchmark.parseMapDelta:fields=10". */
+    @SuppressWarnings("unchecked")
+    private static String getName(Map<String, Object> benchmark) {
+        String name = (String) benchmark.get("benchmark");
+        StringBuilder buf = new StringBuilder(name.substring(name.lastIndexOf('.', name.lastIndexOf('.') - 1) + 1));
+        Map<String, Object> params = (Map<String, Object>) benchmark.get("params");
+        if (params != null) {
+            String sep = ":";
+            for (Map.Entry<String, Object> param : ImmutableSortedMap.copyOf(params).entrySet()) {
+                buf.append(sep).append(param.getKey()).append('=').append(param.getValue());
+                sep = ",";
+            }
+        }
+        return buf.toString();
+    }
+
+    private static class Result {
+        final Metric _score;
+        final Metric _allocated;
+
+        @SuppressWarnings("unchecked")
+        Result(Map<String, Object> benchmark) {
+            boolean throughput = "thrpt".equals(benchmark.get("mode"));
+            _score = new Metric((Map<String, Object>) benchmark.get("primaryMetric"), throughput);
+            Map<String, Object> secondaryMetrics = (Map<String, Object>) benchmark.get("secondaryMetrics");
+            _allocated = secondaryMetrics != null && secondaryMetrics.containsKey(ALLOCATION_METRIC)
+                    ? new Metric((Map<String, Object>) secondaryMetrics.get(ALLOCATION_METRIC), false)
+                    : null;
+        }
+    }
+
+    private static class Metric {
+        final double _score;
+        final double _error;
+        final String _unit;
+        final boolean _higherIsBetter;
+
+        Metric(Map<String, Object> json, boolean higherIsBetter) {
+            _score = toDouble(json.get("score"));
+            _error = toDouble(json.get("scoreError"));
+            _unit = (String) json.get("scoreUnit");
+            _higherIsBetter = higherIsBetter;
+        }
+
+        private static double toDouble(Object value) {
+            // JMH reports the error as "NaN" when there were too few iterations to compute it
+            return value instanceof Number ? ((Number) value).doubleValue() : 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%.3f %s", _score, _unit);
+        }
+    }
+}
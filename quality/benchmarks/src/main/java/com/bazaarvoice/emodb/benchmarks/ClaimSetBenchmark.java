@@ -0,0 +1,108 @@
+package com.bazaarvoice.emodb.benchmarks;
+
+import com.bazaarvoice.emodb.event.ClaimStoreConfiguration;
+import com.bazaarvoice.emodb.event.core.ClaimSet;
+import com.bazaarvoice.emodb.event.core.DefaultClaimSet;
+import com.bazaarvoice.emodb.event.core.StripedClaimSet;
+import com.google.common.collect.Lists;
+import com.google.common.primitives.Ints;
+import com.google.common.primitives.Longs;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures a single claim set shared by many concurrent pollers, as happens when many clients poll the same
+ * databus subscription.  Each poller acquires claims, periodically renews the claims it holds in bulk and releases
+ * its oldest claims so the claim set stays at a steady size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@Threads(8)
+public class ClaimSetBenchmark {
+
+    private static final Duration TTL = Duration.ofSeconds(30);
+    private static final int CLAIMS_PER_POLLER = 1000;
+    private static final int RENEW_BATCH_SIZE = 100;
+
+    @Param({"standard", "striped"})
+    public ClaimStoreConfiguration.ClaimSetType type;
+
+    private final AtomicInteger _pollerIds = new AtomicInteger();
+    private ClaimSet _claimSet;
+
+    @Setup
+    public void setUp() {
+        _claimSet = type == ClaimStoreConfiguration.ClaimSetType.striped ? new StripedClaimSet() : new DefaultClaimSet();
+    }
+
+    @State(Scope.Thread)
+    public static class Poller {
+        private final List<byte[]> _claims = Lists.newArrayListWithCapacity(CLAIMS_PER_POLLER);
+        private int _pollerId;
+        private long _next;
+
+        @Setup
+        public void setUp(ClaimSetBenchmark benchmark) {
+            _pollerId = benchmark._pollerIds.getAndIncrement();
+        }
+
+        /** Returns a new 16 byte claim id, the same length as event ids. */
+        byte[] nextClaim() {
+            byte[] claim = new byte[16];
+            System.arraycopy(Ints.toByteArray(_pollerId), 0, claim, 0, 4);
+            System.arraycopy(Longs.toByteArray(_next++), 0, claim, 8, 8);
+            return claim;
+        }
+    }
+
+    @Benchmark
+    public boolean acquireAndRelease(Poller poller) {
+        byte[] claim = poller.nextClaim();
+        boolean acquired = _claimSet.acquire(claim, TTL);
+        List<byte[]> claims = poller._claims;
+        claims.add(claim);
+        if (claims.size() == CLAIMS_PER_POLLER) {
+            // Acknowledge the oldest half of the claims
+            List<byte[]> released = claims.subList(0, CLAIMS_PER_POLLER / 2);
+            _claimSet.renewAll(released, Duration.ZERO, false);
+            released.clear();
+            _claimSet.pump();
+        }
+        return acquired;
+    }
+
+    @Benchmark
+    public void acquireAndRenew(Poller poller) {
+        List<byte[]> claims = poller._claims;
+        for (int i = 0; i < RENEW_BATCH_SIZE; i++) {
+            byte[] claim = poller.nextClaim();
+            _claimSet.acquire(claim, TTL);
+            claims.add(claim);
+        }
+        _claimSet.renewAll(claims, TTL, true);
+        if (claims.size() >= CLAIMS_PER_POLLER) {
+            _claimSet.renewAll(claims, Duration.ZERO, false);
+            claims.clear();
+            _claimSet.pump();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.bazaarvoice.emodb.benchmarks;
+
+import com.bazaarvoice.emodb.sor.condition.Condition;
+import com.bazaarvoice.emodb.sor.condition.Conditions;
+import com.bazaarvoice.emodb.sor.condition.eval.ConditionEvaluator;
+import com.bazaarvoice.emodb.sor.delta.eval.Intrinsics;
+import com.google.common.collect.ImmutableMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures evaluating conditions against resolved records, as is done for every databus subscription on every
+ * fanout event and for every conditional delta.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ConditionEvaluatorBenchmark {
+
+    /** Conditions representative of databus subscriptions, keyed by the benchmark "condition" parameter. */
+    static final Map<String, String> CONDITIONS = ImmutableMap.<String, String>builder()
+            .put("intrinsic", "intrinsic(\"~table\":like(\"review:*\"))")
+            .put("map", "{..,\"type\":\"review\",\"status\":in(\"approved\",\"pending\")}")
+            .put("like", "{..,\"title\":like(\"*abc*\")}")
+            .put("comparison", "{..,\"rating\":ge(3),\"field1\":lt(500000)}")
+            .put("mixed", "or(and(intrinsic(\"~table\":like(\"review:*\")),{..,\"type\":\"review\",\"rating\":gt(3)})," +
+                    "{..,\"type\":in(\"question\",\"answer\"),\"field2\":containsAny(\"abc\",\"xyz\")},not(intrinsic(\"~deleted\":false)))")
+            .build();
+
+    @Param({"intrinsic", "map", "like", "comparison", "mixed"})
+    public String condition;
+
+    @Param({"10", "250"})
+    public int fields;
+
+    private Condition _condition;
+    private Object _content;
+    private Intrinsics _intrinsics;
+
+    @Setup
+    public void setUp() {
+        _condition = Conditions.fromString(CONDITIONS.get(condition));
+        _content = new SyntheticRecords(fields).newContent(fields);
+        _intrinsics = SyntheticRecords.newIntrinsics("review1");
+    }
+
+    @Benchmark
+    public boolean eval() {
+        return ConditionEvaluator.eval(_condition, _content, _intrinsics);
+    }
+}
@@ -0,0 +1,74 @@
+package com.bazaarvoice.emodb.benchmarks;
+
+import com.bazaarvoice.emodb.sor.delta.Delta;
+import com.bazaarvoice.emodb.sor.delta.eval.DeltaEvaluator;
+import com.bazaarvoice.emodb.sor.delta.eval.Intrinsics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures applying deltas to a record, the inner loop of record resolution.  Deltas are applied to the content
+ * produced by the preceding deltas so map deltas exercise both the copy-on-write path and nested updates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class DeltaEvaluatorBenchmark {
+
+    @Param({"10", "50", "250"})
+    public int fields;
+
+    @Param({"1", "10", "100"})
+    public int depth;
+
+    private List<Delta> _deltas;
+    private Delta _update;
+    private Delta _conditional;
+    private Object _content;
+    private Intrinsics _intrinsics;
+
+    @Setup
+    public void setUp() {
+        SyntheticRecords records = new SyntheticRecords(fields);
+        _deltas = records.newDeltas(fields, depth);
+        _update = records.newUpdate(fields, 1);
+        _conditional = records.newUpdate(fields, 5);
+        _intrinsics = SyntheticRecords.newIntrinsics("review1");
+        _content = evalAll();
+    }
+
+    /** Resolves a record from its full delta history. */
+    @Benchmark
+    public Object evalAll() {
+        Object content = DeltaEvaluator.UNDEFINED;
+        for (Delta delta : _deltas) {
+            content = DeltaEvaluator.eval(delta, content, _intrinsics);
+        }
+        return content;
+    }
+
+    @Benchmark
+    public Object evalMapDelta() {
+        return DeltaEvaluator.eval(_update, _content, _intrinsics);
+    }
+
+    @Benchmark
+    public Object evalConditionalDelta() {
+        return DeltaEvaluator.eval(_conditional, _content, _intrinsics);
+    }
+}
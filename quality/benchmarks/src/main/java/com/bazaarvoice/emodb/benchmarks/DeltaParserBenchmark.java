@@ -0,0 +1,79 @@
+package com.bazaarvoice.emodb.benchmarks;
+
+import com.bazaarvoice.emodb.common.json.JsonHelper;
+import com.bazaarvoice.emodb.sor.condition.Condition;
+import com.bazaarvoice.emodb.sor.delta.Delta;
+import com.bazaarvoice.emodb.sor.delta.deser.DeltaParser;
+import com.bazaarvoice.emodb.sor.delta.deser.JsonTokener;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures parsing deltas and conditions from their string form, as is done for every delta read from
+ * Cassandra and for every update and subscription received through the API.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class DeltaParserBenchmark {
+
+    @Param({"10", "50", "250"})
+    public int fields;
+
+    private String _literal;
+    private String _json;
+    private String _update;
+    private String _conditional;
+    private String _condition;
+
+    @Setup
+    public void setUp() {
+        SyntheticRecords records = new SyntheticRecords(fields);
+        _literal = records.newDeltas(fields, 1).get(0).toString();
+        _json = JsonHelper.asJson(records.newContent(fields));
+        _update = records.newUpdate(fields, 1).toString();
+        _conditional = records.newUpdate(fields, 5).toString();
+        _condition = ConditionEvaluatorBenchmark.CONDITIONS.get("mixed");
+    }
+
+    /** Literal deltas are by far the most common, all compactions are stored as literals. */
+    @Benchmark
+    public Delta parseLiteralDelta() {
+        return DeltaParser.parse(_literal);
+    }
+
+    @Benchmark
+    public Delta parseMapDelta() {
+        return DeltaParser.parse(_update);
+    }
+
+    @Benchmark
+    public Delta parseConditionalDelta() {
+        return DeltaParser.parse(_conditional);
+    }
+
+    @Benchmark
+    public Condition parseCondition() {
+        return DeltaParser.parseCondition(_condition);
+    }
+
+    /** Baseline for the tokenizer alone, without building deltas. */
+    @Benchmark
+    public Object tokenizeJson() {
+        return new JsonTokener(_json).nextValue();
+    }
+}
@@ -0,0 +1,180 @@
+package com.bazaarvoice.emodb.benchmarks;
+
+import com.bazaarvoice.emodb.sor.api.TableOptionsBuilder;
+import com.bazaarvoice.emodb.sor.condition.Conditions;
+import com.bazaarvoice.emodb.sor.delta.Delta;
+import com.bazaarvoice.emodb.sor.delta.Deltas;
+import com.bazaarvoice.emodb.sor.delta.MapDeltaBuilder;
+import com.bazaarvoice.emodb.sor.delta.eval.Intrinsics;
+import com.bazaarvoice.emodb.table.db.Table;
+import com.bazaarvoice.emodb.table.db.test.InMemoryTable;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Generates records and deltas shaped like typical UGC content: a handful of well known attributes such as
+ * "type", "status" and "rating" plus a configurable number of free-form fields holding strings, numbers, lists
+ * and nested objects.  Generation is seeded so every benchmark fork sees identical data.
+ */
+public class SyntheticRecords {
+
+    public static final String TABLE_NAME = "review:testcustomer";
+    public static final String PLACEMENT = "ugc_global:ugc";
+
+    private static final String[] TYPES = {"review", "question", "answer", "comment"};
+    private static final String[] STATUSES = {"approved", "pending", "rejected"};
+    private static final String ALPHABET = "abcdefghijklmnopqrstuvwxyz      ";
+
+    private final Random _random;
+
+    public SyntheticRecords(long seed) {
+        _random = new Random(seed);
+    }
+
+    public static Table newTable() {
+        return new InMemoryTable(TABLE_NAME, new TableOptionsBuilder().setPlacement(PLACEMENT).build(),
+                ImmutableMap.<String, Object>of("type", "review"));
+    }
+
+    /** Returns intrinsics for a record which has been updated once, for evaluating deltas and conditions. */
+    public static Intrinsics newIntrinsics(final String id) {
+        return new Intrinsics() {
+            @Override
+            public String getId() {
+                return id;
+            }
+
+            @Override
+            public String getTable() {
+                return TABLE_NAME;
+            }
+
+            @Override
+            public String getSignature() {
+                return "2a5d6e8c1b3f4a7e9d0c2b4a6f8e1d3c";
+            }
+
+            @Override
+            public boolean isDeleted() {
+                return false;
+            }
+
+            @Override
+            public String getFirstUpdateAt() {
+                return "2017-01-01T00:00:00.000Z";
+            }
+
+            @Override
+            public String getLastUpdateAt() {
+                return "2017-01-01T00:00:00.000Z";
+            }
+
+            @Override
+            public String getLastMutateAt() {
+                return "2017-01-01T00:00:00.000Z";
+            }
+
+            @Override
+            public String getTablePlacement() {
+                return PLACEMENT;
+            }
+        };
+    }
+
+    /** Returns a record with the well known attributes plus {@code fields} generated fields. */
+    public Map<String, Object> newContent(int fields) {
+        Map<String, Object> content = Maps.newLinkedHashMap();
+        content.put("type", TYPES[_random.nextInt(TYPES.length)]);
+        content.put("status", STATUSES[_random.nextInt(STATUSES.length)]);
+        content.put("rating", 1 + _random.nextInt(5));
+        content.put("title", newString(10, 60));
+        for (int i = 0; i < fields; i++) {
+            content.put("field" + i, newValue(i));
+        }
+        return content;
+    }
+
+    /**
+     * Returns the deltas for a record with {@code depth} deltas.  The first delta is a literal for the record's
+     * initial content and each subsequent delta updates a few fields, with some of the updates conditional.
+     */
+    public List<Delta> newDeltas(int fields, int depth) {
+        List<Delta> deltas = Lists.newArrayListWithCapacity(depth);
+        deltas.add(Deltas.literal(newContent(fields)));
+        for (int i = 1; i < depth; i++) {
+            deltas.add(newUpdate(fields, i));
+        }
+        return deltas;
+    }
+
+    /** Returns a delta which modifies a few of the fields in a record from {@link #newContent(int)}. */
+    public Delta newUpdate(int fields, int sequence) {
+        MapDeltaBuilder builder = Deltas.mapBuilder();
+        Set<Integer> updated = Sets.newHashSet();
+        if (fields > 0) {
+            // Every generated field with an index divisible by 5 is a nested object
+            int nested = _random.nextInt((fields + 4) / 5) * 5;
+            updated.add(nested);
+            builder.update("field" + nested, Deltas.mapBuilder()
+                    .put("updatedBy", "user" + _random.nextInt(1000))
+                    .put("count", sequence)
+                    .build());
+        }
+        int updates = Math.min(fields, 3 + _random.nextInt(3));
+        for (int i = 0; i < updates; i++) {
+            int field = _random.nextInt(fields);
+            if (updated.add(field)) {
+                builder.put("field" + field, newValue(field));
+            }
+        }
+        builder.put("rating", 1 + _random.nextInt(5));
+        Delta delta = builder.build();
+
+        if (sequence % 5 == 0) {
+            // Moderation changes are typically conditional on the current status
+            return Deltas.conditional(
+                    Conditions.mapBuilder().contains("status", "pending").build(),
+                    Deltas.mapBuilder().put("status", STATUSES[_random.nextInt(STATUSES.length)]).update("moderation", delta).build(),
+                    delta);
+        }
+        return delta;
+    }
+
+    private Object newValue(int field) {
+        switch (field % 5) {
+            case 0:
+                return ImmutableMap.of(
+                        "id", "sub" + _random.nextInt(100000),
+                        "score", _random.nextDouble(),
+                        "verified", _random.nextBoolean());
+            case 1:
+                return _random.nextInt(1000000);
+            case 2:
+                List<Object> list = Lists.newArrayList();
+                for (int i = _random.nextInt(5); i >= 0; i--) {
+                    list.add(newString(3, 12));
+                }
+                return list;
+            case 3:
+                return _random.nextBoolean();
+            default:
+                return newString(20, 200);
+        }
+    }
+
+    private String newString(int minLength, int maxLength) {
+        int length = minLength + _random.nextInt(maxLength - minLength + 1);
+        StringBuilder buf = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            buf.append(ALPHABET.charAt(_random.nextInt(ALPHABET.length())));
+        }
+        return buf.toString();
+    }
+}
@@ -0,0 +1,131 @@
+package com.bazaarvoice.emodb.benchmarks;
+
+import com.bazaarvoice.emodb.common.json.JsonHelper;
+import com.bazaarvoice.emodb.sor.api.TableOptionsBuilder;
+import com.bazaarvoice.emodb.sor.api.UnknownTableException;
+import com.bazaarvoice.emodb.table.db.DroppedTableException;
+import com.bazaarvoice.emodb.table.db.Table;
+import com.bazaarvoice.emodb.table.db.TableSet;
+import com.bazaarvoice.emodb.table.db.tableset.BlockFileTableSet;
+import com.bazaarvoice.emodb.table.db.tableset.MappedFileTableSet;
+import com.bazaarvoice.emodb.table.db.tableset.TableSerializer;
+import com.bazaarvoice.emodb.table.db.test.InMemoryTable;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.ByteStreams;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures looking up tables by UUID in a table set shared by concurrent readers, as multi-table scans and Stash do
+ * for every record.  "blockfile" is {@link BlockFileTableSet}, which pages a fixed 30 MB of heap blocks to temporary
+ * files, and "mapped" is {@link MappedFileTableSet}.  Every table is loaded during setup so each operation is a
+ * lookup of an already loaded table chosen at random.  Serialized tables are about 420 bytes, the size of a typical
+ * table's JSON, so 50,000 tables fit in the block file table set's buffers and 100,000 tables don't.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@Threads(16)
+public class TableSetBenchmark {
+
+    private static final int PLACEMENTS = 8;
+    private static final int DESCRIPTION_LENGTH = 200;
+
+    @Param({"blockfile", "mapped"})
+    public String implementation;
+
+    @Param({"50000", "100000"})
+    public int tables;
+
+    private TableSet _tableSet;
+
+    @Setup
+    public void setUp() throws Exception {
+        TableSerializer serializer = new JsonTableSerializer(tables);
+        _tableSet = implementation.equals("mapped") ? new MappedFileTableSet(serializer) : new BlockFileTableSet(serializer);
+
+        for (long uuid = 0; uuid < tables; uuid++) {
+            _tableSet.getByUuid(uuid);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        _tableSet.close();
+    }
+
+    @Benchmark
+    public Table getByUuid() throws Exception {
+        return _tableSet.getByUuid(ThreadLocalRandom.current().nextInt(tables));
+    }
+
+    /**
+     * Serializes synthetic tables as JSON like the table DAO does.
+     */
+    private static class JsonTableSerializer implements TableSerializer {
+        private final int _tables;
+
+        private JsonTableSerializer(int tables) {
+            _tables = tables;
+        }
+
+        @Override
+        public Set<Long> loadAndSerialize(long uuid, OutputStream out)
+                throws IOException, UnknownTableException, DroppedTableException {
+            if (uuid < 0 || uuid >= _tables) {
+                throw new UnknownTableException();
+            }
+            Random random = new Random(uuid);
+            Map<String, Object> json = ImmutableMap.<String, Object>of(
+                    "name", "review:client" + uuid,
+                    "placement", "ugc_global:ugc" + (uuid % PLACEMENTS),
+                    "attributes", ImmutableMap.of(
+                            "type", "review",
+                            "client", "client" + uuid,
+                            "description", Strings.repeat(Long.toString(random.nextLong(), 36), DESCRIPTION_LENGTH / 12)),
+                    "storage", ImmutableMap.of(Long.toString(uuid, 16), ImmutableMap.of(
+                            "placement", "ugc_global:ugc" + (uuid % PLACEMENTS),
+                            "shards", 16,
+                            "version", random.nextInt(10))));
+            out.write(JsonHelper.asUtf8Bytes(json));
+            return ImmutableSet.of(uuid);
+        }
+
+        @Override
+        public Table deserialize(InputStream in)
+                throws IOException {
+            byte[] bytes = ByteStreams.toByteArray(in);
+            //noinspection unchecked
+            Map<String, Object> json = JsonHelper.fromUtf8Bytes(bytes, 0, bytes.length, Map.class);
+            //noinspection unchecked
+            return new InMemoryTable((String) json.get("name"),
+                    new TableOptionsBuilder().setPlacement((String) json.get("placement")).build(),
+                    (Map<String, Object>) json.get("attributes"));
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.bazaarvoice.emodb.databus.core;
+
+import com.bazaarvoice.emodb.common.uuid.TimeUUIDs;
+import com.bazaarvoice.emodb.sor.core.UpdateRef;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures encoding and decoding the {@link UpdateRef} stored with every databus event, as done by the fanout and by
+ * each poll, in the compact format and in the Astyanax composite format.  The encode benchmark also reports the total
+ * {@code bytes} and {@code events} encoded in each iteration, so bytes per event in each format is their ratio.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class UpdateRefSerializerBenchmark {
+
+    private static final int NUM_EVENTS = 1000;
+    private static final List<String> TABLES = ImmutableList.of(
+            "review:testcustomer", "question:testcustomer", "answer:testcustomer", "catalog_product:testcustomer");
+    private static final List<Set<String>> TAGS = ImmutableList.<Set<String>>of(
+            ImmutableSet.<String>of(), ImmutableSet.of("ugc"), ImmutableSet.of("re-etl"), ImmutableSet.of("ignore", "re-etl"));
+
+    @Param({"compact", "composite"})
+    public String format;
+
+    private List<UpdateRef> _refs;
+    private List<ByteBuffer> _encoded;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(0);
+        ImmutableList.Builder<UpdateRef> refs = ImmutableList.builder();
+        ImmutableList.Builder<ByteBuffer> encoded = ImmutableList.builder();
+        for (int i = 0; i < NUM_EVENTS; i++) {
+            UpdateRef ref = new UpdateRef(TABLES.get(random.nextInt(TABLES.size())), "review" + random.nextInt(1000000),
+                    TimeUUIDs.newUUID(), TAGS.get(random.nextInt(TAGS.size())));
+            refs.add(ref);
+            encoded.add(encode(ref));
+        }
+        _refs = refs.build();
+        _encoded = encoded.build();
+    }
+
+    /** Total size of the events encoded in an iteration, reported alongside the encode timing. */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class EncodedSize {
+        public long bytes;
+        public long events;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytes = 0;
+            events = 0;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_EVENTS)
+    public void encode(EncodedSize size, Blackhole blackhole) {
+        for (UpdateRef ref : _refs) {
+            ByteBuffer buf = encode(ref);
+            size.bytes += buf.remaining();
+            size.events++;
+            blackhole.consume(buf);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_EVENTS)
+    public void decode(Blackhole blackhole) {
+        for (ByteBuffer buf : _encoded) {
+            // Decoding consumes the buffer
+            blackhole.consume(UpdateRefSerializer.fromByteBuffer(buf.duplicate()));
+        }
+    }
+
+    private ByteBuffer encode(UpdateRef ref) {
+        return UpdateRefSerializer.toByteBuffer(ref, UpdateRefSerializer.Format.valueOf(format));
+    }
+}
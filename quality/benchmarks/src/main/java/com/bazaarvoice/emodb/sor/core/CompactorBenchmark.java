@@ -0,0 +1,153 @@
+package com.bazaarvoice.emodb.sor.core;
+
+import com.bazaarvoice.emodb.benchmarks.SyntheticRecords;
+import com.bazaarvoice.emodb.common.uuid.TimeUUIDs;
+import com.bazaarvoice.emodb.sor.api.Change;
+import com.bazaarvoice.emodb.sor.api.ChangeBuilder;
+import com.bazaarvoice.emodb.sor.api.Compaction;
+import com.bazaarvoice.emodb.sor.db.Key;
+import com.bazaarvoice.emodb.sor.db.Record;
+import com.bazaarvoice.emodb.sor.db.RecordEntryRawMetadata;
+import com.bazaarvoice.emodb.sor.delta.Delta;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Measures {@link DistributedCompactor#expand}, which every read performs on the raw record returned by Cassandra.
+ * <ul>
+ *     <li>{@link #expandUncompacted()} expands a record whose deltas are all behind the full consistency timestamp,
+ *         so the expansion resolves every delta and produces a new compaction.</li>
+ *     <li>{@link #expandCompacted()} expands the same record after it has been compacted followed by a further
+ *         {@code depth} recent deltas, the common steady state for records which are updated frequently.</li>
+ * </ul>
+ * Lives in the "sor.core" package since {@link MutableIntrinsics} is package-private.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class CompactorBenchmark {
+
+    @Param({"10", "50", "250"})
+    public int fields;
+
+    @Param({"1", "10", "100"})
+    public int depth;
+
+    private final Supplier<Record> _requeryFn = Suppliers.ofInstance(null);
+    private DistributedCompactor _compactor;
+    private Key _key;
+    private long _fullConsistencyTimestamp;
+    private InMemoryRecord _uncompacted;
+    private InMemoryRecord _compacted;
+
+    @Setup
+    public void setUp() {
+        MetricRegistry metricRegistry = new MetricRegistry();
+        _compactor = new DistributedCompactor(
+                metricRegistry.counter(MetricRegistry.name("bv.emodb.sor", "DistributedCompactor", "archivedDeltaSize")),
+                false, metricRegistry);
+        _key = new Key(SyntheticRecords.newTable(), "review1");
+
+        SyntheticRecords records = new SyntheticRecords(fields);
+        long start = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(1);
+        _fullConsistencyTimestamp = start + TimeUnit.HOURS.toMillis(1);
+
+        // Deltas which are all behind the full consistency timestamp
+        List<Map.Entry<UUID, Change>> deltas = Lists.newArrayList();
+        List<Delta> history = records.newDeltas(fields, depth);
+        for (int i = 0; i < depth; i++) {
+            UUID changeId = TimeUUIDs.uuidForTimeMillis(start + i);
+            deltas.add(Maps.immutableEntry(changeId, ChangeBuilder.just(changeId, history.get(i), ImmutableSet.of("ugc"))));
+        }
+        _uncompacted = new InMemoryRecord(_key, ImmutableList.<Map.Entry<UUID, Compaction>>of(), deltas);
+
+        // The same record once compacted, followed by recent deltas which are ahead of the full consistency timestamp
+        PendingCompaction pendingCompaction = expandUncompacted().getPendingCompaction();
+        checkState(pendingCompaction != null, "Expected a compaction");
+        UUID compactionId = TimeUUIDs.uuidForTimeMillis(start + depth);
+        Compaction compaction = pendingCompaction.getCompaction();
+        List<Map.Entry<UUID, Change>> recent = Lists.newArrayList();
+        recent.add(Maps.immutableEntry(compactionId, ChangeBuilder.just(compactionId, compaction)));
+        long recentStart = _fullConsistencyTimestamp + TimeUnit.HOURS.toMillis(1);
+        for (int i = 0; i < depth; i++) {
+            UUID changeId = TimeUUIDs.uuidForTimeMillis(recentStart + i);
+            recent.add(Maps.immutableEntry(changeId, ChangeBuilder.just(changeId, records.newUpdate(fields, i + 1), ImmutableSet.of("ugc"))));
+        }
+        _compacted = new InMemoryRecord(_key, ImmutableList.of(Maps.immutableEntry(compactionId, compaction)), recent);
+    }
+
+    @Benchmark
+    public Expanded expandUncompacted() {
+        return expand(_uncompacted);
+    }
+
+    @Benchmark
+    public Expanded expandCompacted() {
+        return expand(_compacted);
+    }
+
+    private Expanded expand(Record record) {
+        return _compactor.expand(record, _fullConsistencyTimestamp, _fullConsistencyTimestamp, _fullConsistencyTimestamp,
+                MutableIntrinsics.create(_key), false, _requeryFn);
+    }
+
+    private static class InMemoryRecord implements Record {
+        private final Key _key;
+        private final List<Map.Entry<UUID, Compaction>> _compactions;
+        private final List<Map.Entry<UUID, Change>> _changes;
+
+        InMemoryRecord(Key key, List<Map.Entry<UUID, Compaction>> compactions, List<Map.Entry<UUID, Change>> changes) {
+            _key = key;
+            _compactions = compactions;
+            _changes = changes;
+        }
+
+        @Override
+        public Key getKey() {
+            return _key;
+        }
+
+        @Override
+        public Iterator<Map.Entry<UUID, Compaction>> passOneIterator() {
+            return _compactions.iterator();
+        }
+
+        @Override
+        public Iterator<Map.Entry<UUID, Change>> passTwoIterator() {
+            return _changes.iterator();
+        }
+
+        @Override
+        public Iterator<RecordEntryRawMetadata> rawMetadata() {
+            return Iterators.emptyIterator();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.bazaarvoice.emodb.sor.core;
+
+import com.bazaarvoice.emodb.benchmarks.SyntheticRecords;
+import com.bazaarvoice.emodb.common.uuid.TimeUUIDs;
+import com.bazaarvoice.emodb.common.uuid.UUIDs;
+import com.bazaarvoice.emodb.sor.db.Key;
+import com.bazaarvoice.emodb.sor.delta.Delta;
+import com.bazaarvoice.emodb.sor.delta.eval.DeltaEvaluator;
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link DefaultResolver} resolving a record from its deltas, which on top of evaluating each delta
+ * tracks the record's intrinsics and hashes its signature per delta.  Lives in the "sor.core" package since
+ * {@link MutableIntrinsics} is package-private.
+ * <p>
+ * {@link #updateLegacy()} measures the previous resolver, which allocated a new MD5 hasher and byte arrays per delta
+ * and compared the full content before and after every delta.  Run with "-prof gc" to compare the allocation per
+ * resolved record.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ResolverBenchmark {
+
+    @Param({"10", "50", "250"})
+    public int fields;
+
+    @Param({"1", "10", "100"})
+    public int depth;
+
+    private final Set<String> _tags = ImmutableSet.of("ugc");
+    private Key _key;
+    private List<UUID> _changeIds;
+    private List<Delta> _deltas;
+
+    @Setup
+    public void setUp() {
+        _key = new Key(SyntheticRecords.newTable(), "review1");
+        _deltas = new SyntheticRecords(fields).newDeltas(fields, depth);
+        _changeIds = Lists.newArrayListWithCapacity(depth);
+        long start = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(1);
+        for (int i = 0; i < depth; i++) {
+            _changeIds.add(TimeUUIDs.uuidForTimeMillis(start + i));
+        }
+    }
+
+    @Benchmark
+    public Resolved update() {
+        Resolver resolver = new DefaultResolver(MutableIntrinsics.create(_key));
+        for (int i = 0; i < depth; i++) {
+            resolver.update(_changeIds.get(i), _deltas.get(i), _tags);
+        }
+        return resolver.resolved();
+    }
+
+    @Benchmark
+    public Resolved updateLegacy() {
+        Resolver resolver = new LegacyResolver(MutableIntrinsics.create(_key));
+        for (int i = 0; i < depth; i++) {
+            resolver.update(_changeIds.get(i), _deltas.get(i), _tags);
+        }
+        return resolver.resolved();
+    }
+
+    /** The resolution loop from {@link DefaultResolver} before it was optimized, without compaction support. */
+    private static class LegacyResolver implements Resolver {
+        private final MutableIntrinsics _intrinsics;
+        private final Set<UUID> _changeIds = Sets.newHashSet();
+        private final Set<UUID> _redundantChangeIds = Sets.newHashSet();
+        private Object _content = Resolved.UNDEFINED;
+        private UUID _lastMutationId;
+        private Set<String> _lastAppliedTags = ImmutableSet.of();
+
+        LegacyResolver(MutableIntrinsics intrinsics) {
+            _intrinsics = intrinsics;
+            _intrinsics.setDeleted(true);
+            _intrinsics.setSignature(HashCode.fromBytes(new byte[16]));
+        }
+
+        @Override
+        public void update(UUID changeId, Delta delta, Set<String> tags) {
+            _changeIds.add(changeId);
+            Object updated = DeltaEvaluator.eval(delta, _content, _intrinsics);
+            boolean contentChanged = !Objects.equal(_content, updated);
+            if (!contentChanged && _lastAppliedTags.equals(tags)) {
+                _redundantChangeIds.add(changeId);
+            } else {
+                _lastMutationId = changeId;
+            }
+            _content = updated;
+            _lastAppliedTags = tags;
+
+            _intrinsics.setDeleted(_content == Resolved.UNDEFINED);
+            _intrinsics.setVersion(_intrinsics.getVersion() + 1);
+            Hasher hasher = Hashing.md5().newHasher();
+            hasher.putBytes(_intrinsics.getSignatureBytes());
+            hasher.putBytes(UUIDs.asByteArray(changeId));
+            _intrinsics.setSignature(hasher.hash());
+            if (_intrinsics.getFirstUpdateAt() == null) {
+                _intrinsics.setFirstUpdateAt(changeId);
+            }
+            _intrinsics.setLastUpdateAt(changeId);
+            if (contentChanged || _intrinsics.getLastMutateAt() == null) {
+                _intrinsics.setLastMutateAt(changeId);
+            }
+        }
+
+        @Override
+        public Resolved resolved() {
+            return new Resolved(_content, _intrinsics, null, null, _lastMutationId, _changeIds, _redundantChangeIds, _lastAppliedTags);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.bazaarvoice.emodb.sor.core;
+
+import com.bazaarvoice.emodb.benchmarks.SyntheticRecords;
+import com.bazaarvoice.emodb.common.json.JsonHelper;
+import com.bazaarvoice.emodb.common.json.deferred.LazyJsonMap;
+import com.bazaarvoice.emodb.common.uuid.TimeUUIDs;
+import com.bazaarvoice.emodb.sor.api.Compaction;
+import com.bazaarvoice.emodb.sor.api.Intrinsic;
+import com.bazaarvoice.emodb.sor.db.Key;
+import com.bazaarvoice.emodb.sor.delta.Delta;
+import com.bazaarvoice.emodb.sor.delta.Deltas;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.io.ByteStreams;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the per-record cost of a scan of large documents: reading the compaction from its stored JSON, resolving
+ * the deltas written since the compaction, adding the intrinsics and writing the record's JSON to the response.
+ * <p>
+ * With "literal" updates, which only set top-level attributes, the compacted content is never deserialized and the
+ * record is written by copying the compacted JSON with the updates and intrinsics merged in.  With "nested" updates
+ * the compacted content must be deserialized to apply the deltas and the record is written from the resolved map.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ScanSerializationBenchmark {
+
+    @Param({"50", "250", "1000"})
+    public int fields;
+
+    @Param({"literal", "nested"})
+    public String updates;
+
+    private final Set<String> _tags = ImmutableSet.of("ugc");
+    private final OutputStream _out = ByteStreams.nullOutputStream();
+    private Key _key;
+    private String _compactionJson;
+    private List<UUID> _changeIds;
+    private List<Delta> _deltas;
+
+    @Setup
+    public void setUp() {
+        SyntheticRecords records = new SyntheticRecords(fields);
+        _key = new Key(SyntheticRecords.newTable(), "review1");
+
+        long start = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(1);
+        UUID first = TimeUUIDs.uuidForTimeMillis(start);
+        UUID cutoff = TimeUUIDs.uuidForTimeMillis(start + 1);
+        _compactionJson = JsonHelper.asJson(new Compaction(10, first, cutoff, "2a5d6e8c1b3f4a7e9d0c2b4a6f8e1d3c",
+                cutoff, cutoff, Deltas.literal(records.newContent(fields))));
+
+        _changeIds = ImmutableList.of(
+                TimeUUIDs.uuidForTimeMillis(start + 2),
+                TimeUUIDs.uuidForTimeMillis(start + 3),
+                TimeUUIDs.uuidForTimeMillis(start + 4));
+        if ("literal".equals(updates)) {
+            _deltas = ImmutableList.of(
+                    Deltas.mapBuilder().put("status", "approved").put("rating", 4).build(),
+                    Deltas.mapBuilder().put("field1", 12345).put("title", "Updated title").build(),
+                    Deltas.mapBuilder().put("rating", 5).build());
+        } else {
+            _deltas = ImmutableList.of(
+                    Deltas.mapBuilder().put("status", "approved").put("rating", 4).build(),
+                    Deltas.mapBuilder().update("field0", Deltas.mapBuilder().put("updatedBy", "user1").build()).build(),
+                    Deltas.mapBuilder().put("rating", 5).build());
+        }
+    }
+
+    @Benchmark
+    public void scanRecord() throws IOException {
+        Compaction compaction = JsonHelper.fromJson(_compactionJson, Compaction.class);
+        Resolver resolver = new DefaultResolver(MutableIntrinsics.create(_key), compaction);
+        for (int i = 0; i < _deltas.size(); i++) {
+            resolver.update(_changeIds.get(i), _deltas.get(i), _tags);
+        }
+        JsonHelper.writeJson(_out, toContent(resolver.resolved()));
+    }
+
+    /** The subset of {@link DefaultDataStore#toContent} which applies to a live record. */
+    private Map<String, Object> toContent(Resolved resolved) {
+        Object content = resolved.getContent();
+        Map<String, Object> result;
+        if (content instanceof LazyJsonMap) {
+            result = ((LazyJsonMap) content).lazyCopy();
+        } else {
+            result = Maps.newLinkedHashMap();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) content).entrySet()) {
+                result.put(entry.getKey().toString(), entry.getValue());
+            }
+        }
+        MutableIntrinsics intrinsics = resolved.getIntrinsics();
+        result.put(Intrinsic.ID, intrinsics.getId());
+        result.put(Intrinsic.TABLE, intrinsics.getTable());
+        result.put(Intrinsic.VERSION, intrinsics.getVersion());
+        result.put(Intrinsic.SIGNATURE, intrinsics.getSignature());
+        result.put(Intrinsic.DELETED, false);
+        result.put(Intrinsic.FIRST_UPDATE_AT, intrinsics.getFirstUpdateAt());
+        result.put(Intrinsic.LAST_UPDATE_AT, intrinsics.getLastUpdateAt());
+        result.put(Intrinsic.LAST_MUTATE_AT, intrinsics.getLastMutateAt());
+        return result;
+    }
+}
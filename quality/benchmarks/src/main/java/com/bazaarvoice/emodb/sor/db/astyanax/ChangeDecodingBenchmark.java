@@ -0,0 +1,97 @@
+package com.bazaarvoice.emodb.sor.db.astyanax;
+
+import com.bazaarvoice.emodb.benchmarks.SyntheticRecords;
+import com.bazaarvoice.emodb.common.uuid.TimeUUIDs;
+import com.bazaarvoice.emodb.sor.api.Change;
+import com.bazaarvoice.emodb.sor.delta.Delta;
+import com.bazaarvoice.emodb.sor.delta.Literal;
+import com.bazaarvoice.emodb.sor.delta.MapDelta;
+import com.bazaarvoice.emodb.sor.delta.eval.DeltaEvaluator;
+import com.bazaarvoice.emodb.sor.delta.eval.Intrinsics;
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link DefaultChangeEncoder} decoding the D3 encoded deltas of a record as read from Cassandra.
+ * {@link #decode(Blackhole)} only decodes the changes, as when most of a record's deltas are behind its compaction, while
+ * {@link #decodeAndEvaluate()} also parses and evaluates every delta.  Lives in the "sor.db.astyanax" package since
+ * {@link DefaultChangeEncoder} is package-private.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ChangeDecodingBenchmark {
+
+    @Param({"10", "50", "250"})
+    public int fields;
+
+    @Param({"1", "10", "100"})
+    public int depth;
+
+    private final ChangeEncoder _encoder = new DefaultChangeEncoder();
+    private final Intrinsics _intrinsics = SyntheticRecords.newIntrinsics("review1");
+    private List<UUID> _changeIds;
+    private List<ByteBuffer> _encoded;
+
+    @Setup
+    public void setUp() {
+        Set<String> tags = ImmutableSet.of("ugc");
+        List<Delta> deltas = new SyntheticRecords(fields).newDeltas(fields, depth);
+        _changeIds = Lists.newArrayListWithCapacity(depth);
+        _encoded = Lists.newArrayListWithCapacity(depth);
+        for (Delta delta : deltas) {
+            // Same change flags as AstyanaxDataWriterDAO
+            EnumSet<ChangeFlag> changeFlags = EnumSet.noneOf(ChangeFlag.class);
+            if (delta.isConstant()) {
+                changeFlags.add(ChangeFlag.CONSTANT_DELTA);
+            }
+            if (delta instanceof MapDelta || (delta instanceof Literal && ((Literal) delta).getValue() instanceof Map)) {
+                changeFlags.add(ChangeFlag.MAP_DELTA);
+            }
+            String encoded = _encoder.encodeDelta(delta.toString(), changeFlags, tags, new StringBuilder()).toString();
+            _changeIds.add(TimeUUIDs.newUUID());
+            _encoded.add(ByteBuffer.wrap(encoded.getBytes(Charsets.UTF_8)));
+        }
+    }
+
+    @Benchmark
+    public void decode(Blackhole blackhole) {
+        for (int i = 0; i < depth; i++) {
+            blackhole.consume(_encoder.decodeChange(_changeIds.get(i), _encoded.get(i)));
+        }
+    }
+
+    @Benchmark
+    public Object decodeAndEvaluate() {
+        Object content = DeltaEvaluator.UNDEFINED;
+        for (int i = 0; i < depth; i++) {
+            Change change = _encoder.decodeChange(_changeIds.get(i), _encoded.get(i));
+            content = DeltaEvaluator.eval(change.getDelta(), content, _intrinsics);
+        }
+        return content;
+    }
+}
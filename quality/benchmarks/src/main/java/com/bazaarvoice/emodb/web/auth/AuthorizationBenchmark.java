@@ -0,0 +1,162 @@
+package com.bazaarvoice.emodb.web.auth;
+
+import com.bazaarvoice.emodb.auth.EmoSecurityManager;
+import com.bazaarvoice.emodb.auth.SecurityManagerBuilder;
+import com.bazaarvoice.emodb.auth.apikey.ApiKey;
+import com.bazaarvoice.emodb.auth.apikey.ApiKeyAuthenticationToken;
+import com.bazaarvoice.emodb.auth.apikey.ApiKeyModification;
+import com.bazaarvoice.emodb.auth.identity.InMemoryAuthIdentityManager;
+import com.bazaarvoice.emodb.auth.permissions.InMemoryPermissionManager;
+import com.bazaarvoice.emodb.auth.permissions.PermissionIDs;
+import com.bazaarvoice.emodb.auth.permissions.PermissionUpdateRequest;
+import com.bazaarvoice.emodb.sor.api.DataStore;
+import com.bazaarvoice.emodb.sor.api.DefaultTable;
+import com.bazaarvoice.emodb.sor.api.Intrinsic;
+import com.bazaarvoice.emodb.sor.api.TableAvailability;
+import com.bazaarvoice.emodb.sor.api.TableOptionsBuilder;
+import com.bazaarvoice.emodb.sor.condition.Conditions;
+import com.bazaarvoice.emodb.web.auth.resource.ConditionResource;
+import com.bazaarvoice.emodb.web.auth.resource.NamedResource;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.reflect.AbstractInvocationHandler;
+import com.google.common.reflect.Reflection;
+import org.apache.shiro.authz.Permission;
+import org.apache.shiro.subject.PrincipalCollection;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures authorizing a request to read a table, as performed for every request to the system of record, for API keys
+ * with realistic role sets.  "sor_standard" and "standard" are the default roles, whose permissions are restricted
+ * to non-system tables by conditions on the table's placement.  "custom" is a role with read permission on 20
+ * placements, typical of the roles created for applications.  Each operation checks read permission on the next of
+ * "tables" tables spread across several placements.
+ * <p>
+ * {@link #isPermitted()} and {@link #hasPermissionById()} go through the security manager's cached permissions and
+ * decisions.  {@link #isPermittedUncached()} measures the previous path, which resolved the permission string and
+ * evaluated it against every role permission on each request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class AuthorizationBenchmark {
+
+    private static final String CUSTOM_ROLE = "custom";
+    private static final int PLACEMENTS = 8;
+
+    @Param({"sor_standard", "standard", "custom"})
+    public String roles;
+
+    @Param({"10", "500"})
+    public int tables;
+
+    private EmoSecurityManager _securityManager;
+    private EmoPermissionResolver _permissionResolver;
+    private PrincipalCollection _principals;
+    private String _id;
+    private List<String> _permissions;
+    private List<Permission> _rolePermissions;
+    private int _next;
+
+    @Setup
+    public void setUp() {
+        final DataStore dataStore = Reflection.newProxy(DataStore.class, new AbstractInvocationHandler() {
+            @Override
+            protected Object handleInvocation(Object proxy, Method method, Object[] args) throws Throwable {
+                if (method.getName().equals("getTableMetadata")) {
+                    return newTable((String) args[0]);
+                }
+                throw new UnsupportedOperationException(method.getName());
+            }
+        });
+        _permissionResolver = new EmoPermissionResolver(dataStore, null);
+
+        InMemoryPermissionManager permissionManager = new InMemoryPermissionManager(_permissionResolver);
+        for (DefaultRoles defaultRole : DefaultRoles.values()) {
+            permissionManager.updatePermissions(PermissionIDs.forRole(defaultRole.toString()),
+                    new PermissionUpdateRequest().permit(defaultRole.getPermissions()));
+        }
+        List<String> customPermissions = Lists.newArrayList();
+        for (int i = 0; i < 20; i++) {
+            customPermissions.add(Permissions.readSorTable(new ConditionResource(
+                    Conditions.intrinsic(Intrinsic.PLACEMENT, "app_" + i + ":ugc"))));
+        }
+        permissionManager.updatePermissions(PermissionIDs.forRole(CUSTOM_ROLE),
+                new PermissionUpdateRequest().permit(customPermissions));
+
+        InMemoryAuthIdentityManager<ApiKey> authIdentityManager = new InMemoryAuthIdentityManager<>();
+        _id = authIdentityManager.createIdentity("apikey", new ApiKeyModification().addRoles(roles));
+
+        _securityManager = SecurityManagerBuilder.create()
+                .withAuthIdentityReader(authIdentityManager)
+                .withPermissionReader(permissionManager)
+                .build();
+        _principals = _securityManager.authenticate(new ApiKeyAuthenticationToken("apikey")).getPrincipals();
+
+        Set<String> rolePermissions = CUSTOM_ROLE.equals(roles) ?
+                ImmutableSet.copyOf(customPermissions) : DefaultRoles.valueOf(roles).getPermissions();
+        _rolePermissions = Lists.newArrayList();
+        for (String permission : rolePermissions) {
+            _rolePermissions.add(_permissionResolver.resolvePermission(permission));
+        }
+
+        _permissions = Lists.newArrayListWithCapacity(tables);
+        for (int i = 0; i < tables; i++) {
+            _permissions.add(Permissions.readSorTable(new NamedResource("review_" + i)));
+        }
+    }
+
+    private static DefaultTable newTable(String name) {
+        // Spread the tables across placements, some of which the custom role can't read
+        String placement = "app_" + (Math.abs(name.hashCode()) % PLACEMENTS) * 3 + ":ugc";
+        return new DefaultTable(name, new TableOptionsBuilder().setPlacement(placement).build(),
+                ImmutableMap.<String, Object>of(), new TableAvailability(placement, false));
+    }
+
+    private String nextPermission() {
+        if (++_next == tables) {
+            _next = 0;
+        }
+        return _permissions.get(_next);
+    }
+
+    @Benchmark
+    public boolean isPermitted() {
+        return _securityManager.isPermitted(_principals, nextPermission());
+    }
+
+    @Benchmark
+    public boolean hasPermissionById() {
+        return _securityManager.hasPermissionById(_id, nextPermission());
+    }
+
+    @Benchmark
+    public boolean isPermittedUncached() {
+        Permission permission = _permissionResolver.resolvePermission(nextPermission());
+        for (Permission rolePermission : _rolePermissions) {
+            if (rolePermission.implies(permission)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
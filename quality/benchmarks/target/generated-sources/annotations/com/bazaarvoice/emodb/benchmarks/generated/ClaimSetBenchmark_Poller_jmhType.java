@@ -0,0 +1,4 @@
+package com.bazaarvoice.emodb.benchmarks.generated;
+public class ClaimSetBenchmark_Poller_jmhType extends ClaimSetBenchmark_Poller_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package com.bazaarvoice.emodb.benchmarks.generated;
+public class ConditionEvaluatorBenchmark_jmhType extends ConditionEvaluatorBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package com.bazaarvoice.emodb.benchmarks.generated;
+public class DeltaEvaluatorBenchmark_jmhType extends DeltaEvaluatorBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package com.bazaarvoice.emodb.benchmarks.generated;
+public class DeltaParserBenchmark_jmhType extends DeltaParserBenchmark_jmhType_B3 {
+}
+
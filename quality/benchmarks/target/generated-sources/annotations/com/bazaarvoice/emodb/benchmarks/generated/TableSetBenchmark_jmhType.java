@@ -0,0 +1,4 @@
+package com.bazaarvoice.emodb.benchmarks.generated;
+public class TableSetBenchmark_jmhType extends TableSetBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package com.bazaarvoice.emodb.databus.core.generated;
+public class UpdateRefSerializerBenchmark_jmhType extends UpdateRefSerializerBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package com.bazaarvoice.emodb.sor.core.generated;
+public class CompactorBenchmark_jmhType extends CompactorBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package com.bazaarvoice.emodb.sor.core.generated;
+public class ResolverBenchmark_jmhType extends ResolverBenchmark_jmhType_B3 {
+}
+
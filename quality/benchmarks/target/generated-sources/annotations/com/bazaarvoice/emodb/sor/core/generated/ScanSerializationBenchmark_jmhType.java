@@ -0,0 +1,4 @@
+package com.bazaarvoice.emodb.sor.core.generated;
+public class ScanSerializationBenchmark_jmhType extends ScanSerializationBenchmark_jmhType_B3 {
+}
+
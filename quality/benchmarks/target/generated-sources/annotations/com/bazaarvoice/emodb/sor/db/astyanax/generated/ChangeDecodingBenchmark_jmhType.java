@@ -0,0 +1,4 @@
+package com.bazaarvoice.emodb.sor.db.astyanax.generated;
+public class ChangeDecodingBenchmark_jmhType extends ChangeDecodingBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package com.bazaarvoice.emodb.web.auth.generated;
+public class AuthorizationBenchmark_jmhType extends AuthorizationBenchmark_jmhType_B3 {
+}
+
@@ -21,6 +21,7 @@ import com.bazaarvoice.emodb.databus.client.DatabusAuthenticator;
 import com.bazaarvoice.emodb.databus.client.DatabusClient;
 import com.bazaarvoice.emodb.databus.core.DatabusChannelConfiguration;
 import com.bazaarvoice.emodb.databus.core.DatabusEventStore;
+import com.bazaarvoice.emodb.databus.core.EventArrivalNotifier;
 import com.bazaarvoice.emodb.sor.api.Intrinsic;
 import com.bazaarvoice.emodb.sor.condition.Condition;
 import com.bazaarvoice.emodb.sor.condition.Conditions;
@@ -54,6 +55,7 @@ import org.hamcrest.Matcher;
 import org.junit.After;
 import org.junit.Rule;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 
@@ -542,7 +544,8 @@ public class DatabusJerseyTest extends ResourceTest {
 
         try {
             DatabusResourcePoller poller = new DatabusResourcePoller(
-                    Optional.of(new LongPollingExecutorServices(pollService, keepAliveService)), new MetricRegistry());
+                    Optional.of(new LongPollingExecutorServices(pollService, keepAliveService)),
+                    mock(EventArrivalNotifier.class), new MetricRegistry());
 
             SubjectDatabus databus = mock(SubjectDatabus.class);
             List<Event> pollResults = ImmutableList.of(
@@ -608,7 +611,8 @@ public class DatabusJerseyTest extends ResourceTest {
 
         try {
             DatabusResourcePoller poller = new DatabusResourcePoller(
-                    Optional.of(new LongPollingExecutorServices(pollService, keepAliveService)), new MetricRegistry());
+                    Optional.of(new LongPollingExecutorServices(pollService, keepAliveService)),
+                    mock(EventArrivalNotifier.class), new MetricRegistry());
 
             SubjectDatabus databus = mock(SubjectDatabus.class);
             when(databus.poll(isSubject(), eq("queue-name"), eq(Duration.ofSeconds(10)), eq(100)))
@@ -645,7 +649,8 @@ public class DatabusJerseyTest extends ResourceTest {
 
         try {
             DatabusResourcePoller poller = new DatabusResourcePoller(
-                    Optional.of(new LongPollingExecutorServices(pollService, keepAliveService)), new MetricRegistry());
+                    Optional.of(new LongPollingExecutorServices(pollService, keepAliveService)),
+                    mock(EventArrivalNotifier.class), new MetricRegistry());
 
             SubjectDatabus databus = mock(SubjectDatabus.class);
             when(databus.poll(isSubject(), eq("queue-name"), eq(Duration.ofSeconds(10)), eq(100)))
@@ -682,6 +687,63 @@ public class DatabusJerseyTest extends ResourceTest {
         }
     }
 
+    @Test
+    public void testLongPollWakeup()
+            throws Exception {
+        // Resource tests don't support asynchronous requests, so do the next best thing and use a DatabusResourcePoller
+        // directly.
+
+        ScheduledExecutorService keepAliveService = Executors.newSingleThreadScheduledExecutor();
+        ScheduledExecutorService pollService = Executors.newSingleThreadScheduledExecutor();
+
+        try {
+            EventArrivalNotifier notifier = mock(EventArrivalNotifier.class);
+            MetricRegistry metricRegistry = new MetricRegistry();
+            DatabusResourcePoller poller = new DatabusResourcePoller(
+                    Optional.of(new LongPollingExecutorServices(pollService, keepAliveService)), notifier, metricRegistry);
+
+            SubjectDatabus databus = mock(SubjectDatabus.class);
+            List<Event> pollResults = ImmutableList.of(
+                    new Event("id-1", ImmutableMap.of("key-1", "value-1"), ImmutableList.<List<String>>of(ImmutableList.<String>of("tag-1"))));
+            //noinspection unchecked
+            when(databus.poll(isSubject(), eq("queue-name"), eq(Duration.ofSeconds(10)), eq(100)))
+                    .thenReturn(new PollResult(Iterators.emptyIterator(), 0, false))
+                    .thenReturn(new PollResult(pollResults.iterator(), 1, false));
+
+            final StringWriter out = new StringWriter();
+            final AtomicBoolean complete = new AtomicBoolean(false);
+
+            HttpServletRequest request = setupLongPollingTest(out, complete);
+
+            PeekOrPollResponseHelper helper = new PeekOrPollResponseHelper(EventViews.WithTags.class);
+            poller.poll(createSubject(), databus, "queue-name", Duration.ofSeconds(10), 100, request, false, helper);
+
+            // Simulate events arriving for the subscription.  The poll should run immediately rather than waiting
+            // for the next scheduled retry.
+            ArgumentCaptor<Runnable> listener = ArgumentCaptor.forClass(Runnable.class);
+            verify(notifier).addListener(eq("queue-name"), listener.capture());
+            listener.getValue().run();
+
+            long failTime = System.currentTimeMillis() + Duration.ofSeconds(1).toMillis();
+
+            while (!complete.get() && System.currentTimeMillis() < failTime) {
+                Thread.sleep(10);
+            }
+
+            assertTrue(complete.get());
+
+            List<Event> actual = JsonHelper.convert(
+                    JsonHelper.fromJson(out.toString(), List.class), new TypeReference<List<Event>>() {});
+
+            assertEquals(actual, pollResults);
+            verify(notifier).removeListener("queue-name", listener.getValue());
+            assertEquals(metricRegistry.timer(MetricRegistry.name("bv.emodb.databus", "DatabusResource1", "wakeupToResponse")).getCount(), 1);
+        } finally {
+            keepAliveService.shutdownNow();
+            pollService.shutdownNow();
+        }
+    }
+
     private HttpServletRequest setupLongPollingTest(final StringWriter out, final AtomicBoolean complete)
             throws Exception {
 
@@ -7,7 +7,9 @@ import com.bazaarvoice.emodb.auth.role.InMemoryRoleManager;
 import com.bazaarvoice.emodb.auth.role.RoleIdentifier;
 import com.bazaarvoice.emodb.auth.role.RoleManager;
 import com.bazaarvoice.emodb.blob.api.BlobStore;
+import com.bazaarvoice.emodb.common.uuid.TimeUUIDs;
 import com.bazaarvoice.emodb.databus.repl.ReplicationClient;
+import com.bazaarvoice.emodb.databus.repl.ReplicationEvent;
 import com.bazaarvoice.emodb.databus.repl.ReplicationSource;
 import com.bazaarvoice.emodb.sor.api.DataStore;
 import com.bazaarvoice.emodb.test.ResourceTest;
@@ -26,12 +28,15 @@ import org.junit.Rule;
 import org.junit.Test;
 
 import java.net.URI;
+import java.time.Duration;
 import java.util.List;
 
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.fail;
 
 public class ReplicationJerseyTest extends ResourceTest {
@@ -72,6 +77,23 @@ public class ReplicationJerseyTest extends ResourceTest {
         verifyNoMoreInteractions(_server);
     }
 
+    @Test
+    public void testPoll() {
+        ReplicationEvent event = new ReplicationEvent("id", "table", "key", TimeUUIDs.newUUID(), ImmutableSet.of("tag"));
+        when(_server.poll("channel", Duration.ofSeconds(45), 123)).thenReturn(ImmutableList.of(event));
+
+        List<ReplicationEvent> events = replicationClient().poll("channel", Duration.ofSeconds(45), 123);
+
+        assertEquals(events.size(), 1);
+        assertEquals(events.get(0).getId(), "id");
+        assertEquals(events.get(0).getTable(), "table");
+        assertEquals(events.get(0).getKey(), "key");
+        assertEquals(events.get(0).getChangeId(), event.getChangeId());
+        assertEquals(events.get(0).getTags(), ImmutableSet.of("tag"));
+        verify(_server).poll("channel", Duration.ofSeconds(45), 123);
+        verifyNoMoreInteractions(_server);
+    }
+
     @Test
     public void testDelete() {
         List<String> ids = ImmutableList.of("first", "second");
@@ -6,6 +6,7 @@ import com.bazaarvoice.emodb.auth.identity.InMemoryAuthIdentityManager;
 import com.bazaarvoice.emodb.auth.permissions.InMemoryPermissionManager;
 import com.bazaarvoice.emodb.auth.role.InMemoryRoleManager;
 import com.bazaarvoice.emodb.blob.api.BlobStore;
+import com.bazaarvoice.emodb.common.api.RateLimitExceededException;
 import com.bazaarvoice.emodb.common.jersey.dropwizard.JerseyEmoClient;
 import com.bazaarvoice.emodb.common.uuid.TimeUUIDs;
 import com.bazaarvoice.emodb.common.zookeeper.store.ZkMapStore;
@@ -25,13 +26,13 @@ import com.bazaarvoice.emodb.web.resources.sor.DataStoreResource1;
 import com.bazaarvoice.emodb.web.throttling.DataStoreUpdateThrottle;
 import com.bazaarvoice.emodb.web.throttling.DataStoreUpdateThrottleManager;
 import com.bazaarvoice.emodb.web.throttling.DataStoreUpdateThrottler;
+import com.bazaarvoice.emodb.web.throttling.TokenBucket;
 import com.bazaarvoice.emodb.web.throttling.ZkDataStoreUpdateThrottleSerializer;
 import com.codahale.metrics.MetricRegistry;
 import com.google.common.base.Stopwatch;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
-import com.google.common.util.concurrent.RateLimiter;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import io.dropwizard.testing.junit.ResourceTestRule;
 import org.apache.curator.framework.CuratorFramework;
@@ -47,15 +48,21 @@ import org.junit.Test;
 
 import java.net.URI;
 import java.time.Clock;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyDouble;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.reset;
@@ -98,7 +105,17 @@ public class DataStoreUpdateThrottleTest extends ResourceTest {
         // Since a unique throttler will be created for each test construct the resource with a throttle which delegates
         // the the test-specific instance.
 
-        DataStoreUpdateThrottler throttler = id -> _throttleManager.beforeUpdate(id);
+        DataStoreUpdateThrottler throttler = new DataStoreUpdateThrottler() {
+            @Override
+            public void beforeUpdates(String id, int updates) throws RateLimitExceededException {
+                _throttleManager.beforeUpdates(id, updates);
+            }
+
+            @Override
+            public void refundUpdates(String id, int updates) {
+                _throttleManager.refundUpdates(id, updates);
+            }
+        };
 
         return setupResourceTestRule(
                 Collections.<Object>singletonList(new DataStoreResource1(
@@ -144,7 +161,7 @@ public class DataStoreUpdateThrottleTest extends ResourceTest {
         _throttleManager = new DataStoreUpdateThrottleManager(_mapStore, clock, new MetricRegistry()) {
             // Defer rate limit generation to our controlled mock
             @Override
-            protected RateLimiter createRateLimiter(double rate) {
+            protected TokenBucket createRateLimiter(double rate) {
                 return _rateLimiterFactory.create(rate);
             }
         };
@@ -174,7 +191,7 @@ public class DataStoreUpdateThrottleTest extends ResourceTest {
 
     @Test
     public void testApiKeyLimited() throws Exception {
-        final RateLimiter rateLimiter = mock(RateLimiter.class);
+        final TokenBucket rateLimiter = mock(TokenBucket.class);
         when(_rateLimiterFactory.create(10)).thenReturn(rateLimiter);
 
         updateAPIKeyRateLimit(_limitedId, new DataStoreUpdateThrottle(10, _now.plusSeconds(1)));
@@ -182,13 +199,13 @@ public class DataStoreUpdateThrottleTest extends ResourceTest {
         createClient(API_KEY_LIMITED).update("table", "key", TimeUUIDs.newUUID(), Deltas.delete(), new AuditBuilder().build());
 
         verify(_rateLimiterFactory).create(10);
-        verify(rateLimiter).acquire();
+        verify(rateLimiter).reserve(eq(1), anyLong());
     }
 
     @Test
     public void testNotThisApiKeyLimited() throws Exception {
-        final RateLimiter rateLimiter = mock(RateLimiter.class);
-        when(rateLimiter.acquire()).thenThrow(new AssertionError("Unlimited key should not have been rate limited"));
+        final TokenBucket rateLimiter = mock(TokenBucket.class);
+        when(rateLimiter.reserve(anyInt(), anyLong())).thenThrow(new AssertionError("Unlimited key should not have been rate limited"));
         when(_rateLimiterFactory.create(anyDouble())).thenReturn(rateLimiter);
 
         updateAPIKeyRateLimit(_limitedId, new DataStoreUpdateThrottle(10, _now.plusSeconds(1)));
@@ -200,8 +217,8 @@ public class DataStoreUpdateThrottleTest extends ResourceTest {
 
     @Test
     public void testInstanceRateLimited() throws Exception {
-        final RateLimiter keyRateLimiter = mock(RateLimiter.class);
-        final RateLimiter instanceRateLimiter = mock(RateLimiter.class);
+        final TokenBucket keyRateLimiter = mock(TokenBucket.class);
+        final TokenBucket instanceRateLimiter = mock(TokenBucket.class);
         when(_rateLimiterFactory.create(10)).thenReturn(keyRateLimiter);
         when(_rateLimiterFactory.create(20)).thenReturn(instanceRateLimiter);
 
@@ -214,13 +231,13 @@ public class DataStoreUpdateThrottleTest extends ResourceTest {
         verify(_rateLimiterFactory).create(10);
         verify(_rateLimiterFactory).create(20);
 
-        verify(keyRateLimiter).acquire();
-        verify(instanceRateLimiter, times(2)).acquire();
+        verify(keyRateLimiter).reserve(eq(1), anyLong());
+        verify(instanceRateLimiter, times(2)).reserve(eq(1), anyLong());
     }
 
     @Test
     public void testStreamRateLimited() throws Exception {
-        final RateLimiter rateLimiter = mock(RateLimiter.class);
+        final TokenBucket rateLimiter = mock(TokenBucket.class);
         when(_rateLimiterFactory.create(10)).thenReturn(rateLimiter);
 
         updateAPIKeyRateLimit(_limitedId, new DataStoreUpdateThrottle(10, _now.plusSeconds(1)));
@@ -231,15 +248,109 @@ public class DataStoreUpdateThrottleTest extends ResourceTest {
         }
         createClient(API_KEY_LIMITED).updateAll(updates);
 
+        // Updates are charged in batches which double in size: 1, 1, 2, 4, 8 and 16 updates.  The 12 updates charged
+        // for but not in the stream are refunded.
+        verify(_rateLimiterFactory).create(10);
+        verify(rateLimiter, times(2)).reserve(eq(1), anyLong());
+        verify(rateLimiter).reserve(eq(2), anyLong());
+        verify(rateLimiter).reserve(eq(4), anyLong());
+        verify(rateLimiter).reserve(eq(8), anyLong());
+        verify(rateLimiter).reserve(eq(16), anyLong());
+        verify(rateLimiter).refund(12);
+        verifyNoMoreInteractions(rateLimiter);
+    }
+
+    @Test
+    public void testStreamFailureRefundsUnreadUpdates() throws Exception {
+        final TokenBucket rateLimiter = mock(TokenBucket.class);
+        when(_rateLimiterFactory.create(10)).thenReturn(rateLimiter);
+
+        updateAPIKeyRateLimit(_limitedId, new DataStoreUpdateThrottle(10, _now.plusSeconds(1)));
+
+        // The data store rejects the stream after reading the first 5 updates
+        doAnswer(invocation -> {
+            //noinspection unchecked
+            Iterator<Update> updates = ((Iterable<Update>) invocation.getArguments()[0]).iterator();
+            for (int i=0; i < 5; i++) {
+                updates.next();
+            }
+            throw new IllegalArgumentException("Invalid update");
+        }).when(_dataStore).updateAll(any(), any());
+
+        List<Update> updates = Lists.newArrayListWithCapacity(20);
+        for (int i=0; i < 20; i++) {
+            updates.add(new Update("table", "key" + i, TimeUUIDs.newUUID(), Deltas.delete(), new AuditBuilder().build()));
+        }
+        try {
+            createClient(API_KEY_LIMITED).updateAll(updates);
+            fail("Update failure not thrown");
+        } catch (Exception e) {
+            // expected
+        }
+
+        // Updates are charged in batches of 1, 1, 2 and 4.  The 3 updates charged for but not read are refunded.
+        verify(_rateLimiterFactory).create(10);
+        verify(rateLimiter, times(2)).reserve(eq(1), anyLong());
+        verify(rateLimiter).reserve(eq(2), anyLong());
+        verify(rateLimiter).reserve(eq(4), anyLong());
+        verify(rateLimiter).refund(3);
+        verifyNoMoreInteractions(rateLimiter);
+    }
+
+    @Test
+    public void testInstanceRateLimitExceededRefundsApiKey() throws Exception {
+        final TokenBucket keyRateLimiter = mock(TokenBucket.class);
+        final TokenBucket instanceRateLimiter = mock(TokenBucket.class);
+        when(_rateLimiterFactory.create(10)).thenReturn(keyRateLimiter);
+        when(_rateLimiterFactory.create(20)).thenReturn(instanceRateLimiter);
+        when(instanceRateLimiter.getRate()).thenReturn(20.0);
+        when(instanceRateLimiter.reserve(1, 1000)).thenReturn(3500L);
+
+        updateAPIKeyRateLimit(_limitedId, new DataStoreUpdateThrottle(10, _now.plusSeconds(1)));
+        updateAPIKeyRateLimit("*", new DataStoreUpdateThrottle(20, _now.plusSeconds(1), Duration.ofSeconds(1)));
+
+        try {
+            createClient(API_KEY_LIMITED).update("table", "key", TimeUUIDs.newUUID(), Deltas.delete(), new AuditBuilder().build());
+            fail("RateLimitExceededException not thrown");
+        } catch (RateLimitExceededException e) {
+            // expected
+        }
+
+        verify(_rateLimiterFactory).create(10);
+        verify(_rateLimiterFactory).create(20);
+
+        // The update was rejected by the instance rate limit so the API key's rate limit shouldn't be charged for it
+        verify(keyRateLimiter).reserve(eq(1), anyLong());
+        verify(keyRateLimiter).refund(1);
+        verifyNoMoreInteractions(keyRateLimiter);
+    }
+
+    @Test
+    public void testRateLimitExceeded() throws Exception {
+        final TokenBucket rateLimiter = mock(TokenBucket.class);
+        when(_rateLimiterFactory.create(10)).thenReturn(rateLimiter);
+        when(rateLimiter.getRate()).thenReturn(10.0);
+        // The updates would have to wait 3.5 seconds, 2.5 seconds more than the maximum wait
+        when(rateLimiter.reserve(1, 1000)).thenReturn(3500L);
+
+        updateAPIKeyRateLimit(_limitedId, new DataStoreUpdateThrottle(10, _now.plusSeconds(1), Duration.ofSeconds(1)));
+
+        try {
+            createClient(API_KEY_LIMITED).update("table", "key", TimeUUIDs.newUUID(), Deltas.delete(), new AuditBuilder().build());
+            fail("RateLimitExceededException not thrown");
+        } catch (RateLimitExceededException e) {
+            assertEquals(e.getRetryAfterSeconds(), Integer.valueOf(3));
+        }
+
         verify(_rateLimiterFactory).create(10);
-        verify(rateLimiter, times(20)).acquire();
+        verify(rateLimiter).reserve(1, 1000);
     }
 
     @Test
     public void testRemoveRateLimit() throws Exception {
-        final RateLimiter rateLimiter = mock(RateLimiter.class);
+        final TokenBucket rateLimiter = mock(TokenBucket.class);
         when(_rateLimiterFactory.create(10)).thenReturn(rateLimiter);
-        when(rateLimiter.acquire()).thenReturn(0.0).thenThrow(new AssertionError("Rate limit should only have been applied once"));
+        when(rateLimiter.reserve(anyInt(), anyLong())).thenReturn(0L).thenThrow(new AssertionError("Rate limit should only have been applied once"));
 
         updateAPIKeyRateLimit(_limitedId, new DataStoreUpdateThrottle(10, _now.plusSeconds(1)));
         createClient(API_KEY_LIMITED).update("table", "key", TimeUUIDs.newUUID(), Deltas.delete(), new AuditBuilder().build());
@@ -248,14 +359,14 @@ public class DataStoreUpdateThrottleTest extends ResourceTest {
         createClient(API_KEY_LIMITED).update("table", "key", TimeUUIDs.newUUID(), Deltas.delete(), new AuditBuilder().build());
 
         verify(_rateLimiterFactory).create(10);
-        verify(rateLimiter).acquire();
+        verify(rateLimiter).reserve(eq(1), anyLong());
     }
 
     @Test
     public void testRateLimitExpiration() throws Exception {
-        final RateLimiter rateLimiter = mock(RateLimiter.class);
+        final TokenBucket rateLimiter = mock(TokenBucket.class);
         when(_rateLimiterFactory.create(10)).thenReturn(rateLimiter);
-        when(rateLimiter.acquire()).thenReturn(0.0).thenThrow(new AssertionError("Rate limit should only have been applied once"));
+        when(rateLimiter.reserve(anyInt(), anyLong())).thenReturn(0L).thenThrow(new AssertionError("Rate limit should only have been applied once"));
 
         updateAPIKeyRateLimit(_limitedId, new DataStoreUpdateThrottle(10, _now.plusSeconds(1)));
         createClient(API_KEY_LIMITED).update("table", "key", TimeUUIDs.newUUID(), Deltas.delete(), new AuditBuilder().build());
@@ -265,19 +376,19 @@ public class DataStoreUpdateThrottleTest extends ResourceTest {
 
         createClient(API_KEY_LIMITED).update("table", "key", TimeUUIDs.newUUID(), Deltas.delete(), new AuditBuilder().build());
         verify(_rateLimiterFactory).create(10);
-        verify(rateLimiter).acquire();
+        verify(rateLimiter).reserve(eq(1), anyLong());
     }
 
     /**
-     * Behind the scenes when the rate limit for an API key is changed the manager creates a new {@link RateLimiter}.
-     * This test depends on that behavior.  If it is changed such that the same RateLimiter instance is updated
-     * using {@link RateLimiter#setRate(double)} then this test will fail unless it is similarly updated.
+     * Behind the scenes when the rate limit for an API key is changed the manager creates a new {@link TokenBucket}.
+     * This test depends on that behavior.  If it is changed such that the same TokenBucket instance is updated
+     * with the new rate then this test will fail unless it is similarly updated.
      */
     @Test
     public void testRateLimitChange() throws Exception {
-        final RateLimiter rateLimiter10 = mock(RateLimiter.class);
+        final TokenBucket rateLimiter10 = mock(TokenBucket.class);
         when(_rateLimiterFactory.create(10)).thenReturn(rateLimiter10);
-        final RateLimiter rateLimiter20 = mock(RateLimiter.class);
+        final TokenBucket rateLimiter20 = mock(TokenBucket.class);
         when(_rateLimiterFactory.create(20)).thenReturn(rateLimiter20);
 
         updateAPIKeyRateLimit(_limitedId, new DataStoreUpdateThrottle(10, _now.plusSeconds(1)));
@@ -292,8 +403,8 @@ public class DataStoreUpdateThrottleTest extends ResourceTest {
         verify(_rateLimiterFactory).create(10);
         verify(_rateLimiterFactory).create(20);
 
-        verify(rateLimiter10, times(3)).acquire();
-        verify(rateLimiter20).acquire();
+        verify(rateLimiter10, times(3)).reserve(eq(1), anyLong());
+        verify(rateLimiter20).reserve(eq(1), anyLong());
     }
 
     private void updateAPIKeyRateLimit(String id, DataStoreUpdateThrottle throttle) throws Exception {
@@ -331,6 +442,6 @@ public class DataStoreUpdateThrottleTest extends ResourceTest {
     }
 
     private interface RateLimiterFactory {
-        RateLimiter create(double rate);
+        TokenBucket create(double rate);
     }
 }
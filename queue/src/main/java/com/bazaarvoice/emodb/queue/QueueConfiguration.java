@@ -1,6 +1,7 @@
 package com.bazaarvoice.emodb.queue;
 
 import com.bazaarvoice.emodb.common.cassandra.CassandraConfiguration;
+import com.bazaarvoice.emodb.event.ClaimStoreConfiguration;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 import javax.validation.Valid;
@@ -16,6 +17,11 @@ public class QueueConfiguration {
     @JsonProperty("cassandra")
     private CassandraConfiguration _cassandraConfiguration;
 
+    @Valid
+    @NotNull
+    @JsonProperty("claimStore")
+    private ClaimStoreConfiguration _claimStoreConfiguration = new ClaimStoreConfiguration();
+
     public CassandraConfiguration getCassandraConfiguration() {
         return _cassandraConfiguration;
     }
@@ -24,4 +30,13 @@ public class QueueConfiguration {
         _cassandraConfiguration = cassandraConfiguration;
         return this;
     }
+
+    public ClaimStoreConfiguration getClaimStoreConfiguration() {
+        return _claimStoreConfiguration;
+    }
+
+    public QueueConfiguration setClaimStoreConfiguration(ClaimStoreConfiguration claimStoreConfiguration) {
+        _claimStoreConfiguration = claimStoreConfiguration;
+        return this;
+    }
 }
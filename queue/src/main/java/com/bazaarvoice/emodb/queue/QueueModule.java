@@ -8,6 +8,7 @@ import com.bazaarvoice.emodb.common.dropwizard.healthcheck.HealthCheckRegistry;
 import com.bazaarvoice.emodb.common.dropwizard.leader.LeaderServiceTask;
 import com.bazaarvoice.emodb.common.dropwizard.lifecycle.LifeCycleRegistry;
 import com.bazaarvoice.emodb.common.dropwizard.task.TaskRegistry;
+import com.bazaarvoice.emodb.event.ClaimStoreConfiguration;
 import com.bazaarvoice.emodb.event.DedupEnabled;
 import com.bazaarvoice.emodb.event.EventStoreHostDiscovery;
 import com.bazaarvoice.emodb.event.EventStoreModule;
@@ -99,4 +100,9 @@ public class QueueModule extends PrivateModule {
         checkArgument(keyspaces.size() == 1, "Only one keyspace expected for queue, found %s", keyspaces.keySet());
         return keyspaces.values().iterator().next();
     }
+
+    @Provides @Singleton
+    ClaimStoreConfiguration provideClaimStoreConfiguration(QueueConfiguration configuration) {
+        return configuration.getClaimStoreConfiguration();
+    }
 }
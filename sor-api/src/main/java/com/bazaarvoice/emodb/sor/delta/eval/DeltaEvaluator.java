@@ -1,5 +1,6 @@
 package com.bazaarvoice.emodb.sor.delta.eval;
 
+import com.bazaarvoice.emodb.common.json.deferred.LazyJsonMap;
 import com.bazaarvoice.emodb.sor.condition.eval.ConditionEvaluator;
 import com.bazaarvoice.emodb.sor.delta.ConditionalDelta;
 import com.bazaarvoice.emodb.sor.delta.Delete;
@@ -62,6 +63,16 @@ public class DeltaEvaluator implements DeltaVisitor<Object, Object> {
 
     @Override
     public Object visit(MapDelta delta, @Nullable Object json) {
+        if (json instanceof LazyJsonMap && isLiteralUpdate(delta) && !((LazyJsonMap) json).isDeserialized()) {
+            // Compacted content is typically a lazily parsed JSON literal.  Apply literal updates as overrides to
+            // avoid deserializing it, which allows the resolved content to be streamed back out from the JSON.
+            LazyJsonMap result = ((LazyJsonMap) json).lazyCopy();
+            for (Map.Entry<String, Delta> entry : delta.getEntries().entrySet()) {
+                result.put(entry.getKey(), ((Literal) entry.getValue()).getValue());
+            }
+            return delta.getDeleteIfEmpty() && result.isEmpty() ? UNDEFINED : result;
+        }
+
         Map<Object, Object> result;
         if (json instanceof Map) {
             //noinspection unchecked
@@ -99,6 +110,19 @@ public class DeltaEvaluator implements DeltaVisitor<Object, Object> {
         return delta.getDeleteIfEmpty() && result.isEmpty() ? UNDEFINED : result;
     }
 
+    /** Returns true if the delta only sets keys to literal values. */
+    private boolean isLiteralUpdate(MapDelta delta) {
+        if (delta.getRemoveRest()) {
+            return false;
+        }
+        for (Delta valueDelta : delta.getEntries().values()) {
+            if (!(valueDelta instanceof Literal)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private void update(Map<Object, Object> map, String key, Object value, Delta delta) {
         Object newValue = delta.visit(this, value);
         if (newValue != UNDEFINED) {
@@ -1,5 +1,6 @@
 package com.bazaarvoice.emodb.sor.delta.eval;
 
+import com.bazaarvoice.emodb.common.json.deferred.LazyJsonMap;
 import com.bazaarvoice.emodb.sor.delta.Delta;
 import com.bazaarvoice.emodb.sor.delta.Deltas;
 import com.google.common.collect.ImmutableList;
@@ -136,6 +137,25 @@ public class DeltaEvaluatorTest {
         assertEquals(eval(delta, DeltaEvaluator.UNDEFINED), ImmutableMap.of("y", 3));
     }
 
+    @Test
+    public void testLazyMapLiteralUpdate() {
+        LazyJsonMap compacted = new LazyJsonMap("{\"name\":\"Bob\",\"address\":{\"city\":\"Austin\"}}");
+        Delta delta = Deltas.mapBuilder().put("name", "Joe").put("age", 30).build();
+
+        // Literal updates are applied without deserializing the compacted map
+        Object root = eval(delta, compacted);
+        assertTrue(root instanceof LazyJsonMap);
+        assertFalse(((LazyJsonMap) root).isDeserialized());
+        assertEquals(root, ImmutableMap.of("name", "Joe", "age", 30, "address", ImmutableMap.of("city", "Austin")));
+        assertFalse(compacted.isDeserialized());
+        assertEquals(compacted, ImmutableMap.of("name", "Bob", "address", ImmutableMap.of("city", "Austin")));
+
+        // Nested updates deserialize the map
+        delta = Deltas.mapBuilder().update("address", Deltas.mapBuilder().put("state", "TX").build()).build();
+        root = eval(delta, new LazyJsonMap("{\"name\":\"Bob\",\"address\":{\"city\":\"Austin\"}}"));
+        assertEquals(root, ImmutableMap.of("name", "Bob", "address", ImmutableMap.of("city", "Austin", "state", "TX")));
+    }
+
     @Test
     public void testNewSet() {
         Object root = DeltaEvaluator.UNDEFINED;
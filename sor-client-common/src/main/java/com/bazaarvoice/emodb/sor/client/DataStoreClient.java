@@ -6,6 +6,7 @@ import com.bazaarvoice.emodb.client.EmoClient;
 import com.bazaarvoice.emodb.client.EmoClientException;
 import com.bazaarvoice.emodb.client.EmoResponse;
 import com.bazaarvoice.emodb.client.uri.EmoUriBuilder;
+import com.bazaarvoice.emodb.common.api.RateLimitExceededException;
 import com.bazaarvoice.emodb.common.api.ServiceUnavailableException;
 import com.bazaarvoice.emodb.common.api.Ttls;
 import com.bazaarvoice.emodb.common.api.UnauthorizedException;
@@ -705,6 +706,13 @@ public class DataStoreClient implements AuthDataStore {
             } else {
                 return (RuntimeException) new ServiceUnavailableException().initCause(e);
             }
+        } else if (response.getStatus() == 429 &&
+                RateLimitExceededException.class.getName().equals(exceptionType)) {
+            if (response.hasEntity()) {
+                return (RuntimeException) response.getEntity(RateLimitExceededException.class).initCause(e);
+            } else {
+                return (RuntimeException) new RateLimitExceededException().initCause(e);
+            }
         }
 
         return e;
@@ -0,0 +1,130 @@
+package com.bazaarvoice.emodb.sor.client;
+
+import com.bazaarvoice.emodb.sor.api.DataStore;
+import com.bazaarvoice.emodb.sor.api.ReadConsistency;
+import com.bazaarvoice.emodb.sor.api.Update;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.collect.ImmutableSet;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Pipelined versions of the bulk {@link DataStoreStreaming} APIs for bulk loaders and scan consumers which would
+ * otherwise spend much of their time waiting on round trips to the EmoDB server.
+ * <ul>
+ *     <li>Scans read ahead up to a configurable number of records on a background thread, so receiving and parsing
+ *         records overlaps with the caller processing them.  The iterators returned also implement
+ *         {@link java.io.Closeable} to stop reading ahead if the caller stops iterating early.</li>
+ *     <li>Updates are batched by size and time and sent on a background thread, so producing updates overlaps with
+ *         sending them.  See {@link PipelinedUpdateWriter}.</li>
+ * </ul>
+ * As with DataStoreStreaming, lost connections are restarted and each batch of updates is retried by Ostrich.
+ * <p>
+ * The following metrics are registered in the provided registry:
+ * <ul>
+ *     <li>scan-time-to-first-record:  Time from starting a scan until the first record is available</li>
+ *     <li>scan-records:  Rate at which records are returned to scan callers</li>
+ *     <li>update-records:  Rate at which updates are written</li>
+ *     <li>update-batch-latency:  Time to write each batch of updates</li>
+ * </ul>
+ */
+public abstract class DataStorePipelining {
+
+    public static final int DEFAULT_PREFETCH_DEPTH = 1000;
+    public static final int DEFAULT_MAX_BATCH_SIZE = 1000;
+    public static final Duration DEFAULT_MAX_BATCH_DELAY = Duration.ofMillis(500);
+    public static final int DEFAULT_MAX_PENDING_BATCHES = 2;
+
+    /** Prevent instantiation. */
+    private DataStorePipelining() {}
+
+    /**
+     * Retrieves all records from the specified table, reading ahead up to {@code prefetchDepth} records.
+     */
+    public static Iterable<Map<String, Object>> scan(DataStore dataStore,
+                                                     String table,
+                                                     boolean includeDeletes,
+                                                     ReadConsistency consistency,
+                                                     int prefetchDepth,
+                                                     MetricRegistry metricRegistry) {
+        return prefetch(DataStoreStreaming.scan(dataStore, table, includeDeletes, consistency),
+                prefetchDepth, metricRegistry);
+    }
+
+    /**
+     * Retrieves all records from the specified split in the specified table, reading ahead up to
+     * {@code prefetchDepth} records.
+     */
+    public static Iterable<Map<String, Object>> getSplit(DataStore dataStore,
+                                                         String table,
+                                                         String split,
+                                                         boolean includeDeletes,
+                                                         ReadConsistency consistency,
+                                                         int prefetchDepth,
+                                                         MetricRegistry metricRegistry) {
+        return prefetch(DataStoreStreaming.getSplit(dataStore, table, split, includeDeletes, consistency),
+                prefetchDepth, metricRegistry);
+    }
+
+    private static <T> Iterable<T> prefetch(final Iterable<T> source, final int prefetchDepth,
+                                            MetricRegistry metricRegistry) {
+        final Timer timeToFirstRecord = metricRegistry.timer(getMetricName("scan-time-to-first-record"));
+        final Meter records = metricRegistry.meter(getMetricName("scan-records"));
+        return new Iterable<T>() {
+            @Override
+            public Iterator<T> iterator() {
+                return new PrefetchingIterator<>(source, prefetchDepth, timeToFirstRecord, records);
+            }
+        };
+    }
+
+    /**
+     * Creates, updates or deletes zero or more pieces of content in the data store using the default batching.
+     */
+    public static void updateAll(DataStore dataStore, Iterator<Update> updateIter, MetricRegistry metricRegistry) {
+        updateAll(dataStore, updateIter, ImmutableSet.<String>of(), DEFAULT_MAX_BATCH_SIZE, DEFAULT_MAX_BATCH_DELAY,
+                DEFAULT_MAX_PENDING_BATCHES, metricRegistry);
+    }
+
+    /**
+     * Creates, updates or deletes zero or more pieces of content in the data store.  Updates are sent in batches of at
+     * most {@code maxBatchSize} updates, and a partial batch is sent once its first update has waited
+     * {@code maxBatchDelay}, while the caller's iterator continues to be consumed.  Returns once all updates have been
+     * written.
+     * @param tags - Set of Strings or "tags" that would be attached to databus events generated for the updates
+     */
+    public static void updateAll(DataStore dataStore, Iterator<Update> updateIter, Set<String> tags,
+                                 int maxBatchSize, Duration maxBatchDelay, int maxPendingBatches,
+                                 MetricRegistry metricRegistry) {
+        checkNotNull(updateIter, "updateIter");
+        try (PipelinedUpdateWriter writer = newUpdateWriter(dataStore, tags, maxBatchSize, maxBatchDelay,
+                maxPendingBatches, metricRegistry)) {
+            while (updateIter.hasNext()) {
+                writer.add(updateIter.next());
+            }
+        }
+    }
+
+    /**
+     * Returns a writer for callers which produce updates incrementally rather than as an iterator.  The caller must
+     * close the writer to send the final batch.
+     */
+    public static PipelinedUpdateWriter newUpdateWriter(DataStore dataStore, Set<String> tags,
+                                                        int maxBatchSize, Duration maxBatchDelay, int maxPendingBatches,
+                                                        MetricRegistry metricRegistry) {
+        return new PipelinedUpdateWriter(dataStore, tags, maxBatchSize, maxBatchDelay, maxPendingBatches,
+                metricRegistry.meter(getMetricName("update-records")),
+                metricRegistry.timer(getMetricName("update-batch-latency")));
+    }
+
+    private static String getMetricName(String name) {
+        return MetricRegistry.name("bv.emodb.sor", "DataStorePipelining", name);
+    }
+}
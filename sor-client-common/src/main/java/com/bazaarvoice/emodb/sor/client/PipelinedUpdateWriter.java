@@ -0,0 +1,260 @@
+package com.bazaarvoice.emodb.sor.client;
+
+import com.bazaarvoice.emodb.sor.api.DataStore;
+import com.bazaarvoice.emodb.sor.api.Update;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Queues;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Writes updates to the data store in batches on a background thread so the caller can continue producing updates
+ * while the previous batch is in flight.  A batch is sent once it reaches the maximum batch size or once its first
+ * update has waited for the maximum batch delay, whichever comes first.  Batches are sent one at a time and in order,
+ * and each is sent with {@link DataStore#updateAll(Iterable, Set)} so Ostrich retries a failed batch on another server
+ * as with {@link DataStoreStreaming#updateAll(DataStore, java.util.Iterator, Set)}.
+ * <p>
+ * At most {@code maxPendingBatches} batches are queued; once that many are waiting {@link #add(Update)} blocks until
+ * a batch has been sent.  If a batch fails the exception is rethrown from the next call to {@link #add(Update)},
+ * {@link #flush()} or {@link #close()} and no further updates are sent.  A writer which is discarded without being
+ * closed still sends the updates already added to it, but any failure sending them is not reported.
+ */
+public class PipelinedUpdateWriter implements Closeable {
+
+    // The background thread only references the shared batches, never this writer, so a writer abandoned without
+    // being closed can still be finalized, which stops the thread once the updates already added have been sent.
+    private final Batches _batches;
+
+    public PipelinedUpdateWriter(DataStore dataStore, Set<String> tags, int maxBatchSize, Duration maxBatchDelay,
+                                 int maxPendingBatches, Meter updates, Timer batchLatency) {
+        checkNotNull(dataStore, "dataStore");
+        checkNotNull(tags, "tags");
+        checkArgument(maxBatchSize > 0, "Max batch size must be at least 1");
+        checkArgument(!maxBatchDelay.isNegative(), "Max batch delay must not be negative");
+        checkArgument(maxPendingBatches > 0, "Max pending batches must be at least 1");
+        checkNotNull(updates, "updates");
+        checkNotNull(batchLatency, "batchLatency");
+        _batches = new Batches(dataStore, ImmutableSet.copyOf(tags), maxBatchSize, maxBatchDelay.toNanos(),
+                maxPendingBatches, updates, batchLatency);
+
+        Thread thread = new Thread(_batches, "DataStorePipelinedUpdates");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Adds an update to the current batch, blocking if the maximum number of batches are already waiting to be sent.
+     */
+    public void add(Update update) {
+        checkNotNull(update, "update");
+        _batches.add(update);
+    }
+
+    /**
+     * Sends all updates added so far and waits for them to complete.
+     */
+    public void flush() {
+        _batches.flush();
+    }
+
+    /**
+     * Sends all updates added so far, waits for them to complete and stops the background thread.  If a failure has
+     * already been thrown to the caller it is not thrown again, so closing in a finally block doesn't mask it.
+     */
+    @Override
+    public void close() {
+        _batches.close();
+    }
+
+    @Override
+    protected void finalize() throws Throwable {
+        super.finalize();
+        _batches.abandon();
+    }
+
+    /**
+     * Batches shared between the writer and the background thread which sends them.
+     */
+    private static class Batches implements Runnable {
+        private final DataStore _dataStore;
+        private final Set<String> _tags;
+        private final int _maxBatchSize;
+        private final long _maxBatchDelayNanos;
+        private final int _maxPendingBatches;
+        private final Meter _updates;
+        private final Timer _batchLatency;
+
+        // All of the following are guarded by _lock
+        private final Object _lock = new Object();
+        // Full batches waiting to be sent; the head of the queue is removed only after it is sent
+        private final Queue<List<Update>> _pending = Queues.newArrayDeque();
+        private List<Update> _batch;
+        private long _batchStartTime;
+        private boolean _closed;
+        private Throwable _failure;
+        private boolean _failureThrown;
+
+        Batches(DataStore dataStore, Set<String> tags, int maxBatchSize, long maxBatchDelayNanos,
+                int maxPendingBatches, Meter updates, Timer batchLatency) {
+            _dataStore = dataStore;
+            _tags = tags;
+            _maxBatchSize = maxBatchSize;
+            _maxBatchDelayNanos = maxBatchDelayNanos;
+            _maxPendingBatches = maxPendingBatches;
+            _updates = updates;
+            _batchLatency = batchLatency;
+            _batch = Lists.newArrayListWithCapacity(maxBatchSize);
+        }
+
+        void add(Update update) {
+            synchronized (_lock) {
+                checkState(!_closed, "Writer is closed");
+                while (_pending.size() >= _maxPendingBatches && _failure == null) {
+                    await(0);
+                }
+                propagateFailure();
+
+                if (_batch.isEmpty()) {
+                    _batchStartTime = System.nanoTime();
+                    // Wake the sender so it starts timing the batch delay
+                    _lock.notifyAll();
+                }
+                _batch.add(update);
+                if (_batch.size() >= _maxBatchSize) {
+                    enqueueBatch();
+                }
+            }
+        }
+
+        void flush() {
+            synchronized (_lock) {
+                if (!_batch.isEmpty()) {
+                    enqueueBatch();
+                }
+                while (!_pending.isEmpty() && _failure == null) {
+                    await(0);
+                }
+                propagateFailure();
+            }
+        }
+
+        void close() {
+            synchronized (_lock) {
+                try {
+                    if (!_failureThrown) {
+                        flush();
+                    }
+                } finally {
+                    _closed = true;
+                    _lock.notifyAll();
+                }
+            }
+        }
+
+        /**
+         * Called when the writer is no longer reachable.  The updates already added are still sent, but nothing waits
+         * for them, and the background thread stops once they have been sent.
+         */
+        void abandon() {
+            synchronized (_lock) {
+                if (!_batch.isEmpty()) {
+                    enqueueBatch();
+                }
+                _closed = true;
+                _lock.notifyAll();
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                sendBatches();
+            } catch (Throwable t) {
+                // Either a batch failed or the thread was interrupted.  No further batches will be sent, so fail the
+                // writer rather than leave callers waiting for a thread which has stopped.
+                synchronized (_lock) {
+                    _failure = t;
+                    _pending.clear();
+                    _batch.clear();
+                    _lock.notifyAll();
+                }
+            }
+        }
+
+        private void sendBatches() {
+            while (true) {
+                List<Update> batch;
+                synchronized (_lock) {
+                    while (_pending.isEmpty()) {
+                        if (!_batch.isEmpty()) {
+                            long remaining = _batchStartTime + _maxBatchDelayNanos - System.nanoTime();
+                            if (remaining <= 0) {
+                                enqueueBatch();
+                                continue;
+                            }
+                            await(remaining);
+                        } else if (_closed) {
+                            return;
+                        } else {
+                            await(0);
+                        }
+                    }
+                    batch = _pending.peek();
+                }
+
+                try (Timer.Context ignored = _batchLatency.time()) {
+                    // Ostrich will retry each batch as necessary
+                    _dataStore.updateAll(batch, _tags);
+                }
+                _updates.mark(batch.size());
+
+                synchronized (_lock) {
+                    _pending.remove();
+                    _lock.notifyAll();
+                }
+            }
+        }
+
+        /** Must be called while holding the lock. */
+        private void enqueueBatch() {
+            _pending.add(_batch);
+            _batch = Lists.newArrayListWithCapacity(_maxBatchSize);
+            _lock.notifyAll();
+        }
+
+        /** Must be called while holding the lock.  Waits until notified or the timeout elapses; zero waits indefinitely. */
+        private void await(long timeoutNanos) {
+            try {
+                if (timeoutNanos > 0) {
+                    TimeUnit.NANOSECONDS.timedWait(_lock, timeoutNanos);
+                } else {
+                    _lock.wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw Throwables.propagate(e);
+            }
+        }
+
+        /** Must be called while holding the lock. */
+        private void propagateFailure() {
+            if (_failure != null) {
+                _failureThrown = true;
+                throw Throwables.propagate(_failure);
+            }
+        }
+    }
+}
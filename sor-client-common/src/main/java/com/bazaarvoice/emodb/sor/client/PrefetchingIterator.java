@@ -0,0 +1,222 @@
+package com.bazaarvoice.emodb.sor.client;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
+import com.google.common.base.Throwables;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.io.Closeables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Iterator which reads ahead from a source iterator on a background thread so that receiving and parsing the next
+ * records from the EmoDB server overlaps with the caller processing the current records.  At most
+ * {@code prefetchDepth} records are buffered, so a slow caller applies back pressure to the server stream as before.
+ * <p>
+ * Records are handed to the caller in small batches to reduce contention.  A partial batch is handed off whenever the
+ * caller has nothing left to consume, so a slowly streaming source doesn't delay records waiting for a full batch.
+ */
+class PrefetchingIterator<T> extends AbstractIterator<T> implements Closeable {
+
+    private static final int MAX_BATCH_SIZE = 100;
+    // An empty batch marks the end of the source
+    private static final List<Object> END_OF_DATA = ImmutableList.of();
+
+    // The background thread only references the shared state, never this iterator, so an iterator abandoned without
+    // being closed can still be finalized, which closes the state and stops the thread.
+    private final SharedState<T> _state;
+    private final Timer _timeToFirstRecord;
+    private final Meter _records;
+    private final long _startTime = System.nanoTime();
+    private Iterator<T> _batch = Collections.emptyIterator();
+    private boolean _firstRecord = true;
+
+    PrefetchingIterator(Iterable<T> source, int prefetchDepth, Timer timeToFirstRecord, Meter records) {
+        checkNotNull(source, "source");
+        checkArgument(prefetchDepth > 0, "Prefetch depth must be at least 1");
+        _timeToFirstRecord = checkNotNull(timeToFirstRecord, "timeToFirstRecord");
+        _records = checkNotNull(records, "records");
+        _state = new SharedState<>(source, prefetchDepth);
+    }
+
+    @Override
+    protected T computeNext() {
+        while (!_batch.hasNext()) {
+            if (_state.isClosed()) {
+                return endOfData();
+            }
+
+            List<T> batch;
+            try {
+                batch = _state.take();
+            } catch (InterruptedException e) {
+                throw Throwables.propagate(e);
+            }
+
+            if (batch == null) {
+                // Closed while waiting
+                return endOfData();
+            }
+
+            if (batch.isEmpty()) {
+                closeQuietly();
+                Throwable exception = _state.getException();
+                if (exception != null) {
+                    throw Throwables.propagate(exception);
+                }
+                return endOfData();
+            }
+
+            if (_firstRecord) {
+                _timeToFirstRecord.update(System.nanoTime() - _startTime, TimeUnit.NANOSECONDS);
+                _firstRecord = false;
+            }
+            _records.mark(batch.size());
+            _batch = batch.iterator();
+        }
+
+        return _batch.next();
+    }
+
+    private void closeQuietly() {
+        try {
+            close();
+        } catch (IOException ignore) {
+            // Don't worry about this, we're done iterating anyway
+        }
+    }
+
+    @Override
+    public void close()
+            throws IOException {
+        // Records buffered for the caller are discarded along with those still in the queue
+        _batch = Collections.emptyIterator();
+        _state.close();
+    }
+
+    @Override
+    protected void finalize() throws Throwable {
+        super.finalize();
+        close();
+    }
+
+    /**
+     * State shared between the iterator and the background thread reading from the source.
+     */
+    private static class SharedState<T> {
+        private final BlockingQueue<List<T>> _queue;
+        private final int _batchSize;
+        private final ExecutorService _service;
+        private final AtomicBoolean _closed = new AtomicBoolean(false);
+        private volatile Throwable _exception;
+
+        SharedState(final Iterable<T> source, int prefetchDepth) {
+            _batchSize = Math.min(prefetchDepth, MAX_BATCH_SIZE);
+            // Round up so there is always room for the end of data marker after a final full batch
+            _queue = new ArrayBlockingQueue<>((prefetchDepth + _batchSize - 1) / _batchSize + 1);
+
+            _service = Executors.newSingleThreadExecutor(
+                    new ThreadFactoryBuilder().setNameFormat("DataStorePrefetch-%d").setDaemon(true).build());
+            // The source iterator is created on the background thread so the initial request is also made asynchronously
+            _service.submit(new Runnable() {
+                @Override
+                public void run() {
+                    prefetch(source);
+                }
+            });
+            _service.shutdown();
+        }
+
+        @SuppressWarnings("unchecked")
+        private void prefetch(Iterable<T> source) {
+            Iterator<T> iter = null;
+            try {
+                iter = source.iterator();
+                List<T> batch = Lists.newArrayListWithCapacity(_batchSize);
+                while (!_closed.get() && iter.hasNext()) {
+                    batch.add(iter.next());
+                    if (batch.size() == _batchSize || _queue.isEmpty()) {
+                        if (!put(batch)) {
+                            return;
+                        }
+                        batch = Lists.newArrayListWithCapacity(_batchSize);
+                    }
+                }
+                if (!batch.isEmpty() && !put(batch)) {
+                    return;
+                }
+            } catch (Throwable t) {
+                _exception = t;
+            } finally {
+                if (iter instanceof Closeable) {
+                    try {
+                        Closeables.close((Closeable) iter, true);
+                    } catch (IOException ignore) {
+                        // Already swallowed
+                    }
+                }
+            }
+            put((List<T>) END_OF_DATA);
+        }
+
+        /**
+         * Puts the batch in the queue, waiting for space if necessary.  Returns false if the state was closed first.
+         */
+        private boolean put(List<T> batch) {
+            try {
+                while (!_queue.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+                    if (_closed.get()) {
+                        return false;
+                    }
+                }
+                return true;
+            } catch (InterruptedException e) {
+                return false;
+            }
+        }
+
+        /**
+         * Takes the next batch from the queue, waiting for one if necessary.  Returns null if the state was closed
+         * first, in which case the background thread may never queue the end of data marker.
+         */
+        List<T> take() throws InterruptedException {
+            List<T> batch;
+            while ((batch = _queue.poll(100, TimeUnit.MILLISECONDS)) == null) {
+                if (_closed.get()) {
+                    return null;
+                }
+            }
+            return batch;
+        }
+
+        boolean isClosed() {
+            return _closed.get();
+        }
+
+        Throwable getException() {
+            return _exception;
+        }
+
+        void close() {
+            if (_closed.compareAndSet(false, true)) {
+                _service.shutdownNow();
+            }
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package com.bazaarvoice.emodb.sor.client;
+
+import com.bazaarvoice.emodb.common.uuid.TimeUUIDs;
+import com.bazaarvoice.emodb.sor.api.AuditBuilder;
+import com.bazaarvoice.emodb.sor.api.DataStore;
+import com.bazaarvoice.emodb.sor.api.Update;
+import com.bazaarvoice.emodb.sor.delta.Deltas;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ContiguousSet;
+import com.google.common.collect.DiscreteDomain;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Range;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.annotations.Test;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anySetOf;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class DataStorePipeliningTest {
+
+    @Test
+    public void testPrefetch() {
+        MetricRegistry metricRegistry = new MetricRegistry();
+        List<Integer> expected = ContiguousSet.create(Range.closedOpen(0, 1050), DiscreteDomain.integers()).asList();
+
+        PrefetchingIterator<Integer> iter = new PrefetchingIterator<>(expected, 10,
+                metricRegistry.timer("timeToFirstRecord"), metricRegistry.meter("records"));
+
+        assertEquals(ImmutableList.copyOf(iter), expected);
+        assertEquals(metricRegistry.meter("records").getCount(), 1050);
+        assertEquals(metricRegistry.timer("timeToFirstRecord").getCount(), 1);
+    }
+
+    @Test
+    public void testPrefetchException() {
+        MetricRegistry metricRegistry = new MetricRegistry();
+        Iterable<Integer> source = new Iterable<Integer>() {
+            @Override
+            public Iterator<Integer> iterator() {
+                return new AbstractIterator<Integer>() {
+                    int _next;
+
+                    @Override
+                    protected Integer computeNext() {
+                        if (_next == 5) {
+                            throw new IllegalStateException("Connection lost");
+                        }
+                        return _next++;
+                    }
+                };
+            }
+        };
+
+        PrefetchingIterator<Integer> iter = new PrefetchingIterator<>(source, 100,
+                metricRegistry.timer("timeToFirstRecord"), metricRegistry.meter("records"));
+
+        List<Integer> actual = Lists.newArrayList();
+        try {
+            while (iter.hasNext()) {
+                actual.add(iter.next());
+            }
+            fail("IllegalStateException not thrown");
+        } catch (IllegalStateException e) {
+            assertEquals(e.getMessage(), "Connection lost");
+        }
+        assertEquals(actual, ImmutableList.of(0, 1, 2, 3, 4));
+    }
+
+    @Test
+    public void testPrefetchEmpty() {
+        MetricRegistry metricRegistry = new MetricRegistry();
+        PrefetchingIterator<Integer> iter = new PrefetchingIterator<>(Collections.<Integer>emptyList(), 10,
+                metricRegistry.timer("timeToFirstRecord"), metricRegistry.meter("records"));
+
+        assertEquals(ImmutableList.copyOf(iter), ImmutableList.of());
+        assertEquals(metricRegistry.timer("timeToFirstRecord").getCount(), 0);
+    }
+
+    @Test(timeOut = 10000)
+    public void testPrefetchCloseThenHasNext() throws Exception {
+        MetricRegistry metricRegistry = new MetricRegistry();
+        PrefetchingIterator<Integer> iter = new PrefetchingIterator<>(endlessSource(), 10,
+                metricRegistry.timer("timeToFirstRecord"), metricRegistry.meter("records"));
+
+        assertEquals(iter.next(), (Integer) 0);
+        iter.close();
+        assertFalse(iter.hasNext());
+    }
+
+    @Test
+    public void testAbandonedPrefetchStopsThread() throws Exception {
+        readFirstRecordAndAbandon();
+
+        // Once the abandoned iterator is finalized the prefetch thread must stop
+        waitForThreadsToExit("DataStorePrefetch-");
+        assertEquals(countThreads("DataStorePrefetch-"), 0);
+    }
+
+    private void readFirstRecordAndAbandon() {
+        MetricRegistry metricRegistry = new MetricRegistry();
+        PrefetchingIterator<Integer> iter = new PrefetchingIterator<>(endlessSource(), 10,
+                metricRegistry.timer("timeToFirstRecord"), metricRegistry.meter("records"));
+        assertEquals(iter.next(), (Integer) 0);
+        assertTrue(countThreads("DataStorePrefetch-") > 0);
+    }
+
+    @Test
+    public void testAbandonedUpdateWriterSendsUpdatesAndStopsThread() throws Exception {
+        DataStore dataStore = mock(DataStore.class);
+        final List<Update> sent = Collections.synchronizedList(Lists.<Update>newArrayList());
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                //noinspection unchecked
+                Iterables.addAll(sent, (Iterable<Update>) invocation.getArguments()[0]);
+                return null;
+            }
+        }).when(dataStore).updateAll(any(Iterable.class), anySetOf(String.class));
+
+        List<Update> updates = createUpdates(3);
+        addAndAbandon(dataStore, updates);
+
+        // Once the abandoned writer is finalized its updates are sent and the sender thread stops
+        waitForThreadsToExit("DataStorePipelinedUpdates");
+        assertEquals(countThreads("DataStorePipelinedUpdates"), 0);
+        assertEquals(sent, updates);
+    }
+
+    private void addAndAbandon(DataStore dataStore, List<Update> updates) {
+        PipelinedUpdateWriter writer = DataStorePipelining.newUpdateWriter(dataStore, ImmutableSet.<String>of(),
+                1000, Duration.ofMinutes(1), 2, new MetricRegistry());
+        for (Update update : updates) {
+            writer.add(update);
+        }
+        assertTrue(countThreads("DataStorePipelinedUpdates") > 0);
+    }
+
+    private Iterable<Integer> endlessSource() {
+        return new Iterable<Integer>() {
+            @Override
+            public Iterator<Integer> iterator() {
+                return new AbstractIterator<Integer>() {
+                    int _next;
+
+                    @Override
+                    protected Integer computeNext() {
+                        return _next++;
+                    }
+                };
+            }
+        };
+    }
+
+    private void waitForThreadsToExit(String namePrefix) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(30);
+        while (countThreads(namePrefix) > 0 && System.currentTimeMillis() < deadline) {
+            System.gc();
+            System.runFinalization();
+            Thread.sleep(100);
+        }
+    }
+
+    private int countThreads(String namePrefix) {
+        int count = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.isAlive() && thread.getName().startsWith(namePrefix)) {
+                count += 1;
+            }
+        }
+        return count;
+    }
+
+    @Test
+    public void testUpdatesBatchedBySize() {
+        DataStore dataStore = mock(DataStore.class);
+        final List<List<Update>> batches = Collections.synchronizedList(Lists.<List<Update>>newArrayList());
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                //noinspection unchecked
+                batches.add(ImmutableList.copyOf((Iterable<Update>) invocation.getArguments()[0]));
+                return null;
+            }
+        }).when(dataStore).updateAll(any(Iterable.class), anySetOf(String.class));
+
+        List<Update> updates = createUpdates(25);
+        DataStorePipelining.updateAll(dataStore, updates.iterator(), ImmutableSet.<String>of(), 10,
+                Duration.ofMinutes(1), 2, new MetricRegistry());
+
+        assertEquals(batches, ImmutableList.of(updates.subList(0, 10), updates.subList(10, 20), updates.subList(20, 25)));
+    }
+
+    @Test
+    public void testUpdatesBatchedByTime() throws Exception {
+        DataStore dataStore = mock(DataStore.class);
+        final CountDownLatch sent = new CountDownLatch(1);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                sent.countDown();
+                return null;
+            }
+        }).when(dataStore).updateAll(any(Iterable.class), anySetOf(String.class));
+
+        MetricRegistry metricRegistry = new MetricRegistry();
+        try (PipelinedUpdateWriter writer = DataStorePipelining.newUpdateWriter(dataStore, ImmutableSet.<String>of(),
+                1000, Duration.ofMillis(10), 2, metricRegistry)) {
+            for (Update update : createUpdates(3)) {
+                writer.add(update);
+            }
+            // The partial batch should be sent without closing or flushing the writer
+            assertTrue(sent.await(10, TimeUnit.SECONDS));
+        }
+        assertEquals(metricRegistry.meter(MetricRegistry.name("bv.emodb.sor", "DataStorePipelining", "update-records")).getCount(), 3);
+    }
+
+    @Test
+    public void testUpdateFailure() {
+        DataStore dataStore = mock(DataStore.class);
+        doThrow(new IllegalStateException("Server unavailable"))
+                .when(dataStore).updateAll(any(Iterable.class), anySetOf(String.class));
+
+        try {
+            DataStorePipelining.updateAll(dataStore, createUpdates(25).iterator(), ImmutableSet.<String>of(), 10,
+                    Duration.ofMinutes(1), 2, new MetricRegistry());
+            fail("IllegalStateException not thrown");
+        } catch (IllegalStateException e) {
+            assertEquals(e.getMessage(), "Server unavailable");
+        }
+    }
+
+    @Test(timeOut = 10000)
+    public void testUpdateWriterFailsWhenSenderInterrupted() throws Exception {
+        DataStore dataStore = mock(DataStore.class);
+        final List<Thread> senders = Collections.synchronizedList(Lists.<Thread>newArrayList());
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                senders.add(Thread.currentThread());
+                return null;
+            }
+        }).when(dataStore).updateAll(any(Iterable.class), anySetOf(String.class));
+
+        PipelinedUpdateWriter writer = DataStorePipelining.newUpdateWriter(dataStore, ImmutableSet.<String>of(),
+                10, Duration.ofMinutes(1), 1, new MetricRegistry());
+        for (Update update : createUpdates(10)) {
+            writer.add(update);
+        }
+        writer.flush();
+
+        // Interrupt the sender while it waits for the next batch
+        Thread sender = senders.get(0);
+        sender.interrupt();
+        sender.join();
+
+        // Callers must see the failure instead of waiting forever for batches which will never be sent
+        try {
+            for (Update update : createUpdates(10)) {
+                writer.add(update);
+            }
+            writer.flush();
+            fail("Interruption not reported");
+        } catch (RuntimeException e) {
+            assertTrue(e.getCause() instanceof InterruptedException);
+        } finally {
+            writer.close();
+        }
+    }
+
+    private List<Update> createUpdates(int count) {
+        List<Update> updates = Lists.newArrayListWithCapacity(count);
+        for (int i = 0; i < count; i++) {
+            updates.add(new Update("table", "key" + i, TimeUUIDs.newUUID(), Deltas.literal(i),
+                    new AuditBuilder().setComment("test").build()));
+        }
+        return updates;
+    }
+}
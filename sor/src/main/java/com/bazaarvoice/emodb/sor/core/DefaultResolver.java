@@ -1,28 +1,37 @@
 package com.bazaarvoice.emodb.sor.core;
 
-import com.bazaarvoice.emodb.common.uuid.UUIDs;
 import com.bazaarvoice.emodb.sor.api.Compaction;
 import com.bazaarvoice.emodb.sor.delta.Delta;
 import com.bazaarvoice.emodb.sor.delta.eval.DeltaEvaluator;
-import com.google.common.base.Objects;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
 import com.google.common.hash.HashCode;
-import com.google.common.hash.HashFunction;
-import com.google.common.hash.Hasher;
-import com.google.common.hash.Hashing;
 import org.apache.commons.codec.DecoderException;
 import org.apache.commons.codec.binary.Hex;
 
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Set;
 import java.util.UUID;
 
+/**
+ * Resolves a record by applying its deltas in order.  Records may have hundreds of deltas which haven't been
+ * compacted, so the per-delta work avoids allocation: the signature is updated in place using a single MD5 digest
+ * and scratch buffer per resolver, and whether a delta changed the content is determined from the parts of the
+ * content the delta touched rather than comparing the full content, see {@link DeltaChangeDetector}.
+ * <p>
+ * Resolvers are not thread safe.
+ */
 public class DefaultResolver implements Resolver {
 
-    private static final HashFunction HASH_FUNCTION = Hashing.md5();
-    private static final HashCode HASH_ZERO = HashCode.fromBytes(new byte[16]);  // MD5 hashes are 16 bytes
+    private static final int HASH_LENGTH = 16;  // MD5 hashes are 16 bytes
+    private static final HashCode HASH_ZERO = HashCode.fromBytes(new byte[HASH_LENGTH]);
+    private static final MessageDigest MD5_PROTOTYPE = newMd5();
 
+    private final MessageDigest _digest = newDigest();
+    private final byte[] _changeIdBytes = new byte[16];
     private Object _content;
     private final MutableIntrinsics _intrinsics;
     private UUID _compactionCutoffId;
@@ -70,7 +79,7 @@ public class DefaultResolver implements Resolver {
         // Evaluate the delta.
         Object updated = DeltaEvaluator.eval(delta, _content, _intrinsics);
 
-        boolean contentChanged = !Objects.equal(_content, updated);
+        boolean contentChanged = !DeltaChangeDetector.isUnchanged(delta, _content, updated, _intrinsics);
 
         // The caller may want to know if a particular delta modified the object.
         // If it didn't, the caller can suppress databus events for it. Note: a
@@ -95,9 +104,9 @@ public class DefaultResolver implements Resolver {
         if (changeId.equals(_compactionCutoffId)) {
             _intrinsics.setSignature(parseHash(_compactionCutoffSignature));
         } else {
-            _intrinsics.setSignature(hash(_intrinsics.getSignatureHashCode(), changeId));
+            updateSignature(changeId);
         }
-        if (_intrinsics.getFirstUpdateAt() == null) {
+        if (_intrinsics.getFirstUpdateAtUuid() == null) {
             _intrinsics.setFirstUpdateAt(changeId);
         }
         _intrinsics.setLastUpdateAt(changeId);
@@ -105,7 +114,7 @@ public class DefaultResolver implements Resolver {
         // When evaluating whether to update the "lastMutateAt" intrinsic we also have check whether the existing
         // value is null.  In the corner case where the first delta for a record is a deletion we still want
         // to set the intrinsic value to the initial delta.
-        if (contentChanged || _intrinsics.getLastMutateAt() == null) {
+        if (contentChanged || _intrinsics.getLastMutateAtUuid() == null) {
             _intrinsics.setLastMutateAt(changeId);
         }
     }
@@ -124,10 +133,48 @@ public class DefaultResolver implements Resolver {
         }
     }
 
-    private HashCode hash(HashCode previous, UUID next) {
-        Hasher hasher = HASH_FUNCTION.newHasher();
-        hasher.putBytes(previous.asBytes());
-        hasher.putBytes(UUIDs.asByteArray(next));
-        return hasher.hash();
+    /** Sets the signature to the MD5 hash of the previous signature followed by the change ID. */
+    private void updateSignature(UUID changeId) {
+        byte[] signature = _intrinsics.getSignatureBytes();
+        _digest.update(signature);
+        putUuid(changeId, _changeIdBytes);
+        _digest.update(_changeIdBytes);
+        if (signature.length != HASH_LENGTH) {
+            // Signatures from legacy compactions may not be MD5 hashes
+            signature = new byte[HASH_LENGTH];
+            _intrinsics.setSignatureBytes(signature);
+        }
+        try {
+            _digest.digest(signature, 0, HASH_LENGTH);
+        } catch (DigestException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    /** Same encoding as {@link com.bazaarvoice.emodb.common.uuid.UUIDs#asByteArray(UUID)} without the allocation. */
+    private static void putUuid(UUID uuid, byte[] buf) {
+        long msb = uuid.getMostSignificantBits();
+        long lsb = uuid.getLeastSignificantBits();
+        for (int i = 0; i < 8; i++) {
+            buf[i]     = (byte) (msb >>> 8 * (7 - i));
+            buf[i + 8] = (byte) (lsb >>> 8 * (7 - i));
+        }
+    }
+
+    private static MessageDigest newMd5() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        // Cloning is cheaper than looking up the algorithm, same as Guava's Hashing.md5()
+        try {
+            return (MessageDigest) MD5_PROTOTYPE.clone();
+        } catch (CloneNotSupportedException e) {
+            return newMd5();
+        }
     }
 }
@@ -0,0 +1,78 @@
+package com.bazaarvoice.emodb.sor.core;
+
+import com.bazaarvoice.emodb.common.json.deferred.LazyJsonMap;
+import com.bazaarvoice.emodb.sor.condition.eval.ConditionEvaluator;
+import com.bazaarvoice.emodb.sor.delta.ConditionalDelta;
+import com.bazaarvoice.emodb.sor.delta.Delta;
+import com.bazaarvoice.emodb.sor.delta.MapDelta;
+import com.bazaarvoice.emodb.sor.delta.NoopDelta;
+import com.bazaarvoice.emodb.sor.delta.eval.DeltaEvaluator;
+import com.bazaarvoice.emodb.sor.delta.eval.Intrinsics;
+import com.google.common.base.Objects;
+
+import javax.annotation.Nullable;
+import java.util.Map;
+
+/**
+ * Determines whether evaluating a delta changed a record's content.  Comparing the full content before and after
+ * each delta is expensive for large records, so where possible this only compares the parts of the content the
+ * delta touched.  This relies on {@link DeltaEvaluator} copying the values for keys a map delta doesn't touch by
+ * reference, so untouched values are always unchanged.
+ */
+class DeltaChangeDetector {
+
+    private DeltaChangeDetector() {
+        // empty
+    }
+
+    /**
+     * Returns true if the content after applying the delta is equal to the content before.
+     * @param intrinsics The intrinsics the delta was evaluated with.
+     */
+    static boolean isUnchanged(Delta delta, @Nullable Object before, @Nullable Object after, Intrinsics intrinsics) {
+        if (before == after || delta instanceof NoopDelta) {
+            return true;
+        }
+        if (delta instanceof ConditionalDelta) {
+            // Re-evaluating the test is typically far cheaper than comparing the full content
+            ConditionalDelta conditional = (ConditionalDelta) delta;
+            boolean test = ConditionEvaluator.eval(conditional.getTest(), before, intrinsics);
+            return isUnchanged(test ? conditional.getThen() : conditional.getElse(), before, after, intrinsics);
+        }
+        if (delta instanceof MapDelta && before instanceof Map && after instanceof Map) {
+            return isUnchanged((MapDelta) delta, (Map<?, ?>) before, (Map<?, ?>) after, intrinsics);
+        }
+        // Literals, deletes and set deltas replace the value entirely
+        return Objects.equal(before, after);
+    }
+
+    private static boolean isUnchanged(MapDelta delta, Map<?, ?> before, Map<?, ?> after, Intrinsics intrinsics) {
+        // Keys the delta didn't touch were either copied unchanged or, if "remove rest" is set, removed.  If the
+        // sizes match and none of the touched keys changed then no keys were removed, so the maps are equal.
+        // Without "remove rest" the untouched keys are always unchanged so comparing sizes is unnecessary.
+        if (delta.getRemoveRest() && before.size() != after.size()) {
+            return false;
+        }
+        // Don't deserialize lazy compacted content just to look up the touched keys
+        before = touched(delta, before);
+        after = touched(delta, after);
+        for (Map.Entry<String, Delta> entry : delta.getEntries().entrySet()) {
+            String key = entry.getKey();
+            if (!isUnchanged(entry.getValue(), get(before, key), get(after, key), intrinsics)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Map<?, ?> touched(MapDelta delta, Map<?, ?> map) {
+        return map instanceof LazyJsonMap && !((LazyJsonMap) map).isDeserialized()
+                ? ((LazyJsonMap) map).getAllPresent(delta.getEntries().keySet())
+                : map;
+    }
+
+    private static Object get(Map<?, ?> map, String key) {
+        Object value = map.get(key);
+        return value != null || map.containsKey(key) ? value : DeltaEvaluator.UNDEFINED;
+    }
+}
@@ -14,7 +14,7 @@ class MutableIntrinsics implements Intrinsics {
     private String _id;
     private Table _table;
     private long _version;
-    private HashCode _signature;
+    private byte[] _signature;
     private boolean _deleted;
     private UUID _firstUpdateAt;
     private UUID _lastUpdateAt;
@@ -61,14 +61,23 @@ class MutableIntrinsics implements Intrinsics {
 
     @Override
     public String getSignature() {
-        return (_signature != null) ? _signature.toString() : null;
+        return (_signature != null) ? HashCode.fromBytes(_signature).toString() : null;
     }
 
-    HashCode getSignatureHashCode() {
+    void setSignature(HashCode signature) {
+        _signature = signature.asBytes();
+    }
+
+    /**
+     * Returns the signature without copying it.  The resolver computes each signature from the previous one
+     * for every delta, so it updates the returned array in place rather than allocating a new one per delta.
+     */
+    byte[] getSignatureBytes() {
         return _signature;
     }
 
-    void setSignature(HashCode signature) {
+    /** Sets the signature to the provided array without copying it, see {@link #getSignatureBytes()}. */
+    void setSignatureBytes(byte[] signature) {
         _signature = signature;
     }
 
@@ -1,20 +1,22 @@
 package com.bazaarvoice.emodb.sor.db;
 
+import com.bazaarvoice.emodb.common.cassandra.nio.BufferUtils;
 import com.bazaarvoice.emodb.sor.delta.Delta;
 import com.bazaarvoice.emodb.sor.delta.DeltaVisitor;
 import com.bazaarvoice.emodb.sor.delta.deser.DeltaParser;
-import com.bazaarvoice.emodb.sor.delta.deser.JsonTokener;
 import com.bazaarvoice.emodb.sor.delta.impl.AbstractDelta;
+import com.google.common.base.Charsets;
 
 import javax.annotation.Nullable;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
- * Delta implementation which takes an JSON token stream amd lazily deserializes it if needed.  There are numerous
- * circumstances where a delta is read but never used, such as if the delta is behind a compaction record but has
- * not yet been deleted.
+ * Delta implementation which takes the UTF-8 encoded JSON for a delta and lazily deserializes it if needed.  There are
+ * numerous circumstances where a delta is read but never used, such as if the delta is behind a compaction record but
+ * has not yet been deleted.  In those cases the delta is never even decoded into a string.
  *
  * To avoid deserializing the delta to determine if it is constant the instance takes as a parameter whether the
  * deserialized delta is constant.  It is up to the caller to ensure that this is accurate, since there are no checks
@@ -22,12 +24,16 @@ import static com.google.common.base.Preconditions.checkNotNull;
  */
 public class LazyDelta extends AbstractDelta {
 
-    private volatile JsonTokener _tokener;
+    private volatile ByteBuffer _utf8;
     private volatile Delta _delta;
     private final boolean _constant;
 
-    public LazyDelta(JsonTokener tokener, boolean constant) {
-        _tokener = checkNotNull(tokener, "tokener");
+    /**
+     * @param utf8 The UTF-8 encoded delta.  The buffer's remaining bytes are the delta and must not be modified
+     *             afterward; the buffer's position is never changed.
+     */
+    public LazyDelta(ByteBuffer utf8, boolean constant) {
+        _utf8 = checkNotNull(utf8, "utf8");
         _constant = constant;
     }
 
@@ -35,8 +41,8 @@ public class LazyDelta extends AbstractDelta {
         if (_delta == null) {
             synchronized (this) {
                 if (_delta == null) {
-                    _delta = DeltaParser.parse(_tokener);
-                    _tokener = null;
+                    _delta = DeltaParser.parse(BufferUtils.getString(_utf8, Charsets.UTF_8));
+                    _utf8 = null;
                 }
             }
         }
@@ -9,16 +9,17 @@ import com.bazaarvoice.emodb.sor.api.Compaction;
 import com.bazaarvoice.emodb.sor.api.History;
 import com.bazaarvoice.emodb.sor.db.LazyDelta;
 import com.bazaarvoice.emodb.sor.delta.Deltas;
-import com.bazaarvoice.emodb.sor.delta.deser.JsonTokener;
 import com.google.common.base.Charsets;
 import com.google.common.base.Functions;
 import com.google.common.collect.FluentIterable;
+import com.google.common.collect.ImmutableSet;
 import org.apache.cassandra.utils.ByteBufferUtil;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.nio.ByteBuffer;
 import java.util.EnumSet;
+import java.util.List;
 import java.util.Set;
 import java.util.UUID;
 
@@ -92,39 +93,45 @@ class DefaultChangeEncoder implements ChangeEncoder {
     }
 
     /**
-     * Decodes a change encoded by {@link #encodeChange}.
+     * Decodes a change encoded by {@link #encodeChange}.  To avoid allocating strings for deltas which may never be
+     * used the prefix, tags and change flags are decoded directly from the UTF-8 bytes, and deltas which aren't map
+     * literals are only decoded to a string if and when they're parsed.
      */
     @Override
     public Change decodeChange(UUID changeId, ByteBuffer buf) {
         int sep = getSeparatorIndex(buf);
         Encoding encoding = getEncoding(buf, sep);
-        String body = getBody(buf, sep);
-        JsonTokener tokener;
+        int offset = sep + 1;
+        int tagsEnd;
         Set<String> tags;
 
         ChangeBuilder builder = new ChangeBuilder(changeId);
         switch (encoding) {
             case D1:
-                builder.with(Deltas.fromString(body));
+                builder.with(Deltas.fromString(getBody(buf, offset)));
                 break;
             case D2:
                 // Spec for D2 is as follows:
                 // D2:<tags>:<Delta>
-                tokener = new JsonTokener(body);
-                tags = FluentIterable.from(tokener.nextArray()).transform(Functions.toStringFunction()).toSet();
-                tokener.next(':');
-                builder.with(Deltas.fromString(tokener)).with(tags);
+                tagsEnd = getTagsEnd(buf, offset);
+                tags = getTags(buf, offset, tagsEnd);
+                offset = expectSeparator(buf, tagsEnd);
+                builder.with(Deltas.fromString(getBody(buf, offset))).with(tags);
                 break;
             case D3:
                 // Spec for D3 is as follows:
                 // D3:<tags>:<change flags>:<Delta>
-                tokener = new JsonTokener(body);
-                tags = FluentIterable.from(tokener.nextArray()).transform(Functions.toStringFunction()).toSet();
-                tokener.next(':');
+                tagsEnd = getTagsEnd(buf, offset);
+                tags = getTags(buf, offset, tagsEnd);
+                offset = expectSeparator(buf, tagsEnd);
                 boolean isConstant = false;
                 boolean isMapDelta = false;
-                char changeFlag = tokener.next();
-                while (changeFlag != ':' && changeFlag != 0) {
+                int position = buf.position();
+                while (offset < buf.remaining()) {
+                    char changeFlag = (char) buf.get(position + offset++);
+                    if (changeFlag == ':') {
+                        break;
+                    }
                     // In the future there may be more change flags, though for now we're only interested in
                     // those provided below
                     switch (ChangeFlag.deserialize(changeFlag)) {
@@ -135,7 +142,6 @@ class DefaultChangeEncoder implements ChangeEncoder {
                             isMapDelta = true;
                             break;
                     }
-                    changeFlag = tokener.next();
                 }
 
                 // There are numerous circumstances where the expense of parsing a literal map delta is wasted.  For
@@ -143,19 +149,19 @@ class DefaultChangeEncoder implements ChangeEncoder {
                 // by the latter, so resources spent parsing and instantiating the elder are unnecessary.  Return a lazy
                 // map literal instead to defer instantiation until necessary.
                 if (isConstant && isMapDelta) {
-                    builder.with(Deltas.literal(new LazyJsonMap(body.substring(tokener.pos())))).with(tags);
+                    builder.with(Deltas.literal(new LazyJsonMap(getBody(buf, offset)))).with(tags);
                 } else {
                     // Even if the delta is not a literal map delta there are still benefits to evaluating it lazily.
                     // For example, if a delta is behind a compaction record but has not yet been deleted it won't
-                    // be used.
-                    builder.with(new LazyDelta(tokener, isConstant)).with(tags);
+                    // be used, in which case it is never even decoded from UTF-8.
+                    builder.with(new LazyDelta(getBodyBytes(buf, offset), isConstant)).with(tags);
                 }
                 break;
             case C1:
-                builder.with(JsonHelper.fromJson(body, Compaction.class));
+                builder.with(fromJson(buf, offset, Compaction.class));
                 break;
             case H1:
-                builder.with(JsonHelper.fromJson(body, History.class));
+                builder.with(fromJson(buf, offset, History.class));
                 break;
             default:
                 throw new UnsupportedOperationException(encoding.name());
@@ -170,7 +176,7 @@ class DefaultChangeEncoder implements ChangeEncoder {
         if (getEncoding(buf, sep) != Encoding.C1) {
             return null;  // Not a compaction record
         }
-        return JsonHelper.fromJson(getBody(buf, sep), Compaction.class);
+        return fromJson(buf, sep + 1, Compaction.class);
     }
 
     /** Returns the index of the colon that separates the encoding prefix from the body suffix. */
@@ -203,7 +209,93 @@ class DefaultChangeEncoder implements ChangeEncoder {
         throw new IllegalArgumentException("Unknown encoding: " + BufferUtils.getString(buf, position, sep, Charsets.US_ASCII));
     }
 
-    private String getBody(ByteBuffer buf, int sep) {
-        return BufferUtils.getString(buf, sep + 1, buf.remaining() - (sep + 1), Charsets.UTF_8);
+    /**
+     * Returns the offset immediately following the JSON array of tags which starts at the given offset.  The only
+     * JSON values in the array are strings, so the array ends at the first ']' which isn't in a string.
+     */
+    private int getTagsEnd(ByteBuffer buf, int offset) {
+        int position = buf.position();
+        if (offset >= buf.remaining() || buf.get(position + offset) != '[') {
+            throw new IllegalStateException("Unknown encoding format: " + ByteBufferUtil.bytesToHex(buf));
+        }
+        boolean inString = false;
+        for (int i = offset + 1; i < buf.remaining(); i++) {
+            byte b = buf.get(position + i);
+            if (inString) {
+                if (b == '\\') {
+                    i++;
+                } else if (b == '"') {
+                    inString = false;
+                }
+            } else if (b == '"') {
+                inString = true;
+            } else if (b == ']') {
+                return i + 1;
+            }
+        }
+        throw new IllegalStateException("Unknown encoding format: " + ByteBufferUtil.bytesToHex(buf));
+    }
+
+    private Set<String> getTags(ByteBuffer buf, int offset, int end) {
+        if (end - offset == 2) {
+            // By far the most common case, "[]"
+            return ImmutableSet.of();
+        }
+        // Tags are written as a compact JSON array of strings which rarely require escaping.  Decode those directly,
+        // otherwise fall back to a full JSON parser.
+        ImmutableSet.Builder<String> tags = ImmutableSet.builder();
+        int position = buf.position();
+        int i = offset + 1;
+        while (i < end && buf.get(position + i) == '"') {
+            int start = i + 1;
+            for (i = start; i < end && buf.get(position + i) != '"' && buf.get(position + i) != '\\'; i++) {
+                // scan to the end of the string
+            }
+            if (i == end || buf.get(position + i) == '\\') {
+                break;
+            }
+            tags.add(BufferUtils.getString(buf, start, i - start, Charsets.UTF_8));
+            byte next = buf.get(position + ++i);
+            if (next == ']' && i == end - 1) {
+                return tags.build();
+            }
+            if (next != ',') {
+                break;
+            }
+            i++;
+        }
+        List<?> list = fromJson(buf, offset, end - offset, List.class);
+        return FluentIterable.from(list).transform(Functions.toStringFunction()).toSet();
+    }
+
+    /** Verifies the byte at the given offset is the ':' separator and returns the offset following it. */
+    private int expectSeparator(ByteBuffer buf, int offset) {
+        if (offset >= buf.remaining() || buf.get(buf.position() + offset) != ':') {
+            throw new IllegalStateException("Unknown encoding format: " + ByteBufferUtil.bytesToHex(buf));
+        }
+        return offset + 1;
+    }
+
+    private String getBody(ByteBuffer buf, int offset) {
+        return BufferUtils.getString(buf, offset, buf.remaining() - offset, Charsets.UTF_8);
+    }
+
+    /** Returns the UTF-8 bytes from the given offset to the end of the buffer without copying them. */
+    private ByteBuffer getBodyBytes(ByteBuffer buf, int offset) {
+        ByteBuffer body = buf.duplicate();
+        body.position(body.position() + offset);
+        return body.slice();
+    }
+
+    private <T> T fromJson(ByteBuffer buf, int offset, Class<T> type) {
+        return fromJson(buf, offset, buf.remaining() - offset, type);
+    }
+
+    private <T> T fromJson(ByteBuffer buf, int offset, int length, Class<T> type) {
+        if (buf.hasArray()) {
+            // Parse the UTF-8 bytes directly rather than first copying them into a string
+            return JsonHelper.fromUtf8Bytes(buf.array(), buf.arrayOffset() + buf.position() + offset, length, type);
+        }
+        return JsonHelper.fromJson(BufferUtils.getString(buf, offset, length, Charsets.UTF_8), type);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,150 @@
+package com.bazaarvoice.emodb.sor.core;
+
+import com.bazaarvoice.emodb.common.json.deferred.LazyJsonMap;
+import com.bazaarvoice.emodb.common.uuid.UUIDs;
+import com.bazaarvoice.emodb.sor.api.Compaction;
+import com.bazaarvoice.emodb.sor.condition.Conditions;
+import com.bazaarvoice.emodb.sor.db.Key;
+import com.bazaarvoice.emodb.sor.delta.Delta;
+import com.bazaarvoice.emodb.sor.delta.Deltas;
+import com.bazaarvoice.emodb.sor.uuid.TimeUUIDs;
+import com.bazaarvoice.emodb.table.db.Table;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.mockito.Mockito.mock;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class DefaultResolverTest {
+
+    private final Set<String> _tags = ImmutableSet.of();
+
+    @Test
+    public void testSignature() {
+        DefaultResolver resolver = newResolver();
+        HashCode expected = HashCode.fromBytes(new byte[16]);
+        for (int i = 0; i < 10; i++) {
+            UUID changeId = TimeUUIDs.newUUID();
+            resolver.update(changeId, Deltas.mapBuilder().put("count", i).build(), _tags);
+            expected = md5(expected.asBytes(), changeId);
+            assertEquals(resolver.resolved().getIntrinsics().getSignature(), expected.toString());
+        }
+    }
+
+    @Test
+    public void testSignatureAfterLegacyCompaction() {
+        // Legacy compactions may have signatures which aren't 16 bytes
+        UUID first = TimeUUIDs.newUUID();
+        UUID cutoff = TimeUUIDs.newUUID();
+        UUID next = TimeUUIDs.newUUID();
+        DefaultResolver resolver = new DefaultResolver(newIntrinsics(),
+                new Compaction(2, first, cutoff, "abcdef0123456789", cutoff, cutoff, Deltas.literal(ImmutableMap.of("key", "value"))));
+        assertEquals(resolver.resolved().getIntrinsics().getSignature(), "abcdef0123456789");
+
+        resolver.update(next, Deltas.mapBuilder().put("key2", "value2").build(), _tags);
+        assertEquals(resolver.resolved().getIntrinsics().getSignature(),
+                md5(HashCode.fromString("abcdef0123456789").asBytes(), next).toString());
+    }
+
+    @Test
+    public void testRedundantDeltas() {
+        Delta nested = Deltas.mapBuilder().put("a", 1).put("b", ImmutableList.of("x", "y")).build();
+        List<Delta> deltas = ImmutableList.of(
+                Deltas.literal(ImmutableMap.of("name", "Bob", "address", ImmutableMap.of("city", "Austin"), "empty", ImmutableMap.of())),
+                // Redundant: rewrites the same value
+                Deltas.mapBuilder().put("name", "Bob").build(),
+                // Redundant: removes a key which doesn't exist
+                Deltas.mapBuilder().remove("age").build(),
+                // Redundant: nested update with the same value
+                Deltas.mapBuilder().update("address", Deltas.mapBuilder().put("city", "Austin").build()).build(),
+                // Changed: nested update
+                Deltas.mapBuilder().update("address", Deltas.mapBuilder().put("state", "TX").build()).build(),
+                // Redundant: "remove rest" which retains every key
+                Deltas.mapBuilder().retainAll("name", "address", "empty").removeRest().build(),
+                // Changed: "remove rest" which removes a key
+                Deltas.mapBuilder().retainAll("name", "address").removeRest().build(),
+                // Changed: "remove rest" which removes one key and adds another, leaving the same size
+                Deltas.mapBuilder().retain("name").put("empty", ImmutableMap.of()).removeRest().build(),
+                // Changed: delete if empty removes the nested map
+                Deltas.mapBuilder().update("empty", Deltas.mapBuilder().deleteIfEmpty().build()).build(),
+                // Redundant: conditional delta whose taken branch is a no-op
+                Deltas.conditional(Conditions.mapBuilder().contains("name", "Bob").build(), Deltas.noop(), Deltas.delete()),
+                // Changed: conditional delta whose taken branch modifies the content
+                Deltas.conditional(Conditions.mapBuilder().contains("name", "Bob").build(), nested, Deltas.noop()),
+                // Redundant: set delta adding an existing value
+                Deltas.mapBuilder().update("b", Deltas.setBuilder().add("x").build()).build(),
+                // Redundant: literal equal to the current content
+                Deltas.literal(ImmutableMap.of("name", "Bob", "a", 1, "b", ImmutableList.of("x", "y"))),
+                // Changed: delete
+                Deltas.delete(),
+                // Redundant: delete of a deleted record
+                Deltas.delete());
+        boolean[] redundant = {false, true, true, true, false, true, false, false, false, true, false, true, true, false, true};
+
+        DefaultResolver resolver = newResolver();
+        List<UUID> changeIds = newUuids(deltas.size());
+        for (int i = 0; i < deltas.size(); i++) {
+            resolver.update(changeIds.get(i), deltas.get(i), _tags);
+        }
+        Resolved resolved = resolver.resolved();
+        for (int i = 0; i < deltas.size(); i++) {
+            assertEquals(resolved.isChangeDeltaRedundant(changeIds.get(i)), redundant[i], "Delta " + i + ": " + deltas.get(i));
+        }
+        assertTrue(resolved.isUndefined());
+        assertEquals(resolved.getIntrinsics().getVersion(), deltas.size());
+        assertEquals(resolved.getIntrinsics().getLastMutateAtUuid(), changeIds.get(13));
+        assertFalse(resolved.isChangeDeltaRedundant(changeIds.get(13)));
+    }
+
+    @Test
+    public void testRedundantDeltasAfterLazyCompaction() {
+        UUID first = TimeUUIDs.newUUID();
+        UUID cutoff = TimeUUIDs.newUUID();
+        LazyJsonMap compacted = new LazyJsonMap("{\"name\":\"Bob\",\"address\":{\"city\":\"Austin\"}}");
+        DefaultResolver resolver = new DefaultResolver(newIntrinsics(),
+                new Compaction(2, first, cutoff, "abcdef0123456789", cutoff, cutoff, Deltas.literal(compacted)));
+
+        UUID redundant = TimeUUIDs.newUUID();
+        UUID changed = TimeUUIDs.newUUID();
+        resolver.update(redundant, Deltas.mapBuilder().put("name", "Bob").build(), _tags);
+        resolver.update(changed, Deltas.mapBuilder().put("address", ImmutableMap.of("city", "Dallas")).build(), _tags);
+
+        Resolved resolved = resolver.resolved();
+        assertTrue(resolved.isChangeDeltaRedundant(redundant));
+        assertFalse(resolved.isChangeDeltaRedundant(changed));
+        // Resolving literal updates shouldn't have deserialized the compacted content
+        assertFalse(compacted.isDeserialized());
+        assertFalse(((LazyJsonMap) resolved.getContent()).isDeserialized());
+        assertEquals(resolved.getContent(), ImmutableMap.of("name", "Bob", "address", ImmutableMap.of("city", "Dallas")));
+    }
+
+    private List<UUID> newUuids(int count) {
+        ImmutableList.Builder<UUID> uuids = ImmutableList.builder();
+        for (int i = 0; i < count; i++) {
+            uuids.add(TimeUUIDs.newUUID());
+        }
+        return uuids.build();
+    }
+
+    private DefaultResolver newResolver() {
+        return new DefaultResolver(newIntrinsics());
+    }
+
+    private MutableIntrinsics newIntrinsics() {
+        return MutableIntrinsics.create(new Key(mock(Table.class), "key"));
+    }
+
+    private HashCode md5(byte[] previous, UUID changeId) {
+        return Hashing.md5().newHasher().putBytes(previous).putBytes(UUIDs.asByteArray(changeId)).hash();
+    }
+}
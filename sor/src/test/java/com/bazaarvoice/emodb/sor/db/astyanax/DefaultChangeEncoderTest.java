@@ -8,11 +8,14 @@ import com.bazaarvoice.emodb.sor.delta.Delete;
 import com.bazaarvoice.emodb.sor.delta.Delta;
 import com.bazaarvoice.emodb.sor.delta.Deltas;
 import com.bazaarvoice.emodb.sor.delta.Literal;
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.netflix.astyanax.serializers.StringSerializer;
 import org.testng.annotations.Test;
 
+import java.nio.ByteBuffer;
 import java.util.EnumSet;
 import java.util.Set;
 
@@ -109,6 +112,45 @@ public class DefaultChangeEncoderTest {
         assertEquals(compaction.getCompactedDelta(), Deltas.delete());
     }
 
+    @Test
+    public void testD3DecodingWithEscapedTags() {
+        String encoded = "D3:[\"a]\\\"b\",\"\u00e9t\u00e9\"]:C:\"caf\u00e9 ]:\"";
+        verifyDecodedChange(encoded, Deltas.literal("caf\u00e9 ]:"), ImmutableSet.of("a]\"b", "\u00e9t\u00e9"));
+        // Unexpected whitespace
+        verifyDecodedChange("D3:[ \"one\" ,\"two\"]::~", Deltas.delete(), ImmutableSet.of("one", "two"));
+    }
+
+    @Test
+    public void testD3DecodingMapLiteral() {
+        ChangeEncoder changeEncoder = new DefaultChangeEncoder();
+        Change change = changeEncoder.decodeChange(TimeUUIDs.newUUID(),
+                StringSerializer.get().toByteBuffer("D3:[]:CM:{\"name\":\"b\u00f6b\"}"));
+        assertTrue(change.getDelta() instanceof Literal);
+        assertTrue(((Literal) change.getDelta()).getValue() instanceof LazyJsonMap);
+        assertEquals(change.getDelta(), Deltas.literal(ImmutableMap.of("name", "b\u00f6b")));
+        assertEquals(change.getTags(), ImmutableSet.<String>of());
+    }
+
+    @Test
+    public void testDecodingFromBufferSlices() {
+        // Decoding must respect the buffer's position and array offset and work without a backing array
+        String encoded = "D3:[\"tag\u00e9\"]::{..,\"name\":\"b\u00f6b\"}";
+        byte[] bytes = ("xxxx" + encoded).getBytes(Charsets.UTF_8);
+        ByteBuffer slice = ByteBuffer.wrap(bytes, 2, bytes.length - 2).slice();
+        slice.position(2);
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length - 4);
+        direct.put(bytes, 4, bytes.length - 4).flip();
+
+        ChangeEncoder changeEncoder = new DefaultChangeEncoder();
+        for (ByteBuffer buf : ImmutableList.of(slice, direct)) {
+            int position = buf.position();
+            Change change = changeEncoder.decodeChange(TimeUUIDs.newUUID(), buf);
+            assertEquals(buf.position(), position);
+            assertEquals(change.getDelta().toString(), "{..,\"name\":\"b\u00f6b\"}");
+            assertEquals(change.getTags(), ImmutableSet.of("tag\u00e9"));
+        }
+    }
+
     private void verifyDecodedChange(String encodedDelta, Delta expectedDelta, ImmutableSet<String> tags) {
         ChangeEncoder changeEncoder = new DefaultChangeEncoder();
         Change change = changeEncoder.decodeChange(TimeUUIDs.newUUID(), StringSerializer.get().toByteBuffer(encodedDelta));
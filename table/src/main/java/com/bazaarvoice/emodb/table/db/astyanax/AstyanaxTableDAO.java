@@ -44,7 +44,7 @@ import com.bazaarvoice.emodb.table.db.TableFilterIntrinsics;
 import com.bazaarvoice.emodb.table.db.TableSet;
 import com.bazaarvoice.emodb.table.db.generic.CachingTableDAORegistry;
 import com.bazaarvoice.emodb.table.db.stash.StashTokenRange;
-import com.bazaarvoice.emodb.table.db.tableset.BlockFileTableSet;
+import com.bazaarvoice.emodb.table.db.tableset.MappedFileTableSet;
 import com.bazaarvoice.emodb.table.db.tableset.TableSerializer;
 import com.codahale.metrics.annotation.Timed;
 import com.fasterxml.jackson.core.type.TypeReference;
@@ -1115,7 +1115,7 @@ public class AstyanaxTableDAO implements TableDAO, MaintenanceDAO, StashTableDAO
 
     @Override
     public TableSet createTableSet() {
-        return new BlockFileTableSet(new TableSerializer() {
+        return new MappedFileTableSet(new TableSerializer() {
             @Override
             public Set<Long> loadAndSerialize(long uuid, OutputStream out)
                     throws IOException, UnknownTableException, DroppedTableException {
@@ -0,0 +1,363 @@
+package com.bazaarvoice.emodb.table.db.tableset;
+
+import com.bazaarvoice.emodb.common.json.JsonHelper;
+import com.bazaarvoice.emodb.sor.api.UnknownTableException;
+import com.bazaarvoice.emodb.table.db.DroppedTableException;
+import com.bazaarvoice.emodb.table.db.Table;
+import com.google.common.base.Charsets;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.Striped;
+import org.apache.zookeeper.server.ByteBufferInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * TableSet implementation that appends tables to a memory-mapped temporary file after their first access to return a
+ * consistent table on subsequent accesses.  As with {@link BlockFileTableSet} all UUIDs associated with the table are
+ * mapped on the first read, so looking up a table by one UUID and then subsequently by a different UUID should always
+ * return equivalent tables.
+ *
+ * Unlike BlockFileTableSet this implementation does no paging of its own:  the file is mapped in fixed size segments
+ * and the operating system's page cache decides which parts remain resident.  UUIDs are mapped to file offsets using an
+ * open-addressed hash table held in a direct buffer, so neither the tables nor the index occupy the Java heap.
+ *
+ * Lookups of tables which have already been loaded take no locks.  Records are only ever appended, and a record is
+ * published by a volatile write of the file length before any UUID in the index refers to it.  A reader only trusts
+ * an index entry if the record it refers to is within the published length and contains the UUID being read;
+ * otherwise it falls back to the locked load path, which re-checks the index before loading the table.
+ */
+public class MappedFileTableSet extends AbstractSerializingTableSet {
+    private static final Logger _log = LoggerFactory.getLogger(MappedFileTableSet.class);
+
+    // Minimum size for a segment.  Since each table must fit in a single segment a reasonable minimum must be enforced
+    private static final int MIN_SEGMENT_SIZE = 5000;
+    private static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;  // 64 Mb
+    private static final int INITIAL_INDEX_CAPACITY = 1024;
+    // Number of stripes for the locks which prevent concurrent loads of the same table
+    private static final int LOAD_LOCK_STRIPES = 64;
+
+    // Record types
+    private static final int TABLE = 0;
+    private static final int UNKNOWN = -1;
+    private static final int DROPPED = -2;
+
+    // Size of each mapped segment of the file
+    private final int _segmentSize;
+    private final Path _file;
+    private final FileChannel _channel;
+    // Prevents the same table from being loaded concurrently while allowing loads of different tables in parallel
+    private final Striped<Lock> _loadLocks = Striped.lock(LOAD_LOCK_STRIPES);
+    // Guards appending records to the file and inserting into the index
+    private final Object _writeLock = new Object();
+    // Mapped segments of the file; the array is replaced each time a segment is added
+    private volatile MappedByteBuffer[] _segments = new MappedByteBuffer[0];
+    // Offset of the first unused byte in the file.  Writing this publishes all records before it to readers.
+    private volatile long _length;
+    // Index of UUIDs to record offsets; the index is replaced each time it is resized
+    private volatile UuidIndex _index = new UuidIndex(INITIAL_INDEX_CAPACITY);
+
+    public MappedFileTableSet(TableSerializer tableSerializer) {
+        this(tableSerializer, DEFAULT_SEGMENT_SIZE);
+    }
+
+    public MappedFileTableSet(TableSerializer tableSerializer, int segmentSize) {
+        super(tableSerializer);
+        checkArgument(segmentSize >= MIN_SEGMENT_SIZE, "segment size < %d", MIN_SEGMENT_SIZE);
+        _segmentSize = segmentSize;
+        try {
+            _file = Files.createTempFile("tableset", ".tmp");
+            _channel = FileChannel.open(_file, READ, WRITE);
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    @Override
+    public Table getByUuid(long uuid)
+            throws UnknownTableException, DroppedTableException {
+        ByteBuffer record = findRecord(uuid);
+        if (record == null) {
+            Lock lock = _loadLocks.get(uuid);
+            lock.lock();
+            try {
+                record = findRecord(uuid);
+                if (record == null) {
+                    // First time this UUID has been seen, so load the table
+                    record = getRecord(loadTable(uuid), uuid);
+                    checkState(record != null, "Table not found after loading: %s", uuid);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        return readTable(record);
+    }
+
+    /**
+     * Returns the record for the UUID if it has been loaded and published, or null otherwise.
+     */
+    @Nullable
+    private ByteBuffer findRecord(long uuid) {
+        long offset = _index.get(uuid);
+        return offset != UuidIndex.NOT_FOUND ? getRecord(offset, uuid) : null;
+    }
+
+    /**
+     * Returns the record at the given offset positioned after its UUIDs, or null if the record hasn't been published
+     * or doesn't contain the UUID.
+     */
+    @Nullable
+    private ByteBuffer getRecord(long offset, long uuid) {
+        // Reading the length before the record makes every record written before the length visible
+        if (offset >= _length) {
+            return null;
+        }
+        ByteBuffer record = _segments[(int) (offset / _segmentSize)].duplicate();
+        record.position((int) (offset % _segmentSize));
+
+        boolean found = false;
+        int uuidCount = record.getInt();
+        for (int i = 0; i < uuidCount; i++) {
+            found |= record.getLong() == uuid;
+        }
+        return found ? record : null;
+    }
+
+    /**
+     * Loads a table from the source and appends it to the file.  Returns the offset of the table's record.
+     */
+    private long loadTable(long uuid) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Set<Long> uuids;
+        int type;
+
+        try {
+            uuids = getTableSerializer().loadAndSerialize(uuid, out);
+            type = TABLE;
+        } catch (UnknownTableException | DroppedTableException e) {
+            // Record the exception so an equivalent exception can be rethrown each time the cached table is read
+            uuids = ImmutableSet.of();
+            out.reset();
+            byte[] exceptionBytes = JsonHelper.asJson(e).getBytes(Charsets.UTF_8);
+            out.write(exceptionBytes, 0, exceptionBytes.length);
+            type = e instanceof UnknownTableException ? UNKNOWN : DROPPED;
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+
+        // Always include the UUID which was read so the record can be verified by readers
+        return append(uuid, ImmutableSet.<Long>builder().add(uuid).addAll(uuids).build(), type, out.toByteArray());
+    }
+
+    /**
+     * Appends a record to the file and maps each UUID to it.  If another thread has already mapped the UUID, for example
+     * by loading the same table through one of its other UUIDs, the existing record is returned instead.  Likewise any
+     * of the table's other UUIDs which are already mapped continue to refer to their existing records.
+     */
+    private long append(long uuid, Set<Long> uuids, int type, byte[] content) {
+        synchronized (_writeLock) {
+            checkState(_channel.isOpen(), "Table set is closed");
+
+            // All index updates are made while holding the write lock, so this check is reliable
+            long existing = _index.get(uuid);
+            if (existing != UuidIndex.NOT_FOUND) {
+                return existing;
+            }
+
+            int recordSize = 4 + 8 * uuids.size() + 4 + 4 + content.length;
+            if (recordSize > _segmentSize) {
+                _log.error("Table with UUID {} is too large to fit in a single segment", uuid);
+                throw new IllegalArgumentException("Table too large");
+            }
+
+            // Records never span segments, so skip to the next segment if this one doesn't have room
+            long offset = _length;
+            int segmentOffset = (int) (offset % _segmentSize);
+            if (segmentOffset + recordSize > _segmentSize) {
+                offset += _segmentSize - segmentOffset;
+                segmentOffset = 0;
+            }
+
+            ByteBuffer buffer = getSegmentForWrite((int) (offset / _segmentSize)).duplicate();
+            buffer.position(segmentOffset);
+            buffer.putInt(uuids.size());
+            for (Long tableUuid : uuids) {
+                buffer.putLong(tableUuid);
+            }
+            buffer.putInt(type);
+            buffer.putInt(content.length);
+            buffer.put(content);
+
+            // Publish the record before any index entry refers to it
+            _length = offset + recordSize;
+
+            UuidIndex index = _index;
+            for (Long tableUuid : uuids) {
+                index.putIfAbsent(tableUuid, offset);
+                if (index.isFull()) {
+                    index = index.resize();
+                    _index = index;
+                }
+            }
+
+            return offset;
+        }
+    }
+
+    /**
+     * Returns the mapped segment, mapping a new segment at the end of the file if necessary.  Must be called while
+     * holding the write lock.
+     */
+    private MappedByteBuffer getSegmentForWrite(int segment) {
+        MappedByteBuffer[] segments = _segments;
+        if (segment < segments.length) {
+            return segments[segment];
+        }
+        checkState(segment == segments.length, "Segments must be mapped in order");
+
+        _log.debug("Mapping segment {} of size {} from {}", segment, _segmentSize, _file);
+        MappedByteBuffer buffer;
+        try {
+            buffer = _channel.map(FileChannel.MapMode.READ_WRITE, (long) segment * _segmentSize, _segmentSize);
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+
+        segments = Arrays.copyOf(segments, segment + 1);
+        segments[segment] = buffer;
+        _segments = segments;
+        return buffer;
+    }
+
+    /**
+     * Reads the table from a record positioned at the first byte after its UUIDs.
+     */
+    private Table readTable(ByteBuffer record)
+            throws UnknownTableException, DroppedTableException {
+        int type = record.getInt();
+        int length = record.getInt();
+        // Restrict the buffer to only read the content of the record
+        ByteBuffer content = (ByteBuffer) record.slice().limit(length);
+
+        if (type == UNKNOWN) {
+            throw JsonHelper.fromJson(Charsets.UTF_8.decode(content).toString(), UnknownTableException.class);
+        } else if (type == DROPPED) {
+            throw JsonHelper.fromJson(Charsets.UTF_8.decode(content).toString(), DroppedTableException.class);
+        }
+
+        try (InputStream in = new ByteBufferInputStream(content)) {
+            return getTableSerializer().deserialize(in);
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    @Override
+    public void close()
+            throws IOException {
+        synchronized (_writeLock) {
+            if (_channel.isOpen()) {
+                // Existing mappings remain valid until they are garbage collected, so concurrent reads can complete
+                _log.debug("Deleting table set file {} ({} bytes)", _file, _length);
+                _channel.close();
+                Files.delete(_file);
+            }
+        }
+    }
+
+    /**
+     * Open-addressed hash table from UUIDs to record offsets stored in a direct buffer.  Each slot is a UUID followed
+     * by the offset plus one, so a zero offset marks an empty slot.  Slots are only ever written once, so readers may
+     * probe the table without locking; a slot which is concurrently being written may be missed or may pair a new
+     * offset with an unwritten UUID, both of which are caught by the reader's verification of the record.
+     */
+    private static class UuidIndex {
+        static final long NOT_FOUND = -1;
+
+        private static final int SLOT_SIZE = 16;
+        private static final int MAX_CAPACITY = Integer.MAX_VALUE / SLOT_SIZE + 1;
+
+        private final ByteBuffer _slots;
+        private final int _mask;
+        // Number of occupied slots; only accessed while holding the write lock
+        private int _size;
+
+        UuidIndex(int capacity) {
+            checkArgument(Integer.bitCount(capacity) == 1, "Capacity must be a power of two");
+            checkState(capacity < MAX_CAPACITY, "Too many tables");
+            _slots = ByteBuffer.allocateDirect(capacity * SLOT_SIZE).order(ByteOrder.nativeOrder());
+            _mask = capacity - 1;
+        }
+
+        long get(long uuid) {
+            for (int slot = hash(uuid) & _mask, probes = 0; probes <= _mask; slot = (slot + 1) & _mask, probes++) {
+                long value = _slots.getLong(slot * SLOT_SIZE + 8);
+                if (value == 0) {
+                    return NOT_FOUND;
+                }
+                if (_slots.getLong(slot * SLOT_SIZE) == uuid) {
+                    return value - 1;
+                }
+            }
+            return NOT_FOUND;
+        }
+
+        void putIfAbsent(long uuid, long offset) {
+            int slot = hash(uuid) & _mask;
+            long value;
+            while ((value = _slots.getLong(slot * SLOT_SIZE + 8)) != 0) {
+                if (_slots.getLong(slot * SLOT_SIZE) == uuid) {
+                    return;
+                }
+                slot = (slot + 1) & _mask;
+            }
+            // Write the UUID before the offset which marks the slot as occupied
+            _slots.putLong(slot * SLOT_SIZE, uuid);
+            _slots.putLong(slot * SLOT_SIZE + 8, offset + 1);
+            _size += 1;
+        }
+
+        /**
+         * Returns true if the index is at least half full and should be resized to keep probe sequences short.
+         */
+        boolean isFull() {
+            return _size * 2 > _mask;
+        }
+
+        UuidIndex resize() {
+            UuidIndex resized = new UuidIndex((_mask + 1) * 2);
+            for (int slot = 0; slot <= _mask; slot++) {
+                long value = _slots.getLong(slot * SLOT_SIZE + 8);
+                if (value != 0) {
+                    resized.putIfAbsent(_slots.getLong(slot * SLOT_SIZE), value - 1);
+                }
+            }
+            return resized;
+        }
+
+        private static int hash(long uuid) {
+            long h = uuid * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
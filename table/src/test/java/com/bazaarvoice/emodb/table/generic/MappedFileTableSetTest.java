@@ -0,0 +1,257 @@
+package com.bazaarvoice.emodb.table.generic;
+
+import com.bazaarvoice.emodb.sor.api.TableOptions;
+import com.bazaarvoice.emodb.sor.api.TableOptionsBuilder;
+import com.bazaarvoice.emodb.sor.api.UnknownTableException;
+import com.bazaarvoice.emodb.table.db.DroppedTableException;
+import com.bazaarvoice.emodb.table.db.Table;
+import com.bazaarvoice.emodb.table.db.tableset.MappedFileTableSet;
+import com.bazaarvoice.emodb.table.db.tableset.TableSerializer;
+import com.bazaarvoice.emodb.table.db.test.InMemoryTable;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.fail;
+
+public class MappedFileTableSetTest {
+
+    // Each table is also known by a second UUID offset by this amount
+    private static final long ALIAS_OFFSET = 1000000;
+
+    private class TestTableSerializer implements TableSerializer {
+        private final Map<Long, InMemoryTable> _tableMap;
+        private final ConcurrentMap<Long, AtomicInteger> _loadCounts = Maps.newConcurrentMap();
+
+        private TestTableSerializer(Map<Long, InMemoryTable> tableMap) {
+            _tableMap = tableMap;
+        }
+
+        @Override
+        public Set<Long> loadAndSerialize(long uuid, OutputStream out)
+                throws IOException, UnknownTableException, DroppedTableException {
+            if (uuid == -1) {
+                throw new DroppedTableException("Table dropped", "-1");
+            } else if (uuid == -2) {
+                throw new UnknownTableException("Table unknown", "-2");
+            }
+
+            long baseUuid = uuid >= ALIAS_OFFSET ? uuid - ALIAS_OFFSET : uuid;
+            _loadCounts.putIfAbsent(baseUuid, new AtomicInteger());
+            _loadCounts.get(baseUuid).incrementAndGet();
+
+            InMemoryTable table = _tableMap.get(baseUuid);
+            if (table == null) {
+                throw new UnknownTableException();
+            }
+            // Serialize the core parts of the table
+            ObjectOutputStream objectOut = new ObjectOutputStream(out);
+            objectOut.writeObject(table.getName());
+            objectOut.writeObject(table.getOptions().getPlacement());
+            objectOut.writeObject(table.getAttributes());
+            objectOut.flush();
+
+            return ImmutableSet.of(baseUuid, baseUuid + ALIAS_OFFSET);
+        }
+
+        @Override
+        public Table deserialize(InputStream in)
+                throws IOException {
+            try {
+                ObjectInputStream objectIn = new ObjectInputStream(in);
+                String name = (String) objectIn.readObject();
+                String placement = (String) objectIn.readObject();
+                //noinspection unchecked
+                Map<String, Object> attributes = (Map<String, Object>) objectIn.readObject();
+                TableOptions options = new TableOptionsBuilder().setPlacement(placement).build();
+
+                return new InMemoryTable(name, options, attributes);
+            } catch (Exception e) {
+                throw Throwables.propagate(e);
+            }
+        }
+
+        private int getLoadCount(long uuid) {
+            AtomicInteger count = _loadCounts.get(uuid);
+            return count != null ? count.get() : 0;
+        }
+    }
+
+    @Test
+    public void testFileCache() throws Exception {
+        Map<Long, InMemoryTable> tableMap = createTestTables();
+        // Use a small segment size so the tables span many segments and the index is resized several times
+        try (MappedFileTableSet snapshot = new MappedFileTableSet(new TestTableSerializer(tableMap), 50000)) {
+            // Read all tables
+            for (int uuid=0; uuid < 10000; uuid++) {
+                Table table = snapshot.getByUuid(uuid);
+                validateTable(uuid, table);
+            }
+
+            // Delete the original map, so all values must now be read from the cache
+            tableMap.clear();
+
+            // Read tables in random order by both UUIDs
+            long uuid = 2;
+            for (int i=0; i < 1000; i++) {
+                uuid = (uuid + 117) % 10000;
+                validateTable(uuid, snapshot.getByUuid(uuid));
+                validateTable(uuid, snapshot.getByUuid(uuid + ALIAS_OFFSET));
+            }
+        }
+    }
+
+    @Test
+    public void testAliasedUuid() throws Exception {
+        Map<Long, InMemoryTable> tableMap = createTestTables();
+        TestTableSerializer serializer = new TestTableSerializer(tableMap);
+        try (MappedFileTableSet snapshot = new MappedFileTableSet(serializer)) {
+            // Loading by the alias maps the table's primary UUID as well
+            validateTable(5, snapshot.getByUuid(5 + ALIAS_OFFSET));
+            validateTable(5, snapshot.getByUuid(5));
+            assertEquals(serializer.getLoadCount(5), 1);
+        }
+    }
+
+    @Test
+    public void testConcurrency() throws Exception {
+        Map<Long, InMemoryTable> tableMap = createTestTables();
+        TestTableSerializer serializer = new TestTableSerializer(tableMap);
+        try (final MappedFileTableSet snapshot = new MappedFileTableSet(serializer, 50000)) {
+
+            List<Thread> threads = Lists.newArrayListWithCapacity(21);
+
+            for (int t=0; t < 10; t++) {
+                final int index = t * 1000;
+
+                // From the bottom
+                threads.add(new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (int uuid=index; uuid < index+1000; uuid++) {
+                            validateTable(uuid, snapshot.getByUuid(uuid));
+                        }
+                    }
+                }));
+
+                // From the top, using the aliased UUIDs
+                threads.add(new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (int uuid=9000-index; uuid < 10000-index; uuid++) {
+                            validateTable(uuid, snapshot.getByUuid(uuid + ALIAS_OFFSET));
+                        }
+                    }
+                }));
+            }
+
+            // Add one final thread that looks for nothing but unknowns
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int uuid=10000; uuid < 11000; uuid++) {
+                        try {
+                            snapshot.getByUuid(uuid);
+                            fail("Table should be unknown: " + uuid);
+                        } catch (UnknownTableException e) {
+                            // ok
+                        }
+                    }
+                }
+            }));
+
+            for (Thread thread : threads) {
+                thread.start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            tableMap.clear();
+
+            for (int uuid=0; uuid< 10000; uuid++) {
+                validateTable(uuid, snapshot.getByUuid(uuid));
+                validateTable(uuid, snapshot.getByUuid(uuid + ALIAS_OFFSET));
+            }
+        }
+    }
+
+    @Test
+    public void testUnknownAndDroppedTable() throws Exception {
+        try (MappedFileTableSet snapshot = new MappedFileTableSet(new TestTableSerializer(ImmutableMap.<Long, InMemoryTable>of()))) {
+            // Call twice so it will be cached the second time
+            for (int i=0; i < 2; i++) {
+                try {
+                    snapshot.getByUuid(-1);
+                    fail("dropped table not thrown");
+                } catch (DroppedTableException e) {
+                    assertEquals(e.getMessage(), "Table dropped");
+                    assertEquals(e.getPriorTable(), "-1");
+                }
+
+                try {
+                    snapshot.getByUuid(-2);
+                    fail("unknown table not thrown");
+                } catch (UnknownTableException e) {
+                    assertEquals(e.getMessage(), "Table unknown");
+                    assertEquals(e.getTable(), "-2");
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testTableTooLarge() throws Exception {
+        Map<Long, InMemoryTable> tableMap = Maps.newHashMap();
+        StringBuilder client = new StringBuilder();
+        for (int i=0; i < 10000; i++) {
+            client.append('x');
+        }
+        tableMap.put(0L, new InMemoryTable("table_0", new TableOptionsBuilder().setPlacement("placement0").build(),
+                ImmutableMap.<String, Object>of("client", client.toString())));
+
+        try (MappedFileTableSet snapshot = new MappedFileTableSet(new TestTableSerializer(tableMap), 5000)) {
+            try {
+                snapshot.getByUuid(0);
+                fail("Table should be too large");
+            } catch (IllegalArgumentException e) {
+                // ok
+            }
+        }
+    }
+
+    private Map<Long, InMemoryTable> createTestTables() {
+        Map<Long, InMemoryTable> tableMap = Maps.newConcurrentMap();
+        for (long uuid=0; uuid < 10000; uuid++) {
+            String name = "table_" + uuid;
+            TableOptions options = new TableOptionsBuilder().setPlacement("placement" + (uuid % 3)).build();
+            Map<String, Object> attributes = ImmutableMap.<String, Object>of(
+                    "type", "review", "client", "client" + uuid);
+            tableMap.put(uuid, new InMemoryTable(name, options, attributes));
+        }
+        return tableMap;
+    }
+
+    private void validateTable(long uuid, Table table) {
+        assertNotNull(table);
+        assertEquals(table.getName(), "table_" + uuid);
+        assertEquals(table.getOptions().getPlacement(), "placement" + uuid % 3);
+        assertEquals(table.getAttributes(), ImmutableMap.<String, Object>of("type", "review", "client", "client" + uuid));
+    }
+}
@@ -13,6 +13,7 @@ import com.bazaarvoice.emodb.sor.DataStoreConfiguration;
 import com.bazaarvoice.emodb.web.auth.AuthorizationConfiguration;
 import com.bazaarvoice.emodb.web.migrator.config.MigratorConfiguration;
 import com.bazaarvoice.emodb.web.scanner.config.ScannerConfiguration;
+import com.bazaarvoice.emodb.web.throttling.AdaptiveThrottlingConfiguration;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
@@ -98,6 +99,11 @@ public class EmoConfiguration extends Configuration {
     @JsonProperty ("deltaMigrator")
     private Optional<MigratorConfiguration> _migrator = Optional.absent();
 
+    @Valid
+    @NotNull
+    @JsonProperty ("adaptiveThrottling")
+    private AdaptiveThrottlingConfiguration _adaptiveThrottling = new AdaptiveThrottlingConfiguration();
+
     @Valid
     @NotNull
     @JsonProperty ("serverStartedListeners")
@@ -239,6 +245,15 @@ public class EmoConfiguration extends Configuration {
         return this;
     }
 
+    public AdaptiveThrottlingConfiguration getAdaptiveThrottling() {
+        return _adaptiveThrottling;
+    }
+
+    public EmoConfiguration setAdaptiveThrottling(AdaptiveThrottlingConfiguration adaptiveThrottling) {
+        _adaptiveThrottling = adaptiveThrottling;
+        return this;
+    }
+
     public List<PluginConfiguration> getServerStartedListenerPluginConfigurations() {
         return _serverStartedListenerPluginConfigurations;
     }
@@ -384,7 +384,8 @@ public class EmoService extends Application<EmoConfiguration> {
 
         // Add a resource factory that creates throttling related Resource Filters for appropriate resource methods
         //noinspection unchecked
-        _environment.jersey().getResourceConfig().getResourceFilterFactories().add(new ThrottlingFilterFactory(_environment.metrics()));
+        _environment.jersey().getResourceConfig().getResourceFilterFactories().add(new ThrottlingFilterFactory(
+                _configuration.getAdaptiveThrottling(), _environment.metrics()));
 
         //noinspection unchecked
         _environment.jersey().getResourceConfig().getContainerRequestFilters().add(adHocThrottleFilter);
@@ -142,6 +142,12 @@ abstract public class TableConditionPart extends EmoMatchingPart {
         return true;
     }
 
+    @Override
+    public boolean dependsOnResourceState() {
+        // Only conditions which load the table's metadata can change without the permission changing
+        return _requiresTableMetadata;
+    }
+
     protected final static class PlacementAndAttributes {
         private final String placement;
         private final Map<String, ?> attributes;
@@ -27,6 +27,7 @@ public class ExceptionMappers {
                 new AuditSizeLimitExceptionMapper(),
                 new UnauthorizedSubscriptionExceptionMapper(),
                 new ServiceUnavailableExceptionMapper(),
+                new RateLimitExceededExceptionMapper(),
                 new EmoRoleNotFoundExceptionMapper(),
                 new EmoRoleExistsExceptionMapper(),
                 new EmoApiKeyNotFoundExceptionMapper(),
@@ -0,0 +1,28 @@
+package com.bazaarvoice.emodb.web.jersey;
+
+import com.bazaarvoice.emodb.common.api.RateLimitExceededException;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.ExceptionMapper;
+import javax.ws.rs.ext.Provider;
+
+/**
+ * Exception mapper for when the caller has exceeded a rate limit and should try again later.  JAX-RS 1.x has no
+ * constant for status 429, "Too Many Requests", so the status code is used directly.
+ */
+@Provider
+public class RateLimitExceededExceptionMapper implements ExceptionMapper<RateLimitExceededException> {
+
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    @Override
+    public Response toResponse(RateLimitExceededException exception) {
+        return Response.status(TOO_MANY_REQUESTS)
+                .header("X-BV-Exception", RateLimitExceededException.class.getName())
+                .header("Retry-After", exception.getRetryAfterSeconds())
+                .entity(exception)
+                .type(MediaType.APPLICATION_JSON_TYPE)
+                .build();
+    }
+}
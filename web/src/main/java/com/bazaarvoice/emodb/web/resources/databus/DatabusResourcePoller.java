@@ -2,8 +2,10 @@ package com.bazaarvoice.emodb.web.resources.databus;
 
 import com.bazaarvoice.emodb.auth.jersey.Subject;
 import com.bazaarvoice.emodb.databus.api.PollResult;
+import com.bazaarvoice.emodb.databus.core.EventArrivalNotifier;
 import com.codahale.metrics.Gauge;
 import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.Timer;
 import com.google.common.annotations.VisibleForTesting;
@@ -22,13 +24,21 @@ import java.io.IOException;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
  * Helper class for asynchronously polling databus resource requests.
+ * <p>
+ * While a long poll is waiting it polls the subscription again every few seconds.  It also listens for
+ * {@link EventArrivalNotifier} notifications for the subscription and polls immediately when new events are written,
+ * so events usually reach the client without waiting for the next retry.  The scheduled retries remain as a fallback
+ * for notifications which are missed, such as when the request didn't land on the server that owns the subscription.
  */
 public class DatabusResourcePoller {
 
@@ -45,17 +55,21 @@ public class DatabusResourcePoller {
     private static final String POLL_DATABUS_EMPTY_HEADER = "X-BV-Databus-Empty";
 
     private final Timer _pollTimer;
+    private final EventArrivalNotifier _eventArrivalNotifier;
 
     private final ScheduledExecutorService _keepAliveExecutorService;
     private final ScheduledExecutorService _pollingExecutorService;
 
     private final Histogram _keepAliveThreadDelayHistogram;
     private final Histogram _pollingThreadDelayHistogram;
+    private final Meter _wakeupMeter;
+    private final Timer _wakeupToResponseTimer;
 
     @Inject
     public DatabusResourcePoller(Optional<LongPollingExecutorServices> longPollingExecutorServices,
-                                 MetricRegistry metricRegistry) {
+                                 EventArrivalNotifier eventArrivalNotifier, MetricRegistry metricRegistry) {
         checkNotNull(longPollingExecutorServices, "longPollingExecutorServices");
+        _eventArrivalNotifier = checkNotNull(eventArrivalNotifier, "eventArrivalNotifier");
         if (longPollingExecutorServices.isPresent()) {
             _keepAliveExecutorService = longPollingExecutorServices.get().getKeepAlive();
             _pollingExecutorService = longPollingExecutorServices.get().getPoller();
@@ -69,6 +83,8 @@ public class DatabusResourcePoller {
 
         _keepAliveThreadDelayHistogram = metricRegistry.histogram(MetricRegistry.name("bv.emodb.databus", "DatabusResource1", "keepAliveThreadDelay"));
         _pollingThreadDelayHistogram = metricRegistry.histogram(MetricRegistry.name("bv.emodb.databus", "DatabusResource1", "pollingThreadDelay"));
+        _wakeupMeter = metricRegistry.meter(MetricRegistry.name("bv.emodb.databus", "DatabusResource1", "longPollWakeups"));
+        _wakeupToResponseTimer = metricRegistry.timer(MetricRegistry.name("bv.emodb.databus", "DatabusResource1", "wakeupToResponse"));
 
         _pollTimer = buildPollTimer(metricRegistry);
     }
@@ -80,10 +96,13 @@ public class DatabusResourcePoller {
     @VisibleForTesting
     public DatabusResourcePoller(MetricRegistry metricRegistry) {
         _pollTimer = buildPollTimer(metricRegistry);
+        _eventArrivalNotifier = null;
         _keepAliveExecutorService = null;
         _pollingExecutorService = null;
         _keepAliveThreadDelayHistogram = null;
         _pollingThreadDelayHistogram = null;
+        _wakeupMeter = null;
+        _wakeupToResponseTimer = null;
     }
 
     // Runnable to intermittently poll for data and output to the response
@@ -101,7 +120,14 @@ public class DatabusResourcePoller {
         private PeekOrPollResponseHelper _helper;
         private long _longPollStopTime;
         private Timer.Context _timerContext;
-        private long _lastRunTime = 0;
+        private volatile long _expectedRunTime;
+        // Set while a delayed poll is scheduled.  Either the scheduled poll or a wakeup claims it, never both.
+        private final AtomicBoolean _pollPending = new AtomicBoolean();
+        private volatile ScheduledFuture<?> _scheduledPoll;
+        private volatile boolean _wakeupRequested;
+        // Time of the first wakeup not yet followed by a response, or zero if there is none
+        private final AtomicLong _wakeupTime = new AtomicLong();
+        private final Runnable _wakeupListener = this::wakeUp;
 
         DatabusPollRunnable(AsyncContext asyncContext, KeepAliveRunnable keepAliveRunnable, Subject subject, SubjectDatabus databus,
                             Duration claimTtl, int limit, String subscription, PeekOrPollResponseHelper helper,
@@ -122,11 +148,14 @@ public class DatabusResourcePoller {
         public void run() {
             boolean rescheduled = false;
             try {
-                if (_lastRunTime > 0) {
-                    // Record any delay between when we *expected* to run and when we actually ran. This should help
-                    // detect overloaded thread pools which, in turn, may lead to timeouts.
-                    _pollingThreadDelayHistogram.update(System.currentTimeMillis() - _lastRunTime - LONG_POLL_RETRY_TIME.toMillis());
-                }
+                // Record any delay between when we *expected* to run and when we actually ran. This should help
+                // detect overloaded thread pools which, in turn, may lead to timeouts.
+                _pollingThreadDelayHistogram.update(System.currentTimeMillis() - _expectedRunTime);
+
+                // Any events which arrive after this point are not guaranteed to be seen by the following poll
+                _wakeupRequested = false;
+                long wakeupTime = _wakeupTime.get();
+
                 if (_pollingActive) {
                     boolean pollFailed = false;
                     PollResult result;
@@ -154,23 +183,26 @@ public class DatabusResourcePoller {
                             if (_pollingActive) {
                                 _keepAliveRunnable.cancelKeepAlive();
                                 populateResponse(result, (HttpServletResponse) _asyncContext.getResponse(), _helper);
+                                if (wakeupTime != 0) {
+                                    _wakeupToResponseTimer.update(System.nanoTime() - wakeupTime, TimeUnit.NANOSECONDS);
+                                }
                             }
                         }
                     } else {
-                        // Nothing to output; schedule the job to check again.  If the result had more events then poll
-                        // again immediately, otherwise wait a few seconds.
-                        _lastRunTime = System.currentTimeMillis();
-                        if (result.hasMoreEvents()) {
-                            _pollingExecutorService.execute(this);
-                        } else {
-                            _pollingExecutorService.schedule(this, LONG_POLL_RETRY_TIME.toMillis(), TimeUnit.MILLISECONDS);
-                        }
+                        // Nothing to output, so any wakeup before this poll didn't lead to a response.  This happens
+                        // when the events were claimed by another poller first.
+                        _wakeupTime.compareAndSet(wakeupTime, 0);
+
+                        // Schedule the job to check again.  If the result had more events then poll again immediately,
+                        // otherwise wait a few seconds or until new events arrive.
+                        scheduleNextPoll(!result.hasMoreEvents());
                         rescheduled = true;
                     }
                 }
             } finally {
                 // Stop the timer if we didn't reschedule the job (either because it completed or an exception was thrown)
                 if (!rescheduled) {
+                    _eventArrivalNotifier.removeListener(_subscription, _wakeupListener);
                     _timerContext.stop();
                     synchronized (_asyncContext) {
                         _asyncContext.complete();
@@ -179,6 +211,65 @@ public class DatabusResourcePoller {
             }
         }
 
+        /**
+         * Registers for event arrival notifications and schedules the first poll after the initial synchronous poll.
+         */
+        void start() {
+            _eventArrivalNotifier.addListener(_subscription, _wakeupListener);
+            try {
+                scheduleNextPoll(true);
+            } catch (RuntimeException e) {
+                _eventArrivalNotifier.removeListener(_subscription, _wakeupListener);
+                throw e;
+            }
+        }
+
+        /**
+         * Runs the next poll immediately, or after the retry time if {@code delay} is true.  A delayed poll is run
+         * early if new events arrive for the subscription, including any which arrived during the previous poll.
+         */
+        private void scheduleNextPoll(boolean delay) {
+            if (!delay || _wakeupRequested) {
+                _expectedRunTime = System.currentTimeMillis();
+                _pollingExecutorService.execute(this);
+                return;
+            }
+
+            _expectedRunTime = System.currentTimeMillis() + LONG_POLL_RETRY_TIME.toMillis();
+            _pollPending.set(true);
+            _scheduledPoll = _pollingExecutorService.schedule(this::runIfPending, LONG_POLL_RETRY_TIME.toMillis(), TimeUnit.MILLISECONDS);
+            // Close the race with a wakeup which arrived before the poll was pending
+            if (_wakeupRequested) {
+                pollEarly();
+            }
+        }
+
+        private void runIfPending() {
+            if (_pollPending.compareAndSet(true, false)) {
+                run();
+            }
+        }
+
+        private void wakeUp() {
+            _wakeupTime.compareAndSet(0, System.nanoTime());
+            _wakeupRequested = true;
+            pollEarly();
+        }
+
+        private void pollEarly() {
+            // Only one of the scheduled poll and a wakeup can claim the pending poll, so the poll never runs
+            // concurrently with itself.
+            if (_pollPending.compareAndSet(true, false)) {
+                ScheduledFuture<?> scheduledPoll = _scheduledPoll;
+                if (scheduledPoll != null) {
+                    scheduledPoll.cancel(false);
+                }
+                _wakeupMeter.mark();
+                _expectedRunTime = System.currentTimeMillis();
+                _pollingExecutorService.execute(this);
+            }
+        }
+
         public void cancelPolling() {
             _pollingActive = false;
         }
@@ -329,8 +420,9 @@ public class DatabusResourcePoller {
             // which completely nullifies the entire point of using an async implementation
             // - Kick off two recurring jobs, one to poll for events and another to keep the connection to the client alive.
             // Note that we start the keep-alive immediately since we've already taken time above to run an initial poll()
-            // request; likewise, we delay before we run another poll() so that we don't run two in immediate succession.
-            _pollingExecutorService.schedule(pollingRunnable, LONG_POLL_RETRY_TIME.toMillis(), TimeUnit.MILLISECONDS);
+            // request; likewise, we delay before we run another poll() so that we don't run two in immediate succession,
+            // unless new events arrive in the meantime.
+            pollingRunnable.start();
             _keepAliveExecutorService.schedule(keepAliveRunnable, 0, TimeUnit.MILLISECONDS);
             jobsScheduled = true;
 
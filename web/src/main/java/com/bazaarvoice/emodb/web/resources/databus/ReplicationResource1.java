@@ -1,7 +1,9 @@
 package com.bazaarvoice.emodb.web.resources.databus;
 
+import com.bazaarvoice.emodb.databus.repl.ReplicationBatchCodec;
 import com.bazaarvoice.emodb.databus.repl.ReplicationEvent;
 import com.bazaarvoice.emodb.databus.repl.ReplicationSource;
+import com.bazaarvoice.emodb.web.jersey.params.SecondsParam;
 import com.bazaarvoice.emodb.web.resources.SuccessResponse;
 import com.codahale.metrics.annotation.Timed;
 import io.dropwizard.jersey.params.IntParam;
@@ -38,6 +40,17 @@ public class ReplicationResource1 {
         return _replicationSource.get(channel, limit.get());
     }
 
+    @GET
+    @Path("{channel}/batch")
+    @Produces(ReplicationBatchCodec.MEDIA_TYPE)
+    @RequiresPermissions("system|replicate_databus")
+    @Timed(name = "bv.emodb.databus.ReplicationResource1.poll", absolute = true)
+    public byte[] poll(@PathParam("channel") String channel,
+                       @QueryParam("ttl") @DefaultValue("30") SecondsParam claimTtl,
+                       @QueryParam("limit") @DefaultValue("100") IntParam limit) {
+        return ReplicationBatchCodec.encode(_replicationSource.poll(channel, claimTtl.get(), limit.get()));
+    }
+
     @POST
     @Path("{channel}/ack")
     @Consumes(MediaType.APPLICATION_JSON)
@@ -41,11 +41,10 @@ import com.bazaarvoice.emodb.web.throttling.ThrottleConcurrentRequests;
 import com.codahale.metrics.annotation.Timed;
 import com.google.common.base.Function;
 import com.google.common.base.Optional;
-import com.google.common.base.Predicate;
 import com.google.common.base.Strings;
+import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Iterables;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.common.collect.PeekingIterator;
@@ -93,6 +92,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.function.Consumer;
 import java.util.regex.Pattern;
 
 import static com.google.common.base.Preconditions.checkArgument;
@@ -110,6 +110,11 @@ public class DataStoreResource1 {
      */
     private static final Pattern UUID_LIKE_PATTERN = Pattern.compile("[0-9a-fA-F]+(-[0-9a-fA-F]+){4}");
 
+    /**
+     * Maximum number of streamed updates charged against the update rate limits at once.
+     */
+    private static final int UPDATE_THROTTLE_BATCH_SIZE = 100;
+
     private final DataStore _dataStore;
     private final DataStoreAsync _dataStoreAsync;
     private final CompactionControlSource _compactionControlSource;
@@ -703,13 +708,14 @@ public class DataStoreResource1 {
         UUID changeId = (changeIdParam != null) ? changeIdParam.get() : TimeUUIDs.newUUID();  // optional, defaults to new uuid
 
         // Perform the update
-        Iterable<Update> updates = asSubjectSafeUpdateIterable(Collections.singletonList(new Update(table, key,
-                changeId, delta, audit, consistency.get())).iterator(), subject, facade);
-        if (facade) {
-            _dataStore.updateAllForFacade(updates, tags);
-        } else {
-            _dataStore.updateAll(updates, tags);
-        }
+        subjectSafeUpdateAll(Collections.singletonList(new Update(table, key, changeId, delta, audit,
+                consistency.get())).iterator(), subject, facade, updates -> {
+            if (facade) {
+                _dataStore.updateAllForFacade(updates, tags);
+            } else {
+                _dataStore.updateAll(updates, tags);
+            }
+        });
 
         SuccessResponse response = SuccessResponse.instance();
         // In general, callers shouldn't rely on the change id being returned to do anything.
@@ -747,8 +753,8 @@ public class DataStoreResource1 {
                                      @QueryParam ("tag") List<String> tags,
                                      @Authenticated Subject subject) {
         Set<String> tagsSet = (tags == null) ? ImmutableSet.<String>of() : Sets.newHashSet(tags);
-        Iterable<Update> updates = asSubjectSafeUpdateIterable(new JsonStreamingArrayParser<>(in, Update.class), subject, false);
-        _dataStore.updateAll(updates, tagsSet);
+        subjectSafeUpdateAll(new JsonStreamingArrayParser<>(in, Update.class), subject, false,
+                updates -> _dataStore.updateAll(updates, tagsSet));
         return SuccessResponse.instance();
     }
 
@@ -768,8 +774,8 @@ public class DataStoreResource1 {
     public SuccessResponse updateAllForFacade(InputStream in, @QueryParam ("tag") List<String> tags,
                                               @Authenticated Subject subject) {
         Set<String> tagsSet = (tags == null) ? ImmutableSet.<String>of() : Sets.newHashSet(tags);
-        Iterable<Update> updates = asSubjectSafeUpdateIterable(new JsonStreamingArrayParser<>(in, Update.class), subject, true);
-        _dataStore.updateAllForFacade(updates, tagsSet);
+        subjectSafeUpdateAll(new JsonStreamingArrayParser<>(in, Update.class), subject, true,
+                updates -> _dataStore.updateAllForFacade(updates, tagsSet));
         return SuccessResponse.instance();
     }
 
@@ -848,47 +854,85 @@ public class DataStoreResource1 {
         });
 
         if (facade != null && facade.get()) {
-            _dataStore.updateAllForFacade(asSubjectSafeUpdateIterable(updates, subject, true));
+            subjectSafeUpdateAll(updates, subject, true, _dataStore::updateAllForFacade);
         } else {
             // Parse and iterate through the deltas such that we never hold all the deltas in memory at once.
-            _dataStore.updateAll(asSubjectSafeUpdateIterable(updates, subject, false));
+            subjectSafeUpdateAll(updates, subject, false, _dataStore::updateAll);
         }
 
         return SuccessResponse.instance();
     }
 
     /**
-     * Takes an update stream from a subject and performs the following actions on it:
+     * Takes an update stream from a subject, performs the following actions on it, and passes it to {@code updateAll}:
      * 1. Checks that the subject has permission to update the record being updated
      * 2. Applies any active rate limiting for updates by the subject
+     *
+     * Rate limits are charged for batches of updates rather than for each update.  Since the length of the stream
+     * isn't known in advance the batches double in size up to {@link #UPDATE_THROTTLE_BATCH_SIZE}, so a single update
+     * is charged exactly.  Once {@code updateAll} returns or throws any updates charged for but not read from the
+     * stream are refunded.
      */
-    private Iterable<Update> asSubjectSafeUpdateIterable(Iterator<Update> updates, final Subject subject, final boolean isFacade) {
-        return Iterables.filter(
-                OneTimeIterable.wrap(updates),
-                new Predicate<Update>() {
-                    @Override
-                    public boolean apply(Update update) {
-                        NamedResource resource = new NamedResource(update.getTable());
-                        boolean hasPermission;
-                        if (isFacade) {
-                            hasPermission = subject.hasPermission(Permissions.updateFacade(resource));
-                        } else {
-                            hasPermission = subject.hasPermission(Permissions.updateSorTable(resource));
-                        }
-
-                        if (!hasPermission) {
-                            throw new UnauthorizedException("not authorized to update table " + update.getTable());
-                        }
-
-                        // Facades are a unique case used internally for shoveling data across data centers, so don't rate
-                        // limit facade updates.
-                        if (!isFacade) {
-                            _updateThrottle.beforeUpdate(subject.getId());
-                        }
-
-                        return true;
-                    }
-                });
+    private void subjectSafeUpdateAll(Iterator<Update> updates, Subject subject, boolean isFacade,
+                                      Consumer<Iterable<Update>> updateAll) {
+        SubjectSafeUpdateIterator iterator = new SubjectSafeUpdateIterator(updates, subject, isFacade);
+        try {
+            updateAll.accept(OneTimeIterable.wrap(iterator));
+        } finally {
+            // Also refund if the stream couldn't be parsed or an update was rejected part way through the stream
+            iterator.refundUnreadUpdates();
+        }
+    }
+
+    private class SubjectSafeUpdateIterator extends AbstractIterator<Update> {
+        private final Iterator<Update> _source;
+        private final Subject _subject;
+        private final boolean _isFacade;
+        private int _updates;
+        private int _updatesCharged;
+
+        SubjectSafeUpdateIterator(Iterator<Update> source, Subject subject, boolean isFacade) {
+            _source = source;
+            _subject = subject;
+            _isFacade = isFacade;
+        }
+
+        @Override
+        protected Update computeNext() {
+            if (!_source.hasNext()) {
+                return endOfData();
+            }
+
+            Update update = _source.next();
+            NamedResource resource = new NamedResource(update.getTable());
+            boolean hasPermission;
+            if (_isFacade) {
+                hasPermission = _subject.hasPermission(Permissions.updateFacade(resource));
+            } else {
+                hasPermission = _subject.hasPermission(Permissions.updateSorTable(resource));
+            }
+
+            if (!hasPermission) {
+                throw new UnauthorizedException("not authorized to update table " + update.getTable());
+            }
+
+            // Facades are a unique case used internally for shoveling data across data centers, so don't rate
+            // limit facade updates.
+            if (!_isFacade && ++_updates > _updatesCharged) {
+                int batchSize = Math.max(1, Math.min(_updatesCharged, UPDATE_THROTTLE_BATCH_SIZE));
+                _updateThrottle.beforeUpdates(_subject.getId(), batchSize);
+                _updatesCharged += batchSize;
+            }
+
+            return update;
+        }
+
+        void refundUnreadUpdates() {
+            if (_updatesCharged > _updates) {
+                _updateThrottle.refundUpdates(_subject.getId(), _updatesCharged - _updates);
+                _updatesCharged = _updates;
+            }
+        }
     }
 
     /**
@@ -1,5 +1,6 @@
 package com.bazaarvoice.emodb.web.scanner;
 
+import com.bazaarvoice.emodb.web.scanner.writer.Compression;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
@@ -10,7 +11,9 @@ import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSortedSet;
 import com.google.common.collect.Sets;
 
+import javax.annotation.Nullable;
 import java.time.Duration;
+import java.time.Instant;
 import java.util.Collection;
 import java.util.List;
 import java.util.Set;
@@ -40,6 +43,10 @@ public class ScanOptions {
     private Duration _maxRangeScanTime = DEFAULT_MAX_RANGE_SCAN_TIME;
     // Allow compaction of records during the scan.  Potentially increases the total scan time.  Default is false
     private boolean _compactionEnabled = false;
+    // Compression used for the files written to the destinations.  Default is GZIP
+    private Compression _compression = Compression.GZIP;
+    // If set only documents updated at or after this time are uploaded, including deleted documents as tombstones
+    private Instant _incrementalSince;
 
     public ScanOptions(String placement) {
         this(ImmutableSortedSet.of(placement));
@@ -57,7 +64,9 @@ public class ScanOptions {
                         @JsonProperty ("maxConcurrentSubRangeScans") Integer maxConcurrentSubRangeScans,
                         @JsonProperty ("rangeScanSplitSize") Integer rangeScanSplitSize,
                         @JsonProperty ("maxRangeScanTime") Long maxRangeScanTime,
-                        @JsonProperty ("compactionEnabled") Boolean compactionEnabled) {
+                        @JsonProperty ("compactionEnabled") Boolean compactionEnabled,
+                        @JsonProperty ("compression") Compression compression,
+                        @JsonProperty ("incrementalSince") Long incrementalSince) {
         this(placements);
         if (destinations != null) {
             addDestinations(destinations);
@@ -77,6 +86,12 @@ public class ScanOptions {
         if (compactionEnabled != null) {
             _compactionEnabled = compactionEnabled;
         }
+        if (compression != null) {
+            _compression = compression;
+        }
+        if (incrementalSince != null) {
+            _incrementalSince = Instant.ofEpochMilli(incrementalSince);
+        }
     }
 
     @JsonSerialize
@@ -155,6 +170,45 @@ public class ScanOptions {
         return this;
     }
 
+    public Compression getCompression() {
+        return _compression;
+    }
+
+    public ScanOptions setCompression(Compression compression) {
+        _compression = checkNotNull(compression, "compression");
+        return this;
+    }
+
+    @JsonProperty ("incrementalSince")
+    @Nullable
+    public Long getIncrementalSinceMs() {
+        return _incrementalSince != null ? _incrementalSince.toEpochMilli() : null;
+    }
+
+    /**
+     * Returns the time since which documents are uploaded for an incremental Stash, or null for a full Stash.
+     */
+    @JsonIgnore
+    @Nullable
+    public Instant getIncrementalSince() {
+        return _incrementalSince;
+    }
+
+    /**
+     * Makes this an incremental Stash which only uploads documents updated at or after the provided time, typically
+     * the start time of the base Stash it will be overlaid on.  Deleted documents are uploaded as tombstones so readers
+     * can remove them from the base.
+     */
+    public ScanOptions setIncrementalSince(@Nullable Instant incrementalSince) {
+        _incrementalSince = incrementalSince;
+        return this;
+    }
+
+    @JsonIgnore
+    public boolean isIncremental() {
+        return _incrementalSince != null;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -169,6 +223,8 @@ public class ScanOptions {
         return Objects.equal(_placements, that.getPlacements()) &&
                 _scanByAZ == that._scanByAZ &&
                 _compactionEnabled == that._compactionEnabled &&
+                _compression == that._compression &&
+                Objects.equal(_incrementalSince, that._incrementalSince) &&
                 _maxConcurrentSubRangeScans == that._maxConcurrentSubRangeScans &&
                 Objects.equal(_destinations, that.getDestinations());
     }
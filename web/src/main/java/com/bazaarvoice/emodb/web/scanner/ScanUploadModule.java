@@ -65,6 +65,7 @@ import com.bazaarvoice.emodb.web.scanner.writer.S3CredentialsProvider;
 import com.bazaarvoice.emodb.web.scanner.writer.S3ScanWriter;
 import com.bazaarvoice.emodb.web.scanner.writer.ScanWriterFactory;
 import com.bazaarvoice.emodb.web.scanner.writer.ScanWriterGenerator;
+import com.bazaarvoice.emodb.web.scanner.writer.ZstdDictionaryTrainer;
 import com.bazaarvoice.ostrich.discovery.zookeeper.ZooKeeperHostDiscovery;
 import com.bazaarvoice.ostrich.dropwizard.pool.ManagedServicePoolProxy;
 import com.bazaarvoice.ostrich.pool.ServicePoolBuilder;
@@ -246,6 +247,14 @@ public class ScanUploadModule extends PrivateModule {
                 .threads(_config.getUploadThreadCount()).build();
     }
 
+    @Provides
+    @Singleton
+    protected ZstdDictionaryTrainer provideZstdDictionaryTrainer(Environment environment) {
+        // Training samples each table in the previous Stash, so a couple of threads keep it in the background
+        return new ZstdDictionaryTrainer(environment.lifecycle().executorService("ZstdDictionaryTrainer-%d")
+                .minThreads(2).maxThreads(2).build());
+    }
+
     @Provides
     @Singleton
     protected List<ScheduledDailyScanUpload> provideScheduledScanUploads(DataStore dataStore) {
@@ -292,7 +301,8 @@ public class ScanUploadModule extends PrivateModule {
                     scheduledScanConfig.getScanByAZ().get(),
                     scheduledScanConfig.isRequestRequired(),
                     scheduledScanConfig.getRangeScanSplitSize(),
-                    scheduledScanConfig.getMaxRangeScanTime()));
+                    scheduledScanConfig.getMaxRangeScanTime(),
+                    scheduledScanConfig.getCompression()));
         }
 
         return scheduledScanUploads.build();
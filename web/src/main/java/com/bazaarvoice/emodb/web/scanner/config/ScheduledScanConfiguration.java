@@ -1,5 +1,6 @@
 package com.bazaarvoice.emodb.web.scanner.config;
 
+import com.bazaarvoice.emodb.web.scanner.writer.Compression;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
@@ -76,6 +77,12 @@ public class ScheduledScanConfiguration {
     @JsonProperty ("maxRangeScanTime")
     private Duration _maxRangeScanTime = Duration.ofMinutes(10);
 
+    // Compression used for the files written by the scan.  Default is GZIP
+    @Valid
+    @NotNull
+    @JsonProperty ("compression")
+    private Compression _compression = Compression.GZIP;
+
     public Optional<String> getDailyScanTime() {
         return _dailyScanTime;
     }
@@ -156,4 +163,13 @@ public class ScheduledScanConfiguration {
         _maxRangeScanTime = maxRangeScanTime;
         return this;
     }
+
+    public Compression getCompression() {
+        return _compression;
+    }
+
+    public ScheduledScanConfiguration setCompression(Compression compression) {
+        _compression = compression;
+        return this;
+    }
 }
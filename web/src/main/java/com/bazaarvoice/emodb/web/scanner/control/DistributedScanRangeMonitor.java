@@ -340,6 +340,15 @@ public class DistributedScanRangeMonitor implements Managed {
             result = RangeScanUploaderResult.failure();
         }
 
+        if (result.getStageStatistics() != null) {
+            try {
+                _scanStatusDAO.setScanRangeTaskStageStatistics(scanId, taskId, result.getStageStatistics());
+            } catch (Throwable t) {
+                // The statistics are informational only, so don't let this fail the task
+                _log.warn("Failed to record scan range stage statistics: [id={}, task={}]", scanId, taskId, t);
+            }
+        }
+
         try {
             switch (result.getStatus()) {
                 case SUCCESS:
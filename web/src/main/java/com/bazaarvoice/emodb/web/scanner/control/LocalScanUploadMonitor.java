@@ -6,7 +6,7 @@ import com.bazaarvoice.emodb.sor.api.CompactionControlSource;
 import com.bazaarvoice.emodb.sor.core.DataTools;
 import com.bazaarvoice.emodb.sor.db.ScanRange;
 import com.bazaarvoice.emodb.sor.db.ScanRangeSplits;
-import com.bazaarvoice.emodb.web.scanner.ScanDestination;
+import com.bazaarvoice.emodb.web.scanner.ScanOptions;
 import com.bazaarvoice.emodb.web.scanner.notifications.ScanCountListener;
 import com.bazaarvoice.emodb.web.scanner.scanstatus.ScanRangeStatus;
 import com.bazaarvoice.emodb.web.scanner.scanstatus.ScanStatus;
@@ -413,14 +413,14 @@ public class LocalScanUploadMonitor extends AbstractService {
             return;
         }
 
-        _log.info("Scan complete: {}", id);
+        ScanOptions options = status.getOptions();
+        _log.info("Scan complete: {} (incremental={})", id, options.isIncremental());
 
         try {
             // Mark the scan is complete
-            Set<ScanDestination> destinations = status.getOptions().getDestinations();
             // Use -1 as the task ID since writing that the scan is complete is not associated with any scan range task.
-            ScanWriter scanWriter = _scanWriterGenerator.createScanWriter(-1, destinations);
-            scanWriter.writeScanComplete(id, _scanStatusDAO.getScanStatus(id).getStartTime());
+            ScanWriter scanWriter = _scanWriterGenerator.createScanWriter(-1, options.getDestinations(), options.getCompression());
+            scanWriter.writeScanComplete(id, _scanStatusDAO.getScanStatus(id).getStartTime(), options.getIncrementalSince());
 
             // Store the time the scan completed
             Date completeTime = new Date();
@@ -13,6 +13,9 @@ import com.bazaarvoice.emodb.sor.core.DataTools;
 import com.bazaarvoice.emodb.sor.db.MultiTableScanResult;
 import com.bazaarvoice.emodb.sor.db.ScanRange;
 import com.bazaarvoice.emodb.web.scanner.ScanOptions;
+import com.bazaarvoice.emodb.web.scanner.control.MaxConcurrentScans;
+import com.bazaarvoice.emodb.web.scanner.scanstatus.ScanRangeStageStatistics;
+import com.bazaarvoice.emodb.web.scanner.scanstatus.TableCompressionStatistics;
 import com.bazaarvoice.emodb.web.scanner.writer.ScanWriter;
 import com.bazaarvoice.emodb.web.scanner.writer.ScanWriterGenerator;
 import com.bazaarvoice.emodb.web.scanner.writer.ShardWriter;
@@ -33,11 +36,8 @@ import com.google.common.cache.LoadingCache;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
-import com.google.common.collect.Queues;
 import com.google.common.collect.Sets;
 import com.google.common.io.Closeables;
-import com.google.common.primitives.UnsignedInteger;
-import com.google.common.primitives.UnsignedLongs;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Inject;
 import io.dropwizard.lifecycle.Managed;
@@ -45,6 +45,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nullable;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.time.Duration;
@@ -56,21 +57,31 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 
 /**
  * Implementation of RangeScanUploader which runs the scan synchronously in process.
+ *
+ * Each range scan is processed as a pipeline.  The calling thread reads rows from Cassandra and groups them into
+ * batches.  Each batch is then resolved and serialized to JSON in memory, then compressed and written to shard files
+ * which the {@link ScanWriter} transfers asynchronously.  The resolve/serialize and write stages run as separate tasks
+ * on a pipeline thread pool shared by all range scans, so a batch waiting for an open shard doesn't hold up
+ * serialization of the batches behind it.  The number of batches in flight for each range is bounded, so when a
+ * downstream stage falls behind the read stage blocks until it catches up.
  */
 public class LocalRangeScanUploader implements RangeScanUploader, Managed {
 
@@ -100,32 +111,36 @@ public class LocalRangeScanUploader implements RangeScanUploader, Managed {
 
     private final int _threadCount;
     private final int _batchSize;
+    private final int _maxConcurrentRanges;
     private final DataTools _dataTools;
     private final ScanWriterGenerator _scanWriterGenerator;
     private final ObjectMapper _mapper;
-    private final Set<ExecutorService> _batchServices = Collections.synchronizedSet(Sets.<ExecutorService>newIdentityHashSet());
     private final Duration _waitForAllTransfersCompleteCheckInterval;
     private final Duration _waitForAllTransfersCompleteTimeout;
     private ScheduledExecutorService _timeoutService;
+    private ExecutorService _pipelineService;
     private volatile boolean _shutdown = true;
 
     private final CompactionControlSource _compactionControlSource;
 
     @Inject
     public LocalRangeScanUploader(DataTools dataTools, ScanWriterGenerator scanWriterGenerator, @DelegateCompactionControl CompactionControlSource compactionControlSource,
-                                  LifeCycleRegistry lifecycle, MetricRegistry metricRegistry) {
+                                  LifeCycleRegistry lifecycle, MetricRegistry metricRegistry, @MaxConcurrentScans int maxConcurrentScans) {
         this(dataTools, scanWriterGenerator, compactionControlSource, lifecycle, metricRegistry, PIPELINE_THREAD_COUNT, PIPELINE_BATCH_SIZE,
-                WAIT_FOR_ALL_TRANSFERS_COMPLETE_CHECK_INTERVAL, WAIT_FOR_ALL_TRANSFERS_COMPLETE_TIMEOUT);
+                maxConcurrentScans, WAIT_FOR_ALL_TRANSFERS_COMPLETE_CHECK_INTERVAL, WAIT_FOR_ALL_TRANSFERS_COMPLETE_TIMEOUT);
     }
 
     @VisibleForTesting
     public LocalRangeScanUploader(DataTools dataTools, ScanWriterGenerator scanWriterGenerator, CompactionControlSource compactionControlSource, LifeCycleRegistry lifecycle,
-                                  final MetricRegistry metricRegistry, int threadCount, int batchSize, Duration waitForAllTransfersCompleteCheckInterval,
-                                  Duration waitForAllTransfersCompleteTimeout) {
+                                  final MetricRegistry metricRegistry, int threadCount, int batchSize, int maxConcurrentRanges,
+                                  Duration waitForAllTransfersCompleteCheckInterval, Duration waitForAllTransfersCompleteTimeout) {
+        checkArgument(threadCount > 0, "Thread count must be at least 1");
+        checkArgument(maxConcurrentRanges > 0, "Max concurrent ranges must be at least 1");
         _dataTools = dataTools;
         _scanWriterGenerator = scanWriterGenerator;
         _threadCount = threadCount;
         _batchSize = batchSize;
+        _maxConcurrentRanges = maxConcurrentRanges;
         _waitForAllTransfersCompleteCheckInterval = waitForAllTransfersCompleteCheckInterval;
         _waitForAllTransfersCompleteTimeout = waitForAllTransfersCompleteTimeout;
 
@@ -170,6 +185,9 @@ public class LocalRangeScanUploader implements RangeScanUploader, Managed {
     public void start()
             throws Exception {
         _timeoutService = Executors.newScheduledThreadPool(1, new ThreadFactoryBuilder().setNameFormat("range-scan-timeout-%d").build());
+        // Batches from all concurrent range scans are processed by a single shared pool
+        _pipelineService = Executors.newFixedThreadPool(_threadCount * _maxConcurrentRanges,
+                new ThreadFactoryBuilder().setNameFormat("ScanRangePipeline-%d").build());
         _shutdown = false;
     }
 
@@ -178,12 +196,7 @@ public class LocalRangeScanUploader implements RangeScanUploader, Managed {
             throws Exception {
         _shutdown = true;
         _timeoutService.shutdownNow();
-        synchronized (_batchServices) {
-            for (ExecutorService service : _batchServices) {
-                service.shutdownNow();
-            }
-            _batchServices.clear();
-        }
+        _pipelineService.shutdownNow();
     }
 
     @Override
@@ -194,9 +207,6 @@ public class LocalRangeScanUploader implements RangeScanUploader, Managed {
 
         final Counter shardCounter = _shardsUploaded.getUnchecked(placement);
         final Counter rawBytesUploadedCounter = _rawBytesUploaded.getUnchecked(placement);
-        final ExecutorService batchService = Executors.newFixedThreadPool(_threadCount,
-                new ThreadFactoryBuilder().setNameFormat("ScanRangeTask-" + taskId + "-Batch-%d").build());
-        _batchServices.add(batchService);
 
         _log.info("Scanning placement {}: {}", placement, scanRange);
         final Instant startTime = Instant.now();
@@ -208,57 +218,17 @@ public class LocalRangeScanUploader implements RangeScanUploader, Managed {
 
         RangeScanHungCheck rangeScanHungCheck = null;
 
+        // Allow enough batches in flight for each stage to work on a batch while the next ones are queued behind it
         final BatchContext context = new BatchContext(
-                _batchSize, placement, scanRange, shardCounter, rawBytesUploadedCounter);
+                _batchSize, _threadCount * 2, placement, scanRange, options.getIncrementalSince(), shardCounter, rawBytesUploadedCounter);
 
         _activeRangeScans.inc();
-        try (ScanWriter scanWriter = _scanWriterGenerator.createScanWriter(taskId, options.getDestinations())) {
+        try (ScanWriter scanWriter = _scanWriterGenerator.createScanWriter(taskId, options.getDestinations(), options.getCompression())) {
             context.setScanWriter(scanWriter);
-            final ArrayBlockingQueue<Batch> queue = Queues.newArrayBlockingQueue(_threadCount);
-            final Set<Thread> batchThreads = Sets.newConcurrentHashSet();
 
             // Create a callback to stop processing if this thread appears hung
-            rangeScanHungCheck = new RangeScanHungCheck(taskId, Thread.currentThread(), batchThreads);
+            rangeScanHungCheck = new RangeScanHungCheck(taskId, Thread.currentThread(), context.getBatchThreads());
             _timeoutService.schedule(rangeScanHungCheck, options.getMaxRangeScanTime().plus(Duration.ofMinutes(5)).toMillis(), TimeUnit.MILLISECONDS);
-            
-            // Start threads for concurrently processing batch results
-            for (int t = 0; t < _threadCount; t++) {
-                batchService.submit(new Runnable() {
-                    @Override
-                    public void run() {
-                        batchThreads.add(Thread.currentThread());
-                        try {
-                            Batch batch;
-                            while (context.continueProcessing()) {
-                                try {
-                                    batch = queue.poll(1, TimeUnit.SECONDS);
-                                    if (batch != null) {
-                                        _activeBatches.inc();
-                                        try {
-                                            processBatch(taskId, batch);
-                                        } finally {
-                                            _activeBatches.dec();
-                                        }
-                                    }
-                                } catch (Throwable t) {
-                                    if (context.continueProcessing()) {
-                                        _log.error("Unexpected error in scan batch processing thread", t);
-                                        context.registerException(t);
-                                    }
-                                }
-                            }
-
-                            // Release any batches that may have been left over if we terminated early due to
-                            // shutdown or some error.
-                            while ((batch = queue.poll()) != null) {
-                                context.closeBatch(batch, null);
-                            }
-                        } finally {
-                            batchThreads.remove(Thread.currentThread());
-                        }
-                    }
-                });
-            }
 
             int partCountForFirstShard = 1;
             Batch batch = new Batch(context, partCountForFirstShard);
@@ -277,8 +247,12 @@ public class LocalRangeScanUploader implements RangeScanUploader, Managed {
             // Enforce a maximum number of results based on the scan options
             Iterator<MultiTableScanResult> results = Iterators.limit(allResults, getResplitRowCount(options));
 
+            PipelineStatistics statistics = context.getStatistics();
+            long readStartTime = System.nanoTime();
             while (results.hasNext() && !timeout.isTimedOut()) {
                 MultiTableScanResult result = results.next();
+                statistics.addRead(System.nanoTime() - readStartTime);
+
                 if (batch.isFull()) {
                     // If there was an asynchronous exception since the last batch was created propagate it now
                     context.propagateExceptionIfPresent();
@@ -304,16 +278,17 @@ public class LocalRangeScanUploader implements RangeScanUploader, Managed {
                         partCountForFirstShard = 1;
                     }
 
-                    submitResultBatch(context, queue, batch, continuedInNextBatch);
+                    submitResultBatch(taskId, context, batch, continuedInNextBatch);
 
                     batch = new Batch(context, partCountForFirstShard);
                 }
 
                 batch.add(result);
+                readStartTime = System.nanoTime();
             }
 
             // If the loop exited with a final batch then submit it now
-            submitResultBatch(context, queue, batch, false);
+            submitResultBatch(taskId, context, batch, false);
 
             // Signal that all batches for this task have been submitted
             context.signalAllBatchesSubmitted();
@@ -322,7 +297,11 @@ public class LocalRangeScanUploader implements RangeScanUploader, Managed {
             context.waitForAllBatchesComplete();
 
             // If there are any asynchronous transfers still taking place wait for them to complete before returning
+            long transferWaitStartTime = System.nanoTime();
             waitForAllTransfersComplete(taskId, scanRange, scanWriter);
+            statistics.addTransferWait(System.nanoTime() - transferWaitStartTime);
+
+            ScanRangeStageStatistics stageStatistics = statistics.toStageStatistics(scanWriter.getTableCompressionStatistics());
 
             // If the results were non-empty but left additional rows then that means we received significantly more
             // rows than expected or took longer to read all rows than permitted.  Return that the remaining rows need
@@ -332,13 +311,13 @@ public class LocalRangeScanUploader implements RangeScanUploader, Managed {
                         placement, scanRange);
                 // Scan ranges are exclusive on the start key so resend the last key read to start on the next row.
                 return RangeScanUploaderResult.resplit(
-                        ScanRange.create(batch.getLastResult().getRowKey(), scanRange.getTo()));
+                        ScanRange.create(batch.getLastResult().getRowKey(), scanRange.getTo()), stageStatistics);
             }
 
-            _log.info("Scanning placement complete for task id={}, {}: {} ({})", taskId, placement, scanRange,
-                    Duration.between(startTime, Instant.now()));
+            _log.info("Scanning placement complete for task id={}, {}: {} ({}, {})", taskId, placement, scanRange,
+                    Duration.between(startTime, Instant.now()), stageStatistics);
 
-            return RangeScanUploaderResult.success();
+            return RangeScanUploaderResult.success(stageStatistics);
         } catch (Throwable t) {
             if (Thread.interrupted()) {
                 _log.error("Scanning placement failed and interrupted for task id={}, {}: {}", taskId, placement, scanRange, t);
@@ -355,14 +334,12 @@ public class LocalRangeScanUploader implements RangeScanUploader, Managed {
             }
             timeoutFuture.cancel(false);
 
-            if (!batchService.isShutdown()) {
-                batchService.shutdownNow();
-            }
-            _batchServices.remove(batchService);
+            // Stop any batches for this range still in the pipeline
+            context.stopProcessing();
         }
     }
 
-    private void submitResultBatch(BatchContext context, ArrayBlockingQueue<Batch> queue, Batch batch, boolean continuedInNextBatch)
+    private void submitResultBatch(int taskId, BatchContext context, Batch batch, boolean continuedInNextBatch)
             throws IOException, InterruptedException {
         if (!batch.isEmpty()) {
             // Mark this batch as open
@@ -371,16 +348,19 @@ public class LocalRangeScanUploader implements RangeScanUploader, Managed {
             try {
                 batch.setContinuedInNextBatch(continuedInNextBatch);
 
-                // Attempt to submit the batch to the result queue without blocking
-                if (!queue.offer(batch)) {
-                    // The queue was full.  Increment the blocked counter and synchronously wait for queue availability
+                // Attempt to reserve room for the batch in the pipeline without blocking
+                if (!context.tryAcquireBatchPermit(batch)) {
+                    // Too many batches are in flight.  Increment the blocked counter and synchronously wait for
+                    // the pipeline to catch up.
                     _blockedRangeScans.inc();
+                    long blockedStartTime = System.nanoTime();
                     try {
-                        while (!queue.offer(batch, 5, TimeUnit.SECONDS)) {
+                        while (!context.tryAcquireBatchPermit(batch, 5, TimeUnit.SECONDS)) {
                             context.propagateExceptionIfPresent();
                         }
                     } finally {
                         _blockedRangeScans.dec();
+                        context.getStatistics().addReadBlocked(System.nanoTime() - blockedStartTime);
                     }
                 }
                 _batchesSubmitted.inc();
@@ -390,6 +370,38 @@ public class LocalRangeScanUploader implements RangeScanUploader, Managed {
                 context.closeBatch(batch, e);
                 throw e;
             }
+
+            submitStage(batch, () -> serializeBatch(taskId, batch));
+        }
+    }
+
+    /**
+     * Runs the next stage for a batch on the shared pipeline threads.  If the range scan has stopped due to an
+     * exception or shutdown the batch is closed without running the stage.
+     */
+    private void submitStage(final Batch batch, final Runnable stage) {
+        final BatchContext context = batch.getContext();
+        try {
+            _pipelineService.submit(() -> {
+                if (!context.continueProcessing()) {
+                    context.closeBatch(batch, null);
+                    return;
+                }
+                context.batchThreadStarted();
+                _activeBatches.inc();
+                try {
+                    stage.run();
+                } catch (Throwable t) {
+                    _log.error("Unexpected error in scan batch processing thread", t);
+                    context.closeBatch(batch, t);
+                } finally {
+                    _activeBatches.dec();
+                    context.batchThreadFinished();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // The pipeline has been shut down
+            context.closeBatch(batch, e);
         }
     }
 
@@ -457,18 +469,15 @@ public class LocalRangeScanUploader implements RangeScanUploader, Managed {
         }
     }
 
-    private void processBatch(int taskId, Batch batch) {
+    /**
+     * First pipeline stage for a batch:  resolves each row and serializes the resulting documents in memory, grouped
+     * by shard.  On success the serialized shards are passed to {@link #writeBatch(int, Batch, List)}.
+     */
+    private void serializeBatch(int taskId, Batch batch) {
         BatchContext context = batch.getContext();
-        ScanWriter scanWriter = context.getScanWriter();
-        Counter shardCounter = context.getShardCounter();
-
-        ShardWriter writer = null;
-        OutputStream out = null;
-        int prevShardId = UnsignedInteger.MAX_VALUE.intValue();
-        long prevTableUuid = UnsignedLongs.MAX_VALUE;
-        String placement = context.getPlacement();
-        int totalPartsForShard = batch.getPartCountForFirstShard();
-        Counter rawBytesUploaded = context.getRawBytesUploadedCounter();
+        PipelineStatistics statistics = context.getStatistics();
+        List<SerializedShard> shards = Lists.newArrayList();
+        SerializedShard shard = null;
         JsonGenerator generator = null;
 
         try {
@@ -479,37 +488,93 @@ public class LocalRangeScanUploader implements RangeScanUploader, Managed {
 
                 // NOTE:Compaction should always be disabled as the resolved record may not be the most current version of the document with the introduction of cutoffTimes in scanning the emo docs.
                 // and cannot be used for compaction without risking data loss.
+                long resolveStartTime = System.nanoTime();
                 Map<String, Object> content = _dataTools.toContent(result, ReadConsistency.STRONG, Boolean.FALSE);
+                long serializeStartTime = System.nanoTime();
+                statistics.addResolve(serializeStartTime - resolveStartTime);
 
-                int shardId = result.getShardId();
-                long tableUuid = result.getTableUuid();
-
-                // If we've switched shards then close this file and start a new one.
-                if (prevShardId != shardId || prevTableUuid != tableUuid) {
-                    prevShardId = shardId;
-                    prevTableUuid = tableUuid;
-
-                    if (writer != null) {
-                        closeAndTransfer(generator, out, writer, totalPartsForShard, shardCounter, true);
-                        totalPartsForShard = 1;
+                // If we've switched shards then start serializing a new one.
+                if (shard == null || shard.getShardId() != result.getShardId() || shard.getTableUuid() != result.getTableUuid()) {
+                    if (generator != null) {
+                        generator.close();
                     }
-
-                    writer = scanWriter.writeShardRows(result.getTable().getName(), placement, shardId, tableUuid);
-                    out = new MetricCounterOutputStream(writer.getOutputStream(), rawBytesUploaded);
-                    generator = createGenerator(out);
-
-                    _log.debug("Writing output file: {}", writer);
+                    shard = new SerializedShard(result.getTable().getName(), result.getShardId(), result.getTableUuid());
+                    shards.add(shard);
+                    generator = createGenerator(shard.getOutputStream());
                 }
 
-                if (!Intrinsic.isDeleted(content)) {  // Ignore deleted objects
-                    assert generator != null;
+                if (isIncluded(content, context.getIncrementalSince())) {
                     _mapper.writeValue(generator, content);
                     generator.writeRaw('\n');
                 }
+                statistics.addSerialize(System.nanoTime() - serializeStartTime);
             }
 
-            if (writer != null) {
-                closeAndTransfer(generator, out, writer, totalPartsForShard, shardCounter, !batch.isContinuedInNextBatch());
+            if (generator != null) {
+                generator.close();
+            }
+        } catch (Throwable t) {
+            _log.error("Uncaught exception serializing batch for task id={}, placement {}: {}",
+                    taskId, context.getPlacement(), context.getTaskRange(), t);
+            context.closeBatch(batch, t);
+            return;
+        } finally {
+            // The serialized shards are all later stages need, don't hold the raw results while they're written
+            batch.releaseResults();
+        }
+
+        submitStage(batch, () -> writeBatch(taskId, batch, shards));
+    }
+
+    /**
+     * A full Stash includes every document which isn't deleted.  An incremental Stash includes every document updated
+     * since the base Stash, including deleted documents which serve as tombstones for documents removed since then.
+     */
+    @VisibleForTesting
+    static boolean isIncluded(Map<String, Object> content, @Nullable Instant incrementalSince) {
+        if (incrementalSince == null) {
+            return !Intrinsic.isDeleted(content);
+        }
+        Date lastUpdateAt = Intrinsic.getLastUpdateAt(content);
+        return lastUpdateAt != null && !lastUpdateAt.toInstant().isBefore(incrementalSince);
+    }
+
+    /**
+     * Second pipeline stage for a batch:  compresses and writes each serialized shard to a shard file and starts its
+     * asynchronous transfer.
+     */
+    private void writeBatch(int taskId, Batch batch, List<SerializedShard> shards) {
+        BatchContext context = batch.getContext();
+        ScanWriter scanWriter = context.getScanWriter();
+        PipelineStatistics statistics = context.getStatistics();
+        String placement = context.getPlacement();
+
+        ShardWriter writer = null;
+        OutputStream out = null;
+
+        try {
+            for (int i = 0; i < shards.size() && context.continueProcessing(); i++) {
+                SerializedShard shard = shards.get(i);
+
+                // Only the first shard in the batch can be continued from prior batches, and only the last shard can
+                // be continued in the next batch.
+                int totalPartsForShard = i == 0 ? batch.getPartCountForFirstShard() : 1;
+                boolean isFinalPart = i < shards.size() - 1 || !batch.isContinuedInNextBatch();
+
+                // Opening the shard blocks if the scan writer has too many shards waiting to be transferred
+                long openStartTime = System.nanoTime();
+                writer = scanWriter.writeShardRows(shard.getTableName(), placement, shard.getShardId(), shard.getTableUuid());
+                long writeStartTime = System.nanoTime();
+                statistics.addTransferWait(writeStartTime - openStartTime);
+
+                _log.debug("Writing output file: {}", writer);
+
+                out = new MetricCounterOutputStream(writer.getOutputStream(), context.getRawBytesUploadedCounter());
+                shard.writeTo(out);
+                closeAndTransfer(out, writer, totalPartsForShard, context.getShardCounter(), isFinalPart);
+                writer = null;
+
+                statistics.addWrite(System.nanoTime() - writeStartTime, shard.size());
             }
 
             context.closeBatch(batch, null);
@@ -519,7 +584,6 @@ public class LocalRangeScanUploader implements RangeScanUploader, Managed {
             context.closeBatch(batch, t);
 
             try {
-                Closeables.close(generator, true);
                 Closeables.close(out, true);
             } catch (IOException e2) {
                 // Won't happen
@@ -531,10 +595,9 @@ public class LocalRangeScanUploader implements RangeScanUploader, Managed {
         }
     }
 
-    private void closeAndTransfer(JsonGenerator generator, OutputStream out, ShardWriter writer,
-                                  int partCount, Counter shardCounter, boolean isFinalPart)
+    private void closeAndTransfer(OutputStream out, ShardWriter writer, int partCount, Counter shardCounter,
+                                  boolean isFinalPart)
             throws IOException {
-        generator.close();
         out.close();
         if (isFinalPart) {
             shardCounter.inc();
@@ -560,9 +623,12 @@ public class LocalRangeScanUploader implements RangeScanUploader, Managed {
     private static class Batch {
         private final BatchContext _context;
         private final int _partCountForFirstShard;
-        private final List<MultiTableScanResult> _results;
+        private List<MultiTableScanResult> _results;
+        private MultiTableScanResult _firstResult;
+        private MultiTableScanResult _lastResult;
         private int _remaining;
         private boolean _continuedInNextBatch;
+        private boolean _holdsPermit;
 
         private Batch(BatchContext context, int partCountForFirstShard) {
             _context = context;
@@ -587,7 +653,19 @@ public class LocalRangeScanUploader implements RangeScanUploader, Managed {
             _continuedInNextBatch = continuedInNextBatch;
         }
 
+        private boolean holdsPermit() {
+            return _holdsPermit;
+        }
+
+        private void setHoldsPermit(boolean holdsPermit) {
+            _holdsPermit = holdsPermit;
+        }
+
         public void add(MultiTableScanResult result) {
+            if (_firstResult == null) {
+                _firstResult = result;
+            }
+            _lastResult = result;
             _results.add(result);
             _remaining -= 1;
         }
@@ -597,19 +675,118 @@ public class LocalRangeScanUploader implements RangeScanUploader, Managed {
         }
 
         public boolean isEmpty() {
-            return _results.isEmpty();
+            return _firstResult == null;
         }
 
         public List<MultiTableScanResult> getResults() {
+            checkState(_results != null, "Results already released");
             return _results;
         }
 
+        /**
+         * Releases all results other than the first and last once the batch has been serialized.
+         */
+        public void releaseResults() {
+            _results = null;
+        }
+
         public MultiTableScanResult getFirstResult() {
-            return _results.get(0);
+            return _firstResult;
         }
 
         public MultiTableScanResult getLastResult() {
-            return _results.get(_results.size() - 1);
+            return _lastResult;
+        }
+    }
+
+    /**
+     * Documents from a batch for a single shard which have been serialized but not yet written to a shard file.
+     */
+    private static class SerializedShard {
+        private final String _tableName;
+        private final int _shardId;
+        private final long _tableUuid;
+        private final ByteArrayOutputStream _out = new ByteArrayOutputStream();
+
+        private SerializedShard(String tableName, int shardId, long tableUuid) {
+            _tableName = tableName;
+            _shardId = shardId;
+            _tableUuid = tableUuid;
+        }
+
+        private String getTableName() {
+            return _tableName;
+        }
+
+        private int getShardId() {
+            return _shardId;
+        }
+
+        private long getTableUuid() {
+            return _tableUuid;
+        }
+
+        private OutputStream getOutputStream() {
+            return _out;
+        }
+
+        private int size() {
+            return _out.size();
+        }
+
+        private void writeTo(OutputStream out)
+                throws IOException {
+            _out.writeTo(out);
+        }
+    }
+
+    /**
+     * Accumulates the time spent in each pipeline stage for a single range scan.
+     */
+    private static class PipelineStatistics {
+        private final AtomicLong _rows = new AtomicLong();
+        private final AtomicLong _bytes = new AtomicLong();
+        private final AtomicLong _readNanos = new AtomicLong();
+        private final AtomicLong _readBlockedNanos = new AtomicLong();
+        private final AtomicLong _resolveNanos = new AtomicLong();
+        private final AtomicLong _serializeNanos = new AtomicLong();
+        private final AtomicLong _writeNanos = new AtomicLong();
+        private final AtomicLong _transferWaitNanos = new AtomicLong();
+
+        private void addRead(long nanos) {
+            _rows.incrementAndGet();
+            _readNanos.addAndGet(nanos);
+        }
+
+        private void addReadBlocked(long nanos) {
+            _readBlockedNanos.addAndGet(nanos);
+        }
+
+        private void addResolve(long nanos) {
+            _resolveNanos.addAndGet(nanos);
+        }
+
+        private void addSerialize(long nanos) {
+            _serializeNanos.addAndGet(nanos);
+        }
+
+        private void addWrite(long nanos, long bytes) {
+            _writeNanos.addAndGet(nanos);
+            _bytes.addAndGet(bytes);
+        }
+
+        private void addTransferWait(long nanos) {
+            _transferWaitNanos.addAndGet(nanos);
+        }
+
+        private ScanRangeStageStatistics toStageStatistics(Map<String, TableCompressionStatistics> tableCompression) {
+            return new ScanRangeStageStatistics(_rows.get(), _bytes.get(), toMillis(_readNanos), toMillis(_readBlockedNanos),
+                    toMillis(_resolveNanos), toMillis(_serializeNanos), toMillis(_writeNanos), toMillis(_transferWaitNanos),
+                    tableCompression);
+        }
+
+        private static long toMillis(AtomicLong nanos) {
+            return TimeUnit.NANOSECONDS.toMillis(nanos.get());
         }
     }
 
@@ -622,22 +799,29 @@ public class LocalRangeScanUploader implements RangeScanUploader, Managed {
         private final int _batchSize;
         private final String _placement;
         private final ScanRange _taskRange;
+        private final Instant _incrementalSince;
         private final Counter _shardCounter;
         private final Counter _rawBytesUploadedCounter;
 
         private ScanWriter _scanWriter;
         private final Set<Batch> _openBatches = Sets.newHashSet();
+        private final Semaphore _batchPermits;
+        private final PipelineStatistics _statistics = new PipelineStatistics();
+        // Pipeline threads currently processing a batch for this range; guarded by synchronizing on the set
+        private final Set<Thread> _batchThreads = Sets.newHashSet();
         private volatile boolean _allBatchesSubmitted;
         private final ReentrantLock _lock = new ReentrantLock();
         private final Condition _allBatchesCompleteOrExceptionExists = _lock.newCondition();
         private volatile Throwable _throwable = null;
         private volatile boolean _stopProcessing = false;
 
-        private BatchContext(int batchSize, String placement, ScanRange taskRange,
-                             Counter shardCounter, Counter rawBytesUploadedCounter) {
+        private BatchContext(int batchSize, int maxBatchesInFlight, String placement, ScanRange taskRange,
+                             @Nullable Instant incrementalSince, Counter shardCounter, Counter rawBytesUploadedCounter) {
             _batchSize = batchSize;
+            _batchPermits = new Semaphore(maxBatchesInFlight);
             _placement = placement;
             _taskRange = taskRange;
+            _incrementalSince = incrementalSince;
             _shardCounter = shardCounter;
             _rawBytesUploadedCounter = rawBytesUploadedCounter;
         }
@@ -662,6 +846,11 @@ public class LocalRangeScanUploader implements RangeScanUploader, Managed {
             return _taskRange;
         }
 
+        @Nullable
+        private Instant getIncrementalSince() {
+            return _incrementalSince;
+        }
+
         private Counter getShardCounter() {
             return _shardCounter;
         }
@@ -670,6 +859,46 @@ public class LocalRangeScanUploader implements RangeScanUploader, Managed {
             return _rawBytesUploadedCounter;
         }
 
+        private PipelineStatistics getStatistics() {
+            return _statistics;
+        }
+
+        private Set<Thread> getBatchThreads() {
+            return _batchThreads;
+        }
+
+        private void batchThreadStarted() {
+            synchronized (_batchThreads) {
+                _batchThreads.add(Thread.currentThread());
+            }
+        }
+
+        private void batchThreadFinished() {
+            synchronized (_batchThreads) {
+                _batchThreads.remove(Thread.currentThread());
+            }
+        }
+
+        /**
+         * Reserves room in the pipeline for the batch.  The reservation is released when the batch is closed.
+         */
+        public boolean tryAcquireBatchPermit(Batch batch) {
+            if (_batchPermits.tryAcquire()) {
+                batch.setHoldsPermit(true);
+                return true;
+            }
+            return false;
+        }
+
+        public boolean tryAcquireBatchPermit(Batch batch, long timeout, TimeUnit unit)
+                throws InterruptedException {
+            if (_batchPermits.tryAcquire(timeout, unit)) {
+                batch.setHoldsPermit(true);
+                return true;
+            }
+            return false;
+        }
+
         public void openBatch(Batch batch) {
             _lock.lock();
             try {
@@ -687,7 +916,9 @@ public class LocalRangeScanUploader implements RangeScanUploader, Managed {
                     _throwable = t;
                 }
 
-                _openBatches.remove(batch);
+                if (_openBatches.remove(batch) && batch.holdsPermit()) {
+                    _batchPermits.release();
+                }
 
                 // If there are now no open batches or there was an exception in this or any other batch then
                 // signal so now.
@@ -764,6 +995,18 @@ public class LocalRangeScanUploader implements RangeScanUploader, Managed {
             return !_shutdown && !_stopProcessing;
         }
 
+        /**
+         * Stops all batches for this range, interrupting any pipeline threads currently processing them.
+         */
+        public void stopProcessing() {
+            _stopProcessing = true;
+            synchronized (_batchThreads) {
+                for (Thread thread : _batchThreads) {
+                    thread.interrupt();
+                }
+            }
+        }
+
     }
 
     private static class RangeScanTimeout implements Runnable {
@@ -804,15 +1047,19 @@ public class LocalRangeScanUploader implements RangeScanUploader, Managed {
             if (!_taskComplete.get()) {
                 _hungRangeScans.mark();
                 _log.warn("Scan range appears hung: interrupting threads, stack traces to follow: id={}", _taskId);
-                for (Thread thread : Iterables.concat(Collections.singleton(_scanThread), _batchThreads)) {
-                    // Quick and dirty way to log the thread's stack trace -- put it in an Exception
-                    Exception threadException = new Exception("Stack trace for " + thread.getName());
-                    threadException.setStackTrace(thread.getStackTrace());
-                    _log.warn("Stack trace for hung task: id={}, thread={}", _taskId, thread.getName(), threadException);
-                    try {
-                        thread.interrupt();
-                    } catch (Exception e) {
-                        _log.warn("Failed to interrupt thread for hung task: id={}, thread={}", _taskId, thread.getName(), e);
+                // Batch threads are shared by all range scans, so hold the lock to only interrupt those still
+                // processing batches for this range
+                synchronized (_batchThreads) {
+                    for (Thread thread : Iterables.concat(Collections.singleton(_scanThread), _batchThreads)) {
+                        // Quick and dirty way to log the thread's stack trace -- put it in an Exception
+                        Exception threadException = new Exception("Stack trace for " + thread.getName());
+                        threadException.setStackTrace(thread.getStackTrace());
+                        _log.warn("Stack trace for hung task: id={}, thread={}", _taskId, thread.getName(), threadException);
+                        try {
+                            thread.interrupt();
+                        } catch (Exception e) {
+                            _log.warn("Failed to interrupt thread for hung task: id={}, thread={}", _taskId, thread.getName(), e);
+                        }
                     }
                 }
             }
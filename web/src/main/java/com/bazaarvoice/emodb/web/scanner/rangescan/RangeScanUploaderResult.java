@@ -1,6 +1,7 @@
 package com.bazaarvoice.emodb.web.scanner.rangescan;
 
 import com.bazaarvoice.emodb.sor.db.ScanRange;
+import com.bazaarvoice.emodb.web.scanner.scanstatus.ScanRangeStageStatistics;
 
 import javax.annotation.Nullable;
 
@@ -14,6 +15,7 @@ import javax.annotation.Nullable;
  *                   that needs to be resplit and rescheduled can be retrieved using {@link #getResplitRange()}
  * </ol>
  *
+ * Successful and partially successful results may also include the time spent in each stage of the range scan.
  */
 public class RangeScanUploaderResult {
 
@@ -30,6 +32,10 @@ public class RangeScanUploaderResult {
         return SUCCESS_INSTANCE;
     }
 
+    public static RangeScanUploaderResult success(ScanRangeStageStatistics stageStatistics) {
+        return new RangeScanUploaderResult(Status.SUCCESS, null, stageStatistics);
+    }
+
     public static RangeScanUploaderResult failure() {
         return FAILURE_INSTANCE;
     }
@@ -38,12 +44,23 @@ public class RangeScanUploaderResult {
         return new RangeScanUploaderResult(Status.REPSPLIT, resplitRange);
     }
 
+    public static RangeScanUploaderResult resplit(ScanRange resplitRange, ScanRangeStageStatistics stageStatistics) {
+        return new RangeScanUploaderResult(Status.REPSPLIT, resplitRange, stageStatistics);
+    }
+
     private final Status _status;
     private final ScanRange _resplitRange;
+    private final ScanRangeStageStatistics _stageStatistics;
 
     public RangeScanUploaderResult(Status status, @Nullable ScanRange resplitRange) {
+        this(status, resplitRange, null);
+    }
+
+    public RangeScanUploaderResult(Status status, @Nullable ScanRange resplitRange,
+                                   @Nullable ScanRangeStageStatistics stageStatistics) {
         _status = status;
         _resplitRange = resplitRange;
+        _stageStatistics = stageStatistics;
     }
 
     public Status getStatus() {
@@ -55,6 +72,11 @@ public class RangeScanUploaderResult {
         return _resplitRange;
     }
 
+    @Nullable
+    public ScanRangeStageStatistics getStageStatistics() {
+        return _stageStatistics;
+    }
+
     @Override
     public String toString() {
         return _status.toString();
@@ -10,6 +10,7 @@ import com.bazaarvoice.emodb.web.scanner.ScanUploader;
 import com.bazaarvoice.emodb.web.scanner.scanstatus.ScanStatus;
 import com.bazaarvoice.emodb.web.scanner.scanstatus.StashRequest;
 import com.bazaarvoice.emodb.web.scanner.scheduling.StashRequestManager;
+import com.bazaarvoice.emodb.web.scanner.writer.Compression;
 import com.google.common.base.Function;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
@@ -62,6 +63,8 @@ public class StashResource1 {
                                 @QueryParam ("compactionEnabled") @DefaultValue ("false") Boolean compactionEnabled,
                                 @QueryParam ("rangeScanSplitSize") @DefaultValue("1000000") Integer rangeScanSplitSize,
                                 @QueryParam ("maxRangeScanTime") @DefaultValue("PT10M") String maxRangeScanTime,
+                                @QueryParam ("compression") @DefaultValue("GZIP") Compression compression,
+                                @QueryParam ("incrementalSince") String incrementalSince,
                                 @QueryParam ("usePlanFrom") String usePlanFromStashId,
                                 @QueryParam ("dryRun") @DefaultValue ("false") Boolean dryRun) {
 
@@ -92,7 +95,9 @@ public class StashResource1 {
                 .setMaxConcurrentSubRangeScans(maxConcurrency)
                 .setCompactionEnabled(compactionEnabled)
                 .setRangeScanSplitSize(rangeScanSplitSize)
-                .setMaxRangeScanTime(Duration.parse(maxRangeScanTime));
+                .setMaxRangeScanTime(Duration.parse(maxRangeScanTime))
+                .setCompression(compression)
+                .setIncrementalSince(incrementalSince != null ? Instant.parse(incrementalSince) : null);
 
         return _scanUploader.scanAndUpload(id, options)
                 .dryRun(dryRun)
@@ -128,6 +128,10 @@ public class DataStoreScanStatusDAO implements ScanStatusDAO {
                         rangeMap.put("resplitRange", JsonHelper.convert(rangeStatus.getResplitRange().get(), Map.class));
                     }
                 }
+
+                if (rangeStatus.getStageStatistics().isPresent()) {
+                    rangeMap.put("stageStatistics", JsonHelper.convert(rangeStatus.getStageStatistics().get(), Map.class));
+                }
             }
         }
 
@@ -169,6 +173,11 @@ public class DataStoreScanStatusDAO implements ScanStatusDAO {
             Optional<Integer> concurrencyId = Optional.fromNullable(((Integer) rangeJson.get("concurrencyGroup")));
             ScanRangeStatus scanRangeStatus = new ScanRangeStatus(taskId, placement, range, batchId, blockedByBatchId, concurrencyId);
 
+            Object stageStatistics = rangeJson.get("stageStatistics");
+            if (stageStatistics != null) {
+                scanRangeStatus.setStageStatistics(JsonHelper.convert(stageStatistics, ScanRangeStageStatistics.class));
+            }
+
             Long time = (Long) rangeJson.get("queuedTime");
             if (time != null) {
                 scanRangeStatus.setScanQueuedTime(new Date(time));
@@ -281,6 +290,19 @@ public class DataStoreScanStatusDAO implements ScanStatusDAO {
                 new AuditBuilder().setLocalHost().setComment("Scan range complete").build());
     }
 
+    @Override
+    public void setScanRangeTaskStageStatistics(String scanId, int taskId, ScanRangeStageStatistics stageStatistics) {
+        _dataStore.update(getTable(), scanId, TimeUUIDs.newUUID(),
+                Deltas.mapBuilder()
+                        .update("ranges", Deltas.mapBuilder()
+                                .updateIfExists(toRangeKey(taskId), Deltas.mapBuilder()
+                                        .put("stageStatistics", JsonHelper.convert(stageStatistics, Map.class))
+                                        .build())
+                                .build())
+                        .build(),
+                new AuditBuilder().setLocalHost().setComment("Scan range stage statistics").build());
+    }
+
     @Override
     public void setScanRangeTaskPartiallyComplete(String scanId, int taskId, ScanRange completeRange, ScanRange resplitRange, Date completeTime) {
         _dataStore.update(getTable(), scanId, TimeUUIDs.newUUID(),
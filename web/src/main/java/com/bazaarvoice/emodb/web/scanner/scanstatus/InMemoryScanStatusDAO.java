@@ -3,6 +3,7 @@ package com.bazaarvoice.emodb.web.scanner.scanstatus;
 import com.bazaarvoice.emodb.common.api.impl.LimitCounter;
 import com.bazaarvoice.emodb.sor.db.ScanRange;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
@@ -116,6 +117,18 @@ public class InMemoryScanStatusDAO implements ScanStatusDAO {
         }
     }
 
+    @Override
+    public void setScanRangeTaskStageStatistics(String scanId, int taskId, ScanRangeStageStatistics stageStatistics) {
+        ScanStatus status = _scanStatuses.get(scanId);
+
+        for (ScanRangeStatus rangeStatus : Iterables.concat(status.getActiveScanRanges(), status.getCompleteScanRanges())) {
+            if (rangeStatus.getTaskId() == taskId) {
+                rangeStatus.setStageStatistics(stageStatistics);
+                return;
+            }
+        }
+    }
+
     @Override
     public void setScanRangeTaskPartiallyComplete(String scanId, int taskId, ScanRange completeRange, ScanRange resplitRange, Date completeTime) {
         ScanStatus status = _scanStatuses.get(scanId);
@@ -129,6 +142,7 @@ public class InMemoryScanStatusDAO implements ScanStatusDAO {
                 updatedRangeStatus.setScanStartTime(rangeStatus.getScanStartTime());
                 updatedRangeStatus.setScanCompleteTime(completeTime);
                 updatedRangeStatus.setResplitRange(resplitRange);
+                updatedRangeStatus.setStageStatistics(rangeStatus.getStageStatistics().orNull());
 
                 status.getActiveScanRanges().remove(rangeStatus);
                 status.getCompleteScanRanges().add(updatedRangeStatus);
@@ -0,0 +1,192 @@
+package com.bazaarvoice.emodb.web.scanner.scanstatus;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableMap;
+
+import javax.annotation.Nullable;
+import java.util.Map;
+
+/**
+ * POJO which records how a scan range spent its time in each stage of the scan and upload pipeline.  The stages are:
+ * <ol>
+ *     <li>Read:  Reading rows from Cassandra</li>
+ *     <li>Resolve:  Resolving each row's deltas into a document</li>
+ *     <li>Serialize:  Serializing each document to JSON</li>
+ *     <li>Write:  Compressing the serialized documents into shard files</li>
+ *     <li>Transfer:  Waiting for shard files to be transferred to the scan destinations</li>
+ * </ol>
+ * The read stage is performed by a single thread per range while the resolve, serialize and write stages are performed
+ * concurrently by the shared pipeline threads, so the times for those stages are the total across all threads.
+ * Comparing the throughputs shows which stage limits the range:  if the read stage spent much of its time blocked
+ * then a downstream stage is the bottleneck, otherwise the range is bound by the Cassandra read rate.
+ * The write stage is further broken down by how well each table in the range compressed.
+ */
+@JsonIgnoreProperties (ignoreUnknown = true)
+public class ScanRangeStageStatistics {
+
+    private final long _rows;
+    private final long _bytes;
+    private final long _readTime;
+    private final long _readBlockedTime;
+    private final long _resolveTime;
+    private final long _serializeTime;
+    private final long _writeTime;
+    private final long _transferWaitTime;
+    private final Map<String, TableCompressionStatistics> _tableCompression;
+
+    public ScanRangeStageStatistics(long rows, long bytes, long readTime, long readBlockedTime, long resolveTime,
+                                    long serializeTime, long writeTime, long transferWaitTime) {
+        this(rows, bytes, readTime, readBlockedTime, resolveTime, serializeTime, writeTime, transferWaitTime, null);
+    }
+
+    @JsonCreator
+    public ScanRangeStageStatistics(@JsonProperty ("rows") long rows,
+                                    @JsonProperty ("bytes") long bytes,
+                                    @JsonProperty ("readTime") long readTime,
+                                    @JsonProperty ("readBlockedTime") long readBlockedTime,
+                                    @JsonProperty ("resolveTime") long resolveTime,
+                                    @JsonProperty ("serializeTime") long serializeTime,
+                                    @JsonProperty ("writeTime") long writeTime,
+                                    @JsonProperty ("transferWaitTime") long transferWaitTime,
+                                    @JsonProperty ("tableCompression") @Nullable Map<String, TableCompressionStatistics> tableCompression) {
+        _rows = rows;
+        _bytes = bytes;
+        _readTime = readTime;
+        _readBlockedTime = readBlockedTime;
+        _resolveTime = resolveTime;
+        _serializeTime = serializeTime;
+        _writeTime = writeTime;
+        _transferWaitTime = transferWaitTime;
+        _tableCompression = tableCompression != null ? ImmutableMap.copyOf(tableCompression) : ImmutableMap.<String, TableCompressionStatistics>of();
+    }
+
+    /**
+     * Number of rows read from Cassandra.
+     */
+    public long getRows() {
+        return _rows;
+    }
+
+    /**
+     * Number of uncompressed bytes serialized.
+     */
+    public long getBytes() {
+        return _bytes;
+    }
+
+    /**
+     * Milliseconds spent reading rows from Cassandra.
+     */
+    public long getReadTime() {
+        return _readTime;
+    }
+
+    /**
+     * Milliseconds the read stage spent blocked waiting for downstream stages to accept more rows.
+     */
+    public long getReadBlockedTime() {
+        return _readBlockedTime;
+    }
+
+    /**
+     * Milliseconds spent resolving rows into documents.
+     */
+    public long getResolveTime() {
+        return _resolveTime;
+    }
+
+    /**
+     * Milliseconds spent serializing documents to JSON.
+     */
+    public long getSerializeTime() {
+        return _serializeTime;
+    }
+
+    /**
+     * Milliseconds spent compressing and writing serialized documents to shard files.
+     */
+    public long getWriteTime() {
+        return _writeTime;
+    }
+
+    /**
+     * Milliseconds spent waiting for shard file transfers, either for an open shard to become available or for all
+     * transfers to complete at the end of the range.
+     */
+    public long getTransferWaitTime() {
+        return _transferWaitTime;
+    }
+
+    /**
+     * Compression statistics for the shard files written for each table in the range.
+     */
+    @JsonInclude (JsonInclude.Include.NON_EMPTY)
+    public Map<String, TableCompressionStatistics> getTableCompression() {
+        return _tableCompression;
+    }
+
+    public long getReadRowsPerSecond() {
+        return perSecond(_rows, _readTime);
+    }
+
+    public long getResolveRowsPerSecond() {
+        return perSecond(_rows, _resolveTime);
+    }
+
+    public long getSerializeBytesPerSecond() {
+        return perSecond(_bytes, _serializeTime);
+    }
+
+    public long getWriteBytesPerSecond() {
+        return perSecond(_bytes, _writeTime);
+    }
+
+    private static long perSecond(long count, long millis) {
+        return millis > 0 ? (long) (count * 1000.0 / millis) : 0;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ScanRangeStageStatistics)) {
+            return false;
+        }
+
+        ScanRangeStageStatistics that = (ScanRangeStageStatistics) o;
+
+        return _rows == that._rows &&
+                _bytes == that._bytes &&
+                _readTime == that._readTime &&
+                _readBlockedTime == that._readBlockedTime &&
+                _resolveTime == that._resolveTime &&
+                _serializeTime == that._serializeTime &&
+                _writeTime == that._writeTime &&
+                _transferWaitTime == that._transferWaitTime &&
+                _tableCompression.equals(that._tableCompression);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(_rows, _bytes, _readTime, _resolveTime, _serializeTime, _writeTime);
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this)
+                .add("rows", _rows)
+                .add("bytes", _bytes)
+                .add("readTime", _readTime)
+                .add("readBlockedTime", _readBlockedTime)
+                .add("resolveTime", _resolveTime)
+                .add("serializeTime", _serializeTime)
+                .add("writeTime", _writeTime)
+                .add("transferWaitTime", _transferWaitTime)
+                .toString();
+    }
+}
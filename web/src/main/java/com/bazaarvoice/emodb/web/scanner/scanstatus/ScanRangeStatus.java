@@ -28,6 +28,7 @@ public class ScanRangeStatus {
     private Date _scanStartTime;
     private Date _scanCompleteTime;
     private Optional<ScanRange> _resplitRange = Optional.absent();
+    private Optional<ScanRangeStageStatistics> _stageStatistics = Optional.absent();
 
     @JsonCreator
     public ScanRangeStatus(@JsonProperty ("taskId") int taskId,
@@ -125,6 +126,22 @@ public class ScanRangeStatus {
         _resplitRange = Optional.fromNullable(resplitRange);
     }
 
+    @JsonProperty ("stageStatistics")
+    @JsonInclude (JsonInclude.Include.NON_NULL)
+    public ScanRangeStageStatistics getStageStatisticsOrNull() {
+        return _stageStatistics.orNull();
+    }
+
+    @JsonIgnore
+    public Optional<ScanRangeStageStatistics> getStageStatistics() {
+        return _stageStatistics;
+    }
+
+    @JsonProperty ("stageStatistics")
+    public void setStageStatistics(@Nullable ScanRangeStageStatistics stageStatistics) {
+        _stageStatistics = Optional.fromNullable(stageStatistics);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -145,7 +162,8 @@ public class ScanRangeStatus {
                 Objects.equal(_scanQueuedTime, that._scanQueuedTime) &&
                 Objects.equal(_scanCompleteTime, that._scanCompleteTime) &&
                 _scanRange.equals(that._scanRange) &&
-                Objects.equal(_resplitRange, that._resplitRange);
+                Objects.equal(_resplitRange, that._resplitRange) &&
+                Objects.equal(_stageStatistics, that._stageStatistics);
     }
 
     @Override
@@ -5,10 +5,12 @@ import com.bazaarvoice.emodb.web.scanner.ScanDestination;
 import com.bazaarvoice.emodb.web.scanner.ScanOptions;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.base.Objects;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
 import javax.annotation.Nullable;
@@ -16,11 +18,13 @@ import java.net.URI;
 import java.time.Duration;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
  * POJO which maintains the metadata and status for a scan and upload operation.
  */
+@JsonIgnoreProperties (ignoreUnknown = true)
 public class ScanStatus {
 
     private final String _scanId;
@@ -142,6 +146,22 @@ public class ScanStatus {
         return true;
     }
 
+    /**
+     * Returns the compression statistics for each table, combined from all scan ranges completed so far.
+     */
+    @JsonProperty ("tableCompressionStatistics")
+    public Map<String, TableCompressionStatistics> getTableCompressionStatistics() {
+        Map<String, TableCompressionStatistics> statistics = Maps.newTreeMap();
+        for (ScanRangeStatus complete : _completeScanRanges) {
+            if (complete.getStageStatistics().isPresent()) {
+                for (Map.Entry<String, TableCompressionStatistics> entry : complete.getStageStatistics().get().getTableCompression().entrySet()) {
+                    statistics.merge(entry.getKey(), entry.getValue(), TableCompressionStatistics::combine);
+                }
+            }
+        }
+        return statistics;
+    }
+
     public StashMetadata asPluginStashMetadata() {
         // Convert destinations to URIs
         Set<URI> destinations = Sets.newHashSet();
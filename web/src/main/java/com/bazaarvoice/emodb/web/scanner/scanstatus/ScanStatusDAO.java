@@ -49,6 +49,11 @@ public interface ScanStatusDAO {
      */
     void setScanRangeTaskComplete(String scanId, int taskId, Date completeTime);
 
+    /**
+     * Records the time the given scan range spent in each stage of the scan and upload pipeline.
+     */
+    void setScanRangeTaskStageStatistics(String scanId, int taskId, ScanRangeStageStatistics stageStatistics);
+
     /**
      * Updates the scan to mark the given scan range as partially complete.  This can happen if the range was determined
      * to be too large and a portion of the range needs to be resplit into separate tasks.
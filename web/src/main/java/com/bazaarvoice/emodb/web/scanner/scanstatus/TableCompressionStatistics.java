@@ -0,0 +1,95 @@
+package com.bazaarvoice.emodb.web.scanner.scanstatus;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.base.Objects;
+
+/**
+ * POJO which records how well a table's shard files compressed and how long compressing them took.
+ */
+@JsonIgnoreProperties (ignoreUnknown = true)
+public class TableCompressionStatistics {
+
+    private final long _uncompressedBytes;
+    private final long _compressedBytes;
+    private final long _compressionTime;
+
+    @JsonCreator
+    public TableCompressionStatistics(@JsonProperty ("uncompressedBytes") long uncompressedBytes,
+                                      @JsonProperty ("compressedBytes") long compressedBytes,
+                                      @JsonProperty ("compressionTime") long compressionTime) {
+        _uncompressedBytes = uncompressedBytes;
+        _compressedBytes = compressedBytes;
+        _compressionTime = compressionTime;
+    }
+
+    /**
+     * Number of bytes written before compression.
+     */
+    public long getUncompressedBytes() {
+        return _uncompressedBytes;
+    }
+
+    /**
+     * Number of bytes written after compression.
+     */
+    public long getCompressedBytes() {
+        return _compressedBytes;
+    }
+
+    /**
+     * Milliseconds spent compressing.
+     */
+    public long getCompressionTime() {
+        return _compressionTime;
+    }
+
+    /**
+     * Compressed size as a percentage of the uncompressed size.
+     */
+    public long getCompressedPercent() {
+        return _uncompressedBytes > 0 ? _compressedBytes * 100 / _uncompressedBytes : 0;
+    }
+
+    public long getCompressionBytesPerSecond() {
+        return _compressionTime > 0 ? (long) (_uncompressedBytes * 1000.0 / _compressionTime) : 0;
+    }
+
+    public TableCompressionStatistics combine(TableCompressionStatistics other) {
+        return new TableCompressionStatistics(
+                _uncompressedBytes + other._uncompressedBytes,
+                _compressedBytes + other._compressedBytes,
+                _compressionTime + other._compressionTime);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof TableCompressionStatistics)) {
+            return false;
+        }
+
+        TableCompressionStatistics that = (TableCompressionStatistics) o;
+
+        return _uncompressedBytes == that._uncompressedBytes &&
+                _compressedBytes == that._compressedBytes &&
+                _compressionTime == that._compressionTime;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(_uncompressedBytes, _compressedBytes, _compressionTime);
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this)
+                .add("uncompressedBytes", _uncompressedBytes)
+                .add("compressedBytes", _compressedBytes)
+                .add("compressionTime", _compressionTime)
+                .toString();
+    }
+}
@@ -266,7 +266,8 @@ public class ScanUploadSchedulingService extends LeaderService {
                     .setMaxConcurrentSubRangeScans(scheduledScan.getMaxRangeConcurrency())
                     .setScanByAZ(scheduledScan.isScanByAZ())
                     .setRangeScanSplitSize(scheduledScan.getMaxRangeScanSplitSize())
-                    .setMaxRangeScanTime(scheduledScan.getMaxRangeScanTime());
+                    .setMaxRangeScanTime(scheduledScan.getMaxRangeScanTime())
+                    .setCompression(scheduledScan.getCompression());
 
             _log.info("Starting scheduled scan and upload to {} for time {}", destination, scheduledTime);
 
@@ -1,6 +1,7 @@
 package com.bazaarvoice.emodb.web.scanner.scheduling;
 
 import com.bazaarvoice.emodb.web.scanner.ScanDestination;
+import com.bazaarvoice.emodb.web.scanner.writer.Compression;
 
 import java.time.*;
 import java.time.format.DateTimeFormatter;
@@ -24,12 +25,14 @@ public class ScheduledDailyScanUpload {
     private final boolean _requestRequired;
     private final int _maxRangeScanSplitSize;
     private final Duration _maxRangeScanTime;
+    private final Compression _compression;
 
     public ScheduledDailyScanUpload(String id, String timeOfDay, DateTimeFormatter scanIdFormat,
                                     ScanDestination rootDestination, DateTimeFormatter directoryFormat,
                                     List<String> placements, int maxRangeConcurrency,
                                     boolean scanByAZ, boolean requestRequired,
-                                    int maxRangeScanSplitSize, Duration maxRangeScanTime) {
+                                    int maxRangeScanSplitSize, Duration maxRangeScanTime,
+                                    Compression compression) {
         _id = id;
         _timeOfDay = timeOfDay;
         _scanIdFormat = scanIdFormat;
@@ -41,6 +44,7 @@ public class ScheduledDailyScanUpload {
         _requestRequired = requestRequired;
         _maxRangeScanSplitSize = maxRangeScanSplitSize;
         _maxRangeScanTime = maxRangeScanTime;
+        _compression = compression;
     }
 
     public String getId() {
@@ -83,6 +87,10 @@ public class ScheduledDailyScanUpload {
         return _maxRangeScanTime;
     }
 
+    public Compression getCompression() {
+        return _compression;
+    }
+
     public boolean isRequestRequired() {
         return _requestRequired;
     }
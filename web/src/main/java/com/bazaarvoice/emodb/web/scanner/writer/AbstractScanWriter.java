@@ -3,12 +3,22 @@ package com.bazaarvoice.emodb.web.scanner.writer;
 import com.bazaarvoice.emodb.common.dropwizard.metrics.MetricCounterOutputStream;
 import com.bazaarvoice.emodb.common.json.ISO8601DateFormat;
 import com.bazaarvoice.emodb.common.stash.StashUtil;
+import com.bazaarvoice.emodb.web.scanner.scanstatus.TableCompressionStatistics;
 import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
 import com.codahale.metrics.MetricRegistry;
+import com.github.luben.zstd.ZstdInputStream;
+import com.github.luben.zstd.ZstdOutputStream;
 import com.google.common.base.Charsets;
 import com.google.common.base.Objects;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
 import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingOutputStream;
 import com.google.common.io.Files;
+import net.jpountz.lz4.LZ4BlockInputStream;
+import net.jpountz.lz4.LZ4BlockOutputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xerial.snappy.SnappyInputStream;
@@ -20,12 +30,17 @@ import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URI;
+import java.time.Instant;
 import java.util.Collection;
 import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
@@ -37,10 +52,13 @@ import static java.lang.String.format;
  *
  * 1. Converting base files to URIs
  * 2. Configuring file compression
- * 3. Providing counter metrics for the number of bytes written
+ * 3. Providing counter metrics for the number of bytes written and how well they compressed
  */
 abstract public class AbstractScanWriter implements ScanWriter {
 
+    // Zstandard's default compression level
+    private static final int ZSTD_COMPRESSION_LEVEL = 3;
+
     private final Logger _log = LoggerFactory.getLogger(getClass());
 
     private final URI _baseUri;
@@ -48,6 +66,11 @@ abstract public class AbstractScanWriter implements ScanWriter {
     protected final Compression _compression;
     protected final int _taskId;
     private final MetricRegistry _metricRegistry;
+    // Compression statistics for each table, with the compression time in nanoseconds until they are returned
+    private final ConcurrentMap<String, TableCompressionStatistics> _tableCompressionStatistics = Maps.newConcurrentMap();
+    // Zstandard dictionary used for each table's shards.  Parts of a shard are concatenated and readers only look for a
+    // dictionary in the first frame, so once a table's shards are compressed with or without one that never changes.
+    private final ConcurrentMap<String, Optional<byte[]>> _zstdDictionaries = Maps.newConcurrentMap();
     protected volatile boolean _closed = false;
 
     protected AbstractScanWriter(String type, int taskId, URI baseUri, Compression compression,
@@ -68,8 +91,17 @@ abstract public class AbstractScanWriter implements ScanWriter {
     }
 
     protected Counter getCounterForPlacement(String placement) {
+        return getCounterForPlacement(placement, "bytes-uploaded");
+    }
+
+    private Counter getCounterForPlacement(String placement, String suffix) {
         return _metricRegistry.counter(
-                MetricRegistry.name("bv.emodb.scan.ScanUploader.placement", placement, _type + "-bytes-uploaded"));
+                MetricRegistry.name("bv.emodb.scan.ScanUploader.placement", placement, _type + "-" + suffix));
+    }
+
+    private Histogram getHistogramForPlacement(String placement, String suffix) {
+        return _metricRegistry.histogram(
+                MetricRegistry.name("bv.emodb.scan.ScanUploader.placement", placement, _type + "-" + suffix));
     }
 
     protected OutputStream open(File file, @Nullable Counter counter) throws IOException {
@@ -77,7 +109,33 @@ abstract public class AbstractScanWriter implements ScanWriter {
         if (counter != null) {
             stream = new MetricCounterOutputStream(stream, counter);
         }
+        return compress(stream, null);
+    }
+
+    /**
+     * Opens a shard file for writing.  In addition to counting the bytes uploaded for the placement this records the
+     * compression ratio and throughput for each shard once it is closed.
+     */
+    protected OutputStream openShard(File file, String tableName, String placement) throws IOException {
+        byte[] zstdDictionary = _compression == Compression.ZSTD ?
+                _zstdDictionaries.computeIfAbsent(tableName, table -> Optional.fromNullable(getZstdDictionary(table))).orNull() :
+                null;
+        CountingOutputStream compressedOut = new CountingOutputStream(
+                new MetricCounterOutputStream(new BufferedOutputStream(new FileOutputStream(file)), getCounterForPlacement(placement)));
+        return new CompressionStatsOutputStream(compress(compressedOut, zstdDictionary), compressedOut, tableName, placement);
+    }
+
+    /**
+     * Returns a Zstandard dictionary for compressing the table's shards, or null to compress them without one.
+     * Implementations must only return dictionaries which have already been written alongside the Stash, since readers
+     * can't decompress the shards without them, and should not block.  By default no dictionaries are used.
+     */
+    @Nullable
+    protected byte[] getZstdDictionary(String tableName) {
+        return null;
+    }
 
+    private OutputStream compress(OutputStream stream, @Nullable byte[] zstdDictionary) throws IOException {
         switch (_compression) {
             case GZIP:
                 stream = new GZIPOutputStream(stream);
@@ -85,6 +143,16 @@ abstract public class AbstractScanWriter implements ScanWriter {
             case SNAPPY:
                 stream = new SnappyOutputStream(stream);
                 break;
+            case LZ4:
+                stream = new LZ4BlockOutputStream(stream);
+                break;
+            case ZSTD:
+                ZstdOutputStream zstdStream = new ZstdOutputStream(stream, ZSTD_COMPRESSION_LEVEL);
+                if (zstdDictionary != null) {
+                    zstdStream.setDict(zstdDictionary);
+                }
+                stream = zstdStream;
+                break;
         }
 
         return stream;
@@ -100,6 +168,12 @@ abstract public class AbstractScanWriter implements ScanWriter {
             case SNAPPY:
                 in = new SnappyInputStream(in);
                 break;
+            case LZ4:
+                in = new LZ4BlockInputStream(in);
+                break;
+            case ZSTD:
+                in = new ZstdInputStream(in);
+                break;
         }
         return in;
     }
@@ -110,8 +184,9 @@ abstract public class AbstractScanWriter implements ScanWriter {
             // Only one file, just copy it to the destination
             File src = sourceFiles.iterator().next();
             Files.copy(src, dest);
-        } else if (_compression == Compression.GZIP) {
-            // A handy attribute of GZIP files is that concatenating multiple GZIP files yields a valid GZIP file
+        } else if (_compression == Compression.GZIP || _compression == Compression.ZSTD) {
+            // A handy attribute of GZIP and Zstandard files is that concatenating multiple files yields a valid file.
+            // For Zstandard this also keeps the frames compressed with the table's dictionary.
             try (FileOutputStream out = new FileOutputStream(dest)) {
                 for (File src : sourceFiles) {
                     Files.copy(src, out);
@@ -131,8 +206,18 @@ abstract public class AbstractScanWriter implements ScanWriter {
     }
 
     @Override
-    public boolean writeScanComplete(String scanId, Date startTime)
+    public boolean writeScanComplete(String scanId, Date startTime, @Nullable Instant incrementalSince)
             throws IOException {
+        if (incrementalSince != null) {
+            // Write the incremental manifest first so any Stash with a success file can be recognized as incremental
+            String manifest = format("%s\n%s\n%s", new ISO8601DateFormat().format(Date.from(incrementalSince)),
+                    new ISO8601DateFormat().format(startTime), scanId);
+            URI incrementalFileUri = UriBuilder.fromUri(_baseUri)
+                    .path(StashUtil.INCREMENTAL_FILE)
+                    .build();
+            writeFile(incrementalFileUri, manifest.getBytes(Charsets.UTF_8));
+        }
+
         // Write the start time, complete time and scan ID in a success file
         String contents = format("%s\n%s\n%s", new ISO8601DateFormat().format(startTime),
                 new ISO8601DateFormat().format(new Date()), scanId);
@@ -152,14 +237,15 @@ abstract public class AbstractScanWriter implements ScanWriter {
                 String parentPath = idx != -1 ? path.substring(0, idx) : "/";
                 String scanPathName = idx != -1 ? path.substring(idx + 1) : path;
 
-                // Write the name of the sub-path in the latest file
+                // Write the name of the sub-path in the latest file.  An incremental Stash only contains documents
+                // updated since its base so it must never replace a full Stash as the latest.
                 URI latestFileUri = UriBuilder.fromUri(_baseUri)
                         .replacePath(parentPath)
-                        .path(StashUtil.LATEST_FILE)
+                        .path(incrementalSince != null ? StashUtil.LATEST_INCREMENTAL_FILE : StashUtil.LATEST_FILE)
                         .build();
 
                 try {
-                    writeLatestFile(latestFileUri, scanPathName.getBytes(Charsets.UTF_8));
+                    writeFile(latestFileUri, scanPathName.getBytes(Charsets.UTF_8));
                 } catch (Exception e) {
                     _log.warn("Failed to update latest file for scan {}", scanId, e);
                 }
@@ -177,12 +263,89 @@ abstract public class AbstractScanWriter implements ScanWriter {
             throws IOException;
 
     /**
-     * Writes the contents to the "latest" file located at "fileUri".
+     * Writes the contents to the file located at "fileUri", such as the "latest" file, replacing it if it exists.
      */
-    abstract protected void writeLatestFile(URI fileUri, byte[] contents)
+    abstract protected void writeFile(URI fileUri, byte[] contents)
             throws IOException;
 
+    @Override
+    public Map<String, TableCompressionStatistics> getTableCompressionStatistics() {
+        ImmutableMap.Builder<String, TableCompressionStatistics> statistics = ImmutableMap.builder();
+        for (Map.Entry<String, TableCompressionStatistics> entry : _tableCompressionStatistics.entrySet()) {
+            TableCompressionStatistics tableStatistics = entry.getValue();
+            statistics.put(entry.getKey(), new TableCompressionStatistics(tableStatistics.getUncompressedBytes(),
+                    tableStatistics.getCompressedBytes(), TimeUnit.NANOSECONDS.toMillis(tableStatistics.getCompressionTime())));
+        }
+        return statistics.build();
+    }
+
     public void close() {
         _closed = true;
     }
+
+    /**
+     * OutputStream which wraps a compressing stream and measures how much data was written to it and how long the
+     * writes took, including flushing the compressed output.  When closed the shard's compression ratio and throughput
+     * are published for the placement and added to the table's compression statistics.
+     */
+    private class CompressionStatsOutputStream extends FilterOutputStream {
+        private final CountingOutputStream _compressedOut;
+        private final String _tableName;
+        private final String _placement;
+        private long _uncompressedBytes;
+        private long _writeNanos;
+        private boolean _closed;
+
+        private CompressionStatsOutputStream(OutputStream out, CountingOutputStream compressedOut,
+                                             String tableName, String placement) {
+            super(out);
+            _compressedOut = compressedOut;
+            _tableName = tableName;
+            _placement = placement;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            long start = System.nanoTime();
+            out.write(b);
+            _writeNanos += System.nanoTime() - start;
+            _uncompressedBytes += 1;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            long start = System.nanoTime();
+            out.write(b, off, len);
+            _writeNanos += System.nanoTime() - start;
+            _uncompressedBytes += len;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (_closed) {
+                return;
+            }
+            _closed = true;
+
+            long start = System.nanoTime();
+            out.close();
+            _writeNanos += System.nanoTime() - start;
+
+            if (_uncompressedBytes > 0) {
+                long compressedBytes = _compressedOut.getCount();
+                long percentOfOriginal = compressedBytes * 100 / _uncompressedBytes;
+                long bytesPerSecond = (long) (_uncompressedBytes * 1e9 / Math.max(_writeNanos, 1));
+
+                getCounterForPlacement(_placement, "uncompressed-bytes").inc(_uncompressedBytes);
+                getHistogramForPlacement(_placement, "compressed-percent").update(percentOfOriginal);
+                getHistogramForPlacement(_placement, "compression-bytes-per-second").update(bytesPerSecond);
+                _tableCompressionStatistics.merge(_tableName,
+                        new TableCompressionStatistics(_uncompressedBytes, compressedBytes, _writeNanos),
+                        TableCompressionStatistics::combine);
+
+                _log.debug("Compressed shard for table {} with {}: {} bytes to {} bytes ({}%) at {} bytes/sec",
+                        _tableName, _compression, _uncompressedBytes, compressedBytes, percentOfOriginal, bytesPerSecond);
+            }
+        }
+    }
 }
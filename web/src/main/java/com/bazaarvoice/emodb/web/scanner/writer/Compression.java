@@ -3,7 +3,9 @@ package com.bazaarvoice.emodb.web.scanner.writer;
 public enum Compression {
     NONE(""),
     GZIP(".gz"),
-    SNAPPY(".snappy");
+    SNAPPY(".snappy"),
+    LZ4(".lz4"),
+    ZSTD(".zst");
 
     private final String _extension;
 
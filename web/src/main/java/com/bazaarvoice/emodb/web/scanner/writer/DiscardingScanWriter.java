@@ -20,8 +20,9 @@ import java.util.Map;
 public class DiscardingScanWriter extends TemporaryFileScanWriter {
 
     @Inject
-    public DiscardingScanWriter(@Assisted int taskId, @Assisted Optional<Integer> maxOpenShards, MetricRegistry metricRegistry) {
-        super("discarded", taskId, new File("/dev/null").toURI(), Compression.GZIP, metricRegistry, maxOpenShards);
+    public DiscardingScanWriter(@Assisted int taskId, @Assisted Optional<Integer> maxOpenShards,
+                                @Assisted Compression compression, MetricRegistry metricRegistry) {
+        super("discarded", taskId, new File("/dev/null").toURI(), compression, metricRegistry, maxOpenShards);
     }
 
     @Override
@@ -41,7 +42,7 @@ public class DiscardingScanWriter extends TemporaryFileScanWriter {
     }
 
     @Override
-    protected void writeLatestFile(URI fileUri, byte[] contents)
+    protected void writeFile(URI fileUri, byte[] contents)
             throws IOException {
         // empty
     }
@@ -23,8 +23,8 @@ public class FileScanWriter extends TemporaryFileScanWriter {
 
     @Inject
     public FileScanWriter(@Assisted int taskId, @Assisted URI baseUri, @Assisted Optional<Integer> maxOpenShards,
-                          MetricRegistry metricRegistry) {
-        super("file", taskId, baseUri, Compression.GZIP, metricRegistry, maxOpenShards);
+                          @Assisted Compression compression, MetricRegistry metricRegistry) {
+        super("file", taskId, baseUri, compression, metricRegistry, maxOpenShards);
     }
 
     @Override
@@ -71,7 +71,7 @@ public class FileScanWriter extends TemporaryFileScanWriter {
     }
 
     @Override
-    protected void writeLatestFile(URI fileUri, byte[] contents)
+    protected void writeFile(URI fileUri, byte[] contents)
             throws IOException {
         File file = new File(fileUri.toURL().getFile());
         Files.createParentDirs(file);
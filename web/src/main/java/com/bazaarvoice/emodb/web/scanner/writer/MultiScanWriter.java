@@ -1,14 +1,17 @@
 package com.bazaarvoice.emodb.web.scanner.writer;
 
+import com.bazaarvoice.emodb.web.scanner.scanstatus.TableCompressionStatistics;
 import com.google.common.base.Optional;
 import com.google.common.base.Throwables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import org.apache.commons.io.output.TeeOutputStream;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.time.Duration;
+import java.time.Instant;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
@@ -77,16 +80,22 @@ public class MultiScanWriter implements ScanWriter {
     }
 
     @Override
-    public boolean writeScanComplete(String scanId, Date startTime)
+    public boolean writeScanComplete(String scanId, Date startTime, @Nullable Instant incrementalSince)
             throws IOException {
         boolean allComplete = true;
         for (ScanWriter scanWriter : _scanWriters) {
-            boolean writerComplete = scanWriter.writeScanComplete(scanId, startTime);
+            boolean writerComplete = scanWriter.writeScanComplete(scanId, startTime, incrementalSince);
             allComplete = allComplete && writerComplete;
         }
         return allComplete;
     }
 
+    @Override
+    public Map<String, TableCompressionStatistics> getTableCompressionStatistics() {
+        // Every writer compresses the same content with the same compression, so any one of them is representative
+        return _scanWriters.get(0).getTableCompressionStatistics();
+    }
+
     @Override
     public void close() {
         Exception exception = null;
@@ -25,6 +25,7 @@ import com.google.inject.assistedinject.Assisted;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import java.io.ByteArrayInputStream;
@@ -53,26 +54,42 @@ public class S3ScanWriter extends TemporaryFileScanWriter {
 
     private final AmazonS3 _amazonS3;
     private final ScheduledExecutorService _uploadService;
+    private final ZstdDictionaryTrainer _zstdDictionaryTrainer;
+    private final URI _baseUri;
     private final Set<ActiveUpload> _activeUploads = Sets.newSetFromMap(Maps.<ActiveUpload, Boolean>newConcurrentMap());
     private Duration _retryDelay = DEFAULT_RETRY_DELAY;
 
     @Inject
     public S3ScanWriter(@Assisted int taskId, @Assisted URI baseUri, @Assisted Optional<Integer> maxOpenShards,
-                        MetricRegistry metricRegistry, AmazonS3Provider amazonS3Provider,
-                        @ScanUploadService ScheduledExecutorService uploadService) {
-        super("s3", taskId, baseUri, Compression.GZIP, metricRegistry, maxOpenShards);
+                        @Assisted Compression compression, MetricRegistry metricRegistry,
+                        AmazonS3Provider amazonS3Provider, @ScanUploadService ScheduledExecutorService uploadService,
+                        ZstdDictionaryTrainer zstdDictionaryTrainer) {
+        super("s3", taskId, baseUri, compression, metricRegistry, maxOpenShards);
 
         checkNotNull(amazonS3Provider, "amazonS3Provider is required");
         String bucket = baseUri.getHost();
         checkArgument(!Strings.isNullOrEmpty(bucket), "bucket is required");
         _amazonS3 = amazonS3Provider.getS3ClientForBucket(bucket);
         _uploadService = checkNotNull(uploadService, "uploadService is required");
+        _zstdDictionaryTrainer = checkNotNull(zstdDictionaryTrainer, "zstdDictionaryTrainer is required");
+        _baseUri = baseUri;
+
+        if (compression == Compression.ZSTD) {
+            // Start training the Stash's dictionaries now so they're ready by the time most shards are opened
+            _zstdDictionaryTrainer.startTraining(_amazonS3, baseUri);
+        }
     }
 
     public void setRetryDelay(Duration retryDelay) {
         _retryDelay = retryDelay;
     }
 
+    @Nullable
+    @Override
+    protected byte[] getZstdDictionary(String tableName) {
+        return _zstdDictionaryTrainer.getDictionary(_baseUri, tableName);
+    }
+
     @Override
     protected ListenableFuture<?> transfer(TransferKey transferKey, URI uri, File file) {
         ActiveUpload activeUpload = new ActiveUpload(transferKey, uri, file);
@@ -284,7 +301,7 @@ public class S3ScanWriter extends TemporaryFileScanWriter {
     }
 
     @Override
-    protected void writeLatestFile(URI fileUri, byte[] contents)
+    protected void writeFile(URI fileUri, byte[] contents)
             throws IOException {
         String bucket = fileUri.getHost();
         String key = getKeyFromPath(fileUri);
@@ -1,9 +1,14 @@
 package com.bazaarvoice.emodb.web.scanner.writer;
 
+import com.bazaarvoice.emodb.web.scanner.scanstatus.TableCompressionStatistics;
+
+import javax.annotation.Nullable;
 import java.io.Closeable;
 import java.io.IOException;
 import java.time.Duration;
+import java.time.Instant;
 import java.util.Date;
+import java.util.Map;
 
 /**
  * Base interface for writing {@link ScanWriter} files to a file system.
@@ -26,9 +31,16 @@ public interface ScanWriter extends Closeable {
             throws IOException, InterruptedException;
 
     /**
-     * Writes a signal file that the scan is complete.
+     * Writes a signal file that the scan is complete.  If the scan was incremental, as indicated by a non-null
+     * "incrementalSince", an incremental manifest is also written and the scan is recorded as the latest incremental
+     * Stash rather than the latest Stash.
      * @return true if the file was written, false if it already existed (repeat call)
      */
-    boolean writeScanComplete(String scanId, Date startTime)
+    boolean writeScanComplete(String scanId, Date startTime, @Nullable Instant incrementalSince)
             throws IOException;
+
+    /**
+     * Returns the compression statistics for each table from all shards closed by this writer so far.
+     */
+    Map<String, TableCompressionStatistics> getTableCompressionStatistics();
 }
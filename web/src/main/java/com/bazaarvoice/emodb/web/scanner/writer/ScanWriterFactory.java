@@ -9,9 +9,9 @@ import java.net.URI;
  */
 public interface ScanWriterFactory {
 
-    FileScanWriter createFileScanWriter(int taskId, URI destination, Optional<Integer> maxOpenFiles);
+    FileScanWriter createFileScanWriter(int taskId, URI destination, Optional<Integer> maxOpenFiles, Compression compression);
 
-    S3ScanWriter createS3ScanWriter(int taskId, URI destination, Optional<Integer> maxOpenFiles);
+    S3ScanWriter createS3ScanWriter(int taskId, URI destination, Optional<Integer> maxOpenFiles, Compression compression);
 
-    DiscardingScanWriter createDiscardingScanWriter(int taskId, Optional<Integer> maxOpenFiles);
+    DiscardingScanWriter createDiscardingScanWriter(int taskId, Optional<Integer> maxOpenFiles, Compression compression);
 }
@@ -27,17 +27,17 @@ public class ScanWriterGenerator {
     /**
      * Creates a scan writer from the given desintations.
      */
-    public ScanWriter createScanWriter(final int taskId, Set<ScanDestination> destinations) {
+    public ScanWriter createScanWriter(final int taskId, Set<ScanDestination> destinations, final Compression compression) {
         checkArgument(!destinations.isEmpty(), "destinations.isEmpty()");
 
         if (destinations.size() == 1) {
-            return createScanWriter(taskId, Iterables.getOnlyElement(destinations));
+            return createScanWriter(taskId, Iterables.getOnlyElement(destinations), compression);
         }
         return new MultiScanWriter(ImmutableList.copyOf(
                 Iterables.transform(destinations, new Function<ScanDestination, ScanWriter>() {
                     @Override
                     public ScanWriter apply(ScanDestination destination) {
-                        return createScanWriter(taskId, destination);
+                        return createScanWriter(taskId, destination, compression);
                     }
                 })
         ));
@@ -46,20 +46,20 @@ public class ScanWriterGenerator {
     /**
      * Creates a scan writer for the given destination.
      */
-    public ScanWriter createScanWriter(int taskId, ScanDestination destination) {
+    public ScanWriter createScanWriter(int taskId, ScanDestination destination, Compression compression) {
         if (destination.isDiscarding()) {
-            return _scanWriterFactory.createDiscardingScanWriter(taskId, Optional.<Integer>absent());
+            return _scanWriterFactory.createDiscardingScanWriter(taskId, Optional.<Integer>absent(), compression);
         }
 
         URI uri = destination.getUri();
         String scheme = uri.getScheme();
 
         if ("file".equals(scheme)) {
-            return _scanWriterFactory.createFileScanWriter(taskId, uri, Optional.<Integer>absent());
+            return _scanWriterFactory.createFileScanWriter(taskId, uri, Optional.<Integer>absent(), compression);
         }
 
         if ("s3".equals(scheme)) {
-            return _scanWriterFactory.createS3ScanWriter(taskId, uri, Optional.<Integer>absent());
+            return _scanWriterFactory.createS3ScanWriter(taskId, uri, Optional.<Integer>absent(), compression);
         }
 
         throw new IllegalArgumentException("Unsupported destination: " + destination);
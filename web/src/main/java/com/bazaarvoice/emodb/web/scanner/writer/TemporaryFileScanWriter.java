@@ -96,7 +96,7 @@ abstract public class TemporaryFileScanWriter extends AbstractScanWriter {
 
         try {
             final URI uri = getUriForShard(tableName, shardId, tableUuid);
-            OutputStream out = open(shardFile, getCounterForPlacement(placement));
+            OutputStream out = openShard(shardFile, tableName, placement);
 
             return new ShardWriter(out) {
                 @Override
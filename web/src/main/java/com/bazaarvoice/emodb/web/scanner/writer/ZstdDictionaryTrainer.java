@@ -0,0 +1,236 @@
+package com.bazaarvoice.emodb.web.scanner.writer;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.bazaarvoice.emodb.common.stash.StandardStashReader;
+import com.bazaarvoice.emodb.common.stash.StashReader;
+import com.bazaarvoice.emodb.common.stash.StashSplit;
+import com.bazaarvoice.emodb.common.stash.StashTable;
+import com.bazaarvoice.emodb.common.stash.StashUtil;
+import com.bazaarvoice.emodb.sor.api.StashNotAvailableException;
+import com.bazaarvoice.emodb.sor.api.TableNotStashedException;
+import com.github.luben.zstd.ZstdDictTrainer;
+import com.google.common.base.Charsets;
+import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Maps;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.UriBuilder;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Trains a Zstandard dictionary for each table from the documents in the table's splits in the previous Stash.
+ * Each shard is compressed independently, so without a dictionary every shard starts with an empty window and has to
+ * relearn the field names and values common to the table's documents.  A dictionary primes the window with them, which
+ * matters for tables with small shards.  Tables with large shards, tables which weren't in the previous Stash, and
+ * tables whose dictionaries can't be trained are compressed without a dictionary.
+ * <p>
+ * Dictionaries are trained in the background once per Stash as soon as the first scan writer for the Stash is created,
+ * and each dictionary is written alongside the Stash once before it is made available to the writers.  Shards opened
+ * before their table's dictionary is ready are compressed without one.
+ */
+public class ZstdDictionaryTrainer {
+
+    private static final Logger _log = LoggerFactory.getLogger(ZstdDictionaryTrainer.class);
+
+    private static final int DICTIONARY_SIZE = 16 * 1024;
+    private static final int SAMPLE_BUFFER_SIZE = 1024 * 1024;
+    // Large documents are poor samples since the dictionary can only hold a small part of them
+    private static final int MAX_SAMPLE_SIZE = 16 * 1024;
+    private static final int MAX_SAMPLES_PER_SPLIT = 100;
+    private static final int MAX_SPLITS_SAMPLED = 32;
+    private static final int MIN_SAMPLES = 100;
+    // Shards larger than this repeat the table's common content within Zstandard's window, so a dictionary barely helps
+    private static final long MAX_AVERAGE_SPLIT_SIZE = 1024 * 1024;
+
+    private final ExecutorService _executor;
+
+    // Dictionaries which have been written alongside each Stash, keyed by Stash directory and then by table
+    private final Cache<URI, ConcurrentMap<String, byte[]>> _stashDictionaries = CacheBuilder.newBuilder()
+            .maximumSize(100)
+            .expireAfterAccess(1, TimeUnit.DAYS)
+            .build();
+
+    public ZstdDictionaryTrainer(ExecutorService executor) {
+        _executor = checkNotNull(executor, "executor");
+    }
+
+    /**
+     * Starts training dictionaries for all tables in the latest Stash in the parent of the provided Stash directory.
+     * Training starts only once per Stash directory, so it is safe to call this each time a writer is created.
+     */
+    public void startTraining(final AmazonS3 s3, final URI stashDirectory) {
+        checkNotNull(s3, "s3");
+        checkNotNull(stashDirectory, "stashDirectory");
+
+        final URI stashRoot = getParent(stashDirectory);
+        if (stashRoot == null) {
+            return;
+        }
+
+        final ConcurrentMap<String, byte[]> dictionaries = Maps.newConcurrentMap();
+        if (_stashDictionaries.asMap().putIfAbsent(stashDirectory, dictionaries) != null) {
+            // Training for this Stash was already started
+            return;
+        }
+
+        _executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                startTraining(s3, stashRoot, stashDirectory, dictionaries);
+            }
+        });
+    }
+
+    private void startTraining(final AmazonS3 s3, URI stashRoot, final URI stashDirectory,
+                               final ConcurrentMap<String, byte[]> dictionaries) {
+        final StashReader stashReader;
+        Iterator<StashTable> tables;
+        try {
+            // Train every table from the same Stash even if a new one completes while training
+            stashReader = StandardStashReader.getInstance(stashRoot, s3).getLockedView();
+            tables = stashReader.listTables();
+        } catch (StashNotAvailableException e) {
+            return;
+        } catch (Exception e) {
+            _log.warn("Unable to list the tables in {}, compressing without Zstandard dictionaries", stashRoot, e);
+            return;
+        }
+
+        while (tables.hasNext()) {
+            final String tableName = tables.next().getTableName();
+            _executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    byte[] dictionary = train(stashReader, tableName);
+                    if (dictionary != null && write(s3, stashDirectory, tableName, dictionary)) {
+                        dictionaries.put(tableName, dictionary);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Returns the table's dictionary if it has been trained and written to the provided Stash directory, or null if
+     * the table's shards should be compressed without one.  This never waits for training to complete.
+     */
+    @Nullable
+    public byte[] getDictionary(URI stashDirectory, String tableName) {
+        checkNotNull(stashDirectory, "stashDirectory");
+        checkNotNull(tableName, "tableName");
+
+        ConcurrentMap<String, byte[]> dictionaries = _stashDictionaries.getIfPresent(stashDirectory);
+        return dictionaries != null ? dictionaries.get(tableName) : null;
+    }
+
+    @Nullable
+    private byte[] train(StashReader stashReader, String tableName) {
+        try {
+            List<StashSplit> splits;
+            try {
+                splits = stashReader.getSplits(tableName);
+            } catch (StashNotAvailableException | TableNotStashedException e) {
+                return null;
+            }
+
+            long totalSize = 0;
+            for (StashSplit split : splits) {
+                totalSize += split.getSize();
+            }
+            if (splits.isEmpty() || totalSize / splits.size() > MAX_AVERAGE_SPLIT_SIZE) {
+                return null;
+            }
+
+            // Sample the first documents from each split
+            ZstdDictTrainer trainer = new ZstdDictTrainer(SAMPLE_BUFFER_SIZE, DICTIONARY_SIZE);
+            int samples = 0;
+            boolean full = false;
+            for (StashSplit split : splits.subList(0, Math.min(splits.size(), MAX_SPLITS_SAMPLED))) {
+                try (BufferedReader in = new BufferedReader(new InputStreamReader(
+                        stashReader.getDecompressedSplit(split), Charsets.UTF_8))) {
+                    int splitSamples = 0;
+                    String line;
+                    while (!full && splitSamples < MAX_SAMPLES_PER_SPLIT && (line = in.readLine()) != null) {
+                        byte[] sample = (line + "\n").getBytes(Charsets.UTF_8);
+                        if (sample.length > MAX_SAMPLE_SIZE) {
+                            continue;
+                        }
+                        if (trainer.addSample(sample)) {
+                            samples += 1;
+                            splitSamples += 1;
+                        } else {
+                            full = true;
+                        }
+                    }
+                }
+                if (full) {
+                    break;
+                }
+            }
+
+            if (samples < MIN_SAMPLES) {
+                return null;
+            }
+
+            byte[] dictionary = trainer.trainSamples();
+            _log.info("Trained a {} byte Zstandard dictionary for table {} from {} documents",
+                    dictionary.length, tableName, samples);
+            return dictionary;
+        } catch (Exception e) {
+            _log.warn("Unable to train a Zstandard dictionary for table {}, compressing without one", tableName, e);
+            return null;
+        }
+    }
+
+    /**
+     * Writes the dictionary alongside the Stash, since readers can't decompress the table's shards without it.
+     */
+    private boolean write(AmazonS3 s3, URI stashDirectory, String tableName, byte[] dictionary) {
+        String dictionaryPath = StashUtil.getZstdDictionaryPath(
+                StashUtil.encodeStashTable(tableName), StashUtil.getZstdDictionaryId(dictionary));
+        String key = UriBuilder.fromUri(stashDirectory).path(dictionaryPath).build().getPath();
+        if (key.startsWith("/")) {
+            // S3 does not use leading slashes
+            key = key.substring(1);
+        }
+
+        ObjectMetadata objectMetadata = new ObjectMetadata();
+        objectMetadata.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+        objectMetadata.setContentLength(dictionary.length);
+
+        try {
+            s3.putObject(new PutObjectRequest(stashDirectory.getHost(), key, new ByteArrayInputStream(dictionary), objectMetadata));
+            return true;
+        } catch (Exception e) {
+            _log.warn("Failed to write Zstandard dictionary for table {}, compressing without it", tableName, e);
+            return false;
+        }
+    }
+
+    @Nullable
+    private static URI getParent(URI uri) {
+        String path = Strings.nullToEmpty(uri.getPath());
+        if (path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        int idx = path.lastIndexOf('/');
+        return idx != -1 ? UriBuilder.fromUri(uri).replacePath(path.substring(0, idx)).build() : null;
+    }
+}
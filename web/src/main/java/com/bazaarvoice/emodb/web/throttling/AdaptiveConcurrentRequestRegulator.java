@@ -0,0 +1,233 @@
+package com.bazaarvoice.emodb.web.throttling;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Strings;
+import com.google.common.base.Ticker;
+import com.sun.jersey.spi.container.ContainerRequest;
+
+import javax.annotation.Nullable;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Implementation of {@link ConcurrentRequestRegulator} whose limit adapts to the latency of the requests it regulates.
+ * A fixed limit is either too high when the backend slows down, letting requests pile up until they time out, or too
+ * low when it is healthy, needlessly rejecting requests.  Instead each completed request compares its latency to the
+ * long term average latency and the limit is scaled by the ratio between them:  when requests take longer than usual
+ * the limit shrinks towards the concurrency the backend can currently sustain, and when latency returns to normal the
+ * limit grows back towards the maximum.
+ *
+ * When the limit is reached requests may optionally wait briefly in a bounded queue for a permit instead of being
+ * rejected immediately.  The request start time is stored as a property on the request so only requests which were
+ * admitted are released and sampled.
+ */
+public class AdaptiveConcurrentRequestRegulator implements ConcurrentRequestRegulator {
+
+    // Number of samples over which the long term average latency is computed
+    private final static double LONG_RTT_WINDOW = 600;
+
+    private final String _permitProperty;
+    private final int _minLimit;
+    private final int _maxLimit;
+    private final double _rttTolerance;
+    private final double _smoothing;
+    private final int _maxQueuedRequests;
+    private final long _maxQueueWaitNanos;
+    private final Ticker _ticker;
+    private final Meter _throttlingMeter;
+    private final Meter _rejectedMeter;
+
+    private final ReentrantLock _lock = new ReentrantLock();
+    private final Condition _permitAvailable = _lock.newCondition();
+    // All of the following are guarded by _lock
+    private double _estimatedLimit;
+    private int _limit;
+    private int _inFlight;
+    private int _queued;
+    private double _longRtt;
+
+    public AdaptiveConcurrentRequestRegulator(String permitProperty, int maxConcurrentRequests,
+                                              AdaptiveThrottlingConfiguration config, Ticker ticker,
+                                              @Nullable MetricRegistry metricRegistry, String endpoint,
+                                              @Nullable Meter throttlingMeter) {
+        checkArgument(!Strings.isNullOrEmpty(permitProperty), "Permit property cannot be null or empty");
+        checkArgument(maxConcurrentRequests >= 0, "Max concurrent requests cannot be negative");
+        checkArgument(config.getSmoothing() > 0 && config.getSmoothing() <= 1, "Smoothing must be between 0 and 1");
+        checkArgument(config.getRttTolerance() >= 1, "RTT tolerance cannot be less than 1");
+        checkArgument(config.getMinLimitFraction() >= 0 && config.getMinLimitFraction() <= 1,
+                "Minimum limit fraction must be between 0 and 1");
+        _permitProperty = permitProperty;
+        _maxLimit = maxConcurrentRequests;
+        _minLimit = Math.min(maxConcurrentRequests, Math.max(config.getMinLimit(),
+                (int) Math.ceil(maxConcurrentRequests * config.getMinLimitFraction())));
+        _rttTolerance = config.getRttTolerance();
+        _smoothing = config.getSmoothing();
+        _maxQueuedRequests = config.getMaxQueuedRequests();
+        _maxQueueWaitNanos = config.getMaxQueueWait().toNanos();
+        _ticker = checkNotNull(ticker, "ticker");
+        _throttlingMeter = throttlingMeter;
+
+        // Start fully open; the limit is only reduced once latency shows the backend can't keep up
+        _estimatedLimit = _limit = maxConcurrentRequests;
+
+        if (metricRegistry != null) {
+            checkArgument(!Strings.isNullOrEmpty(endpoint), "Endpoint cannot be null or empty");
+            metricRegistry.register(MetricRegistry.name("bv.emodb.web", "Throttle", endpoint, "limit"), new Gauge<Integer>() {
+                @Override
+                public Integer getValue() {
+                    return getLimit();
+                }
+            });
+            metricRegistry.register(MetricRegistry.name("bv.emodb.web", "Throttle", endpoint, "in-flight"), new Gauge<Integer>() {
+                @Override
+                public Integer getValue() {
+                    return getInFlight();
+                }
+            });
+            _rejectedMeter = metricRegistry.meter(MetricRegistry.name("bv.emodb.web", "Throttle", endpoint, "rejected-requests"));
+        } else {
+            _rejectedMeter = null;
+        }
+    }
+
+    @Override
+    public void throttle(ContainerRequest request) {
+        if (!acquire()) {
+            if (_throttlingMeter != null) {
+                _throttlingMeter.mark();
+            }
+            if (_rejectedMeter != null) {
+                _rejectedMeter.mark();
+            }
+            String response = String.format("Too many concurrent requests for %s. Try again later.", request.getPath());
+            throw new WebApplicationException(Response.status(Response.Status.SERVICE_UNAVAILABLE).entity(response).build());
+        }
+        request.getProperties().put(_permitProperty, _ticker.read());
+    }
+
+    @Override
+    public void release(ContainerRequest request) {
+        Long startTime = (Long) request.getProperties().remove(_permitProperty);
+        if (startTime != null) {
+            release(_ticker.read() - startTime);
+        }
+    }
+
+    private boolean acquire() {
+        _lock.lock();
+        try {
+            if (_inFlight >= _limit && !awaitPermit()) {
+                return false;
+            }
+            _inFlight += 1;
+            return true;
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * Waits up to the maximum queue wait for a permit to become available.  Returns false immediately if the queue
+     * is full.  Must be called while holding the lock.
+     */
+    private boolean awaitPermit() {
+        if (_queued >= _maxQueuedRequests) {
+            return false;
+        }
+        _queued += 1;
+        try {
+            long remainingNanos = _maxQueueWaitNanos;
+            while (_inFlight >= _limit) {
+                if (remainingNanos <= 0) {
+                    return false;
+                }
+                remainingNanos = _permitAvailable.awaitNanos(remainingNanos);
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            _queued -= 1;
+        }
+    }
+
+    private void release(long rttNanos) {
+        _lock.lock();
+        try {
+            int previousLimit = _limit;
+            updateLimit(Math.max(rttNanos, 1), _inFlight);
+            _inFlight -= 1;
+
+            if (_limit > previousLimit) {
+                _permitAvailable.signalAll();
+            } else {
+                _permitAvailable.signal();
+            }
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * Updates the limit using the latency of a completed request and the number of requests which were in flight
+     * when it completed.  Must be called while holding the lock.
+     */
+    private void updateLimit(double rtt, int inFlight) {
+        if (_longRtt == 0) {
+            _longRtt = rtt;
+        } else {
+            _longRtt += (rtt - _longRtt) / LONG_RTT_WINDOW;
+        }
+
+        // After a sustained slowdown the long term average is inflated, which would keep the limit high once latency
+        // recovers.  Decay it quickly towards the current latency.
+        if (_longRtt / rtt > 2) {
+            _longRtt *= 0.95;
+        }
+
+        // Latency measured while the endpoint is far from its limit says nothing about whether the limit is right
+        if (inFlight < _estimatedLimit / 2) {
+            return;
+        }
+
+        // The gradient is 1 while latency is within the tolerance of the long term average and falls as the latency
+        // grows, but never so far that a single slow request halves the limit.  The square root term lets the limit
+        // grow while latency is stable.
+        double gradient = Math.max(0.5, Math.min(1.0, _rttTolerance * _longRtt / rtt));
+        double newLimit = _estimatedLimit * gradient + Math.sqrt(_estimatedLimit);
+        newLimit = _estimatedLimit * (1 - _smoothing) + newLimit * _smoothing;
+
+        _estimatedLimit = Math.max(_minLimit, Math.min(_maxLimit, newLimit));
+        _limit = (int) _estimatedLimit;
+    }
+
+    public int getMaxLimit() {
+        return _maxLimit;
+    }
+
+    public int getLimit() {
+        _lock.lock();
+        try {
+            return _limit;
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        _lock.lock();
+        try {
+            return _inFlight;
+        } finally {
+            _lock.unlock();
+        }
+    }
+}
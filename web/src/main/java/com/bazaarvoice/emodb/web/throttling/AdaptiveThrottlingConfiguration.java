@@ -0,0 +1,110 @@
+package com.bazaarvoice.emodb.web.throttling;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import javax.validation.Valid;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.time.Duration;
+
+/**
+ * Configuration for the {@link AdaptiveConcurrentRequestRegulator} used by API calls annotated with
+ * {@link ThrottleConcurrentRequests}.  The annotation's maximum is the ceiling for each endpoint's adaptive limit.
+ */
+public class AdaptiveThrottlingConfiguration {
+
+    // When false each annotated API call is limited to exactly its maximum number of concurrent requests
+    @JsonProperty ("enabled")
+    private boolean _enabled = true;
+
+    // Lowest limit an endpoint is ever reduced to as a fraction of its maximum, regardless of latency
+    @JsonProperty ("minLimitFraction")
+    private double _minLimitFraction = 0.5;
+
+    // Lowest limit any endpoint is ever reduced to, for endpoints whose maximum is small
+    @Min (1)
+    @JsonProperty ("minLimit")
+    private int _minLimit = 1;
+
+    // Ratio by which the latency of a request may exceed the long term average before the limit is reduced
+    @JsonProperty ("rttTolerance")
+    private double _rttTolerance = 1.5;
+
+    // Weight given to each new limit estimate, between 0 and 1.  Lower values adjust the limit more slowly.
+    @JsonProperty ("smoothing")
+    private double _smoothing = 0.2;
+
+    // Maximum number of requests which wait for a permit when the limit is reached instead of being rejected
+    @Min (0)
+    @JsonProperty ("maxQueuedRequests")
+    private int _maxQueuedRequests = 0;
+
+    // Maximum time a queued request waits for a permit before it is rejected
+    @Valid
+    @NotNull
+    @JsonProperty ("maxQueueWait")
+    private Duration _maxQueueWait = Duration.ofMillis(50);
+
+    public boolean isEnabled() {
+        return _enabled;
+    }
+
+    public AdaptiveThrottlingConfiguration setEnabled(boolean enabled) {
+        _enabled = enabled;
+        return this;
+    }
+
+    public double getMinLimitFraction() {
+        return _minLimitFraction;
+    }
+
+    public AdaptiveThrottlingConfiguration setMinLimitFraction(double minLimitFraction) {
+        _minLimitFraction = minLimitFraction;
+        return this;
+    }
+
+    public int getMinLimit() {
+        return _minLimit;
+    }
+
+    public AdaptiveThrottlingConfiguration setMinLimit(int minLimit) {
+        _minLimit = minLimit;
+        return this;
+    }
+
+    public double getRttTolerance() {
+        return _rttTolerance;
+    }
+
+    public AdaptiveThrottlingConfiguration setRttTolerance(double rttTolerance) {
+        _rttTolerance = rttTolerance;
+        return this;
+    }
+
+    public double getSmoothing() {
+        return _smoothing;
+    }
+
+    public AdaptiveThrottlingConfiguration setSmoothing(double smoothing) {
+        _smoothing = smoothing;
+        return this;
+    }
+
+    public int getMaxQueuedRequests() {
+        return _maxQueuedRequests;
+    }
+
+    public AdaptiveThrottlingConfiguration setMaxQueuedRequests(int maxQueuedRequests) {
+        _maxQueuedRequests = maxQueuedRequests;
+        return this;
+    }
+
+    public Duration getMaxQueueWait() {
+        return _maxQueueWait;
+    }
+
+    public AdaptiveThrottlingConfiguration setMaxQueueWait(Duration maxQueueWait) {
+        _maxQueueWait = maxQueueWait;
+        return this;
+    }
+}
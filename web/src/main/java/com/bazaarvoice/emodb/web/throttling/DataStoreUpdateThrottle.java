@@ -1,23 +1,33 @@
 package com.bazaarvoice.emodb.web.throttling;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.util.Objects;
 
 /**
- * Throttle for updates to the DataStore.  This consists of two attributes:
+ * Throttle for updates to the DataStore.  This consists of three attributes:
  * <ol>
  *     <li>The rate limit in terms of updates per second.</li>
  *     <li>A expiration time after which the rate limit will no longer be enforced.</li>
+ *     <li>The maximum time by which updates may get ahead of the rate limit before they are rejected.</li>
  * </ol>
  */
 public class DataStoreUpdateThrottle {
 
+    public static final Duration DEFAULT_MAX_WAIT = Duration.ofSeconds(5);
+
     private final double _rateLimit;
     private final Instant _expirationTime;
+    private final Duration _maxWait;
 
     public DataStoreUpdateThrottle(double rateLimit, Instant expirationTime) {
+        this(rateLimit, expirationTime, DEFAULT_MAX_WAIT);
+    }
+
+    public DataStoreUpdateThrottle(double rateLimit, Instant expirationTime, Duration maxWait) {
         _rateLimit = rateLimit;
         _expirationTime = expirationTime;
+        _maxWait = maxWait;
     }
 
     public double getRateLimit() {
@@ -28,6 +38,10 @@ public class DataStoreUpdateThrottle {
         return _expirationTime;
     }
 
+    public Duration getMaxWait() {
+        return _maxWait;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -38,12 +52,13 @@ public class DataStoreUpdateThrottle {
         }
         DataStoreUpdateThrottle that = (DataStoreUpdateThrottle) o;
         return that._rateLimit == _rateLimit &&
-                Objects.equals(_expirationTime, that._expirationTime);
+                Objects.equals(_expirationTime, that._expirationTime) &&
+                Objects.equals(_maxWait, that._maxWait);
     }
 
     @Override
     public int hashCode() {
 
-        return Objects.hash(_rateLimit, _expirationTime);
+        return Objects.hash(_rateLimit, _expirationTime, _maxWait);
     }
 }
@@ -39,6 +39,11 @@ import static java.util.Objects.requireNonNull;
  * to rate limit the API key in both.  However, any updates made using this task are automatically propagated to every
  * server in the local data center.
  *
+ * Rate limits never block API requests.  Updates may get ahead of the rate limit by up to a maximum wait, 5 seconds
+ * by default, after which further updates are rejected with a 429 "Too Many Requests" response whose "Retry-After"
+ * header says when the client may try again.  For example, an API key limited to 100 wps with the default maximum
+ * wait can burst up to 500 updates before being rejected.
+ *
  * All throttles must expire after a specific duration.  If none is provided the default is 24 hours.  To remove all
  * throttling for an API key set the rate limit to 0.  Note that it is not possible to completely block update access
  * using this task, but it can be set remarkably low, such as to 0.1 (1 update every 10 seconds).
@@ -53,6 +58,9 @@ import static java.util.Objects.requireNonNull;
  *     curl -s -XPOST 'localhost:8081/tasks/sor-api-update-throttle?id=ID01&limit=100'
  *     curl -s -XPOST 'localhost:8081/tasks/sor-api-update-throttle?id=ID02&limit=100&duration=PT1H'
  *
+ *     # Set a throttle which rejects updates as soon as they get 1 second ahead of the rate limit
+ *     curl -s -XPOST 'localhost:8081/tasks/sor-api-update-throttle?id=ID03&limit=100&maxWait=PT1S'
+ *
  *     # Set an instance wide throttle
  *     curl -s -XPOST 'localhost:8081/tasks/sor-api-update-throttle?id=*&limit=500&duration=PT30M'
  *
@@ -96,6 +104,14 @@ public class DataStoreUpdateThrottleControlTask extends Task {
             throw new IllegalArgumentException("At most one limit parameter is permitted");
         }
 
+        Duration maxWait = DataStoreUpdateThrottle.DEFAULT_MAX_WAIT;
+        values = parameters.get("maxWait");
+        if (values.size() == 1) {
+            maxWait = new ZkDurationSerializer().fromString(values.iterator().next());
+        } else if (values.size() > 1) {
+            throw new IllegalArgumentException("At most one maxWait parameter is permitted");
+        }
+
         boolean throttlesChanged = false;
 
         if (parameters.keySet().contains("clear")) {
@@ -109,8 +125,9 @@ public class DataStoreUpdateThrottleControlTask extends Task {
         if (!parameters.get("id").isEmpty()) {
             DataStoreUpdateThrottle throttle = null;
             if (limit > 0) {
-                throttle = new DataStoreUpdateThrottle(limit, Instant.now().plus(expiryDuration));
-                out.printf("Applying throttled rate limit %f expires at %s:\n", limit, throttle.getExpirationTime());
+                throttle = new DataStoreUpdateThrottle(limit, Instant.now().plus(expiryDuration), maxWait);
+                out.printf("Applying throttled rate limit %f max wait %s expires at %s:\n", limit, throttle.getMaxWait(),
+                        throttle.getExpirationTime());
             } else {
                 out.printf("Removing throttles:\n");
             }
@@ -146,7 +163,8 @@ public class DataStoreUpdateThrottleControlTask extends Task {
             String apiKey = entry.getKey();
             DataStoreUpdateThrottle throttle = entry.getValue();
 
-            out.printf("- %s (limit %f expires at %s)\n", apiKey, throttle.getRateLimit(), throttle.getExpirationTime());
+            out.printf("- %s (limit %f max wait %s expires at %s)\n", apiKey, throttle.getRateLimit(), throttle.getMaxWait(),
+                    throttle.getExpirationTime());
         }
 
         out.println();
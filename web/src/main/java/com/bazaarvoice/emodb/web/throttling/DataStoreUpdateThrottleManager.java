@@ -1,21 +1,24 @@
 package com.bazaarvoice.emodb.web.throttling;
 
+import com.bazaarvoice.emodb.common.api.RateLimitExceededException;
 import com.bazaarvoice.emodb.common.zookeeper.store.ChangeType;
 import com.bazaarvoice.emodb.common.zookeeper.store.MapStore;
 import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Throwables;
 import com.google.common.collect.Maps;
-import com.google.common.util.concurrent.RateLimiter;
 import com.google.inject.Inject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.time.Clock;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.Map;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import static com.google.common.base.Preconditions.checkArgument;
@@ -34,6 +37,10 @@ import static java.util.Objects.requireNonNull;
  * the active throttles in ZooKeeper, and a listener updates the local throttles to match the ZooKeeper state.  For this
  * reason there is a slight propagation delay between updating the rate limit locally and it being enforced throughout
  * the data center, including on the local instance.
+ *
+ * Rate limits are enforced by {@link TokenBucket}s which never block the request thread.  Updates which get ahead of a
+ * rate limit by no more than the throttle's maximum wait are applied immediately, and later updates are rejected with
+ * a {@link RateLimitExceededException} until the rate limit catches up.
  */
 public class DataStoreUpdateThrottleManager implements DataStoreUpdateThrottler {
 
@@ -53,6 +60,7 @@ public class DataStoreUpdateThrottleManager implements DataStoreUpdateThrottler
     private volatile ExpiringRateLimiter _instanceRateLimit = null;
     private final ConcurrentMap<String, ExpiringRateLimiter> _rateLimitByApiKey = Maps.newConcurrentMap();
     private final Histogram _throttleWaitTimeMs;
+    private final Meter _rejectedUpdates;
 
     @Inject
     public DataStoreUpdateThrottleManager(@DataStoreUpdateThrottleMapStore MapStore<DataStoreUpdateThrottle> currentRateLimits,
@@ -62,6 +70,7 @@ public class DataStoreUpdateThrottleManager implements DataStoreUpdateThrottler
         _currentRateLimits.addListener((key, changeType) -> onRateLimitChanged(fromZKPath(key), changeType));
 
         _throttleWaitTimeMs = metricRegistry.histogram(MetricRegistry.name("bv.emodb.web", "Throttle", "throttled-sor-update-ms"));
+        _rejectedUpdates = metricRegistry.meter(MetricRegistry.name("bv.emodb.web", "Throttle", "rejected-sor-updates"));
     }
 
     public void updateAPIKeyRateLimit(String id, DataStoreUpdateThrottle throttle) {
@@ -94,23 +103,47 @@ public class DataStoreUpdateThrottleManager implements DataStoreUpdateThrottler
     }
 
     @Override
-    public void beforeUpdate(String id) {
+    public void beforeUpdates(String id, int updates) {
         checkNotNull(id, "Rate limiting of SOR updates should only be applied to API requests with an API key");
+        checkArgument(updates > 0, "Updates must be positive");
 
-        double millisWaited = 0;
-        double maybeSecondsWaited;
+        long millisReserved = 0;
+        long maybeMillisReserved;
 
-        // First, apply instance rate limit
+        // First apply the API key rate limit.  A client exceeding its own rate limit is rejected before its updates
+        // can use any of the instance-wide rate limit.
+        ExpiringRateLimiter keyRateLimiter = _rateLimitByApiKey.get(id);
+        if (keyRateLimiter != null) {
+            if ((maybeMillisReserved = keyRateLimiter.reserve(updates)) != -1) {
+                millisReserved = maybeMillisReserved;
+            } else {
+                // There is a slight race condition here if an admin re-creates the throttle at the exact moment
+                // this throttle is noted to have expired.  However, this is extremely unlikely so we favor
+                // clearing out expired throttles rather than keeping them indefinitely to avoid race conditions.
+                _rateLimitByApiKey.remove(id, keyRateLimiter);
+                clearAPIKeyRateLimit(id);
+                keyRateLimiter = null;
+            }
+        }
+
+        // Next apply instance rate limit.  If it rejects the updates return them to the API key's rate limit, since
+        // they were never made.
         ExpiringRateLimiter rateLimiter = _instanceRateLimit;
         if (rateLimiter != null) {
-            if ((maybeSecondsWaited = rateLimiter.rateLimit()) != -1) {
-                millisWaited = maybeSecondsWaited * 1000.0;
+            try {
+                maybeMillisReserved = rateLimiter.reserve(updates);
+            } catch (RateLimitExceededException e) {
+                if (keyRateLimiter != null) {
+                    keyRateLimiter.refund(updates);
+                }
+                throw e;
+            }
+            if (maybeMillisReserved != -1) {
+                millisReserved = Math.max(millisReserved, maybeMillisReserved);
             } else {
                 synchronized (this) {
+                    // Same as with the API key throttle we accept an edge race condition so we can clear expired throttles.
                     if (_instanceRateLimit != null && !_instanceRateLimit.isActive()) {
-                        // There is a slight race condition here if an admin re-creates the throttle at the exact moment
-                        // this throttle is noted to have expired.  However, this is extremely unlikely so we favor
-                        // clearing out expired throttles rather than keeping them indefinitely to avoid race conditions.
                         _instanceRateLimit = null;
                         clearAPIKeyRateLimit(INSTANCE_RATE_LIMIT_KEY);
                     }
@@ -118,21 +151,24 @@ public class DataStoreUpdateThrottleManager implements DataStoreUpdateThrottler
             }
         }
 
-        // Next apply API Key rate limit
-        rateLimiter = _rateLimitByApiKey.get(id);
-        if (rateLimiter != null) {
-            if ((maybeSecondsWaited = rateLimiter.rateLimit()) != -1) {
-                millisWaited += maybeSecondsWaited * 1000.0;
-            } else {
-                // Same as with the instance throttle we accept an edge race condition so we can clear expired throttles.
-                _rateLimitByApiKey.remove(id, rateLimiter);
-                clearAPIKeyRateLimit(id);
-            }
+        // Consider any updates reserved more than 1 millisecond ahead of the rate limit to be throttled
+        if (millisReserved >= 1) {
+            _throttleWaitTimeMs.update(millisReserved);
         }
+    }
 
-        // Consider any wait of longer than 1 millisecond to be throttled
-        if (millisWaited >= 1) {
-            _throttleWaitTimeMs.update((long) millisWaited);
+    @Override
+    public void refundUpdates(String id, int updates) {
+        checkNotNull(id, "id");
+        checkArgument(updates > 0, "Updates must be positive");
+
+        ExpiringRateLimiter rateLimiter = _rateLimitByApiKey.get(id);
+        if (rateLimiter != null) {
+            rateLimiter.refund(updates);
+        }
+        rateLimiter = _instanceRateLimit;
+        if (rateLimiter != null) {
+            rateLimiter.refund(updates);
         }
     }
 
@@ -150,9 +186,11 @@ public class DataStoreUpdateThrottleManager implements DataStoreUpdateThrottler
         if (removed || rateLimit == null) {
             _instanceRateLimit = null;
         } else if (_instanceRateLimit == null) {
-            _instanceRateLimit = new ExpiringRateLimiter(createRateLimiter(rateLimit.getRateLimit()), rateLimit.getExpirationTime());
+            _instanceRateLimit = new ExpiringRateLimiter(createRateLimiter(rateLimit.getRateLimit()), rateLimit.getExpirationTime(),
+                    rateLimit.getMaxWait());
         } else {
-            _instanceRateLimit = _instanceRateLimit.updated(rateLimit.getRateLimit(), rateLimit.getExpirationTime());
+            _instanceRateLimit = _instanceRateLimit.updated(rateLimit.getRateLimit(), rateLimit.getExpirationTime(),
+                    rateLimit.getMaxWait());
         }
     }
 
@@ -164,9 +202,10 @@ public class DataStoreUpdateThrottleManager implements DataStoreUpdateThrottler
         } else {
             _rateLimitByApiKey.compute(id, (s, rateLimiter) -> {
                 if (rateLimiter == null) {
-                    return new ExpiringRateLimiter(createRateLimiter(rateLimit.getRateLimit()), rateLimit.getExpirationTime());
+                    return new ExpiringRateLimiter(createRateLimiter(rateLimit.getRateLimit()), rateLimit.getExpirationTime(),
+                            rateLimit.getMaxWait());
                 } else {
-                    return rateLimiter.updated(rateLimit.getRateLimit(), rateLimit.getExpirationTime());
+                    return rateLimiter.updated(rateLimit.getRateLimit(), rateLimit.getExpirationTime(), rateLimit.getMaxWait());
                 }
             });
         }
@@ -183,36 +222,54 @@ public class DataStoreUpdateThrottleManager implements DataStoreUpdateThrottler
     }
 
     private final class ExpiringRateLimiter {
-        final RateLimiter _rateLimiter;
+        final TokenBucket _rateLimiter;
         final Instant _expirationTime;
+        final long _maxWaitMillis;
 
-        ExpiringRateLimiter(RateLimiter rateLimiter, Instant expirationTime) {
+        ExpiringRateLimiter(TokenBucket rateLimiter, Instant expirationTime, Duration maxWait) {
             _rateLimiter = rateLimiter;
             _expirationTime = expirationTime;
+            _maxWaitMillis = maxWait.toMillis();
         }
 
         /**
          * Applies the rate limiter if it has not expired.
-         * @return The number of seconds spent waiting due to rate limiting, or -1 if the rate limit was inactive.
+         * @return The number of milliseconds the updates were reserved ahead of the rate limit, or -1 if the rate
+         *         limit was inactive.
+         * @throws RateLimitExceededException if the updates would get ahead of the rate limit by more than the
+         *         maximum wait.
          */
-        double rateLimit() {
-            if (isActive()) {
-                return _rateLimiter.acquire();
-            } else {
+        long reserve(int updates) {
+            if (!isActive()) {
                 return -1;
             }
+            long waitMillis = _rateLimiter.reserve(updates, _maxWaitMillis);
+            if (waitMillis > _maxWaitMillis) {
+                _rejectedUpdates.mark(updates);
+                int retryAfterSeconds = (int) Math.max(1, TimeUnit.MILLISECONDS.toSeconds(waitMillis - _maxWaitMillis + 999));
+                throw new RateLimitExceededException(
+                        String.format("Update rate limit of %s updates per second exceeded", _rateLimiter.getRate()),
+                        retryAfterSeconds);
+            }
+            return waitMillis;
+        }
+
+        void refund(int updates) {
+            if (isActive()) {
+                _rateLimiter.refund(updates);
+            }
         }
 
         boolean isActive() {
             return _clock.instant().isBefore(_expirationTime);
         }
 
-        ExpiringRateLimiter updated(double newRate, Instant expirationTime) {
-            // If only the expiration time is changing don't adjust the rate limiter
+        ExpiringRateLimiter updated(double newRate, Instant expirationTime, Duration maxWait) {
+            // If only the expiration time or maximum wait is changing don't adjust the rate limiter
             if (_rateLimiter.getRate() == newRate) {
-                return new ExpiringRateLimiter(_rateLimiter, expirationTime);
+                return new ExpiringRateLimiter(_rateLimiter, expirationTime, maxWait);
             } else {
-                return new ExpiringRateLimiter(createRateLimiter(newRate), expirationTime);
+                return new ExpiringRateLimiter(createRateLimiter(newRate), expirationTime, maxWait);
             }
         }
     }
@@ -222,7 +279,7 @@ public class DataStoreUpdateThrottleManager implements DataStoreUpdateThrottler
      * to enable introspecting rate limit calls.
      */
     @VisibleForTesting
-    protected RateLimiter createRateLimiter(double rate) {
-        return RateLimiter.create(rate);
+    protected TokenBucket createRateLimiter(double rate) {
+        return new TokenBucket(rate, _clock);
     }
 }
@@ -1,17 +1,29 @@
 package com.bazaarvoice.emodb.web.throttling;
 
+import com.bazaarvoice.emodb.common.api.RateLimitExceededException;
+
 /**
  * Interface to enable the DataStore API to enforce all active update throttles.
  */
 public interface DataStoreUpdateThrottler {
     /**
-     * Should be called before each update applied at the API level.  If there is an instance-wide or API-key level rate
-     * limit active on this instance this method will block if necessary to satisfy the rate limit.  In a more
-     * sophisticated implementation this could reject an update if the wait is too long, allowing the API to return
-     * a meaningful "rate limit exceeded" response.  However, until the EmoDB clients are updated to handle this
-     * condition the safest approach is to wait instead of fail.
+     * Should be called before each batch of updates applied at the API level.  If there is an instance-wide or API-key
+     * level rate limit active on this instance and the updates would exceed it by more than the limit's maximum wait
+     * the updates are rejected.  This method never blocks, so a client exceeding its rate limit can't tie up request
+     * threads and delay updates from other API keys.
      *
      * @param id The ID of the API key making the update request.
+     * @param updates The number of updates in the batch.
+     * @throws RateLimitExceededException if the updates exceed an active rate limit.
+     */
+    void beforeUpdates(String id, int updates) throws RateLimitExceededException;
+
+    /**
+     * Returns updates charged by {@link #beforeUpdates(String, int)} which were never made, such as the remainder of a
+     * batch charged for a stream of updates which ended mid-batch.
+     *
+     * @param id The ID of the API key which was charged for the updates.
+     * @param updates The number of updates to refund.
      */
-    void beforeUpdate(String id);
+    void refundUpdates(String id, int updates);
 }
@@ -12,4 +12,10 @@ import static java.lang.annotation.RetentionPolicy.RUNTIME;
 @Target({ METHOD }) @Retention(RUNTIME)
 public @interface ThrottleConcurrentRequests {
     int maxRequests();
+
+    /**
+     * Name of the endpoint in the throttling metrics.  Defaults to the resource class and method name.  Adaptive
+     * throttling limits are per name, so overloaded methods share a limit unless they are given distinct names.
+     */
+    String name() default "";
 }
@@ -2,25 +2,40 @@ package com.bazaarvoice.emodb.web.throttling;
 
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Ticker;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.sun.jersey.api.model.AbstractMethod;
 import com.sun.jersey.spi.container.ResourceFilter;
 import com.sun.jersey.spi.container.ResourceFilterFactory;
 
 import javax.annotation.Nullable;
 import java.util.List;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
  * This factory checks for @ThrottleConcurrentRequests attribute on methods,
- * and instantiates a ResourceFilter for those methods.
+ * and instantiates a ResourceFilter for those methods.  Unless adaptive throttling is disabled the annotation's maximum
+ * is only the ceiling for a limit which adapts to the latency of the method's requests.
  */
 public class ThrottlingFilterFactory implements ResourceFilterFactory {
 
     private final static String SEMAPHORE_PROPERTY = ThrottlingFilterFactory.class.getName() + ".semaphore";
+    private final static String PERMIT_PROPERTY = ThrottlingFilterFactory.class.getName() + ".permit";
 
+    private final AdaptiveThrottlingConfiguration _adaptiveThrottlingConfiguration;
+    private final MetricRegistry _metricRegistry;
     private final Meter _meter;
+    // Adaptive regulators by endpoint name, so methods sharing a name share a limit and its metrics
+    private final Map<String, AdaptiveConcurrentRequestRegulator> _adaptiveRegulators = Maps.newHashMap();
 
-    public ThrottlingFilterFactory(@Nullable MetricRegistry metricRegistry) {
+    public ThrottlingFilterFactory(AdaptiveThrottlingConfiguration adaptiveThrottlingConfiguration,
+                                   @Nullable MetricRegistry metricRegistry) {
+        _adaptiveThrottlingConfiguration = checkNotNull(adaptiveThrottlingConfiguration, "adaptiveThrottlingConfiguration");
+        _metricRegistry = metricRegistry;
         if (metricRegistry != null) {
             _meter = metricRegistry.meter(MetricRegistry.name("bv.emodb.web", "Throttle", "throttled-requests"));
         } else {
@@ -32,12 +47,33 @@ public class ThrottlingFilterFactory implements ResourceFilterFactory {
     public List<ResourceFilter> create(AbstractMethod abstractMethod) {
         List<ResourceFilter> resourceFilters = Lists.newArrayList();
         if (abstractMethod.isAnnotationPresent(ThrottleConcurrentRequests.class)) {
-            int maxRequests = abstractMethod.getAnnotation(ThrottleConcurrentRequests.class).maxRequests();
+            ThrottleConcurrentRequests annotation = abstractMethod.getAnnotation(ThrottleConcurrentRequests.class);
+            int maxRequests = annotation.maxRequests();
+            ConcurrentRequestRegulator regulator;
+            if (_adaptiveThrottlingConfiguration.isEnabled()) {
+                String endpoint = !annotation.name().isEmpty() ? annotation.name() :
+                        abstractMethod.getResource().getResourceClass().getSimpleName() + "." + abstractMethod.getMethod().getName();
+                regulator = getAdaptiveRegulator(endpoint, maxRequests);
+            } else {
+                regulator = new DefaultConcurrentRequestRegulator(SEMAPHORE_PROPERTY, maxRequests, _meter);
+            }
             InstanceConcurrentRequestRegulatorSupplier regulatorSupplier =
-                    new InstanceConcurrentRequestRegulatorSupplier(
-                            new DefaultConcurrentRequestRegulator(SEMAPHORE_PROPERTY, maxRequests, _meter));
+                    new InstanceConcurrentRequestRegulatorSupplier(regulator);
             resourceFilters.add(new ConcurrentRequestsThrottlingFilter(regulatorSupplier));
         }
         return resourceFilters;
     }
+
+    private synchronized AdaptiveConcurrentRequestRegulator getAdaptiveRegulator(String endpoint, int maxRequests) {
+        AdaptiveConcurrentRequestRegulator regulator = _adaptiveRegulators.get(endpoint);
+        if (regulator == null) {
+            regulator = new AdaptiveConcurrentRequestRegulator(PERMIT_PROPERTY, maxRequests,
+                    _adaptiveThrottlingConfiguration, Ticker.systemTicker(), _metricRegistry, endpoint, _meter);
+            _adaptiveRegulators.put(endpoint, regulator);
+        } else {
+            checkArgument(regulator.getMaxLimit() == maxRequests,
+                    "Methods throttled as %s have different maximum requests", endpoint);
+        }
+        return regulator;
+    }
 }
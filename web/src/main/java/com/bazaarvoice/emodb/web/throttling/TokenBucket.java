@@ -0,0 +1,59 @@
+package com.bazaarvoice.emodb.web.throttling;
+
+import java.time.Clock;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Token bucket rate limiter which never blocks.  Unlike {@link com.google.common.util.concurrent.RateLimiter}, which
+ * sleeps the calling thread until permits are available, {@link #reserve(int, long)} only computes how long the caller
+ * would have to wait.  If that wait is within the caller's bound the permits are granted immediately and the deficit
+ * is carried forward, so later callers see a correspondingly longer wait.  The rate is therefore enforced on average
+ * while bursts are bounded by the maximum wait.
+ */
+public class TokenBucket {
+
+    private final double _rate;
+    private final double _millisPerPermit;
+    private final Clock _clock;
+
+    // Time at which all permits reserved so far will have been paid for, in fractional epoch milliseconds
+    private double _nextFreeMillis;
+
+    public TokenBucket(double rate, Clock clock) {
+        checkArgument(rate > 0, "Rate must be positive");
+        _rate = rate;
+        _millisPerPermit = 1000.0 / rate;
+        _clock = checkNotNull(clock, "clock");
+    }
+
+    public double getRate() {
+        return _rate;
+    }
+
+    /**
+     * Reserves the permits if they would be available within the maximum wait.
+     * @return The number of milliseconds until the permits would be available.  If this is greater than
+     *         <code>maxWaitMillis</code> then the permits were not reserved.
+     */
+    public synchronized long reserve(int permits, long maxWaitMillis) {
+        checkArgument(permits > 0, "Permits must be positive");
+        double now = _clock.millis();
+        double start = Math.max(_nextFreeMillis, now);
+        long waitMillis = (long) Math.ceil(start - now);
+        if (waitMillis <= maxWaitMillis) {
+            _nextFreeMillis = start + permits * _millisPerPermit;
+        }
+        return waitMillis;
+    }
+
+    /**
+     * Returns permits which were reserved but never used.  Only a deficit still to be paid off is cancelled, so
+     * refunding permits never lets later callers burst beyond the rate.
+     */
+    public synchronized void refund(int permits) {
+        checkArgument(permits > 0, "Permits must be positive");
+        _nextFreeMillis = Math.max(_clock.millis(), _nextFreeMillis - permits * _millisPerPermit);
+    }
+}
@@ -6,7 +6,12 @@ package com.bazaarvoice.emodb.web.throttling;
 public class UnlimitedDataStoreUpdateThrottler implements DataStoreUpdateThrottler {
 
     @Override
-    public void beforeUpdate(String id) {
+    public void beforeUpdates(String id, int updates) {
+        // no-op
+    }
+
+    @Override
+    public void refundUpdates(String id, int updates) {
         // no-op
     }
 }
@@ -2,16 +2,22 @@ package com.bazaarvoice.emodb.web.throttling;
 
 import com.bazaarvoice.emodb.common.zookeeper.store.ZkValueSerializer;
 
+import java.time.Duration;
 import java.time.Instant;
 
 /**
- * Simple serializer for storing {@link DataStoreUpdateThrottle} configurations in ZooKeeper.
+ * Simple serializer for storing {@link DataStoreUpdateThrottle} configurations in ZooKeeper.  Throttles stored before
+ * the maximum wait was introduced have only the rate limit and expiration time and use the default maximum wait.
  */
 public class ZkDataStoreUpdateThrottleSerializer implements ZkValueSerializer<DataStoreUpdateThrottle> {
 
     @Override
     public String toString(DataStoreUpdateThrottle value) {
-        return String.format("%.8f,%s", value.getRateLimit(), value.getExpirationTime());
+        // Omit the default maximum wait so servers which predate it can still parse the throttle
+        if (DataStoreUpdateThrottle.DEFAULT_MAX_WAIT.equals(value.getMaxWait())) {
+            return String.format("%.8f,%s", value.getRateLimit(), value.getExpirationTime());
+        }
+        return String.format("%.8f,%s,%s", value.getRateLimit(), value.getExpirationTime(), value.getMaxWait());
     }
 
     @Override
@@ -25,7 +31,13 @@ public class ZkDataStoreUpdateThrottleSerializer implements ZkValueSerializer<Da
             throw new IllegalArgumentException("Rate limit value cannot be parsed: " + string);
         }
         double rateLimit = Double.parseDouble(string.substring(0, comma));
-        Instant expirationTime = Instant.parse(string.substring(comma+1));
-        return new DataStoreUpdateThrottle(rateLimit, expirationTime);
+        int nextComma = string.indexOf(',', comma+1);
+        if (nextComma == -1) {
+            Instant expirationTime = Instant.parse(string.substring(comma+1));
+            return new DataStoreUpdateThrottle(rateLimit, expirationTime);
+        }
+        Instant expirationTime = Instant.parse(string.substring(comma+1, nextComma));
+        Duration maxWait = Duration.parse(string.substring(nextComma+1));
+        return new DataStoreUpdateThrottle(rateLimit, expirationTime, maxWait);
     }
 }
@@ -438,6 +438,16 @@ public class EmoPermissionTest {
                 .implies(_resolver.resolvePermission("sor|read|?")));
     }
 
+    @Test
+    public void testDependsOnResourceState() {
+        assertFalse(_resolver.resolvePermission("sor|read|test:table").dependsOnResourceState());
+        assertFalse(_resolver.resolvePermission("sor|*|*").dependsOnResourceState());
+        assertFalse(_resolver.resolvePermission("sor|read|if(intrinsic(\"~table\":like(\"test*\")))").dependsOnResourceState());
+        assertTrue(_resolver.resolvePermission("sor|read|if(intrinsic(\"~placement\":\"ugc_us:ugc\"))").dependsOnResourceState());
+        assertTrue(_resolver.resolvePermission("sor|update|if({..,\"type\":\"review\"})").dependsOnResourceState());
+        assertTrue(_resolver.resolvePermission("blob|read|if(intrinsic(\"~placement\":\"media_us:ugc\"))").dependsOnResourceState());
+    }
+
     private void addSorTable(String name, String placement, Map<String, Object> attributes) {
         TableAvailability availability = new TableAvailability(placement, false);
         addSorTable(name, placement, availability, attributes);
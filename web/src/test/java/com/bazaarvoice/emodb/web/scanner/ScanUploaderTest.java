@@ -44,7 +44,9 @@ import com.bazaarvoice.emodb.web.scanner.scanstatus.InMemoryScanStatusDAO;
 import com.bazaarvoice.emodb.web.scanner.scanstatus.ScanRangeStatus;
 import com.bazaarvoice.emodb.web.scanner.scanstatus.ScanStatus;
 import com.bazaarvoice.emodb.web.scanner.scanstatus.ScanStatusDAO;
+import com.bazaarvoice.emodb.web.scanner.scanstatus.TableCompressionStatistics;
 import com.bazaarvoice.emodb.web.scanner.writer.AmazonS3Provider;
+import com.bazaarvoice.emodb.web.scanner.writer.Compression;
 import com.bazaarvoice.emodb.web.scanner.writer.DiscardingScanWriter;
 import com.bazaarvoice.emodb.web.scanner.writer.S3ScanWriter;
 import com.bazaarvoice.emodb.web.scanner.writer.ScanWriter;
@@ -53,6 +55,7 @@ import com.bazaarvoice.emodb.web.scanner.writer.ScanWriterGenerator;
 import com.bazaarvoice.emodb.web.scanner.writer.TransferKey;
 import com.bazaarvoice.emodb.web.scanner.writer.TransferStatus;
 import com.bazaarvoice.emodb.web.scanner.writer.WaitForAllTransfersCompleteResult;
+import com.bazaarvoice.emodb.web.scanner.writer.ZstdDictionaryTrainer;
 import com.codahale.metrics.MetricRegistry;
 import com.google.common.base.Charsets;
 import com.google.common.base.Optional;
@@ -301,7 +304,7 @@ public class ScanUploaderTest {
 
         final MetricRegistry metricRegistry = new MetricRegistry();
         ScanWriterFactory scanWriterFactory = mock(ScanWriterFactory.class);
-        when(scanWriterFactory.createS3ScanWriter(anyInt(), any(URI.class), any(Optional.class))).thenAnswer(
+        when(scanWriterFactory.createS3ScanWriter(anyInt(), any(URI.class), any(Optional.class), any(Compression.class))).thenAnswer(
                 new Answer<S3ScanWriter>() {
                     @Override
                     public S3ScanWriter answer(InvocationOnMock invocation)
@@ -309,7 +312,7 @@ public class ScanUploaderTest {
                         int taskId = (Integer) invocation.getArguments()[0];
                         URI uri = (URI) invocation.getArguments()[1];
                         Optional<Integer> maxOpenShards = (Optional<Integer>) invocation.getArguments()[2];
-                        return new S3ScanWriter(taskId, uri, maxOpenShards, metricRegistry, amazonS3Provider, _service);
+                        return new S3ScanWriter(taskId, uri, maxOpenShards, Compression.GZIP, metricRegistry, amazonS3Provider, _service, new ZstdDictionaryTrainer(MoreExecutors.sameThreadExecutor()));
                     }
                 }
         );
@@ -365,7 +368,7 @@ public class ScanUploaderTest {
 
         // Scan and upload the range
         LocalRangeScanUploader uploader = new LocalRangeScanUploader(
-                dataTools, scanWriterGenerator, compactionControlSource, mock(LifeCycleRegistry.class), metricRegistry, 2, 1000, Duration.ofMinutes(1),
+                dataTools, scanWriterGenerator, compactionControlSource, mock(LifeCycleRegistry.class), metricRegistry, 2, 1000, 1, Duration.ofMinutes(1),
                 Duration.ofMinutes(5));
         uploader.start();
         try {
@@ -962,13 +965,13 @@ public class ScanUploaderTest {
                     }
                 });
 
-        ScanWriter scanWriter = new DiscardingScanWriter(123, Optional.<Integer>absent(), metricRegistry);
+        ScanWriter scanWriter = new DiscardingScanWriter(123, Optional.<Integer>absent(), Compression.GZIP, metricRegistry);
         ScanWriterGenerator scanWriterGenerator = mock(ScanWriterGenerator.class);
-        when(scanWriterGenerator.createScanWriter(eq(123), anySetOf(ScanDestination.class)))
+        when(scanWriterGenerator.createScanWriter(eq(123), anySetOf(ScanDestination.class), eq(Compression.GZIP)))
                 .thenReturn(scanWriter);
 
         LocalRangeScanUploader uploader = new LocalRangeScanUploader(
-                dataTools, scanWriterGenerator, new InMemoryCompactionControlSource(), mock(LifeCycleRegistry.class), metricRegistry, 2, 1000, Duration.ofMinutes(1),
+                dataTools, scanWriterGenerator, new InMemoryCompactionControlSource(), mock(LifeCycleRegistry.class), metricRegistry, 2, 1000, 1, Duration.ofMinutes(1),
                 Duration.ofMinutes(5));
 
         ScanOptions options = new ScanOptions("p0")
@@ -988,6 +991,17 @@ public class ScanUploaderTest {
                 AstyanaxStorage.getRowKeyRaw(shardId, tableUuid, key(shardId, 299)),
                 ScanRange.MAX_VALUE);
         assertEquals(expectedResplitRange, result.getResplitRange());
+
+        // Only the rows up to the resplit point were read and uploaded
+        assertNotNull(result.getStageStatistics());
+        assertEquals(result.getStageStatistics().getRows(), 300);
+        assertTrue(result.getStageStatistics().getBytes() > 0);
+
+        // All rows were from a single table
+        TableCompressionStatistics tableCompression = result.getStageStatistics().getTableCompression().get("test:table");
+        assertNotNull(tableCompression);
+        assertTrue(tableCompression.getUncompressedBytes() > 0);
+        assertTrue(tableCompression.getCompressedBytes() > 0);
     }
 
     @Test
@@ -1120,11 +1134,11 @@ public class ScanUploaderTest {
             when(amazonS3Provider.getS3ClientForBucket(anyString())).thenReturn(amazonS3);
 
             S3ScanWriter s3ScanWriter = new S3ScanWriter(
-                    1, URI.create("http://dummy-s3-bucket/root"), Optional.of(10), metricRegistry, amazonS3Provider, uploadService);
+                    1, URI.create("http://dummy-s3-bucket/root"), Optional.of(10), Compression.GZIP, metricRegistry, amazonS3Provider, uploadService, new ZstdDictionaryTrainer(MoreExecutors.sameThreadExecutor()));
             s3ScanWriter.setRetryDelay(Duration.ofMillis(1));
 
             ScanWriterGenerator scanWriterGenerator = mock(ScanWriterGenerator.class);
-            when(scanWriterGenerator.createScanWriter(eq(1), anySetOf(ScanDestination.class)))
+            when(scanWriterGenerator.createScanWriter(eq(1), anySetOf(ScanDestination.class), eq(Compression.GZIP)))
                     .thenReturn(s3ScanWriter);
 
             DataTools dataTools = mock(DataTools.class);
@@ -1160,7 +1174,7 @@ public class ScanUploaderTest {
                         }
                     });
 
-            scanUploader = new LocalRangeScanUploader(dataTools, scanWriterGenerator, new InMemoryCompactionControlSource(), mock(LifeCycleRegistry.class), metricRegistry);
+            scanUploader = new LocalRangeScanUploader(dataTools, scanWriterGenerator, new InMemoryCompactionControlSource(), mock(LifeCycleRegistry.class), metricRegistry, 1);
             scanUploader.start();
 
             ScanOptions scanOptions = new ScanOptions("p0")
@@ -1215,7 +1229,7 @@ public class ScanUploaderTest {
 
         S3ScanWriter scanWriter = mock(S3ScanWriter.class);
         when(scanWriter.writeShardRows(anyString(), anyString(), anyInt(), anyLong()))
-                .thenReturn(new DiscardingScanWriter(0, Optional.<Integer>absent(), metricRegistry).writeShardRows("test:table", "p0", 0, 0));
+                .thenReturn(new DiscardingScanWriter(0, Optional.<Integer>absent(), Compression.GZIP, metricRegistry).writeShardRows("test:table", "p0", 0, 0));
         when(scanWriter.waitForAllTransfersComplete(any(Duration.class)))
                 .thenAnswer(new Answer<WaitForAllTransfersCompleteResult>() {
                     @Override
@@ -1230,7 +1244,7 @@ public class ScanUploaderTest {
                 });
 
         ScanWriterFactory scanWriterFactory = mock(ScanWriterFactory.class);
-        when(scanWriterFactory.createS3ScanWriter(anyInt(), any(URI.class), any(Optional.class)))
+        when(scanWriterFactory.createS3ScanWriter(anyInt(), any(URI.class), any(Optional.class), any(Compression.class)))
                 .thenReturn(scanWriter);
 
         ScanWriterGenerator scanWriterGenerator = new ScanWriterGenerator(scanWriterFactory);
@@ -1239,7 +1253,7 @@ public class ScanUploaderTest {
                 .addDestination(ScanDestination.to(URI.create("s3://bucket/test")));
 
         LocalRangeScanUploader uploader = new LocalRangeScanUploader(
-                dataTools, scanWriterGenerator, new InMemoryCompactionControlSource(), mock(LifeCycleRegistry.class), metricRegistry, 2, 1000, Duration.ofMillis(100),
+                dataTools, scanWriterGenerator, new InMemoryCompactionControlSource(), mock(LifeCycleRegistry.class), metricRegistry, 2, 1000, 1, Duration.ofMillis(100),
                 Duration.ofSeconds(1));
         uploader.start();
 
@@ -1290,7 +1304,7 @@ public class ScanUploaderTest {
 
         S3ScanWriter scanWriter = mock(S3ScanWriter.class);
         when(scanWriter.writeShardRows(anyString(), anyString(), anyInt(), anyLong()))
-                .thenReturn(new DiscardingScanWriter(0, Optional.<Integer>absent(), metricRegistry).writeShardRows("test:table", "p0", 0, 0));
+                .thenReturn(new DiscardingScanWriter(0, Optional.<Integer>absent(), Compression.GZIP, metricRegistry).writeShardRows("test:table", "p0", 0, 0));
         when(scanWriter.waitForAllTransfersComplete(any(Duration.class)))
                 .thenAnswer(new Answer<WaitForAllTransfersCompleteResult>() {
                     int _call = -1;
@@ -1315,7 +1329,7 @@ public class ScanUploaderTest {
                 });
 
         ScanWriterFactory scanWriterFactory = mock(ScanWriterFactory.class);
-        when(scanWriterFactory.createS3ScanWriter(anyInt(), any(URI.class), any(Optional.class)))
+        when(scanWriterFactory.createS3ScanWriter(anyInt(), any(URI.class), any(Optional.class), any(Compression.class)))
                 .thenReturn(scanWriter);
 
         ScanWriterGenerator scanWriterGenerator = new ScanWriterGenerator(scanWriterFactory);
@@ -1324,7 +1338,7 @@ public class ScanUploaderTest {
                 .addDestination(ScanDestination.to(URI.create("s3://bucket/test")));
 
         LocalRangeScanUploader uploader = new LocalRangeScanUploader(
-                dataTools, scanWriterGenerator, new InMemoryCompactionControlSource(), mock(LifeCycleRegistry.class), metricRegistry, 2, 1000, Duration.ofMillis(100),
+                dataTools, scanWriterGenerator, new InMemoryCompactionControlSource(), mock(LifeCycleRegistry.class), metricRegistry, 2, 1000, 1, Duration.ofMillis(100),
                 Duration.ofMillis(100));
         uploader.start();
 
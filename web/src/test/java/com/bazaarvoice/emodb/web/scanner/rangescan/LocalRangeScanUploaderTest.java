@@ -0,0 +1,204 @@
+package com.bazaarvoice.emodb.web.scanner.rangescan;
+
+import com.bazaarvoice.emodb.common.dropwizard.lifecycle.LifeCycleRegistry;
+import com.bazaarvoice.emodb.common.json.JsonHelper;
+import com.bazaarvoice.emodb.sor.api.Intrinsic;
+import com.bazaarvoice.emodb.sor.compactioncontrol.InMemoryCompactionControlSource;
+import com.bazaarvoice.emodb.sor.core.DataTools;
+import com.bazaarvoice.emodb.sor.db.Key;
+import com.bazaarvoice.emodb.sor.db.MultiTableScanResult;
+import com.bazaarvoice.emodb.sor.db.Record;
+import com.bazaarvoice.emodb.sor.db.ScanRange;
+import com.bazaarvoice.emodb.table.db.Table;
+import com.bazaarvoice.emodb.web.scanner.ScanDestination;
+import com.bazaarvoice.emodb.web.scanner.ScanOptions;
+import com.bazaarvoice.emodb.web.scanner.writer.Compression;
+import com.bazaarvoice.emodb.web.scanner.writer.DiscardingScanWriter;
+import com.bazaarvoice.emodb.web.scanner.writer.ScanWriterGenerator;
+import com.bazaarvoice.emodb.web.scanner.writer.ShardWriter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Optional;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.reflect.AbstractInvocationHandler;
+import com.google.common.reflect.Reflection;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Matchers.anySetOf;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+
+public class LocalRangeScanUploaderTest {
+
+    private static final Instant INCREMENTAL_SINCE = Instant.parse("2017-06-01T00:00:00Z");
+
+    @Test
+    public void testFullStashIncludesLiveDocuments() {
+        assertTrue(LocalRangeScanUploader.isIncluded(document(false, "2017-05-01T00:00:00Z"), null));
+        assertTrue(LocalRangeScanUploader.isIncluded(document(false, "2017-07-01T00:00:00Z"), null));
+    }
+
+    @Test
+    public void testFullStashExcludesDeletedDocuments() {
+        assertFalse(LocalRangeScanUploader.isIncluded(document(true, "2017-05-01T00:00:00Z"), null));
+        assertFalse(LocalRangeScanUploader.isIncluded(document(true, "2017-07-01T00:00:00Z"), null));
+    }
+
+    @Test
+    public void testIncrementalStashIncludesDocumentsUpdatedSince() {
+        assertTrue(LocalRangeScanUploader.isIncluded(document(false, "2017-07-01T00:00:00Z"), INCREMENTAL_SINCE));
+        // The boundary is inclusive
+        assertTrue(LocalRangeScanUploader.isIncluded(document(false, "2017-06-01T00:00:00Z"), INCREMENTAL_SINCE));
+    }
+
+    @Test
+    public void testIncrementalStashIncludesTombstonesForDocumentsDeletedSince() {
+        assertTrue(LocalRangeScanUploader.isIncluded(document(true, "2017-07-01T00:00:00Z"), INCREMENTAL_SINCE));
+    }
+
+    @Test
+    public void testIncrementalStashExcludesDocumentsNotUpdatedSince() {
+        assertFalse(LocalRangeScanUploader.isIncluded(document(false, "2017-05-31T23:59:59.999Z"), INCREMENTAL_SINCE));
+        assertFalse(LocalRangeScanUploader.isIncluded(document(true, "2017-05-01T00:00:00Z"), INCREMENTAL_SINCE));
+    }
+
+    @Test
+    public void testIncrementalStashExcludesDocumentsNeverUpdated() {
+        // Documents which have never been written have no last update time
+        Map<String, Object> content = ImmutableMap.<String, Object>of("~id", "key", "~table", "table", "~deleted", true);
+        assertFalse(LocalRangeScanUploader.isIncluded(content, INCREMENTAL_SINCE));
+    }
+
+    @Test
+    public void testBatchReleasesResultsOnceSerialized() throws Exception {
+        final int batchSize = 10;
+        final List<WeakReference<MultiTableScanResult>> results = Lists.newArrayList();
+
+        final Table table = mock(Table.class);
+        when(table.getName()).thenReturn("test:table");
+
+        // Use a proxy rather than a mock since mocks retain the arguments of every call, including the results
+        DataTools dataTools = Reflection.newProxy(DataTools.class, new AbstractInvocationHandler() {
+            @Override
+            protected Object handleInvocation(Object proxy, Method method, Object[] args) throws Throwable {
+                switch (method.getName()) {
+                    case "stashMultiTableScan":
+                        return newResults(batchSize, table, results);
+                    case "toContent":
+                        MultiTableScanResult result = (MultiTableScanResult) args[0];
+                        return ImmutableMap.<String, Object>of(Intrinsic.ID, result.getRecord().getKey().getKey(),
+                                Intrinsic.TABLE, "test:table", Intrinsic.DELETED, false, Intrinsic.VERSION, 1);
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                }
+            }
+        });
+
+        // Hold the batch in the write stage, after it has been serialized
+        final CountDownLatch writing = new CountDownLatch(1);
+        final CountDownLatch resume = new CountDownLatch(1);
+        MetricRegistry metricRegistry = new MetricRegistry();
+        DiscardingScanWriter scanWriter = new DiscardingScanWriter(1, Optional.<Integer>absent(), Compression.GZIP, metricRegistry) {
+            @Override
+            public ShardWriter writeShardRows(String tableName, String placement, int shardId, long tableUuid)
+                    throws IOException, InterruptedException {
+                writing.countDown();
+                resume.await();
+                return super.writeShardRows(tableName, placement, shardId, tableUuid);
+            }
+        };
+        ScanWriterGenerator scanWriterGenerator = mock(ScanWriterGenerator.class);
+        when(scanWriterGenerator.createScanWriter(eq(1), anySetOf(ScanDestination.class), eq(Compression.GZIP)))
+                .thenReturn(scanWriter);
+
+        final LocalRangeScanUploader uploader = new LocalRangeScanUploader(dataTools, scanWriterGenerator,
+                new InMemoryCompactionControlSource(), mock(LifeCycleRegistry.class), metricRegistry, 2, batchSize, 1,
+                Duration.ofMinutes(1), Duration.ofMinutes(5));
+        uploader.start();
+        ExecutorService service = Executors.newSingleThreadExecutor();
+        try {
+            Future<RangeScanUploaderResult> future = service.submit(() ->
+                    uploader.scanAndUpload("id", 1, new ScanOptions("p0"), "p0", ScanRange.all(), new Date()));
+
+            assertTrue(writing.await(10, TimeUnit.SECONDS));
+
+            // Only the first and last results are still referenced while the serialized batch is written
+            for (int i = 0; i < 10 && !allReleased(results.subList(1, batchSize - 1)); i++) {
+                System.gc();
+                Thread.sleep(100);
+            }
+            assertTrue(allReleased(results.subList(1, batchSize - 1)));
+            assertNotNull(results.get(0).get());
+            assertNotNull(results.get(batchSize - 1).get());
+
+            resume.countDown();
+            RangeScanUploaderResult result = future.get(10, TimeUnit.SECONDS);
+            assertEquals(result.getStatus(), RangeScanUploaderResult.Status.SUCCESS);
+            assertEquals(result.getStageStatistics().getRows(), batchSize);
+        } finally {
+            resume.countDown();
+            service.shutdownNow();
+            uploader.stop();
+        }
+    }
+
+    private static Iterator<MultiTableScanResult> newResults(final int count, final Table table,
+                                                             final List<WeakReference<MultiTableScanResult>> results) {
+        return new AbstractIterator<MultiTableScanResult>() {
+            private int _next;
+
+            @Override
+            protected MultiTableScanResult computeNext() {
+                if (_next == count) {
+                    return endOfData();
+                }
+                String id = "key" + _next++;
+                Key key = mock(Key.class);
+                when(key.getKey()).thenReturn(id);
+                when(key.getTable()).thenReturn(table);
+                Record record = mock(Record.class);
+                when(record.getKey()).thenReturn(key);
+
+                MultiTableScanResult result = new MultiTableScanResult(ByteBuffer.wrap(id.getBytes()), 0, 1L, false, record);
+                results.add(new WeakReference<>(result));
+                return result;
+            }
+        };
+    }
+
+    private static boolean allReleased(List<WeakReference<MultiTableScanResult>> results) {
+        for (WeakReference<MultiTableScanResult> result : results) {
+            if (result.get() != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Map<String, Object> document(boolean deleted, String lastUpdateAt) {
+        return ImmutableMap.<String, Object>of("~id", "key", "~table", "table", "~deleted", deleted,
+                "~lastUpdateAt", JsonHelper.formatTimestamp(Date.from(Instant.parse(lastUpdateAt))));
+    }
+}
@@ -11,6 +11,7 @@ import com.bazaarvoice.emodb.web.scanner.ScanOptions;
 import com.codahale.metrics.MetricRegistry;
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
@@ -157,6 +158,43 @@ public class DataStoreScanStatusDAOTest {
         assertEquals(returned.getCompleteScanRanges().get(0).getScanCompleteTime(), completeTime);
     }
 
+    @Test
+    public void testSetScanRangeStageStatistics() {
+        ScanOptions options = new ScanOptions(ImmutableList.of("p0"));
+        options.addDestination(ScanDestination.to(URI.create("s3://bucket/path/to/root")));
+
+        ScanRangeStatus active = new ScanRangeStatus(0, "p0", ScanRange.all() ,0,
+                Optional.<Integer>absent(), Optional.<Integer>absent());
+        active.setScanQueuedTime(Date.from(Instant.now().minus(Duration.ofMinutes(2))));
+        active.setScanStartTime(Date.from(Instant.now().minus(Duration.ofMinutes(1))));
+
+        ScanStatus scanStatus = new ScanStatus("id", options, true, false, new Date(),
+                ImmutableList.<ScanRangeStatus>of(), ImmutableList.of(active), ImmutableList.<ScanRangeStatus>of());
+        _dao.updateScanStatus(scanStatus);
+
+        ScanRangeStageStatistics stageStatistics = new ScanRangeStageStatistics(
+                2500, 5000000L, 4000, 1000, 800, 600, 3000, 10000000000L,
+                ImmutableMap.of("table1", new TableCompressionStatistics(4000000L, 1000000L, 2000),
+                        "table2", new TableCompressionStatistics(1000000L, 500000L, 1000)));
+        _dao.setScanRangeTaskStageStatistics("id", 0, stageStatistics);
+        _dao.setScanRangeTaskComplete("id", 0, new Date());
+
+        ScanStatus returned = _dao.getScanStatus("id");
+        assertEquals(returned.getCompleteScanRanges().size(), 1);
+        assertEquals(returned.getCompleteScanRanges().get(0).getStageStatistics(), Optional.of(stageStatistics));
+        assertEquals(stageStatistics.getReadRowsPerSecond(), 625);
+        assertEquals(stageStatistics.getWriteBytesPerSecond(), 1666666);
+        assertEquals(returned.getTableCompressionStatistics(), ImmutableMap.of(
+                "table1", new TableCompressionStatistics(4000000L, 1000000L, 2000),
+                "table2", new TableCompressionStatistics(1000000L, 500000L, 1000)));
+        assertEquals(returned.getTableCompressionStatistics().get("table1").getCompressedPercent(), 25);
+        assertEquals(returned.getTableCompressionStatistics().get("table1").getCompressionBytesPerSecond(), 2000000);
+
+        // Statistics are preserved when the entire status is rewritten
+        _dao.updateScanStatus(returned);
+        assertEquals(_dao.getScanStatus("id"), returned);
+    }
+
     @Test
     public void testSetScanRangeInactive() {
         ScanOptions options = new ScanOptions(ImmutableList.of("p0"));
@@ -10,6 +10,7 @@ import com.bazaarvoice.emodb.web.scanner.notifications.ScanCountListener;
 import com.bazaarvoice.emodb.web.scanner.scanstatus.ScanRangeStatus;
 import com.bazaarvoice.emodb.web.scanner.scanstatus.ScanStatus;
 import com.bazaarvoice.emodb.web.scanner.scanstatus.StashRequest;
+import com.bazaarvoice.emodb.web.scanner.writer.Compression;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
@@ -83,7 +84,7 @@ public class ScanUploadSchedulingServiceTest {
         ScheduledDailyScanUpload dailyScanUpload =
                 new ScheduledDailyScanUpload("daily", "18:00-06:00", DateTimeFormatter.ofPattern("'daily'-yyyy-MM-dd-HH-mm-ss").withZone(ZoneOffset.UTC),
                         ScanDestination.discard(), StashUtil.STASH_DIRECTORY_DATE_FORMAT,
-                        ImmutableList.of("placement1"), 1, true, false, 1000000, Duration.ofMinutes(10));
+                        ImmutableList.of("placement1"), 1, true, false, 1000000, Duration.ofMinutes(10), Compression.GZIP);
         Instant tomorrowAtMidnightUTC = ZonedDateTime.from(new Date().toInstant().atZone(ZoneOffset.UTC))
                 .plusDays(1)
                 .withHour(0)
@@ -117,11 +118,11 @@ public class ScanUploadSchedulingServiceTest {
         ScheduledDailyScanUpload pastScanUpload =
                 new ScheduledDailyScanUpload("daily", pastTimeOfDay, DateTimeFormatter.ofPattern("'past'-yyyyMMddHHmmss").withZone(ZoneOffset.UTC),
                         ScanDestination.discard(), DateTimeFormatter.ofPattern("yyyyMMddHHmmss").withZone(ZoneOffset.UTC),
-                        ImmutableList.of("placement1"), 1, true, false, 1000000, Duration.ofMinutes(10));
+                        ImmutableList.of("placement1"), 1, true, false, 1000000, Duration.ofMinutes(10), Compression.GZIP);
         ScheduledDailyScanUpload futureScanUpload =
                 new ScheduledDailyScanUpload("daily", futureTimeOfDay, DateTimeFormatter.ofPattern("'future'-yyyyMMddHHmmss").withZone(ZoneOffset.UTC),
                         ScanDestination.discard(),DateTimeFormatter.ofPattern("yyyyMMddHHmmss").withZone(ZoneOffset.UTC),
-                        ImmutableList.of("placement2"), 1, true, false, 1000000, Duration.ofMinutes(10));
+                        ImmutableList.of("placement2"), 1, true, false, 1000000, Duration.ofMinutes(10), Compression.GZIP);
 
         List<ScheduledDailyScanUpload> scheduledScans = ImmutableList.of(pastScanUpload, futureScanUpload);
 
@@ -183,7 +184,7 @@ public class ScanUploadSchedulingServiceTest {
             scheduledScans.add(
                     new ScheduledDailyScanUpload("daily", timeOfDay, DateTimeFormatter.ofPattern("'test'-yyyyMMddHHmmss").withZone(ZoneOffset.UTC),
                             ScanDestination.discard(), DateTimeFormatter.ofPattern("yyyyMMddHHmmss").withZone(ZoneOffset.UTC),
-                            ImmutableList.of("placement1"), 1, true, false, 1000000, Duration.ofMinutes(10)));
+                            ImmutableList.of("placement1"), 1, true, false, 1000000, Duration.ofMinutes(10), Compression.GZIP));
         }
 
         ScanUploadSchedulingService.DelegateSchedulingService service =
@@ -224,7 +225,7 @@ public class ScanUploadSchedulingServiceTest {
         ScheduledDailyScanUpload scanUpload =
                 new ScheduledDailyScanUpload("daily", timeOfDay, DateTimeFormatter.ofPattern("'test'-yyyyMMddHHmmss").withZone(ZoneOffset.UTC),
                         destination, DateTimeFormatter.ofPattern("yyyyMMddHHmmss").withZone(ZoneOffset.UTC),
-                        ImmutableList.of("placement1"), 1, true, false, 1000000, Duration.ofMinutes(10));
+                        ImmutableList.of("placement1"), 1, true, false, 1000000, Duration.ofMinutes(10), Compression.GZIP);
 
         ScanUploader.ScanAndUploadBuilder builder = mock(ScanUploader.ScanAndUploadBuilder.class);
         ScanUploader scanUploader = mock(ScanUploader.class);
@@ -268,7 +269,7 @@ public class ScanUploadSchedulingServiceTest {
         ScheduledDailyScanUpload scanUpload =
                 new ScheduledDailyScanUpload("daily", timeOfDay, DateTimeFormatter.ofPattern("'test'-yyyyMMddHHmmss").withZone(ZoneOffset.UTC),
                         destination, DateTimeFormatter.ofPattern("yyyyMMddHHmmss").withZone(ZoneOffset.UTC),
-                        ImmutableList.of("placement1"), 1, true, false, 1000000, Duration.ofMinutes(10));
+                        ImmutableList.of("placement1"), 1, true, false, 1000000, Duration.ofMinutes(10), Compression.GZIP);
 
         String expectedScanId = DateTimeFormatter.ofPattern("'test'-yyyyMMddHHmmss").withZone(ZoneOffset.UTC).format(now);
 
@@ -312,7 +313,7 @@ public class ScanUploadSchedulingServiceTest {
 
         ScheduledDailyScanUpload upload = new ScheduledDailyScanUpload(
                 "daily", startTime, DateTimeFormatter.ISO_INSTANT, ScanDestination.discard(), DateTimeFormatter.ISO_INSTANT,
-                ImmutableList.of("catalog_global:cat"), 5, true, false, 1000000, Duration.ofMinutes(10));
+                ImmutableList.of("catalog_global:cat"), 5, true, false, 1000000, Duration.ofMinutes(10), Compression.GZIP);
 
         ScanParticipationService service = new ScanParticipationService(
                 ImmutableList.of(upload), stashStateListener, lifecycle, clock);
@@ -368,11 +369,11 @@ public class ScanUploadSchedulingServiceTest {
         ScheduledDailyScanUpload pastScanUpload =
                 new ScheduledDailyScanUpload("past", pastTimeOfDay, DateTimeFormatter.ofPattern("'past'-yyyyMMddHHmmss").withZone(ZoneOffset.UTC),
                         ScanDestination.discard(), DateTimeFormatter.ofPattern("yyyyMMddHHmmss").withZone(ZoneOffset.UTC),
-                        ImmutableList.of("placement1"), 1, true, true, 1000000, Duration.ofMinutes(10));
+                        ImmutableList.of("placement1"), 1, true, true, 1000000, Duration.ofMinutes(10), Compression.GZIP);
         ScheduledDailyScanUpload futureScanUpload =
                 new ScheduledDailyScanUpload("future", futureTimeOfDay, DateTimeFormatter.ofPattern("'future'-yyyyMMddHHmmss").withZone(ZoneOffset.UTC),
                         ScanDestination.discard(),DateTimeFormatter.ofPattern("yyyyMMddHHmmss").withZone(ZoneOffset.UTC),
-                        ImmutableList.of("placement2"), 1, true, true, 1000000, Duration.ofMinutes(10));
+                        ImmutableList.of("placement2"), 1, true, true, 1000000, Duration.ofMinutes(10), Compression.GZIP);
 
         List<ScheduledDailyScanUpload> scheduledScans = ImmutableList.of(pastScanUpload, futureScanUpload);
 
@@ -5,6 +5,7 @@ import com.bazaarvoice.emodb.web.scanner.ScanDestination;
 import com.bazaarvoice.emodb.web.scanner.scanstatus.InMemoryStashRequestDAO;
 import com.bazaarvoice.emodb.web.scanner.scanstatus.StashRequest;
 import com.bazaarvoice.emodb.web.scanner.scanstatus.StashRequestDAO;
+import com.bazaarvoice.emodb.web.scanner.writer.Compression;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import org.testng.annotations.BeforeMethod;
@@ -37,10 +38,10 @@ public class StashRequestManagerTest {
         List<ScheduledDailyScanUpload> scanUploads = ImmutableList.of(
                 new ScheduledDailyScanUpload("always", "00:00Z", DateTimeFormatter.ofPattern("'always'-yyyy-MM-dd-HH-mm-ss"),
                         ScanDestination.discard(), DateTimeFormatter.ofPattern("'dest'-yyyy-MM-dd-HH-mm-ss"),
-                        ImmutableList.of("ugc_global:ugc"), 4, true, false, 1000000, Duration.ofMinutes(10)),
+                        ImmutableList.of("ugc_global:ugc"), 4, true, false, 1000000, Duration.ofMinutes(10), Compression.GZIP),
                 new ScheduledDailyScanUpload("byrequest", "12:00Z", DateTimeFormatter.ofPattern("'byrequest'-yyyy-MM-dd-HH-mm-ss"),
                         ScanDestination.discard(), DateTimeFormatter.ofPattern("'dest'-yyyy-MM-dd-HH-mm-ss"),
-                        ImmutableList.of("ugc_global:ugc"), 4, true, true, 1000000, Duration.ofMinutes(10))
+                        ImmutableList.of("ugc_global:ugc"), 4, true, true, 1000000, Duration.ofMinutes(10), Compression.GZIP)
         );
 
         _stashRequestManager = new StashRequestManager(_stashRequestDAO, scanUploads, _clock);
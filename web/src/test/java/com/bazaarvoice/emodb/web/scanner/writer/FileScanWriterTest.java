@@ -0,0 +1,75 @@
+package com.bazaarvoice.emodb.web.scanner.writer;
+
+import com.bazaarvoice.emodb.common.json.ISO8601DateFormat;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Charsets;
+import com.google.common.base.Optional;
+import com.google.common.io.Files;
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class FileScanWriterTest {
+
+    private File _stashDir;
+
+    @BeforeMethod
+    public void setUp() {
+        _stashDir = Files.createTempDir();
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(_stashDir);
+    }
+
+    @Test
+    public void testWriteScanComplete() throws Exception {
+        Date startTime = new Date(1496275200000L);
+        FileScanWriter scanWriter = new FileScanWriter(-1, new File(_stashDir, "2017-06-01-00-00-00").toURI(),
+                Optional.<Integer>absent(), Compression.GZIP, new MetricRegistry());
+
+        assertTrue(scanWriter.writeScanComplete("scan1", startTime, null));
+
+        List<String> success = Files.readLines(new File(_stashDir, "2017-06-01-00-00-00/_SUCCESS"), Charsets.UTF_8);
+        assertEquals(success.get(0), new ISO8601DateFormat().format(startTime));
+        assertEquals(success.get(2), "scan1");
+        assertEquals(Files.toString(new File(_stashDir, "_LATEST"), Charsets.UTF_8), "2017-06-01-00-00-00");
+        // Only incremental Stashes have an incremental manifest
+        assertFalse(new File(_stashDir, "2017-06-01-00-00-00/_INCREMENTAL").exists());
+        assertFalse(new File(_stashDir, "_LATEST_INCREMENTAL").exists());
+    }
+
+    @Test
+    public void testWriteIncrementalScanComplete() throws Exception {
+        Files.write("2017-06-01-00-00-00", new File(_stashDir, "_LATEST"), Charsets.UTF_8);
+
+        Date startTime = new Date(1496361600000L);
+        Instant incrementalSince = Instant.parse("2017-05-31T23:00:00Z");
+        FileScanWriter scanWriter = new FileScanWriter(-1, new File(_stashDir, "2017-06-02-00-00-00").toURI(),
+                Optional.<Integer>absent(), Compression.GZIP, new MetricRegistry());
+
+        assertTrue(scanWriter.writeScanComplete("scan2", startTime, incrementalSince));
+
+        // The manifest records when the incremental Stash starts and which scan wrote it
+        List<String> manifest = Files.readLines(new File(_stashDir, "2017-06-02-00-00-00/_INCREMENTAL"), Charsets.UTF_8);
+        assertEquals(manifest.get(0), new ISO8601DateFormat().format(Date.from(incrementalSince)));
+        assertEquals(manifest.get(1), new ISO8601DateFormat().format(startTime));
+        assertEquals(manifest.get(2), "scan2");
+        assertTrue(new File(_stashDir, "2017-06-02-00-00-00/_SUCCESS").exists());
+
+        // The latest full Stash is unchanged
+        assertEquals(Files.toString(new File(_stashDir, "_LATEST"), Charsets.UTF_8), "2017-06-01-00-00-00");
+        assertEquals(Files.toString(new File(_stashDir, "_LATEST_INCREMENTAL"), Charsets.UTF_8), "2017-06-02-00-00-00");
+    }
+}
@@ -6,11 +6,15 @@ import com.amazonaws.services.s3.model.PutObjectRequest;
 import com.amazonaws.services.s3.model.PutObjectResult;
 import com.bazaarvoice.emodb.queue.core.ByteBufferInputStream;
 import com.codahale.metrics.MetricRegistry;
+import com.github.luben.zstd.ZstdDictTrainer;
+import com.github.luben.zstd.ZstdInputStream;
 import com.google.common.base.Charsets;
 import com.google.common.base.Optional;
 import com.google.common.collect.Maps;
+import com.google.common.io.ByteStreams;
 import com.google.common.io.CharStreams;
 import com.google.common.io.Files;
+import com.google.common.util.concurrent.MoreExecutors;
 import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
 import org.hamcrest.BaseMatcher;
 import org.hamcrest.Description;
@@ -19,6 +23,7 @@ import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 import org.testng.annotations.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Reader;
@@ -70,7 +75,7 @@ public class S3ScanWriterTest {
             AmazonS3Provider amazonS3Provider = mock(AmazonS3Provider.class);
             when(amazonS3Provider.getS3ClientForBucket("test-bucket")).thenReturn(amazonS3);
 
-            S3ScanWriter scanWriter = new S3ScanWriter(1, baseUri, Optional.of(2), metricRegistry, amazonS3Provider, uploadService);
+            S3ScanWriter scanWriter = new S3ScanWriter(1, baseUri, Optional.of(2), Compression.GZIP, metricRegistry, amazonS3Provider, uploadService, new ZstdDictionaryTrainer(MoreExecutors.sameThreadExecutor()));
             ShardWriter shardWriter = scanWriter.writeShardRows("testtable", "p0", 0, 1);
             shardWriter.getOutputStream().write("This is a test line".getBytes(Charsets.UTF_8));
             shardWriter.closeAndTransferAysnc(Optional.of(1));
@@ -87,6 +92,69 @@ public class S3ScanWriterTest {
         }
     }
 
+    @Test
+    public void testWriteWithZstdDictionary()
+            throws Exception {
+        URI baseUri = URI.create("s3://test-bucket/stash/scan");
+        ScheduledExecutorService uploadService = Executors.newScheduledThreadPool(2);
+
+        try {
+            AmazonS3 amazonS3 = mock(AmazonS3.class);
+
+            final Map<String, byte[]> putObjects = Maps.newHashMap();
+
+            when(amazonS3.putObject(any(PutObjectRequest.class)))
+                    .thenAnswer(new Answer<PutObjectResult>() {
+                        @Override
+                        public PutObjectResult answer(InvocationOnMock invocation) throws Throwable {
+                            PutObjectRequest request = (PutObjectRequest) invocation.getArguments()[0];
+                            putObjects.put(request.getKey(), request.getFile() != null ?
+                                    Files.toByteArray(request.getFile()) : ByteStreams.toByteArray(request.getInputStream()));
+                            PutObjectResult result = new PutObjectResult();
+                            result.setETag("etag");
+                            return result;
+                        }
+                    });
+
+            AmazonS3Provider amazonS3Provider = mock(AmazonS3Provider.class);
+            when(amazonS3Provider.getS3ClientForBucket("test-bucket")).thenReturn(amazonS3);
+
+            ZstdDictTrainer trainer = new ZstdDictTrainer(1024 * 1024, 16 * 1024);
+            for (int i = 0; i < 1000; i++) {
+                trainer.addSample(String.format("{\"~id\":\"row%d\",\"~table\":\"test:table\",\"~version\":%d}\n", i, i % 7)
+                        .getBytes(Charsets.UTF_8));
+            }
+            byte[] dictionary = trainer.trainSamples();
+
+            ZstdDictionaryTrainer zstdDictionaryTrainer = mock(ZstdDictionaryTrainer.class);
+            when(zstdDictionaryTrainer.getDictionary(baseUri, "test:table")).thenReturn(dictionary);
+
+            S3ScanWriter scanWriter = new S3ScanWriter(1, baseUri, Optional.of(2), Compression.ZSTD, new MetricRegistry(), amazonS3Provider, uploadService, zstdDictionaryTrainer);
+            for (int shardId = 0; shardId < 2; shardId++) {
+                ShardWriter shardWriter = scanWriter.writeShardRows("test:table", "p0", shardId, 1);
+                shardWriter.getOutputStream().write("{\"~id\":\"row1\",\"~table\":\"test:table\",\"~version\":1}\n".getBytes(Charsets.UTF_8));
+                shardWriter.closeAndTransferAysnc(Optional.of(1));
+            }
+
+            verifyAllTransfersComplete(scanWriter, uploadService);
+
+            // Training starts with the writer, and the trainer rather than the writer writes the dictionary
+            verify(zstdDictionaryTrainer).startTraining(amazonS3, baseUri);
+            // The writer decides once per table so all parts of a shard use the same dictionary
+            verify(zstdDictionaryTrainer, times(1)).getDictionary(baseUri, "test:table");
+            verify(amazonS3, times(2)).putObject(any(PutObjectRequest.class));
+
+            byte[] shard = putObjects.get("stash/scan/test~table/test~table-00-0000000000000001-1.json.zst");
+            ZstdInputStream zstdIn = new ZstdInputStream(new ByteArrayInputStream(shard));
+            zstdIn.setDict(dictionary);
+            try (Reader in = new InputStreamReader(zstdIn, Charsets.UTF_8)) {
+                assertEquals(CharStreams.toString(in), "{\"~id\":\"row1\",\"~table\":\"test:table\",\"~version\":1}\n");
+            }
+        } finally {
+            uploadService.shutdownNow();
+        }
+    }
+
     @Test
     public void testWriteWithError()
             throws Exception {
@@ -101,7 +169,7 @@ public class S3ScanWriterTest {
         AmazonS3Provider amazonS3Provider = mock(AmazonS3Provider.class);
         when(amazonS3Provider.getS3ClientForBucket("test-bucket")).thenReturn(amazonS3);
 
-        S3ScanWriter scanWriter = new S3ScanWriter(1, baseUri, Optional.of(2), metricRegistry, amazonS3Provider, uploadService);
+        S3ScanWriter scanWriter = new S3ScanWriter(1, baseUri, Optional.of(2), Compression.GZIP, metricRegistry, amazonS3Provider, uploadService, new ZstdDictionaryTrainer(MoreExecutors.sameThreadExecutor()));
         scanWriter.setRetryDelay(Duration.ofMillis(10));
 
         try {
@@ -139,7 +207,7 @@ public class S3ScanWriterTest {
             AmazonS3Provider amazonS3Provider = mock(AmazonS3Provider.class);
             when(amazonS3Provider.getS3ClientForBucket("test-bucket")).thenReturn(amazonS3);
 
-            S3ScanWriter scanWriter = new S3ScanWriter(1, baseUri, Optional.of(2), new MetricRegistry(), amazonS3Provider, uploadService);
+            S3ScanWriter scanWriter = new S3ScanWriter(1, baseUri, Optional.of(2), Compression.GZIP, new MetricRegistry(), amazonS3Provider, uploadService, new ZstdDictionaryTrainer(MoreExecutors.sameThreadExecutor()));
 
             ShardWriter shardWriter[] = new ShardWriter[2];
 
@@ -177,7 +245,7 @@ public class S3ScanWriterTest {
             AmazonS3Provider amazonS3Provider = mock(AmazonS3Provider.class);
             when(amazonS3Provider.getS3ClientForBucket("test-bucket")).thenReturn(amazonS3);
 
-            S3ScanWriter scanWriter = new S3ScanWriter(1, baseUri, Optional.of(2), new MetricRegistry(), amazonS3Provider, uploadService);
+            S3ScanWriter scanWriter = new S3ScanWriter(1, baseUri, Optional.of(2), Compression.GZIP, new MetricRegistry(), amazonS3Provider, uploadService, new ZstdDictionaryTrainer(MoreExecutors.sameThreadExecutor()));
 
             ShardWriter shardWriter[] = new ShardWriter[2];
 
@@ -0,0 +1,198 @@
+package com.bazaarvoice.emodb.web.scanner.writer;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ListObjectsRequest;
+import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.PutObjectResult;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.bazaarvoice.emodb.common.stash.StashUtil;
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.ByteStreams;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import static java.lang.String.format;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+
+public class ZstdDictionaryTrainerTest {
+
+    private static final URI STASH_DIRECTORY = URI.create("s3://stash-bucket/stash/2015-01-02-00-00-00");
+
+    @Test
+    public void testTrainsInBackgroundAndWritesDictionaryOnce() throws Exception {
+        AmazonS3 s3 = mockPreviousStash();
+        final Map<String, byte[]> putObjects = Maps.newHashMap();
+        when(s3.putObject(any(PutObjectRequest.class))).thenAnswer(new Answer<PutObjectResult>() {
+            @Override
+            public PutObjectResult answer(InvocationOnMock invocation) throws Throwable {
+                PutObjectRequest request = (PutObjectRequest) invocation.getArguments()[0];
+                assertEquals(request.getBucketName(), "stash-bucket");
+                putObjects.put(request.getKey(), ByteStreams.toByteArray(request.getInputStream()));
+                return new PutObjectResult();
+            }
+        });
+
+        QueuedExecutor executor = new QueuedExecutor();
+        ZstdDictionaryTrainer trainer = new ZstdDictionaryTrainer(executor);
+
+        // Every writer for the Stash starts training but the previous Stash is only sampled once
+        trainer.startTraining(s3, STASH_DIRECTORY);
+        trainer.startTraining(s3, STASH_DIRECTORY);
+        assertEquals(executor.size(), 1);
+
+        // Writers don't wait for training; until the dictionary is written they compress without one
+        assertNull(trainer.getDictionary(STASH_DIRECTORY, "test:table"));
+        executor.runAll();
+
+        byte[] dictionary = trainer.getDictionary(STASH_DIRECTORY, "test:table");
+        assertNotNull(dictionary);
+        assertEquals(putObjects.keySet(), ImmutableList.of(format("stash/2015-01-02-00-00-00/_dictionaries/test~table/%d.zdict",
+                StashUtil.getZstdDictionaryId(dictionary))));
+        assertEquals(putObjects.values().iterator().next(), dictionary);
+
+        // Dictionaries are per Stash, so a writer for another Stash can't use it
+        assertNull(trainer.getDictionary(URI.create("s3://stash-bucket/stash/2015-01-03-00-00-00"), "test:table"));
+        verify(s3, times(1)).putObject(any(PutObjectRequest.class));
+    }
+
+    @Test
+    public void testNoDictionaryIfNotWritten() throws Exception {
+        AmazonS3 s3 = mockPreviousStash();
+        when(s3.putObject(any(PutObjectRequest.class))).thenThrow(new RuntimeException("Simulated write failure"));
+
+        QueuedExecutor executor = new QueuedExecutor();
+        ZstdDictionaryTrainer trainer = new ZstdDictionaryTrainer(executor);
+        trainer.startTraining(s3, STASH_DIRECTORY);
+        executor.runAll();
+
+        // Readers couldn't decompress shards compressed with a dictionary that wasn't written
+        assertNull(trainer.getDictionary(STASH_DIRECTORY, "test:table"));
+    }
+
+    /**
+     * Returns an S3 client with a previous Stash containing a single table.
+     */
+    private AmazonS3 mockPreviousStash() throws Exception {
+        ByteArrayOutputStream splitOut = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(splitOut)) {
+            for (int i = 0; i < 1000; i++) {
+                out.write(format("{\"~id\":\"row%d\",\"~table\":\"test:table\",\"~version\":%d,\"~signature\":\"%032x\"}\n",
+                        i, i % 7 + 1, i * 7919L).getBytes(Charsets.UTF_8));
+            }
+        }
+        final byte[] split = splitOut.toByteArray();
+
+        AmazonS3 s3 = mock(AmazonS3.class);
+        when(s3.getObject(any(GetObjectRequest.class))).thenAnswer(new Answer<S3Object>() {
+            @Override
+            public S3Object answer(InvocationOnMock invocation) throws Throwable {
+                String key = ((GetObjectRequest) invocation.getArguments()[0]).getKey();
+                byte[] content;
+                if (key.equals("stash/_LATEST")) {
+                    content = "2015-01-01-00-00-00".getBytes(Charsets.UTF_8);
+                } else if (key.equals("stash/2015-01-01-00-00-00/test~table/split0.gz")) {
+                    content = split;
+                } else {
+                    throw new IllegalArgumentException("Unexpected key: " + key);
+                }
+                S3Object s3Object = new S3Object();
+                s3Object.setObjectContent(new ByteArrayInputStream(content));
+                ObjectMetadata objectMetadata = new ObjectMetadata();
+                objectMetadata.setContentLength(content.length);
+                s3Object.setObjectMetadata(objectMetadata);
+                return s3Object;
+            }
+        });
+        when(s3.listObjects(any(ListObjectsRequest.class))).thenAnswer(new Answer<ObjectListing>() {
+            @Override
+            public ObjectListing answer(InvocationOnMock invocation) throws Throwable {
+                ListObjectsRequest request = (ListObjectsRequest) invocation.getArguments()[0];
+                ObjectListing objectListing = new ObjectListing();
+                objectListing.setBucketName(request.getBucketName());
+                objectListing.setPrefix(request.getPrefix());
+                objectListing.setTruncated(false);
+                if (request.getPrefix().equals("stash/2015-01-01-00-00-00/")) {
+                    objectListing.setCommonPrefixes(ImmutableList.of("stash/2015-01-01-00-00-00/test~table/"));
+                } else if (request.getPrefix().equals("stash/2015-01-01-00-00-00/test~table/")) {
+                    S3ObjectSummary objectSummary = new S3ObjectSummary();
+                    objectSummary.setKey(request.getPrefix() + "split0.gz");
+                    objectSummary.setSize(split.length);
+                    objectListing.getObjectSummaries().add(objectSummary);
+                }
+                return objectListing;
+            }
+        });
+        return s3;
+    }
+
+    /**
+     * Executor which only runs tasks when requested, so tests can observe the trainer while training is pending.
+     */
+    private static class QueuedExecutor extends AbstractExecutorService {
+        private final List<Runnable> _tasks = Lists.newArrayList();
+
+        int size() {
+            return _tasks.size();
+        }
+
+        void runAll() {
+            while (!_tasks.isEmpty()) {
+                _tasks.remove(0).run();
+            }
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            _tasks.add(command);
+        }
+
+        @Override
+        public void shutdown() {
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return ImmutableList.of();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return false;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return false;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return true;
+        }
+    }
+}
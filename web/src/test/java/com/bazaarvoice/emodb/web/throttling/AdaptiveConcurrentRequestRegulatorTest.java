@@ -0,0 +1,209 @@
+package com.bazaarvoice.emodb.web.throttling;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Ticker;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.sun.jersey.spi.container.ContainerRequest;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import javax.ws.rs.WebApplicationException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class AdaptiveConcurrentRequestRegulatorTest {
+
+    private static final String PERMIT_PROPERTY = "permit";
+
+    private long _now;
+    private Ticker _ticker;
+    private MetricRegistry _metricRegistry;
+
+    @BeforeMethod
+    public void setUp() {
+        _now = TimeUnit.DAYS.toNanos(1);
+        _ticker = new Ticker() {
+            @Override
+            public long read() {
+                return _now;
+            }
+        };
+        _metricRegistry = new MetricRegistry();
+    }
+
+    private AdaptiveConcurrentRequestRegulator newRegulator(int maxRequests, AdaptiveThrottlingConfiguration config) {
+        return new AdaptiveConcurrentRequestRegulator(PERMIT_PROPERTY, maxRequests, config, _ticker,
+                _metricRegistry, "endpoint", null);
+    }
+
+    private ContainerRequest newRequest() {
+        ContainerRequest request = mock(ContainerRequest.class);
+        Map<String, Object> properties = Maps.newHashMap();
+        when(request.getProperties()).thenReturn(properties);
+        return request;
+    }
+
+    /**
+     * Starts up to "requests" concurrent requests, lets them run for "rttMillis" then completes all admitted requests.
+     * Returns the number of requests which were admitted.
+     */
+    private int runRequests(AdaptiveConcurrentRequestRegulator regulator, int requests, long rttMillis) {
+        List<ContainerRequest> admitted = Lists.newArrayList();
+        for (int i = 0; i < requests; i++) {
+            ContainerRequest request = newRequest();
+            try {
+                regulator.throttle(request);
+                admitted.add(request);
+            } catch (WebApplicationException e) {
+                assertEquals(e.getResponse().getStatus(), 503);
+            }
+        }
+        _now += TimeUnit.MILLISECONDS.toNanos(rttMillis);
+        for (ContainerRequest request : admitted) {
+            regulator.release(request);
+        }
+        return admitted.size();
+    }
+
+    @Test
+    public void testRejectsOverLimit() {
+        AdaptiveConcurrentRequestRegulator regulator = newRegulator(10, new AdaptiveThrottlingConfiguration());
+
+        assertEquals(runRequests(regulator, 15, 10), 10);
+        assertEquals(regulator.getInFlight(), 0);
+        assertEquals(_metricRegistry.meter("bv.emodb.web.Throttle.endpoint.rejected-requests").getCount(), 5);
+    }
+
+    @Test
+    public void testReleaseWithoutPermit() {
+        AdaptiveConcurrentRequestRegulator regulator = newRegulator(10, new AdaptiveThrottlingConfiguration());
+
+        // Release is called for requests which were rejected and must not free a permit
+        ContainerRequest request = newRequest();
+        regulator.throttle(request);
+        regulator.release(request);
+        regulator.release(request);
+        regulator.release(newRequest());
+        assertEquals(regulator.getInFlight(), 0);
+        assertEquals(runRequests(regulator, 15, 10), 10);
+    }
+
+    @Test
+    public void testLimitAdaptsToLatency() {
+        AdaptiveConcurrentRequestRegulator regulator = newRegulator(100,
+                new AdaptiveThrottlingConfiguration().setMinLimitFraction(0.1));
+
+        // Stable latency keeps the limit at the maximum
+        for (int i = 0; i < 10; i++) {
+            assertEquals(runRequests(regulator, 100, 10), 100);
+        }
+        assertEquals(regulator.getLimit(), 100);
+
+        // Latency well above the long term average shrinks the limit, but never below the minimum
+        for (int i = 0; i < 10; i++) {
+            runRequests(regulator, 100, 100);
+        }
+        int reducedLimit = regulator.getLimit();
+        assertTrue(reducedLimit < 50, "Limit not reduced: " + reducedLimit);
+        assertTrue(reducedLimit >= 10, "Limit below minimum: " + reducedLimit);
+        assertEquals(runRequests(regulator, 100, 100), reducedLimit);
+
+        // Once latency recovers the limit grows back to the maximum
+        for (int i = 0; i < 50; i++) {
+            runRequests(regulator, 100, 10);
+        }
+        assertEquals(regulator.getLimit(), 100);
+
+        Gauge limit = _metricRegistry.getGauges().get("bv.emodb.web.Throttle.endpoint.limit");
+        assertEquals(limit.getValue(), 100);
+    }
+
+    @Test
+    public void testDefaultMinimumIsFractionOfMaximum() {
+        AdaptiveConcurrentRequestRegulator regulator = newRegulator(550, new AdaptiveThrottlingConfiguration());
+
+        for (int i = 0; i < 10; i++) {
+            runRequests(regulator, 550, 10);
+        }
+        // A sudden slowdown shrinks the limit to half the maximum but no further
+        runRequests(regulator, 550, 1000);
+        assertEquals(regulator.getLimit(), 275);
+        assertEquals(runRequests(regulator, 550, 1000), 275);
+    }
+
+    @Test
+    public void testLimitUnchangedWhenUnderutilized() {
+        AdaptiveConcurrentRequestRegulator regulator = newRegulator(100, new AdaptiveThrottlingConfiguration());
+
+        // Slow requests are no evidence the limit is too high when few requests are in flight
+        for (int i = 0; i < 10; i++) {
+            runRequests(regulator, 10, 10);
+        }
+        for (int i = 0; i < 10; i++) {
+            runRequests(regulator, 10, 1000);
+        }
+        assertEquals(regulator.getLimit(), 100);
+    }
+
+    @Test
+    public void testQueuedRequestAdmittedOnRelease() throws Exception {
+        final AdaptiveConcurrentRequestRegulator regulator = newRegulator(1, new AdaptiveThrottlingConfiguration()
+                .setMaxQueuedRequests(1)
+                .setMaxQueueWait(Duration.ofSeconds(30)));
+
+        ContainerRequest first = newRequest();
+        regulator.throttle(first);
+
+        final ContainerRequest queued = newRequest();
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                regulator.throttle(queued);
+            }
+        };
+        thread.start();
+
+        // Wait for the second request to queue, then a third request is rejected since the queue is full
+        while (thread.getState() != Thread.State.TIMED_WAITING) {
+            Thread.sleep(1);
+        }
+        try {
+            regulator.throttle(newRequest());
+            fail("Request not rejected with a full queue");
+        } catch (WebApplicationException e) {
+            assertEquals(e.getResponse().getStatus(), 503);
+        }
+
+        regulator.release(first);
+        thread.join(TimeUnit.SECONDS.toMillis(10));
+        assertEquals(regulator.getInFlight(), 1);
+        regulator.release(queued);
+        assertEquals(regulator.getInFlight(), 0);
+    }
+
+    @Test
+    public void testQueuedRequestRejectedAfterWait() {
+        AdaptiveConcurrentRequestRegulator regulator = newRegulator(1, new AdaptiveThrottlingConfiguration()
+                .setMaxQueuedRequests(1)
+                .setMaxQueueWait(Duration.ofMillis(10)));
+
+        regulator.throttle(newRequest());
+        try {
+            regulator.throttle(newRequest());
+            fail("Queued request not rejected");
+        } catch (WebApplicationException e) {
+            assertEquals(e.getResponse().getStatus(), 503);
+        }
+        assertEquals(regulator.getInFlight(), 1);
+    }
+}